@@ -2,20 +2,27 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class AssignNode implements FtlNode {
+public final class AssignNode implements FtlNode {
 
     private final String varName;
 
     private final String valueExpr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public AssignNode(@JsonProperty("varName") String varName, @JsonProperty("valueExpr") String valueExpr) {
         this.varName = varName;
         this.valueExpr = valueExpr;
+        this.hash = AstUtils.structuralHash(AssignNode.class, this.varName, this.valueExpr);
     }
 
 
@@ -30,4 +37,19 @@ public class AssignNode implements FtlNode {
     public String toString() {
         return "Assign{" + varName + "=" + valueExpr + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AssignNode)) return false;
+        AssignNode that = (AssignNode) o;
+        return hash == that.hash
+                && Objects.equals(varName, that.varName)
+                && Objects.equals(valueExpr, that.valueExpr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -0,0 +1,47 @@
+package fluent.freemarker.ast;
+
+import fluent.freemarker.utils.ConcurrentWeakKeyMap;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 可选的节点驻留表：结构相同的节点只保留一个实例，公共的页眉、页脚等片段在多棵树之间共享。
+ * 节点应自底向上驻留（{@code FtlBuilder.interning} 即如此），这样子树已是规范实例，比较父节点时在引用相等处短路。
+ * 线程安全；表只弱引用节点，不再被任何树引用的节点会被回收，也可以调用 {@link #clear()} 立即清空。
+ */
+public final class AstInterner {
+
+    // 值弱引用同一个规范节点，不会让键一直存活
+    private final ConcurrentWeakKeyMap<FtlNode, WeakReference<FtlNode>> table = new ConcurrentWeakKeyMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T extends FtlNode> T intern(T node) {
+        if (node == null) return null;
+        while (true) {
+            WeakReference<FtlNode> existing = table.putIfAbsent(node, new WeakReference<FtlNode>(node));
+            if (existing == null) return node;
+            FtlNode canonical = existing.get();
+            if (canonical != null) return (T) canonical;
+            // 规范节点刚被回收，旧条目不再匹配，重试即可插入
+        }
+    }
+
+    public List<FtlNode> internAll(List<FtlNode> nodes) {
+        List<FtlNode> interned = new ArrayList<>(nodes.size());
+        for (FtlNode node : nodes) {
+            interned.add(intern(node));
+        }
+        return Collections.unmodifiableList(interned);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public void clear() {
+        table.clear();
+    }
+}
@@ -2,20 +2,26 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class AttemptNode implements FtlNode {
+public final class AttemptNode implements FtlNode {
     public final List<FtlNode> attemptBody;
     public final List<FtlNode> recoverBody;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public AttemptNode(@JsonProperty("attemptBody") final List<FtlNode> attemptBody, @JsonProperty("recoverBody") final List<FtlNode> recoverBody) {
-        this.attemptBody = attemptBody;
-        this.recoverBody = recoverBody;
+        this.attemptBody = AstUtils.immutableList(attemptBody);
+        this.recoverBody = AstUtils.immutableList(recoverBody);
+        this.hash = AstUtils.structuralHash(AttemptNode.class, this.attemptBody, this.recoverBody);
     }
 
 
@@ -31,4 +37,19 @@ public class AttemptNode implements FtlNode {
     public String toString() {
         return "Attempt{" + attemptBody + "," + recoverBody + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttemptNode)) return false;
+        AttemptNode that = (AttemptNode) o;
+        return hash == that.hash
+                && Objects.equals(attemptBody, that.attemptBody)
+                && Objects.equals(recoverBody, that.recoverBody);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
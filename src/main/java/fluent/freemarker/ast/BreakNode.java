@@ -1,14 +1,19 @@
 package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
-public class BreakNode implements FtlNode {
+public final class BreakNode implements FtlNode {
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public BreakNode() {
-
+        this.hash = AstUtils.structuralHash(BreakNode.class);
     }
 
     @Override
@@ -22,4 +27,14 @@ public class BreakNode implements FtlNode {
     public String toString() {
         return "Break";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BreakNode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
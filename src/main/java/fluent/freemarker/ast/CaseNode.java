@@ -3,20 +3,27 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class CaseNode implements FtlNode {
+public final class CaseNode implements FtlNode {
 
     public final List<FtlExpr> values;
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public CaseNode(@JsonProperty("values") List<FtlExpr> values, @JsonProperty("body") List<FtlNode> body) {
-        this.values = values;
-        this.body = body;
+        this.values = AstUtils.immutableList(values);
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(CaseNode.class, this.values, this.body);
     }
 
     @Override
@@ -31,4 +38,19 @@ public class CaseNode implements FtlNode {
     public String toString() {
         return "Case{" + values + "," + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CaseNode)) return false;
+        CaseNode that = (CaseNode) o;
+        return hash == that.hash
+                && Objects.equals(values, that.values)
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -2,16 +2,24 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class CommentNode implements FtlNode {
+public final class CommentNode implements FtlNode {
 
     private final String text;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public CommentNode(@JsonProperty("text") String text) {
         this.text = text;
+        this.hash = AstUtils.structuralHash(CommentNode.class, this.text);
     }
 
 
@@ -27,4 +35,18 @@ public class CommentNode implements FtlNode {
     public String toString() {
         return "Comment{" + text + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CommentNode)) return false;
+        CommentNode that = (CommentNode) o;
+        return hash == that.hash
+                && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -2,18 +2,24 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class CompressNode implements FtlNode {
+public final class CompressNode implements FtlNode {
     private final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public CompressNode(@JsonProperty("body") List<FtlNode> body) {
-        this.body = body;
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(CompressNode.class, this.body);
     }
 
     @Override
@@ -28,4 +34,18 @@ public class CompressNode implements FtlNode {
     public String toString() {
         return "Compress{" + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompressNode)) return false;
+        CompressNode that = (CompressNode) o;
+        return hash == that.hash
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
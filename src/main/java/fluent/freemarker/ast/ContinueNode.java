@@ -1,14 +1,20 @@
 package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
-public class ContinueNode implements FtlNode {
+public final class ContinueNode implements FtlNode {
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
-    public ContinueNode(){}
+    public ContinueNode(){
+        this.hash = AstUtils.structuralHash(ContinueNode.class);
+    }
 
     @Override
     public void accept(FtlVisitor visitor) {
@@ -21,4 +27,14 @@ public class ContinueNode implements FtlNode {
     public String toString() {
         return "Continue";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ContinueNode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
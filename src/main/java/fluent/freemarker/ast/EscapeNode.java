@@ -2,23 +2,28 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class EscapeNode implements FtlNode {
+public final class EscapeNode implements FtlNode {
     public final String expr;
     public final String asVar;
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public EscapeNode(@JsonProperty("expr") String expr, @JsonProperty("asVar") String asVar, @JsonProperty("body") List<FtlNode> body) {
         this.expr = expr;
         this.asVar = asVar;
-        this.body = Collections.unmodifiableList(new ArrayList<FtlNode>(body));
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(EscapeNode.class, this.expr, this.asVar, this.body);
     }
 
 
@@ -31,4 +36,20 @@ public class EscapeNode implements FtlNode {
     public String toString() {
         return "Escape{" + expr + "," + asVar + "," + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EscapeNode)) return false;
+        EscapeNode that = (EscapeNode) o;
+        return hash == that.hash
+                && Objects.equals(expr, that.expr)
+                && Objects.equals(asVar, that.asVar)
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -1,13 +1,20 @@
 package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
-public class FallbackNode implements FtlNode {
+public final class FallbackNode implements FtlNode {
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
-    public FallbackNode(){}
+    public FallbackNode(){
+        this.hash = AstUtils.structuralHash(FallbackNode.class);
+    }
 
     @Override
     public void accept(FtlVisitor visitor) {
@@ -20,4 +27,14 @@ public class FallbackNode implements FtlNode {
     public String toString() {
         return "Fallback";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FallbackNode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
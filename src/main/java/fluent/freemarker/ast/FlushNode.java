@@ -1,13 +1,20 @@
 package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
-public class FlushNode implements FtlNode {
+public final class FlushNode implements FtlNode {
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
-    public FlushNode(){}
+    public FlushNode(){
+        this.hash = AstUtils.structuralHash(FlushNode.class);
+    }
 
     @Override
     public void accept(FtlVisitor visitor) {
@@ -21,4 +28,14 @@ public class FlushNode implements FtlNode {
     public String toString() {
         return "Flush";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FlushNode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,18 +3,26 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class GlobalNode implements FtlNode {
+public final class GlobalNode implements FtlNode {
 
     public final String var;
     public final FtlExpr expr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public GlobalNode(@JsonProperty("var") String var, @JsonProperty("expr") FtlExpr expr) {
         this.var = var;
         this.expr = expr;
+        this.hash = AstUtils.structuralHash(GlobalNode.class, this.var, this.expr);
     }
 
     @Override
@@ -23,4 +31,19 @@ public class GlobalNode implements FtlNode {
         visitor.visit(this);
         visitor.leave(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GlobalNode)) return false;
+        GlobalNode that = (GlobalNode) o;
+        return hash == that.hash
+                && Objects.equals(var, that.var)
+                && Objects.equals(expr, that.expr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
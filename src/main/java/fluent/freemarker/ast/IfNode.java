@@ -2,27 +2,34 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class IfNode implements FtlNode {
+public final class IfNode implements FtlNode {
 
     public final String condition;
     public final List<FtlNode> thenBlock;
     public final List<FtlNode> elseBlock;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public IfNode(@JsonProperty("condition") String condition,
                   @JsonProperty("thenBlock") List<FtlNode> thenBlock,
                   @JsonProperty("elseBlock") List<FtlNode> elseBlock) {
         this.condition = condition;
-        this.thenBlock = Collections.unmodifiableList(thenBlock);
+        this.thenBlock = AstUtils.immutableList(thenBlock);
         this.elseBlock = elseBlock == null
                 ? Collections.<FtlNode>emptyList()
-                : Collections.unmodifiableList(elseBlock);
+                : AstUtils.immutableList(elseBlock);
+        this.hash = AstUtils.structuralHash(IfNode.class, this.condition, this.thenBlock, this.elseBlock);
     }
 
 
@@ -38,4 +45,20 @@ public class IfNode implements FtlNode {
     public String toString() {
         return "If(" + condition + ")" + super.toString();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IfNode)) return false;
+        IfNode that = (IfNode) o;
+        return hash == that.hash
+                && Objects.equals(condition, that.condition)
+                && Objects.equals(thenBlock, that.thenBlock)
+                && Objects.equals(elseBlock, that.elseBlock);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
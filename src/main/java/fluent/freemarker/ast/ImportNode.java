@@ -2,17 +2,25 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class ImportNode implements FtlNode {
+public final class ImportNode implements FtlNode {
     public final String template;
     public final String namespaceVar;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public ImportNode(@JsonProperty("template") String template, @JsonProperty("namespaceVar") String namespaceVar) {
         this.template = template;
         this.namespaceVar = namespaceVar;
+        this.hash = AstUtils.structuralHash(ImportNode.class, this.template, this.namespaceVar);
     }
 
 
@@ -27,4 +35,19 @@ public class ImportNode implements FtlNode {
     public String toString() {
         return "Import{" + template + "," + namespaceVar + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImportNode)) return false;
+        ImportNode that = (ImportNode) o;
+        return hash == that.hash
+                && Objects.equals(template, that.template)
+                && Objects.equals(namespaceVar, that.namespaceVar);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
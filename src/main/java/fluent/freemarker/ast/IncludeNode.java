@@ -3,25 +3,30 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @Getter
-public class IncludeNode implements FtlNode {
+public final class IncludeNode implements FtlNode {
 
     public final String template;
     public final Map<String, FtlExpr> params;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public IncludeNode(@JsonProperty("template") String template, @JsonProperty("params") Map<String, FtlExpr> params) {
         this.template = template;
         this.params = params == null
                 ? Collections.<String, FtlExpr>emptyMap()
-                : Collections.unmodifiableMap(new LinkedHashMap<String, FtlExpr>(params));
+                : AstUtils.immutableMap(params);
+        this.hash = AstUtils.structuralHash(IncludeNode.class, this.template, this.params);
     }
 
 
@@ -37,4 +42,19 @@ public class IncludeNode implements FtlNode {
     public String toString() {
         return "Include{" + template + "," + params + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IncludeNode)) return false;
+        IncludeNode that = (IncludeNode) o;
+        return hash == that.hash
+                && Objects.equals(template, that.template)
+                && AstUtils.sameEntries(params, that.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
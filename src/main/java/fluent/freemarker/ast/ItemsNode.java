@@ -2,21 +2,27 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class ItemsNode implements FtlNode {
+public final class ItemsNode implements FtlNode {
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public ItemsNode(@JsonProperty("body") List<FtlNode> body) {
         this.body = body == null
                 ? Collections.<FtlNode>emptyList()
-                : Collections.unmodifiableList(new ArrayList<>(body));
+                : AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(ItemsNode.class, this.body);
     }
 
     @Override
@@ -30,4 +36,18 @@ public class ItemsNode implements FtlNode {
     public String toString() {
         return "Items{" + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ItemsNode)) return false;
+        ItemsNode that = (ItemsNode) o;
+        return hash == that.hash
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
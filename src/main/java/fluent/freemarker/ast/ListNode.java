@@ -2,23 +2,29 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class ListNode implements FtlNode {
+public final class ListNode implements FtlNode {
 
     public final String item;
     public final String listExpression;
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public ListNode(@JsonProperty("item") String item, @JsonProperty("listExpression") String listExpression, @JsonProperty("body") List<FtlNode> body) {
         this.item = item;
         this.listExpression = listExpression;
-        this.body = Collections.unmodifiableList(body);
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(ListNode.class, this.item, this.listExpression, this.body);
     }
 
     @Override
@@ -32,4 +38,20 @@ public class ListNode implements FtlNode {
     public String toString() {
         return "List(" + listExpression + " as " + item + ")" + super.toString();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ListNode)) return false;
+        ListNode that = (ListNode) o;
+        return hash == that.hash
+                && Objects.equals(item, that.item)
+                && Objects.equals(listExpression, that.listExpression)
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
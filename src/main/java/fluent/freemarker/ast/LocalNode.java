@@ -3,18 +3,26 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class LocalNode implements FtlNode {
+public final class LocalNode implements FtlNode {
 
     public final String var;
     public final FtlExpr expr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public LocalNode(@JsonProperty("var") String var, @JsonProperty("expr") FtlExpr expr) {
         this.var = var;
         this.expr = expr;
+        this.hash = AstUtils.structuralHash(LocalNode.class, this.var, this.expr);
     }
 
 
@@ -30,4 +38,19 @@ public class LocalNode implements FtlNode {
     public String toString() {
         return "Local{" + var + ", " + expr + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocalNode)) return false;
+        LocalNode that = (LocalNode) o;
+        return hash == that.hash
+                && Objects.equals(var, that.var)
+                && Objects.equals(expr, that.expr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
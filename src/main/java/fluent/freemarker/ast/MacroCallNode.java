@@ -3,31 +3,37 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @Getter
-public class MacroCallNode implements FtlNode {
+public final class MacroCallNode implements FtlNode {
 
     public final String name; // 宏的名称
     public final Map<String, FtlExpr> args; // 参数名到参数值的映射
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public MacroCallNode(@JsonProperty("name") String name, @JsonProperty("args") Map<String, FtlExpr> args) {
         this.name = name;
         this.args = args == null
                 ? Collections.<String, FtlExpr>emptyMap()
-                : Collections.unmodifiableMap(new LinkedHashMap<>(args));
+                : AstUtils.immutableMap(args);
+        this.hash = AstUtils.structuralHash(MacroCallNode.class, this.name, this.args);
     }
 
     @Override
     public void accept(FtlVisitor visitor) {
         visitor.enter(this);
         visitor.visit(this);
-        visitor.visit(this);
+        visitor.leave(this);
     }
 
 
@@ -35,4 +41,19 @@ public class MacroCallNode implements FtlNode {
     public String toString() {
         return "MacroCall{" + "@" + name + "," + args + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MacroCallNode)) return false;
+        MacroCallNode that = (MacroCallNode) o;
+        return hash == that.hash
+                && Objects.equals(name, that.name)
+                && AstUtils.sameEntries(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
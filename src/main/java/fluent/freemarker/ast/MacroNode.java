@@ -2,24 +2,30 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Getter
-public class MacroNode implements FtlNode {
+public final class MacroNode implements FtlNode {
     public final String name;
     public final Map<String, String> params; // 定义参数,和默认的参数值
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public MacroNode(@JsonProperty("name") String name, @JsonProperty("params") Map<String, String> params, @JsonProperty("body") List<FtlNode> body) {
         this.name = name;
-        this.params = params == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<String, String>(params));
-        this.body = Collections.unmodifiableList(body);
+        this.params = params == null ? Collections.<String, String>emptyMap() : AstUtils.immutableMap(params);
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(MacroNode.class, this.name, this.params, this.body);
     }
 
     @Override
@@ -39,4 +45,20 @@ public class MacroNode implements FtlNode {
         }
         return "Macro{" + name + ", " + sb+ body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MacroNode)) return false;
+        MacroNode that = (MacroNode) o;
+        return hash == that.hash
+                && Objects.equals(name, that.name)
+                && AstUtils.sameEntries(params, that.params)
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -2,19 +2,25 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class NestedNode implements FtlNode {
+public final class NestedNode implements FtlNode {
 
     private final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public NestedNode(@JsonProperty("body") List<FtlNode> body) {
-        this.body = body;
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(NestedNode.class, this.body);
     }
 
     @Override
@@ -29,4 +35,18 @@ public class NestedNode implements FtlNode {
     public String toString() {
         return "Nested{" + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NestedNode)) return false;
+        NestedNode that = (NestedNode) o;
+        return hash == that.hash
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -1,16 +1,21 @@
 package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
-public class NewlineNode implements FtlNode {
+public final class NewlineNode implements FtlNode {
 
     public static final NewlineNode INSTANCE = new NewlineNode();
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     private NewlineNode() {
+        this.hash = AstUtils.structuralHash(NewlineNode.class);
     }
 
 
@@ -25,4 +30,14 @@ public class NewlineNode implements FtlNode {
     public String toString() {
         return "Newline";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NewlineNode;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
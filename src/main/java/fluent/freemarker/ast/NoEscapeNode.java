@@ -2,20 +2,25 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class NoEscapeNode implements FtlNode {
+public final class NoEscapeNode implements FtlNode {
 
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public NoEscapeNode(@JsonProperty("body") List<FtlNode> body) {
-        this.body = Collections.unmodifiableList(new ArrayList<FtlNode>(body));
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(NoEscapeNode.class, this.body);
     }
 
     @Override
@@ -29,4 +34,18 @@ public class NoEscapeNode implements FtlNode {
     public String toString() {
         return "NoEscape{" + body + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NoEscapeNode)) return false;
+        NoEscapeNode that = (NoEscapeNode) o;
+        return hash == that.hash
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,15 +3,23 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class RecurseNode implements FtlNode {
+public final class RecurseNode implements FtlNode {
     public final FtlExpr expr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public RecurseNode(@JsonProperty("expr") FtlExpr expr) {
         this.expr = expr;
+        this.hash = AstUtils.structuralHash(RecurseNode.class, this.expr);
     }
 
 
@@ -27,4 +35,18 @@ public class RecurseNode implements FtlNode {
     public String toString() {
         return "Recurse{" + expr + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecurseNode)) return false;
+        RecurseNode that = (RecurseNode) o;
+        return hash == that.hash
+                && Objects.equals(expr, that.expr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
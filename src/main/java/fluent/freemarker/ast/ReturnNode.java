@@ -3,16 +3,24 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class ReturnNode implements FtlNode {
+public final class ReturnNode implements FtlNode {
 
     private final FtlExpr expr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public ReturnNode(@JsonProperty("expr") FtlExpr expr) {
         this.expr = expr;
+        this.hash = AstUtils.structuralHash(ReturnNode.class, this.expr);
     }
 
 
@@ -27,4 +35,18 @@ public class ReturnNode implements FtlNode {
     public String toString() {
         return "Return{" + expr + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReturnNode)) return false;
+        ReturnNode that = (ReturnNode) o;
+        return hash == that.hash
+                && Objects.equals(expr, that.expr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -2,17 +2,24 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class SepNode implements FtlNode {
+public final class SepNode implements FtlNode {
     public final List<FtlNode> body;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public SepNode(@JsonProperty("body") List<FtlNode> body) {
-        this.body = body;
+        this.body = AstUtils.immutableList(body);
+        this.hash = AstUtils.structuralHash(SepNode.class, this.body);
     }
 
 
@@ -22,4 +29,18 @@ public class SepNode implements FtlNode {
         visitor.visit(this);
         visitor.leave(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SepNode)) return false;
+        SepNode that = (SepNode) o;
+        return hash == that.hash
+                && Objects.equals(body, that.body);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,17 +3,25 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class SettingNode implements FtlNode {
+public final class SettingNode implements FtlNode {
     public final String key;
     public final FtlExpr value;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public SettingNode(@JsonProperty("key") String key, @JsonProperty("value") FtlExpr value) {
         this.key = key;
         this.value = value;
+        this.hash = AstUtils.structuralHash(SettingNode.class, this.key, this.value);
     }
 
     @Override
@@ -27,4 +35,19 @@ public class SettingNode implements FtlNode {
     public String toString() {
         return "Setting{" + key + "," + value + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SettingNode)) return false;
+        SettingNode that = (SettingNode) o;
+        return hash == that.hash
+                && Objects.equals(key, that.key)
+                && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,16 +3,24 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class StopNode implements FtlNode {
+public final class StopNode implements FtlNode {
 
     private final FtlExpr expr;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public StopNode(@JsonProperty("expr") FtlExpr expr) {
         this.expr = expr;
+        this.hash = AstUtils.structuralHash(StopNode.class, this.expr);
     }
 
     @Override
@@ -27,4 +35,18 @@ public class StopNode implements FtlNode {
     public String toString() {
         return "Stop{" + expr + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StopNode)) return false;
+        StopNode that = (StopNode) o;
+        return hash == that.hash
+                && Objects.equals(expr, that.expr);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,22 +3,29 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Objects;
 
 @Getter
-public class SwitchNode implements FtlNode {
+public final class SwitchNode implements FtlNode {
 
     public final FtlExpr expr;
     public final List<CaseNode> cases;
     public final List<FtlNode> defaultBody;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public SwitchNode(@JsonProperty("expr") FtlExpr expr, @JsonProperty("cases") List<CaseNode> cases, @JsonProperty("defaultBody") List<FtlNode> defaultBody) {
         this.expr = expr;
-        this.cases = cases;
-        this.defaultBody = defaultBody;
+        this.cases = AstUtils.immutableList(cases);
+        this.defaultBody = AstUtils.immutableList(defaultBody);
+        this.hash = AstUtils.structuralHash(SwitchNode.class, this.expr, this.cases, this.defaultBody);
     }
 
 
@@ -34,4 +41,20 @@ public class SwitchNode implements FtlNode {
     public String toString() {
         return "Switch{" + expr + "," + cases + "," + defaultBody + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SwitchNode)) return false;
+        SwitchNode that = (SwitchNode) o;
+        return hash == that.hash
+                && Objects.equals(expr, that.expr)
+                && Objects.equals(cases, that.cases)
+                && Objects.equals(defaultBody, that.defaultBody);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
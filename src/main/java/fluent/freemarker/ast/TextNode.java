@@ -3,17 +3,25 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
 @JsonTypeName("TEXT")
-public class TextNode implements FtlNode {
+public final class TextNode implements FtlNode {
 
     private final String text;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public TextNode(@JsonProperty("text") String text) {
         this.text = text;
+        this.hash = AstUtils.structuralHash(TextNode.class, this.text);
     }
 
 
@@ -29,4 +37,18 @@ public class TextNode implements FtlNode {
         visitor.visit(this);
         visitor.leave(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextNode)) return false;
+        TextNode that = (TextNode) o;
+        return hash == that.hash
+                && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
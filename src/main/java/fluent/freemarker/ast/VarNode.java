@@ -2,17 +2,24 @@ package fluent.freemarker.ast;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class VarNode implements FtlNode {
+public final class VarNode implements FtlNode {
 
     public final String expression;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public VarNode(@JsonProperty("expression") String expression) {
         this.expression = expression;
+        this.hash = AstUtils.structuralHash(VarNode.class, this.expression);
     }
 
     public void accept(FtlVisitor visitor) {
@@ -25,4 +32,18 @@ public class VarNode implements FtlNode {
     public String toString() {
         return "Var{" + expression + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VarNode)) return false;
+        VarNode that = (VarNode) o;
+        return hash == that.hash
+                && Objects.equals(expression, that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -3,23 +3,29 @@ package fluent.freemarker.ast;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @Getter
-public class VisitNode implements FtlNode {
+public final class VisitNode implements FtlNode {
     public final FtlExpr nodeExpr;
     public final Map<String, FtlExpr> args;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public VisitNode(@JsonProperty("expr") FtlExpr nodeExpr, @JsonProperty("args") Map<String, FtlExpr> args) {
         this.nodeExpr = nodeExpr;
         this.args = args == null
                 ? Collections.<String, FtlExpr>emptyMap()
-                : Collections.unmodifiableMap(new LinkedHashMap<String, FtlExpr>(args));
+                : AstUtils.immutableMap(args);
+        this.hash = AstUtils.structuralHash(VisitNode.class, this.nodeExpr, this.args);
     }
 
 
@@ -29,4 +35,19 @@ public class VisitNode implements FtlNode {
         visitor.visit(this);
         visitor.leave(this);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VisitNode)) return false;
+        VisitNode that = (VisitNode) o;
+        return hash == that.hash
+                && Objects.equals(nodeExpr, that.nodeExpr)
+                && AstUtils.sameEntries(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
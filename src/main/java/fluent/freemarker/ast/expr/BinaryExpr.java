@@ -2,10 +2,14 @@ package fluent.freemarker.ast.expr;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class BinaryExpr implements FtlExpr {
+public final class BinaryExpr implements FtlExpr {
 
     private final FtlExpr left;
 
@@ -13,12 +17,15 @@ public class BinaryExpr implements FtlExpr {
 
     private final FtlExpr right;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     @JsonCreator
     public BinaryExpr(@JsonProperty("left") FtlExpr left, @JsonProperty("op") String op, @JsonProperty("right") FtlExpr right) {
         this.left = left;
         this.op = op;
         this.right = right;
+        this.hash = AstUtils.structuralHash(BinaryExpr.class, this.left, this.op, this.right);
     }
 
 
@@ -26,4 +33,20 @@ public class BinaryExpr implements FtlExpr {
     public String toString() {
         return "Binary{" + left + op + right + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BinaryExpr)) return false;
+        BinaryExpr that = (BinaryExpr) o;
+        return hash == that.hash
+                && Objects.equals(left, that.left)
+                && Objects.equals(op, that.op)
+                && Objects.equals(right, that.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
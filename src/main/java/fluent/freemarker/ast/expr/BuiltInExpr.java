@@ -0,0 +1,56 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 内建函数：x?upper_case、x?string('0.00')
+ */
+@Getter
+public final class BuiltInExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    private final String name;
+
+    private final List<FtlExpr> args;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public BuiltInExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("name") String name, @JsonProperty("args") List<FtlExpr> args) {
+        this.target = target;
+        this.name = name;
+        this.args = args != null ? AstUtils.immutableList(args) : Collections.emptyList();
+        this.hash = AstUtils.structuralHash(BuiltInExpr.class, this.target, this.name, this.args);
+    }
+
+    @Override
+    public String toString() {
+        return "BuiltIn{" + target + "?" + name + (args.isEmpty() ? "" : args.toString()) + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BuiltInExpr)) return false;
+        BuiltInExpr that = (BuiltInExpr) o;
+        return hash == that.hash
+                && Objects.equals(target, that.target)
+                && Objects.equals(name, that.name)
+                && Objects.equals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
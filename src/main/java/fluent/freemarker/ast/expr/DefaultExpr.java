@@ -0,0 +1,62 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 默认值运算：x!'default'、x!。
+ * grouped 对应 (a.b)!'default'：括号内任何一段缺失都使用默认值，而 a.b! 只在 b 缺失时使用
+ */
+@Getter
+public final class DefaultExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    // 可为 null，对应 x!
+    private final FtlExpr defaultValue;
+
+    // 目标是否写在括号中
+    private final boolean grouped;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    public DefaultExpr(FtlExpr target, FtlExpr defaultValue) {
+        this(target, defaultValue, false);
+    }
+
+    @JsonCreator
+    public DefaultExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("defaultValue") FtlExpr defaultValue,
+                       @JsonProperty("grouped") boolean grouped) {
+        this.target = target;
+        this.defaultValue = defaultValue;
+        this.grouped = grouped;
+        this.hash = AstUtils.structuralHash(DefaultExpr.class, this.target, this.defaultValue, this.grouped);
+    }
+
+    @Override
+    public String toString() {
+        return "Default{" + (grouped ? "(" + target + ")" : target) + "!" + (defaultValue != null ? defaultValue : "") + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DefaultExpr)) return false;
+        DefaultExpr that = (DefaultExpr) o;
+        return hash == that.hash
+                && grouped == that.grouped
+                && Objects.equals(target, that.target)
+                && Objects.equals(defaultValue, that.defaultValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,56 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 存在性判断：x??。
+ * grouped 对应 (a.b)??：括号内任何一段缺失都为 false，而 a.b?? 只判断 b
+ */
+@Getter
+public final class ExistsExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    // 目标是否写在括号中
+    private final boolean grouped;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    public ExistsExpr(FtlExpr target) {
+        this(target, false);
+    }
+
+    @JsonCreator
+    public ExistsExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("grouped") boolean grouped) {
+        this.target = target;
+        this.grouped = grouped;
+        this.hash = AstUtils.structuralHash(ExistsExpr.class, this.target, this.grouped);
+    }
+
+    @Override
+    public String toString() {
+        return "Exists{" + (grouped ? "(" + target + ")" : target) + "??}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExistsExpr)) return false;
+        ExistsExpr that = (ExistsExpr) o;
+        return hash == that.hash
+                && grouped == that.grouped
+                && Objects.equals(target, that.target);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
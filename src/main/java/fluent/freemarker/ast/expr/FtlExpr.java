@@ -3,6 +3,9 @@ package fluent.freemarker.ast.expr;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
+/**
+ * 表达式树节点。所有实现均为不可变的 final 类，解析结果可以被缓存并在线程间共享。
+ */
 @JsonTypeInfo(
         use = JsonTypeInfo.Id.NAME,
         property = "type",
@@ -10,6 +13,16 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({@JsonSubTypes.Type(value = BinaryExpr.class, name = "Binary"),
         @JsonSubTypes.Type(value = IdentifierExpr.class, name = "Identifier"),
         @JsonSubTypes.Type(value = LiteralExpr.class, name = "Literal"),
-        @JsonSubTypes.Type(value = RawExpr.class, name = "Raw")})
+        @JsonSubTypes.Type(value = RawExpr.class, name = "Raw"),
+        @JsonSubTypes.Type(value = UnaryExpr.class, name = "Unary"),
+        @JsonSubTypes.Type(value = MemberExpr.class, name = "Member"),
+        @JsonSubTypes.Type(value = IndexExpr.class, name = "Index"),
+        @JsonSubTypes.Type(value = MethodCallExpr.class, name = "Call"),
+        @JsonSubTypes.Type(value = BuiltInExpr.class, name = "BuiltIn"),
+        @JsonSubTypes.Type(value = DefaultExpr.class, name = "Default"),
+        @JsonSubTypes.Type(value = ExistsExpr.class, name = "Exists"),
+        @JsonSubTypes.Type(value = RangeExpr.class, name = "Range"),
+        @JsonSubTypes.Type(value = SequenceExpr.class, name = "Sequence"),
+        @JsonSubTypes.Type(value = HashExpr.class, name = "Hash")})
 public interface FtlExpr {
 }
@@ -0,0 +1,55 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 哈希字面量：{'a': 1, 'b': x}，键与值按位置对应
+ */
+@Getter
+public final class HashExpr implements FtlExpr {
+
+    private final List<FtlExpr> keys;
+
+    private final List<FtlExpr> values;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public HashExpr(@JsonProperty("keys") List<FtlExpr> keys, @JsonProperty("values") List<FtlExpr> values) {
+        this.keys = keys != null ? AstUtils.immutableList(keys) : Collections.emptyList();
+        this.values = values != null ? AstUtils.immutableList(values) : Collections.emptyList();
+        if (this.keys.size() != this.values.size()) {
+            throw new IllegalArgumentException("keys and values must have the same size");
+        }
+        this.hash = AstUtils.structuralHash(HashExpr.class, this.keys, this.values);
+    }
+
+    @Override
+    public String toString() {
+        return "Hash{" + keys + ":" + values + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HashExpr)) return false;
+        HashExpr that = (HashExpr) o;
+        return hash == that.hash
+                && Objects.equals(keys, that.keys)
+                && Objects.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -2,20 +2,42 @@ package fluent.freemarker.ast.expr;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class IdentifierExpr implements FtlExpr {
+public final class IdentifierExpr implements FtlExpr {
 
     private final String name;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public IdentifierExpr(@JsonProperty("name") String name) {
         this.name = name;
+        this.hash = AstUtils.structuralHash(IdentifierExpr.class, this.name);
     }
 
     @Override
     public String toString() {
         return "Identifier{" + name + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IdentifierExpr)) return false;
+        IdentifierExpr that = (IdentifierExpr) o;
+        return hash == that.hash
+                && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -0,0 +1,50 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 下标访问：items[0]、map['key']、seq[1..3]
+ */
+@Getter
+public final class IndexExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    private final FtlExpr index;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public IndexExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("index") FtlExpr index) {
+        this.target = target;
+        this.index = index;
+        this.hash = AstUtils.structuralHash(IndexExpr.class, this.target, this.index);
+    }
+
+    @Override
+    public String toString() {
+        return "Index{" + target + "[" + index + "]}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexExpr)) return false;
+        IndexExpr that = (IndexExpr) o;
+        return hash == that.hash
+                && Objects.equals(target, that.target)
+                && Objects.equals(index, that.index);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
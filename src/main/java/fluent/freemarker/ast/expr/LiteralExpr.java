@@ -2,16 +2,24 @@ package fluent.freemarker.ast.expr;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
-public class LiteralExpr implements FtlExpr {
+public final class LiteralExpr implements FtlExpr {
 
     private final Object value;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public LiteralExpr(@JsonProperty("value") Object value) {
         this.value = value;
+        this.hash = AstUtils.structuralHash(LiteralExpr.class, this.value);
     }
 
 
@@ -19,4 +27,18 @@ public class LiteralExpr implements FtlExpr {
     public String toString() {
         return "Literal{"+value.toString() + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LiteralExpr)) return false;
+        LiteralExpr that = (LiteralExpr) o;
+        return hash == that.hash
+                && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -0,0 +1,50 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 非标识符目标上的成员访问：items[0].name、fn().name
+ */
+@Getter
+public final class MemberExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    private final String name;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public MemberExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("name") String name) {
+        this.target = target;
+        this.name = name;
+        this.hash = AstUtils.structuralHash(MemberExpr.class, this.target, this.name);
+    }
+
+    @Override
+    public String toString() {
+        return "Member{" + target + "." + name + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MemberExpr)) return false;
+        MemberExpr that = (MemberExpr) o;
+        return hash == that.hash
+                && Objects.equals(target, that.target)
+                && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,52 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 方法调用：fn(a, b)、user.getName()
+ */
+@Getter
+public final class MethodCallExpr implements FtlExpr {
+
+    private final FtlExpr target;
+
+    private final List<FtlExpr> args;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public MethodCallExpr(@JsonProperty("target") FtlExpr target, @JsonProperty("args") List<FtlExpr> args) {
+        this.target = target;
+        this.args = args != null ? AstUtils.immutableList(args) : Collections.emptyList();
+        this.hash = AstUtils.structuralHash(MethodCallExpr.class, this.target, this.args);
+    }
+
+    @Override
+    public String toString() {
+        return "Call{" + target + args + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MethodCallExpr)) return false;
+        MethodCallExpr that = (MethodCallExpr) o;
+        return hash == that.hash
+                && Objects.equals(target, that.target)
+                && Objects.equals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,56 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 区间：1..5、0..<n、2..
+ */
+@Getter
+public final class RangeExpr implements FtlExpr {
+
+    private final FtlExpr start;
+
+    // .. / ..< / ..! / ..*
+    private final String op;
+
+    // 可为 null，对应右侧无界的 1..
+    private final FtlExpr end;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public RangeExpr(@JsonProperty("start") FtlExpr start, @JsonProperty("op") String op, @JsonProperty("end") FtlExpr end) {
+        this.start = start;
+        this.op = op;
+        this.end = end;
+        this.hash = AstUtils.structuralHash(RangeExpr.class, this.start, this.op, this.end);
+    }
+
+    @Override
+    public String toString() {
+        return "Range{" + start + op + (end != null ? end : "") + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RangeExpr)) return false;
+        RangeExpr that = (RangeExpr) o;
+        return hash == that.hash
+                && Objects.equals(start, that.start)
+                && Objects.equals(op, that.op)
+                && Objects.equals(end, that.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
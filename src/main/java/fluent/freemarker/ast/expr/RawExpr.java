@@ -2,20 +2,42 @@ package fluent.freemarker.ast.expr;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
 public final class RawExpr implements FtlExpr {
 
     private final String code;
 
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
     @JsonCreator
     public RawExpr(@JsonProperty("code") String code) {
         this.code = code;
+        this.hash = AstUtils.structuralHash(RawExpr.class, this.code);
     }
 
     @Override
     public String toString() {
         return "Raw{" + code + "}";
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RawExpr)) return false;
+        RawExpr that = (RawExpr) o;
+        return hash == that.hash
+                && Objects.equals(code, that.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
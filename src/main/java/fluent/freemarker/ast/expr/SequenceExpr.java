@@ -0,0 +1,48 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 序列字面量：[a, 'b', 1]
+ */
+@Getter
+public final class SequenceExpr implements FtlExpr {
+
+    private final List<FtlExpr> items;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public SequenceExpr(@JsonProperty("items") List<FtlExpr> items) {
+        this.items = items != null ? AstUtils.immutableList(items) : Collections.emptyList();
+        this.hash = AstUtils.structuralHash(SequenceExpr.class, this.items);
+    }
+
+    @Override
+    public String toString() {
+        return "Sequence{" + items + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SequenceExpr)) return false;
+        SequenceExpr that = (SequenceExpr) o;
+        return hash == that.hash
+                && Objects.equals(items, that.items);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
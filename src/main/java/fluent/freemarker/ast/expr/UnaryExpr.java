@@ -0,0 +1,50 @@
+package fluent.freemarker.ast.expr;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fluent.freemarker.utils.AstUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 一元表达式：!x、-x
+ */
+@Getter
+public final class UnaryExpr implements FtlExpr {
+
+    private final String op;
+
+    private final FtlExpr operand;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @JsonCreator
+    public UnaryExpr(@JsonProperty("op") String op, @JsonProperty("operand") FtlExpr operand) {
+        this.op = op;
+        this.operand = operand;
+        this.hash = AstUtils.structuralHash(UnaryExpr.class, this.op, this.operand);
+    }
+
+    @Override
+    public String toString() {
+        return "Unary{" + op + operand + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UnaryExpr)) return false;
+        UnaryExpr that = (UnaryExpr) o;
+        return hash == that.hash
+                && Objects.equals(op, that.op)
+                && Objects.equals(operand, that.operand);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
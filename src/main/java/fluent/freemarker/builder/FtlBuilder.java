@@ -1,17 +1,17 @@
 package fluent.freemarker.builder;
 
 import fluent.freemarker.ast.*;
-import fluent.freemarker.ast.expr.BinaryExpr;
-import fluent.freemarker.ast.expr.FtlExpr;
-import fluent.freemarker.ast.expr.IdentifierExpr;
-import fluent.freemarker.ast.expr.LiteralExpr;
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.engine.TemplateEngine;
 import fluent.freemarker.exception.TemplateSyntaxException;
 import fluent.freemarker.inference.TypeInferenceUtils;
+import fluent.freemarker.model.TypeInfo;
 import fluent.freemarker.parser.ExpressionParser;
 import fluent.freemarker.parser.ExpressionParserFactory;
 import fluent.freemarker.type.VariableTypeDetectionUtils;
 import fluent.freemarker.type.VariableTypeInfo;
 import fluent.freemarker.utils.FTLUtils;
+import fluent.freemarker.utils.GenericTypes;
 import fluent.freemarker.utils.PathUtils;
 import fluent.freemarker.validator.ValidationContext;
 import fluent.freemarker.validator.VariableValidationChain;
@@ -19,12 +19,14 @@ import fluent.freemarker.variable.FluentFreemarkerContext;
 import fluent.freemarker.variable.ScopeVariableMarker;
 import fluent.freemarker.variable.ValidationRecorder;
 import fluent.freemarker.variable.VariableReference;
+import freemarker.template.TemplateException;
 import lombok.Getter;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.*;
 import java.util.function.Consumer;
 
 public class FtlBuilder {
@@ -33,18 +35,27 @@ public class FtlBuilder {
     private final FluentFreemarkerContext context;
     @Getter
     private final ValidationRecorder validationRecorder;
+    // 同一棵构建器树共享，类型检测结果按作用域版本缓存其中
+    private final ValidationContext validationContext;
     private final boolean isRootBuilder;
     private String currentSourceLocation;
+    // 可选的节点驻留表，子构建器共用，节点自底向上驻留
+    private AstInterner interner;
 
     private static final FreeMarkerRenderer DEFAULT_RENDERER = new FreeMarkerRenderer();
 
     private static final ExpressionParser DEFAULT_EXPRESSION_PARSER =
-            ExpressionParserFactory.create(ExpressionParserFactory.ParserType.DEFAULT);
+            ExpressionParserFactory.create(ExpressionParserFactory.ParserType.CACHED);
 
     // 私有构造函数
     private FtlBuilder(FluentFreemarkerContext context, ValidationRecorder validationRecorder, boolean isRootBuilder) {
+        this(context, validationRecorder, new ValidationContext(context, validationRecorder), isRootBuilder);
+    }
+
+    private FtlBuilder(FluentFreemarkerContext context, ValidationRecorder validationRecorder, ValidationContext validationContext, boolean isRootBuilder) {
         this.context = context;
         this.validationRecorder = validationRecorder;
+        this.validationContext = validationContext;
         this.isRootBuilder = isRootBuilder;
         this.currentSourceLocation = context != null ? context.getCurrentSourceLocation() : "unknown";
         initValidationRecorder();
@@ -80,12 +91,19 @@ public class FtlBuilder {
     }
 
     // 内部使用 - 创建子构建器
-    private static FtlBuilder createChild(FluentFreemarkerContext context, ValidationRecorder validationRecorder) {
-        FtlBuilder child = new FtlBuilder(context, validationRecorder, false);
+    private FtlBuilder createChild() {
+        FtlBuilder child = new FtlBuilder(context, validationRecorder, validationContext, false);
+        child.interner = interner;
         return child;
     }
 
 
+    // 结构相同的节点（公共页眉页脚等）复用驻留表中的同一实例
+    public FtlBuilder interning(AstInterner interner) {
+        this.interner = interner;
+        return this;
+    }
+
     // 设置当前源位置（用于调试信息）
     public FtlBuilder at(String location) {
         this.currentSourceLocation = location;
@@ -104,24 +122,28 @@ public class FtlBuilder {
         return dotIndex > 0 ? expression.substring(0, dotIndex) : expression;
     }
 
+    // 文本节点在 build() 合并之后再驻留
+    private void append(FtlNode node) {
+        nodes.add(interner != null && !(node instanceof TextNode) ? interner.intern(node) : node);
+    }
+
     // ==================== 构建方法 ====================
 
     public FtlBuilder text(String text) {
-        nodes.add(new TextNode(text));
+        append(new TextNode(text));
         return this;
     }
 
     public FtlBuilder var(String name) {
         // 只有在有上下文时才记录变量引用
         if (ctxRecordAware()) {
-            ValidationContext validationContext = new ValidationContext(context, validationRecorder);
             VariableTypeInfo typeInfo = VariableTypeDetectionUtils.detectVariableType(name, validationContext);
             // 创建变量引用
-            VariableReference ref = new VariableReference(name, typeInfo.getVarType(), typeInfo.getTypeName(), typeInfo.getVariableKey(), getCurrentLocation());
+            VariableReference ref = new VariableReference(name, typeInfo.getVarType(), typeInfo.getTypeName(), typeInfo.getVariableKey(), getCurrentLocation(), validationRecorder.snapshot());
             // 记录变量引用用于后续验证
             validationRecorder.record(ref);
         }
-        nodes.add(new VarNode(name));
+        append(new VarNode(name));
         return this;
     }
 
@@ -130,13 +152,20 @@ public class FtlBuilder {
         return context != null && validationRecorder != null;
     }
 
+    // 子构建器的引用已带有作用域快照，块结束后即可弹出对应作用域
+    private void popScopeIfRecording() {
+        if (ctxRecordAware()) {
+            validationRecorder.popScope();
+        }
+    }
+
     public FtlBuilder assign(String varName, String valueExpr) {
         // 只有在有上下文时才记录变量赋值
         if (context != null && validationRecorder != null) {
             // 记录变量赋值
             validationRecorder.defineVariable(varName, valueExpr);
         }
-        nodes.add(new AssignNode(varName, valueExpr));
+        append(new AssignNode(varName, valueExpr));
         return this;
     }
 
@@ -153,18 +182,21 @@ public class FtlBuilder {
             recordVariablesInExpression(conditionExpr);
         }
 
-        FtlBuilder thenBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder thenBuilder = context != null ? createChild() : createChildWithoutContext();
         thenBody.accept(thenBuilder);
 
         FtlBuilder elseBuilder = null;
         if (elseBody != null) {
-            elseBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+            elseBuilder = context != null ? createChild() : createChildWithoutContext();
             elseBody.accept(elseBuilder);
         }
-        nodes.add(new IfNode(condition, thenBuilder.build(), elseBuilder != null ? elseBuilder.build() : Collections.emptyList()));
+        append(new IfNode(condition, thenBuilder.build(), elseBuilder != null ? elseBuilder.build() : Collections.emptyList()));
         return this;
     }
 
+    // 对缺失值安全的内建函数，目标变量不要求已定义
+    private static final Set<String> NULL_SAFE_BUILTINS = new HashSet<>(Arrays.asList("has_content", "exists", "if_exists", "default"));
+
     /**
      * 记录表达式中的变量引用
      */
@@ -179,6 +211,41 @@ public class FtlBuilder {
             // 递归记录左右子表达式中的变量
             recordVariablesInExpression(binaryExpr.getLeft());
             recordVariablesInExpression(binaryExpr.getRight());
+        } else if (expr instanceof UnaryExpr) {
+            recordVariablesInExpression(((UnaryExpr) expr).getOperand());
+        } else if (expr instanceof DefaultExpr) {
+            // x!default 允许 x 缺失，只记录默认值
+            recordVariablesInExpression(((DefaultExpr) expr).getDefaultValue());
+        } else if (expr instanceof ExistsExpr) {
+            // x?? 本身就是存在性判断，不记录
+        } else if (expr instanceof BuiltInExpr) {
+            BuiltInExpr builtIn = (BuiltInExpr) expr;
+            if (!NULL_SAFE_BUILTINS.contains(builtIn.getName())) {
+                recordVariablesInExpression(builtIn.getTarget());
+            }
+            recordVariablesInExpressions(builtIn.getArgs());
+        } else if (expr instanceof MemberExpr) {
+            recordVariablesInExpression(((MemberExpr) expr).getTarget());
+        } else if (expr instanceof IndexExpr) {
+            recordVariablesInExpression(((IndexExpr) expr).getTarget());
+            recordVariablesInExpression(((IndexExpr) expr).getIndex());
+        } else if (expr instanceof MethodCallExpr) {
+            recordVariablesInExpression(((MethodCallExpr) expr).getTarget());
+            recordVariablesInExpressions(((MethodCallExpr) expr).getArgs());
+        } else if (expr instanceof RangeExpr) {
+            recordVariablesInExpression(((RangeExpr) expr).getStart());
+            recordVariablesInExpression(((RangeExpr) expr).getEnd());
+        } else if (expr instanceof SequenceExpr) {
+            recordVariablesInExpressions(((SequenceExpr) expr).getItems());
+        } else if (expr instanceof HashExpr) {
+            recordVariablesInExpressions(((HashExpr) expr).getKeys());
+            recordVariablesInExpressions(((HashExpr) expr).getValues());
+        }
+    }
+
+    private void recordVariablesInExpressions(List<FtlExpr> exprs) {
+        for (FtlExpr expr : exprs) {
+            recordVariablesInExpression(expr);
         }
     }
 
@@ -187,27 +254,26 @@ public class FtlBuilder {
      */
     private void recordVariableReference(String varName) {
         if (ctxRecordAware()) {
-            ValidationContext validationContext = new ValidationContext(context, validationRecorder);
             VariableTypeInfo typeInfo = VariableTypeDetectionUtils.detectVariableType(PathUtils.getRootVariable(varName), validationContext);
             VariableReference ref = new VariableReference(varName,
                     typeInfo.getVarType(),
                     typeInfo.getTypeName(),
                     typeInfo.getVariableKey(),
-                    getCurrentLocation());
+                    getCurrentLocation(),
+                    validationRecorder.snapshot());
             validationRecorder.record(ref);
         }
     }
 
 
     public FtlBuilder list(String item, String listExpr, Consumer<FtlBuilder> body) {
-        FtlBuilder childBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder childBuilder = context != null ? createChild() : createChildWithoutContext();
         // 只有在有上下文时才记录变量引用和管理作用域
         if (ctxRecordAware()) {
             String name = PathUtils.getRootVariable(listExpr);
             // 记录列表表达式变量引用
-            ValidationContext validationContext = new ValidationContext(context, validationRecorder);
             VariableTypeInfo typeInfo = VariableTypeDetectionUtils.detectVariableType(name, validationContext);
-            VariableReference listRef = new VariableReference(listExpr, typeInfo.getVarType(), typeInfo.getTypeName(), typeInfo.getVariableKey(), getCurrentLocation());
+            VariableReference listRef = new VariableReference(listExpr, typeInfo.getVarType(), typeInfo.getTypeName(), typeInfo.getVariableKey(), getCurrentLocation(), validationRecorder.snapshot());
             validationRecorder.record(listRef);
             // 推入新作用域
             validationRecorder.pushScope(typeInfo.getTypeName(), typeInfo.getVariableKey());
@@ -219,12 +285,24 @@ public class FtlBuilder {
             validationRecorder.defineVariable(item, new ScopeVariableMarker(itemTypeName));
         }
         body.accept(childBuilder);
-        nodes.add(new ListNode(item, listExpr, childBuilder.build()));
+        append(new ListNode(item, listExpr, childBuilder.build()));
+        popScopeIfRecording();
         return this;
     }
 
     private String inferListItemTypeName(String listVarName, VariableTypeInfo listVariableTypeInfo, ValidationContext context) {
         // 使用类型名称提取器来推断
+        // 嵌套路径（如 order.items）按字段的泛型声明取元素类型
+        if (listVarName.indexOf('.') > 0) {
+            Type elementType = GenericTypes.elementType(context.getFreemarkerContext().resolveDeclaredType(listVarName));
+            if (elementType != null) {
+                // 按元素类名登记，供 TypeValidator 按名称检查字段
+                TypeInfo elementInfo = context.getFreemarkerContext().getTypeRegistry().registerType(GenericTypes.rawType(elementType));
+                if (elementInfo != null) {
+                    return elementInfo.getClazz().getSimpleName();
+                }
+            }
+        }
         String listTypeName = listVariableTypeInfo.getTypeName();
         String extractedType = TypeInferenceUtils.extractElementTypeName(listTypeName);
         if (!"object".equals(extractedType)) {
@@ -235,7 +313,7 @@ public class FtlBuilder {
     }
 
     public FtlBuilder macro(String name, Map<String, String> params, Consumer<FtlBuilder> body) {
-        FtlBuilder childBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder childBuilder = context != null ? createChild() : createChildWithoutContext();
         // 只有在有上下文时才管理宏作用域
         if (ctxRecordAware()) {
             // 推入宏作用域
@@ -248,13 +326,16 @@ public class FtlBuilder {
             }
         }
         body.accept(childBuilder);
-        nodes.add(new MacroNode(name, params, childBuilder.build()));
+        append(new MacroNode(name, params, childBuilder.build()));
+        popScopeIfRecording();
         return this;
     }
 
     // 内部使用 - 创建无上下文的子构建器
-    private static FtlBuilder createChildWithoutContext(ValidationRecorder validationRecorder) {
-        return new FtlBuilder(null, validationRecorder, false);
+    private FtlBuilder createChildWithoutContext() {
+        FtlBuilder child = new FtlBuilder(null, validationRecorder, false);
+        child.interner = interner;
+        return child;
     }
 
     public FtlBuilder callMacro(String name, Map<String, FtlExpr> args) {
@@ -264,7 +345,7 @@ public class FtlBuilder {
                 recordVariablesInExpression(entry.getValue());
             }
         }
-        nodes.add(new MacroCallNode(name, args));
+        append(new MacroCallNode(name, args));
         return this;
     }
 
@@ -275,24 +356,24 @@ public class FtlBuilder {
                 recordVariablesInExpression(entry.getValue());
             }
         }
-        nodes.add(new IncludeNode(template, params));
+        append(new IncludeNode(template, params));
         return this;
     }
 
     public FtlBuilder comment(String text) {
-        nodes.add(new CommentNode(text));
+        append(new CommentNode(text));
         return this;
     }
 
     public FtlBuilder compress(Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         body.accept(b);
-        nodes.add(new CompressNode(b.build()));
+        append(new CompressNode(b.build()));
         return this;
     }
 
     public FtlBuilder escape(String expr, String asVar, Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
 
         // 记录 escape 表达式中的变量引用
         if (ctxRecordAware()) {
@@ -304,38 +385,39 @@ public class FtlBuilder {
             validationRecorder.defineVariable(asVar, new ScopeVariableMarker(expr));
         }
         body.accept(b);
-        nodes.add(new EscapeNode(expr, asVar, b.build()));
+        append(new EscapeNode(expr, asVar, b.build()));
+        popScopeIfRecording();
         return this;
     }
 
     public FtlBuilder noEscape(Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         body.accept(b);
-        nodes.add(new NoEscapeNode(b.build()));
+        append(new NoEscapeNode(b.build()));
         return this;
     }
 
     public FtlBuilder flush() {
-        nodes.add(new FlushNode());
+        append(new FlushNode());
         return this;
     }
 
     public FtlBuilder attempt(Consumer<FtlBuilder> attemptBody, Consumer<FtlBuilder> recoverBody) {
-        FtlBuilder attemptBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder attemptBuilder = context != null ? createChild() : createChildWithoutContext();
         attemptBody.accept(attemptBuilder);
 
         FtlBuilder recoverBuilder = null;
         if (recoverBody != null) {
-            recoverBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+            recoverBuilder = context != null ? createChild() : createChildWithoutContext();
             recoverBody.accept(recoverBuilder);
         }
 
-        nodes.add(new AttemptNode(attemptBuilder.build(), recoverBuilder != null ? recoverBuilder.build() : Collections.emptyList()));
+        append(new AttemptNode(attemptBuilder.build(), recoverBuilder != null ? recoverBuilder.build() : Collections.emptyList()));
         return this;
     }
 
     public FtlBuilder switchBlock(String expr, Consumer<FtlBuilder> cases, Consumer<FtlBuilder> defaultBody) {
-        FtlBuilder caseBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder caseBuilder = context != null ? createChild() : createChildWithoutContext();
         // 记录 switch 表达式中的变量引用
         if (ctxRecordAware()) {
             FtlExpr exprObj = DEFAULT_EXPRESSION_PARSER.parse(expr);
@@ -344,7 +426,7 @@ public class FtlBuilder {
         cases.accept(caseBuilder);
         FtlBuilder defaultBuilder = null;
         if (defaultBody != null) {
-            defaultBuilder = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+            defaultBuilder = context != null ? createChild() : createChildWithoutContext();
             defaultBody.accept(defaultBuilder);
         }
         // 构建 CaseNode 列表
@@ -354,29 +436,29 @@ public class FtlBuilder {
                 caseNodes.add((CaseNode) node);
             }
         }
-        nodes.add(new SwitchNode(new LiteralExpr(expr), caseNodes, defaultBuilder != null ? defaultBuilder.build() : Collections.emptyList()));
+        append(new SwitchNode(new LiteralExpr(expr), caseNodes, defaultBuilder != null ? defaultBuilder.build() : Collections.emptyList()));
         return this;
     }
 
     public FtlBuilder caseBlock(String value, Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         // 记录 case 值中的变量引用（如果有的话）
         if (ctxRecordAware() && FTLUtils.shouldParseAsExpression(value)) {
             FtlExpr valueExpr = DEFAULT_EXPRESSION_PARSER.parse(value);
             recordVariablesInExpression(valueExpr);
         }
         body.accept(b);
-        nodes.add(new CaseNode(Collections.singletonList(new LiteralExpr(value)), b.build()));
+        append(new CaseNode(Collections.singletonList(new LiteralExpr(value)), b.build()));
         return this;
     }
 
     public FtlBuilder breakBlock() {
-        nodes.add(new BreakNode());
+        append(new BreakNode());
         return this;
     }
 
     public FtlBuilder continueBlock() {
-        nodes.add(new ContinueNode());
+        append(new ContinueNode());
         return this;
     }
 
@@ -385,7 +467,7 @@ public class FtlBuilder {
         if (ctxRecordAware()) {
             recordVariablesInExpression(expr);
         }
-        nodes.add(new ReturnNode(expr));
+        append(new ReturnNode(expr));
         return this;
     }
 
@@ -394,21 +476,21 @@ public class FtlBuilder {
         if (ctxRecordAware()) {
             recordVariablesInExpression(message);
         }
-        nodes.add(new StopNode(message));
+        append(new StopNode(message));
         return this;
     }
 
     public FtlBuilder items(Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         body.accept(b);
-        nodes.add(new ItemsNode(b.build()));
+        append(new ItemsNode(b.build()));
         return this;
     }
 
     public FtlBuilder sep(Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         body.accept(b);
-        nodes.add(new SepNode(b.build()));
+        append(new SepNode(b.build()));
         return this;
     }
 
@@ -417,7 +499,7 @@ public class FtlBuilder {
         if (ctxRecordAware()) {
             validationRecorder.defineVariable(namespaceVar, new ScopeVariableMarker("namespace"));
         }
-        nodes.add(new ImportNode(template, namespaceVar));
+        append(new ImportNode(template, namespaceVar));
         return this;
     }
 
@@ -432,7 +514,7 @@ public class FtlBuilder {
                 }
             }
         }
-        nodes.add(new VisitNode(new IdentifierExpr(nodeExpr), args));
+        append(new VisitNode(new IdentifierExpr(nodeExpr), args));
         return this;
     }
 
@@ -441,19 +523,19 @@ public class FtlBuilder {
         if (ctxRecordAware()) {
             recordVariablesInExpression(expr);
         }
-        nodes.add(new RecurseNode(expr));
+        append(new RecurseNode(expr));
         return this;
     }
 
     public FtlBuilder fallback() {
-        nodes.add(new FallbackNode());
+        append(new FallbackNode());
         return this;
     }
 
     public FtlBuilder nested(Consumer<FtlBuilder> body) {
-        FtlBuilder b = context != null ? createChild(context, validationRecorder) : createChildWithoutContext(validationRecorder);
+        FtlBuilder b = context != null ? createChild() : createChildWithoutContext();
         body.accept(b);
-        nodes.add(new NestedNode(b.build()));
+        append(new NestedNode(b.build()));
         return this;
     }
 
@@ -465,7 +547,7 @@ public class FtlBuilder {
             // 记录表达式的变量引用
             recordVariablesInExpression(expr);
         }
-        nodes.add(new LocalNode(var, expr));
+        append(new LocalNode(var, expr));
         return this;
     }
 
@@ -477,7 +559,7 @@ public class FtlBuilder {
             // 记录表达式的变量引用
             recordVariablesInExpression(expr);
         }
-        nodes.add(new GlobalNode(var, expr));
+        append(new GlobalNode(var, expr));
         return this;
     }
 
@@ -486,7 +568,7 @@ public class FtlBuilder {
         if (ctxRecordAware()) {
             recordVariablesInExpression(value);
         }
-        nodes.add(new SettingNode(key, value));
+        append(new SettingNode(key, value));
         return this;
     }
 
@@ -497,7 +579,34 @@ public class FtlBuilder {
             validate();
             cleanupScopes();
         }
-        return Collections.unmodifiableList(new ArrayList<>(nodes));
+        return Collections.unmodifiableList(coalesceText(nodes));
+    }
+
+    // 相邻文本节点（text、newline、space、tab 等各自产生的小节点）合并为一个，渲染时整段处理
+    private List<FtlNode> coalesceText(List<FtlNode> source) {
+        List<FtlNode> merged = new ArrayList<>(source.size());
+        StringBuilder run = new StringBuilder();
+        int runStart = -1;
+        for (int i = 0; i <= source.size(); i++) {
+            FtlNode node = i < source.size() ? source.get(i) : null;
+            if (node instanceof TextNode) {
+                if (runStart < 0) {
+                    runStart = i;
+                    run.setLength(0);
+                }
+                String text = ((TextNode) node).getText();
+                if (text != null) run.append(text);
+                continue;
+            }
+            if (runStart >= 0) {
+                // 单个文本节点原样保留
+                FtlNode text = i - runStart == 1 ? source.get(runStart) : new TextNode(run.toString());
+                merged.add(interner != null ? interner.intern(text) : text);
+                runStart = -1;
+            }
+            if (node != null) merged.add(node);
+        }
+        return merged;
     }
 
     private void cleanupScopes() {
@@ -505,28 +614,27 @@ public class FtlBuilder {
         // 只有在有上下文且是根构建器时才清理
         if (ctxRecordAware() && isRootBuilder) {
             // 清理所有可能残留的作用域
-            while (!validationRecorder.getScopeStack().isEmpty()) {
+            while (validationRecorder.getScopeDepth() > 0) {
                 validationRecorder.popScope();
             }
         }
     }
 
     // 语义验证方法（只有在有上下文时才执行）
+    // 子构建器与根构建器共享 ValidationRecorder，每次只验证上次之后新增的引用，
+    // 这样嵌套 build() 的总验证代价与引用数量成线性关系
     private void validate() {
         if (!ctxRecordAware()) {
             return;
         }
-        // 创建验证上下文
-        ValidationContext validationContext = new ValidationContext(context, validationRecorder);
+        List<VariableReference> pending = validationRecorder.getPendingReferences();
+        if (pending.isEmpty()) {
+            return;
+        }
         // 从上下文获取验证器链
         VariableValidationChain validationChain = getValidationChain();
-        // 收集所有错误
-        List<String> allErrors = new ArrayList<>();
-        // 验证所有引用的变量
-        for (VariableReference ref : validationRecorder.getReferences()) {
-            List<String> errors = validationChain.validate(ref, validationContext);
-            allErrors.addAll(errors);
-        }
+        // 验证新增的变量引用（上下文开启并行验证时分块并行，错误顺序与串行一致）
+        List<String> allErrors = validationChain.validateAll(pending, validationContext, context.getValidationExecutor());
         // 如果有错误，抛出异常
         if (!allErrors.isEmpty()) {
             StringBuilder sb = new StringBuilder();
@@ -536,13 +644,14 @@ public class FtlBuilder {
             }
             throw new TemplateSyntaxException(sb.toString());
         }
-
+        // 验证失败时不推进，再次 build() 仍会报告同样的错误
+        validationRecorder.markValidated(pending.size());
     }
 
 
     // 在 FtlBuilder 类中添加更多文本便利方法
     public FtlBuilder newline() {
-        nodes.add(new TextNode("\n"));
+        append(new TextNode("\n"));
         return this;
     }
 
@@ -553,12 +662,12 @@ public class FtlBuilder {
         for (int i = 0; i < count; i++) {
             sb.append("\n");
         }
-        nodes.add(new TextNode(sb.toString()));
+        append(new TextNode(sb.toString()));
         return this;
     }
 
     public FtlBuilder space() {
-        nodes.add(new TextNode(" "));
+        append(new TextNode(" "));
         return this;
     }
 
@@ -569,12 +678,12 @@ public class FtlBuilder {
         for (int i = 0; i < count; i++) {
             sb.append(" ");
         }
-        nodes.add(new TextNode(sb.toString()));
+        append(new TextNode(sb.toString()));
         return this;
     }
 
     public FtlBuilder tab() {
-        nodes.add(new TextNode("\t"));
+        append(new TextNode("\t"));
         return this;
     }
 
@@ -585,7 +694,7 @@ public class FtlBuilder {
         for (int i = 0; i < count; i++) {
             sb.append("\t");
         }
-        nodes.add(new TextNode(sb.toString()));
+        append(new TextNode(sb.toString()));
         return this;
     }
 
@@ -598,6 +707,32 @@ public class FtlBuilder {
         return DEFAULT_RENDERER.render(nodes);
     }
 
+    /**
+     * 将模板字符串直接写入 Writer（只生成模板文本；{@code <#flush>} 在渲染输出时才刷新）
+     */
+    public void renderTo(Writer out) throws IOException {
+        DEFAULT_RENDERER.render(build(), out);
+    }
+
+    /**
+     * 将模板字符串以 UTF-8 编码写入 OutputStream（不关闭流）
+     */
+    public void renderTo(OutputStream out) throws IOException {
+        Writer writer = TemplateEngine.newUtf8Writer(out);
+        renderTo(writer);
+        writer.flush();
+    }
+
+    /**
+     * 构建并用上下文数据直接解释执行，返回渲染结果（不生成模板文本）
+     */
+    public String interpret() throws IOException, TemplateException {
+        if (context == null) {
+            throw new IllegalStateException("interpret() requires a FluentFreemarkerContext");
+        }
+        return context.render(build());
+    }
+
     /**
      * 获取渲染器实例
      */
@@ -0,0 +1,564 @@
+package fluent.freemarker.builder;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.parser.FtlExpressionParser;
+import fluent.freemarker.utils.ConcurrentWeakKeyMap;
+import fluent.freemarker.utils.StringLiterals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单次渲染的访问者：把 FtlNode 写成 FreeMarker 模板文本。
+ * 所有渲染状态（输出目标、捕获缓冲）都在此对象内，每次渲染创建一个，不跨线程共享。
+ * 传入子树缓存时，带子节点或参数映射的节点按结构复用之前渲染出的文本：
+ * 最外层的子树总是缓存，嵌套的子树只缓存不超过 {@link #MAX_NESTED_CAPTURE} 个字符的，
+ * 深层嵌套时每层一份完整副本会使首次渲染的时间与内存按各层长度之和增长。
+ */
+public class FtlSourceWriter extends FtlBaseVisitor {
+    static final int MAX_NESTED_CAPTURE = 1024;
+
+    private final Appendable out;
+    private final ConcurrentWeakKeyMap<FtlNode, String> subtreeCache; // 可为 null，由 FreeMarkerRenderer 提供，多个线程共享
+    private final StringBuilder capture = new StringBuilder(); // 正在渲染的可缓存子树的输出副本
+    private final StringBuilder scratch = new StringBuilder(); // 表达式渲染缓冲，逐个复用
+    private int capturing;
+
+    public FtlSourceWriter(Appendable out) {
+        this(out, null);
+    }
+
+    public FtlSourceWriter(Appendable out, ConcurrentWeakKeyMap<FtlNode, String> subtreeCache) {
+        this.out = out;
+        this.subtreeCache = subtreeCache;
+    }
+
+    protected void append(CharSequence line) {
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (capturing > 0) {
+            capture.append(line);
+        }
+    }
+
+    public void write(List<? extends FtlNode> nodes) {
+        for (FtlNode n : nodes) {
+            if (n != null) {
+                write(n);
+            }
+        }
+    }
+
+    private void writeBody(List<? extends FtlNode> nodes) {
+        if (nodes != null) {
+            write(nodes);
+        }
+    }
+
+    // 缓存未命中时照常输出，同时捕获文本
+    private void write(FtlNode node) {
+        if (subtreeCache == null || !isCacheable(node)) {
+            node.accept(this);
+            return;
+        }
+        String cached = subtreeCache.get(node);
+        if (cached != null) {
+            append(cached);
+            return;
+        }
+        int start = capture.length();
+        capturing++;
+        try {
+            node.accept(this);
+        } finally {
+            capturing--;
+        }
+        if (capturing == 0) {
+            subtreeCache.put(node, capture.toString());
+            capture.setLength(0);
+        } else if (capture.length() - start <= MAX_NESTED_CAPTURE) {
+            subtreeCache.put(node, capture.substring(start));
+        }
+    }
+
+    private static boolean isCacheable(FtlNode node) {
+        return node instanceof IfNode || node instanceof ListNode || node instanceof MacroNode
+                || node instanceof MacroCallNode || node instanceof IncludeNode || node instanceof CompressNode
+                || node instanceof EscapeNode || node instanceof NoEscapeNode || node instanceof AttemptNode
+                || node instanceof SwitchNode || node instanceof CaseNode || node instanceof ItemsNode
+                || node instanceof SepNode || node instanceof NestedNode || node instanceof VisitNode;
+    }
+
+    @Override
+    public void visit(TextNode node) {
+        if (node != null && node.getText() != null) {
+            append(node.getText());
+        }
+    }
+
+    @Override
+    public void visit(VarNode node) {
+        if (node != null && node.getExpression() != null) {
+            append("${");
+            append(node.getExpression());
+            append("}");
+        }
+    }
+
+    @Override
+    public void visit(AssignNode node) {
+        if (node != null) {
+            append("<#assign ");
+            append(String.valueOf(node.getVarName()));
+            append(" = ");
+            append(String.valueOf(node.getValueExpr()));
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(IfNode node) {
+        if (node != null) {
+            append("<#if ");
+            append(String.valueOf(node.getCondition()));
+            append(">");
+            writeBody(node.getThenBlock());
+            if (node.getElseBlock() != null && !node.getElseBlock().isEmpty()) {
+                append("<#else>");
+                writeBody(node.getElseBlock());
+            }
+            append("</#if>");
+        }
+    }
+
+    @Override
+    public void visit(ListNode node) {
+        if (node != null) {
+            append("<#list ");
+            append(String.valueOf(node.getListExpression()));
+            append(" as ");
+            append(String.valueOf(node.getItem()));
+            append(">");
+            writeBody(node.getBody());
+            append("</#list>");
+        }
+    }
+
+    @Override
+    public void visit(MacroNode node) {
+        if (node != null) {
+            append("<#macro ");
+            append(String.valueOf(node.getName()));
+            if (node.getParams() != null && !node.getParams().isEmpty()) {
+                StringBuilder params = scratch();
+                for (Map.Entry<String, String> entry : node.getParams().entrySet()) {
+                    if (params.length() > 0) params.append(", ");
+                    params.append(entry.getKey());
+                    if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                        params.append("=\"").append(entry.getValue()).append('"');
+                    }
+                }
+                if (params.length() > 0) {
+                    append(" ");
+                    append(params);
+                }
+            }
+            append(">");
+            writeBody(node.getBody());
+            append("</#macro>");
+        }
+    }
+
+    @Override
+    public void visit(MacroCallNode node) {
+        if (node != null) {
+            append("<@");
+            append(String.valueOf(node.getName()));
+            appendArgs(node.getArgs());
+            append(" />");
+        }
+    }
+
+    @Override
+    public void visit(IncludeNode node) {
+        if (node != null) {
+            append("<#include \"");
+            append(String.valueOf(node.getTemplate()));
+            append("\"");
+            appendArgs(node.getParams());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(CommentNode node) {
+        if (node != null && node.getText() != null) {
+            append("<#-- ");
+            append(node.getText());
+            append(" -->");
+        }
+    }
+
+    @Override
+    public void visit(CompressNode node) {
+        if (node != null) {
+            append("<#compress>");
+            writeBody(node.getBody());
+            append("</#compress>");
+        }
+    }
+
+    @Override
+    public void visit(EscapeNode node) {
+        if (node != null) {
+            append("<#escape ");
+            append(String.valueOf(node.getAsVar()));
+            append(" in ");
+            append(String.valueOf(node.getExpr()));
+            append(">");
+            writeBody(node.getBody());
+            append("</#escape>");
+        }
+    }
+
+    @Override
+    public void visit(NoEscapeNode node) {
+        if (node != null) {
+            append("<#noescape>");
+            writeBody(node.getBody());
+            append("</#noescape>");
+        }
+    }
+
+    @Override
+    public void visit(FlushNode node) {
+        append("<#flush>");
+    }
+
+    @Override
+    public void visit(AttemptNode node) {
+        if (node != null) {
+            append("<#attempt>");
+            writeBody(node.getAttemptBody());
+            if (node.getRecoverBody() != null && !node.getRecoverBody().isEmpty()) {
+                append("<#recover>");
+                writeBody(node.getRecoverBody());
+            }
+            append("</#attempt>");
+        }
+    }
+
+    @Override
+    public void visit(SwitchNode node) {
+        if (node != null) {
+            append("<#switch ");
+            appendExpr(node.getExpr());
+            append(">");
+            writeBody(node.getCases());
+            if (node.getDefaultBody() != null && !node.getDefaultBody().isEmpty()) {
+                append("<#default>");
+                writeBody(node.getDefaultBody());
+            }
+            append("</#switch>");
+        }
+    }
+
+    @Override
+    public void visit(CaseNode node) {
+        if (node != null) {
+            append("<#case");
+            if (node.getValues() != null && !node.getValues().isEmpty()) {
+                StringBuilder values = scratch();
+                for (FtlExpr value : node.getValues()) {
+                    values.append(' ');
+                    renderExpr(value, values);
+                }
+                append(values);
+            }
+            append(">");
+            writeBody(node.getBody());
+        }
+    }
+
+    @Override
+    public void visit(BreakNode node) {
+        append("<#break>");
+    }
+
+    @Override
+    public void visit(ContinueNode node) {
+        append("<#continue>");
+    }
+
+    @Override
+    public void visit(ReturnNode node) {
+        if (node != null) {
+            append("<#return ");
+            appendExpr(node.getExpr());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(StopNode node) {
+        if (node != null) {
+            append("<#stop ");
+            appendExpr(node.getExpr());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(ItemsNode node) {
+        if (node != null) {
+            append("<#items>");
+            writeBody(node.getBody());
+            append("</#items>");
+        }
+    }
+
+    @Override
+    public void visit(SepNode node) {
+        if (node != null) {
+            append("<#sep>");
+            writeBody(node.getBody());
+            append("</#sep>");
+        }
+    }
+
+    @Override
+    public void visit(ImportNode node) {
+        if (node != null) {
+            append("<#import \"");
+            append(String.valueOf(node.getTemplate()));
+            append("\" as ");
+            append(String.valueOf(node.getNamespaceVar()));
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(VisitNode node) {
+        if (node != null) {
+            append("<#visit ");
+            appendExpr(node.getNodeExpr());
+            appendArgs(node.getArgs());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(RecurseNode node) {
+        if (node != null) {
+            append("<#recurse ");
+            appendExpr(node.getExpr());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(FallbackNode node) {
+        append("<#fallback>");
+    }
+
+    @Override
+    public void visit(NestedNode node) {
+        if (node != null) {
+            append("<#nested>");
+            writeBody(node.getBody());
+            append("</#nested>");
+        }
+    }
+
+    @Override
+    public void visit(GlobalNode node) {
+        if (node != null) {
+            append("<#global ");
+            append(String.valueOf(node.getVar()));
+            append(" = ");
+            appendExpr(node.getExpr());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(LocalNode node) {
+        if (node != null) {
+            append("<#local ");
+            append(String.valueOf(node.getVar()));
+            append(" = ");
+            appendExpr(node.getExpr());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(SettingNode node) {
+        if (node != null) {
+            append("<#setting ");
+            append(String.valueOf(node.getKey()));
+            append(" = ");
+            appendExpr(node.getValue());
+            append(">");
+        }
+    }
+
+    @Override
+    public void visit(NewlineNode node) {
+        append("\n");
+    }
+
+    // ==================== 表达式 ====================
+
+    private StringBuilder scratch() {
+        scratch.setLength(0);
+        return scratch;
+    }
+
+    private void appendExpr(FtlExpr expr) {
+        StringBuilder sb = scratch();
+        renderExpr(expr, sb);
+        append(sb);
+    }
+
+    // 参数写成 " name=value name2=value2"，没有参数时不输出
+    private void appendArgs(Map<String, FtlExpr> args) {
+        if (args == null || args.isEmpty()) return;
+        StringBuilder sb = scratch();
+        for (Map.Entry<String, FtlExpr> entry : args.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=');
+            renderExpr(entry.getValue(), sb);
+        }
+        append(sb);
+    }
+
+    /**
+     * 把表达式渲染到缓冲区
+     */
+    private void renderExpr(FtlExpr expr, StringBuilder sb) {
+        if (expr == null) return;
+
+        if (expr instanceof IdentifierExpr) {
+            sb.append(((IdentifierExpr) expr).getName());
+        } else if (expr instanceof LiteralExpr) {
+            Object value = ((LiteralExpr) expr).getValue();
+            if (value instanceof String) {
+                StringLiterals.quote((String) value, sb);
+            } else {
+                sb.append(value != null ? value.toString() : "null");
+            }
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            int precedence = FtlExpressionParser.precedenceOf(binary.getOp());
+            // 左结合：左侧同级不加括号，右侧同级需要括号；比较不可结合，两侧同级都加括号
+            renderOperand(binary.getLeft(), FtlExpressionParser.isComparison(binary.getOp()) ? precedence + 1 : precedence, sb);
+            sb.append(' ').append(binary.getOp()).append(' ');
+            renderOperand(binary.getRight(), precedence + 1, sb);
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr unary = (UnaryExpr) expr;
+            sb.append(unary.getOp());
+            renderOperand(unary.getOperand(), FtlExpressionParser.precedenceOf(unary), sb);
+        } else if (expr instanceof MemberExpr) {
+            MemberExpr member = (MemberExpr) expr;
+            renderTarget(member.getTarget(), sb);
+            sb.append('.').append(member.getName());
+        } else if (expr instanceof IndexExpr) {
+            IndexExpr index = (IndexExpr) expr;
+            renderTarget(index.getTarget(), sb);
+            sb.append('[');
+            renderExpr(index.getIndex(), sb);
+            sb.append(']');
+        } else if (expr instanceof MethodCallExpr) {
+            MethodCallExpr call = (MethodCallExpr) expr;
+            renderTarget(call.getTarget(), sb);
+            sb.append('(');
+            renderExprList(call.getArgs(), sb);
+            sb.append(')');
+        } else if (expr instanceof BuiltInExpr) {
+            BuiltInExpr builtIn = (BuiltInExpr) expr;
+            renderTarget(builtIn.getTarget(), sb);
+            sb.append('?').append(builtIn.getName());
+            if (!builtIn.getArgs().isEmpty()) {
+                sb.append('(');
+                renderExprList(builtIn.getArgs(), sb);
+                sb.append(')');
+            }
+        } else if (expr instanceof ExistsExpr) {
+            ExistsExpr exists = (ExistsExpr) expr;
+            renderTarget(exists.getTarget(), exists.isGrouped(), sb);
+            sb.append("??");
+        } else if (expr instanceof DefaultExpr) {
+            DefaultExpr defaultExpr = (DefaultExpr) expr;
+            renderTarget(defaultExpr.getTarget(), defaultExpr.isGrouped(), sb);
+            sb.append('!');
+            if (defaultExpr.getDefaultValue() != null) {
+                renderTarget(defaultExpr.getDefaultValue(), sb);
+            }
+        } else if (expr instanceof RangeExpr) {
+            RangeExpr range = (RangeExpr) expr;
+            int precedence = FtlExpressionParser.precedenceOf(range);
+            renderOperand(range.getStart(), precedence, sb);
+            sb.append(range.getOp());
+            if (range.getEnd() != null) {
+                renderOperand(range.getEnd(), precedence + 1, sb);
+            }
+        } else if (expr instanceof SequenceExpr) {
+            sb.append('[');
+            renderExprList(((SequenceExpr) expr).getItems(), sb);
+            sb.append(']');
+        } else if (expr instanceof HashExpr) {
+            HashExpr hash = (HashExpr) expr;
+            sb.append('{');
+            for (int i = 0; i < hash.getKeys().size(); i++) {
+                if (i > 0) sb.append(", ");
+                renderExpr(hash.getKeys().get(i), sb);
+                sb.append(": ");
+                renderExpr(hash.getValues().get(i), sb);
+            }
+            sb.append('}');
+        } else if (expr instanceof RawExpr) {
+            sb.append(((RawExpr) expr).getCode());
+        } else {
+            sb.append(expr);
+        }
+    }
+
+    // 子表达式优先级低于所需优先级时加括号
+    private void renderOperand(FtlExpr expr, int minPrecedence, StringBuilder sb) {
+        int start = sb.length();
+        renderExpr(expr, sb);
+        if (FtlExpressionParser.precedenceOf(expr) < minPrecedence) {
+            sb.insert(start, '(').append(')');
+        }
+    }
+
+    // 后缀运算的目标：二元、一元、区间、默认值表达式与负数需要括号
+    private void renderTarget(FtlExpr expr, StringBuilder sb) {
+        renderTarget(expr, false, sb);
+    }
+
+    // grouped 为 true 时总是加括号，保留 (a.b)?? 与 (a.b)! 的容错含义
+    private void renderTarget(FtlExpr expr, boolean grouped, StringBuilder sb) {
+        int start = sb.length();
+        renderExpr(expr, sb);
+        boolean composite = grouped || expr instanceof BinaryExpr || expr instanceof UnaryExpr
+                || expr instanceof RangeExpr || expr instanceof DefaultExpr
+                || (sb.length() > start && sb.charAt(start) == '-');
+        if (composite) {
+            sb.insert(start, '(').append(')');
+        }
+    }
+
+    private void renderExprList(List<FtlExpr> exprs, StringBuilder sb) {
+        for (int i = 0; i < exprs.size(); i++) {
+            if (i > 0) sb.append(", ");
+            renderExpr(exprs.get(i), sb);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.parser.ExpressionParser;
+import fluent.freemarker.parser.ExpressionParserFactory;
+import fluent.freemarker.parser.FtlExpressionParser;
+import fluent.freemarker.utils.StringLiterals;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 直接解释执行 FtlNode 树：不生成模板文本，也不经过 FreeMarker 解析，按节点结构把数据渲染到 Writer。
+ * 表达式按 FtlExpr 树求值，输出与默认配置下 FreeMarker 渲染同一模板文本的结果一致。
+ * 只覆盖常用指令与内建函数；{@link #supports(List)} 为 false 时应生成模板文本交给 FreeMarker 渲染。
+ * 无状态，线程安全；每次渲染的状态都在独立的 {@link Interpretation} 中。
+ */
+public class AstInterpreter {
+
+    // 节点上的字符串表达式只解析一次，之后所有渲染共享不可变的表达式树
+    private static final ExpressionParser PARSER =
+            ExpressionParserFactory.cached(new FtlExpressionParser(), ExpressionParserFactory.DEFAULT_CACHE_SIZE);
+
+    // 插值与指令、宏调用的起始标记（含方括号语法）
+    private static final Pattern FTL_MARKUP = Pattern.compile("[$#]\\{|</?[#@]|\\[/?[#@]");
+
+    private final Configuration configuration;
+
+    public AstInterpreter(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 以 Configuration 的 locale 把节点渲染到 Writer；变量从 dataModel 中按名称查找
+     */
+    public void render(List<FtlNode> nodes, Map<String, ?> dataModel, Writer out) throws IOException, TemplateException {
+        List<FtlNode> prepared = configuration.getWhitespaceStripping() ? WhitespaceStripper.strip(nodes) : nodes;
+        new Interpretation(dataModel, configuration.getLocale(), out).execute(prepared);
+    }
+
+    /**
+     * 以 UTF-8 编码直接写入 OutputStream；流会被刷新但不关闭
+     */
+    public void render(List<FtlNode> nodes, Map<String, ?> dataModel, OutputStream out) throws IOException, TemplateException {
+        Utf8Output output = new Utf8Output(out);
+        render(nodes, dataModel, output);
+        output.finish();
+    }
+
+    public String render(List<FtlNode> nodes, Map<String, ?> dataModel) throws IOException, TemplateException {
+        StringWriter out = new StringWriter();
+        render(nodes, dataModel, out);
+        return out.toString();
+    }
+
+    /**
+     * 节点树是否完全在解释器支持的范围内：所有指令、表达式与内建函数都可以直接执行
+     */
+    public static boolean supports(List<FtlNode> nodes) {
+        return supports(nodes, false);
+    }
+
+    private static boolean supports(List<FtlNode> nodes, boolean inMacro) {
+        if (nodes == null) return true;
+        for (FtlNode node : nodes) {
+            if (node != null && !supports(node, inMacro)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean supports(FtlNode node, boolean inMacro) {
+        if (node instanceof CommentNode) {
+            // 跨行注释影响空白裁剪的行布局
+            String text = ((CommentNode) node).getText();
+            return text == null || text.indexOf('\n') < 0 && !text.contains("-->");
+        } else if (node instanceof TextNode) {
+            // 文本原样写进模板，含 FTL 标记时 FreeMarker 会按指令或插值解析
+            String text = ((TextNode) node).getText();
+            return text == null || !FTL_MARKUP.matcher(text).find();
+        } else if (node instanceof NewlineNode || node instanceof FlushNode
+                || node instanceof BreakNode || node instanceof ContinueNode) {
+            return true;
+        } else if (node instanceof VarNode) {
+            return supports(((VarNode) node).getExpression());
+        } else if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            return supports(ifNode.getCondition())
+                    && supports(ifNode.getThenBlock(), inMacro) && supports(ifNode.getElseBlock(), inMacro);
+        } else if (node instanceof ListNode) {
+            ListNode list = (ListNode) node;
+            return list.getItem() != null && supports(list.getListExpression()) && supports(list.getBody(), inMacro);
+        } else if (node instanceof AssignNode) {
+            return ((AssignNode) node).getVarName() != null && supports(((AssignNode) node).getValueExpr());
+        } else if (node instanceof GlobalNode) {
+            return supports(((GlobalNode) node).getExpr());
+        } else if (node instanceof LocalNode) {
+            return supports(((LocalNode) node).getExpr());
+        } else if (node instanceof SwitchNode) {
+            SwitchNode switchNode = (SwitchNode) node;
+            if (!supports(switchNode.getExpr()) || !supports(switchNode.getDefaultBody(), inMacro)) return false;
+            if (switchNode.getCases() != null) {
+                for (CaseNode c : switchNode.getCases()) {
+                    if (c == null || !supportsAll(c.getValues()) || !supports(c.getBody(), inMacro)) return false;
+                }
+            }
+            return true;
+        } else if (node instanceof MacroNode) {
+            MacroNode macro = (MacroNode) node;
+            // FreeMarker 不允许宏嵌套定义；默认值以字符串字面量写出，含转义或插值时按模板文本处理
+            if (inMacro) return false;
+            for (Map.Entry<String, String> param : macro.getParams().entrySet()) {
+                if (param.getKey().endsWith("...") || !isPlainString(param.getValue())) return false;
+            }
+            return supports(macro.getBody(), true);
+        } else if (node instanceof MacroCallNode) {
+            MacroCallNode call = (MacroCallNode) node;
+            return call.getArgs() == null || supportsAll(call.getArgs().values());
+        } else if (node instanceof AttemptNode) {
+            // 没有 #recover 的 #attempt 在 FreeMarker 中无法解析
+            AttemptNode attempt = (AttemptNode) node;
+            return attempt.getRecoverBody() != null && !attempt.getRecoverBody().isEmpty()
+                    && supports(attempt.getAttemptBody(), inMacro) && supports(attempt.getRecoverBody(), inMacro);
+        } else if (node instanceof SepNode) {
+            return supports(((SepNode) node).getBody(), inMacro);
+        }
+        // #compress、#escape、#include、#nested 等交给 FreeMarker
+        return false;
+    }
+
+    // 标签写在一行内，空白裁剪按行计算
+    private static boolean supports(String expression) {
+        return expression != null && !isMultiLine(expression) && supports(parse(expression));
+    }
+
+    private static boolean supportsAll(Collection<FtlExpr> exprs) {
+        if (exprs == null) return true;
+        for (FtlExpr expr : exprs) {
+            if (!supports(expr)) return false;
+        }
+        return true;
+    }
+
+    private static boolean supports(FtlExpr expr) {
+        if (expr instanceof IdentifierExpr) {
+            return true;
+        } else if (expr instanceof LiteralExpr) {
+            Object value = ((LiteralExpr) expr).getValue();
+            // 字符串中的 ${ 与 #{ 写成模板后由 FreeMarker 按插值展开
+            return value instanceof Number || value instanceof Boolean
+                    || value instanceof String && !StringLiterals.hasInterpolationMarker((String) value);
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return ExpressionEvaluator.BINARY_OPERATORS.contains(binary.getOp()) && supports(binary.getLeft()) && supports(binary.getRight());
+        } else if (expr instanceof UnaryExpr) {
+            return supports(((UnaryExpr) expr).getOperand());
+        } else if (expr instanceof MemberExpr) {
+            // ?string.currency 等子变体的写法与取成员相同
+            FtlExpr target = ((MemberExpr) expr).getTarget();
+            return (!(target instanceof BuiltInExpr) || ExpressionEvaluator.supportsMemberOf((BuiltInExpr) target)) && supports(target);
+        } else if (expr instanceof IndexExpr) {
+            // 区间切片交给 FreeMarker
+            IndexExpr index = (IndexExpr) expr;
+            return !(index.getIndex() instanceof RangeExpr) && supports(index.getTarget()) && supports(index.getIndex());
+        } else if (expr instanceof BuiltInExpr) {
+            BuiltInExpr builtIn = (BuiltInExpr) expr;
+            return ExpressionEvaluator.supportsBuiltIn(builtIn.getName(), builtIn.getArgs().size())
+                    && supports(builtIn.getTarget()) && supportsAll(builtIn.getArgs());
+        } else if (expr instanceof ExistsExpr) {
+            return supports(((ExistsExpr) expr).getTarget());
+        } else if (expr instanceof DefaultExpr) {
+            DefaultExpr defaultExpr = (DefaultExpr) expr;
+            return supports(defaultExpr.getTarget()) && (defaultExpr.getDefaultValue() == null || supports(defaultExpr.getDefaultValue()));
+        } else if (expr instanceof RangeExpr) {
+            // 右侧无界的区间不能迭代
+            RangeExpr range = (RangeExpr) expr;
+            return range.getEnd() != null && supports(range.getStart()) && supports(range.getEnd());
+        } else if (expr instanceof SequenceExpr) {
+            return supportsAll(((SequenceExpr) expr).getItems());
+        } else if (expr instanceof HashExpr) {
+            return supportsAll(((HashExpr) expr).getKeys()) && supportsAll(((HashExpr) expr).getValues());
+        }
+        // 方法调用与无法解析的 RawExpr
+        return false;
+    }
+
+    // 宏参数默认值按原文保存，含转义、插值或换行的需要 FreeMarker 处理
+    private static boolean isPlainString(String value) {
+        return value == null || value.indexOf('\\') < 0 && !value.contains("${") && !value.contains("#{")
+                && value.indexOf('"') < 0 && !isMultiLine(value);
+    }
+
+    private static boolean isMultiLine(String value) {
+        return value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+    }
+
+    static FtlExpr parse(String expression) {
+        return PARSER.parse(expression);
+    }
+
+    /**
+     * 节点包含的子节点块，供定义宏时遍历
+     */
+    static List<List<FtlNode>> children(FtlNode node) {
+        if (node instanceof IfNode) {
+            return Arrays.asList(((IfNode) node).getThenBlock(), ((IfNode) node).getElseBlock());
+        } else if (node instanceof ListNode) {
+            return Collections.singletonList(((ListNode) node).getBody());
+        } else if (node instanceof SwitchNode) {
+            SwitchNode switchNode = (SwitchNode) node;
+            List<List<FtlNode>> blocks = new ArrayList<>();
+            if (switchNode.getCases() != null) {
+                for (CaseNode c : switchNode.getCases()) {
+                    blocks.add(c.getBody());
+                }
+            }
+            blocks.add(switchNode.getDefaultBody());
+            return blocks;
+        } else if (node instanceof AttemptNode) {
+            return Arrays.asList(((AttemptNode) node).getAttemptBody(), ((AttemptNode) node).getRecoverBody());
+        } else if (node instanceof SepNode) {
+            return Collections.singletonList(((SepNode) node).getBody());
+        }
+        return Collections.emptyList();
+    }
+}
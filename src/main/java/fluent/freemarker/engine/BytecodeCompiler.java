@@ -0,0 +1,427 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.engine.ClassFileWriter.Label;
+import fluent.freemarker.engine.ClassFileWriter.MethodWriter;
+import fluent.freemarker.engine.Interpretation.Step;
+import fluent.freemarker.model.TypeInfo;
+import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.PropertyAccessors;
+import fluent.freemarker.utils.PropertyAccessors.PropertyAccessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import static fluent.freemarker.engine.ClassFileWriter.*;
+
+/**
+ * 把 FtlNode 树编译为一个生成的类，由隐藏类（JDK 15+）加载：
+ * 相邻静态文本合并为预编码的 {@link StaticText} 常量整块写出，#if 与 #list 成为方法内的条件跳转与循环，
+ * 循环内的 #break、#continue 直接跳转。VarNode 中的点号路径若头变量在编译时给出了类型，
+ * 按 TypeRegistry 逐段确认属性后生成对公共 getter 的直接调用；运行时值不是该类型或中途为 null 时退回通用求值。
+ * #assign、#switch、宏等其余指令仍由 {@link TemplateCompiler} 构建的步骤执行，生成的代码直接调用它们。
+ * 运行时不支持隐藏类或模板超出 class 文件限制时，整体退回 TemplateCompiler 的步骤。
+ */
+@Slf4j
+final class BytecodeCompiler {
+    private static final String GENERATED = "fluent/freemarker/engine/GeneratedTemplate";
+    private static final String SCOPE = "fluent/freemarker/engine/Interpretation";
+    private static final String STEP = "fluent/freemarker/engine/Interpretation$Step";
+    private static final String LOOP = "fluent/freemarker/engine/Interpretation$LoopState";
+    private static final String BREAK = "fluent/freemarker/engine/Interpretation$BreakSignal";
+    private static final String CONTINUE = "fluent/freemarker/engine/Interpretation$ContinueSignal";
+    private static final String STATIC_TEXT = "fluent/freemarker/engine/StaticText";
+    private static final String EXPR = "fluent/freemarker/ast/expr/FtlExpr";
+    private static final String OBJECTS = "[Ljava/lang/Object;";
+
+    private static final int THIS_SLOT = 0;
+    private static final int SCOPE_SLOT = 1;
+
+    // 运行时值可能不按 JavaBeans 属性访问的类型，路径经过它们时不生成直接调用
+    private static final Class<?>[] NON_BEAN_TYPES = {
+            String.class, Number.class, Boolean.class, Character.class, Iterable.class, Map.class, Interpretation.Macro.class};
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Method DEFINE_HIDDEN_CLASS; // JDK 15 之前为 null
+    private static final Object NO_CLASS_OPTIONS;
+
+    static {
+        Method define = null;
+        Object options = null;
+        try {
+            options = Array.newInstance(Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption"), 0);
+            define = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        } catch (ReflectiveOperationException e) {
+            log.debug("Hidden classes are not available, templates compile to interpreted steps");
+        }
+        DEFINE_HIDDEN_CLASS = define;
+        NO_CLASS_OPTIONS = options;
+    }
+
+    private final TemplateCompiler steps = new TemplateCompiler(); // 未生成代码的指令与宏
+    private final Map<String, Class<?>> variableTypes;
+    private final TypeRegistry typeRegistry;
+    private final List<Object> constants = new ArrayList<>();
+    private final Deque<Loop> loops = new ArrayDeque<>(); // 正在生成的内联循环，#break/#continue 跳转到最内层
+    private MethodWriter code;
+    private int constantsSlot;
+
+    private BytecodeCompiler(Map<String, Class<?>> variableTypes, TypeRegistry typeRegistry) {
+        this.variableTypes = variableTypes;
+        this.typeRegistry = typeRegistry;
+    }
+
+    static boolean isAvailable() {
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * @param variableTypes 数据模型中变量的类型，用于直接绑定属性访问；typeRegistry 为 null 时不绑定
+     */
+    static CompiledTemplate compile(List<FtlNode> nodes, Locale locale, boolean stripWhitespace,
+                                    Map<String, Class<?>> variableTypes, TypeRegistry typeRegistry) {
+        List<FtlNode> body = stripWhitespace ? WhitespaceStripper.strip(nodes) : nodes;
+        if (isAvailable()) {
+            BytecodeCompiler compiler = new BytecodeCompiler(variableTypes, typeRegistry);
+            try {
+                Step step = compiler.generate(body);
+                return new CompiledTemplate(step, compiler.steps.getMacros(), locale, true);
+            } catch (IllegalStateException e) {
+                log.debug("Template exceeds class file limits, using interpreted steps: {}", e.getMessage());
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Cannot load generated template class, using interpreted steps", e);
+            }
+        }
+        return TemplateCompiler.compile(body, locale, false);
+    }
+
+    // ==================== 类 ====================
+
+    private Step generate(List<FtlNode> nodes) throws ReflectiveOperationException {
+        ClassFileWriter cw = new ClassFileWriter(GENERATED, "java/lang/Object", STEP);
+        cw.field(ACC_PRIVATE | ACC_FINAL, "constants", OBJECTS);
+
+        MethodWriter init = cw.method(0, "<init>", "(" + OBJECTS + ")V", false);
+        init.aload(THIS_SLOT);
+        init.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.aload(THIS_SLOT);
+        init.aload(1);
+        init.field(PUTFIELD, GENERATED, "constants", OBJECTS);
+        init.insn(RETURN, 0);
+
+        code = cw.method(ACC_PUBLIC, "execute", "(L" + SCOPE + ";)V", false);
+        constantsSlot = code.newLocal();
+        code.aload(THIS_SLOT);
+        code.field(GETFIELD, GENERATED, "constants", OBJECTS);
+        code.astore(constantsSlot);
+        block(nodes);
+        code.insn(RETURN, 0);
+
+        return instantiate(cw.toByteArray(), constants.toArray());
+    }
+
+    private static Step instantiate(byte[] classFile, Object[] constants) throws ReflectiveOperationException {
+        Class<?> generated;
+        try {
+            generated = ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(LOOKUP, classFile, true, NO_CLASS_OPTIONS)).lookupClass();
+        } catch (InvocationTargetException e) {
+            // 校验失败等链接错误原样抛出
+            if (e.getCause() instanceof LinkageError) throw (LinkageError) e.getCause();
+            throw e;
+        }
+        return (Step) generated.getDeclaredConstructor(Object[].class).newInstance((Object) constants);
+    }
+
+    // ==================== 节点 ====================
+
+    private void block(List<FtlNode> nodes) {
+        if (nodes == null) return;
+        StringBuilder text = new StringBuilder();
+        for (FtlNode node : nodes) {
+            if (node == null || node instanceof CommentNode) continue;
+            if (node instanceof TextNode) {
+                if (((TextNode) node).getText() != null) text.append(((TextNode) node).getText());
+                continue;
+            }
+            if (node instanceof NewlineNode) {
+                text.append('\n');
+                continue;
+            }
+            flushText(text);
+            node(node);
+        }
+        flushText(text);
+    }
+
+    private void flushText(StringBuilder text) {
+        if (text.length() == 0) return;
+        code.aload(SCOPE_SLOT);
+        constant(new StaticText(text.toString()), STATIC_TEXT);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "write", "(L" + STATIC_TEXT + ";)V");
+        text.setLength(0);
+    }
+
+    private void node(FtlNode node) {
+        if (node instanceof VarNode && ((VarNode) node).getExpression() != null) {
+            output(TemplateCompiler.parse(((VarNode) node).getExpression()));
+        } else if (node instanceof IfNode) {
+            ifElse((IfNode) node);
+        } else if (node instanceof ListNode) {
+            loop((ListNode) node);
+        } else if (node instanceof SepNode) {
+            Label skip = new Label();
+            code.aload(SCOPE_SLOT);
+            code.invoke(INVOKEVIRTUAL, SCOPE, "sepVisible", "()Z");
+            code.jump(IFEQ, skip);
+            block(((SepNode) node).getBody());
+            code.mark(skip);
+        } else if (node instanceof BreakNode && !loops.isEmpty()) {
+            code.jump(GOTO, loops.peek().exit);
+        } else if (node instanceof ContinueNode && !loops.isEmpty()) {
+            code.jump(GOTO, loops.peek().next);
+        } else {
+            // 其余指令执行预先构建的步骤；循环外的 #break/#continue 照常抛出控制流信号
+            constant(steps.step(node), STEP);
+            code.aload(SCOPE_SLOT);
+            code.invoke(INVOKEINTERFACE, STEP, "execute", "(L" + SCOPE + ";)V");
+        }
+    }
+
+    private void ifElse(IfNode node) {
+        Label otherwise = new Label();
+        code.aload(SCOPE_SLOT);
+        constant(TemplateCompiler.parse(node.getCondition()), EXPR);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "test", "(L" + EXPR + ";)Z");
+        code.jump(IFEQ, otherwise);
+        block(node.getThenBlock());
+        if (node.getElseBlock() == null || node.getElseBlock().isEmpty()) {
+            code.mark(otherwise);
+            return;
+        }
+        Label end = new Label();
+        code.jump(GOTO, end);
+        code.mark(otherwise);
+        block(node.getElseBlock());
+        code.mark(end);
+    }
+
+    /**
+     * 循环体内联在 while 循环中。异常表：子步骤抛出的 #continue 回到循环头，#break 跳出，
+     * 其余异常弹出循环状态后重新抛出（#attempt 恢复后循环变量不能残留）
+     */
+    private void loop(ListNode node) {
+        int state = code.newLocal();
+        code.aload(SCOPE_SLOT);
+        code.ldc(node.getItem());
+        constant(TemplateCompiler.parse(node.getListExpression()), EXPR);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "beginList", "(Ljava/lang/String;L" + EXPR + ";)L" + LOOP + ";");
+        code.astore(state);
+
+        Loop loop = new Loop();
+        Label bodyEnd = new Label();
+        code.mark(loop.next);
+        code.aload(SCOPE_SLOT);
+        code.aload(state);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "nextItem", "(L" + LOOP + ";)Z");
+        code.jump(IFEQ, loop.exit);
+        loops.push(loop);
+        block(node.getBody());
+        loops.pop();
+        code.jump(GOTO, loop.next);
+        code.mark(bodyEnd);
+
+        Label onContinue = new Label();
+        code.mark(onContinue);
+        code.stack(1);
+        code.insn(POP, -1);
+        code.jump(GOTO, loop.next);
+
+        Label onBreak = new Label();
+        code.mark(onBreak);
+        code.stack(1);
+        code.insn(POP, -1);
+        code.jump(GOTO, loop.exit);
+
+        Label onError = new Label();
+        int error = code.newLocal();
+        code.mark(onError);
+        code.stack(1);
+        code.astore(error);
+        code.aload(SCOPE_SLOT);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "endList", "()V");
+        code.aload(error);
+        code.insn(ATHROW, -1);
+
+        code.mark(loop.exit);
+        code.stack(0);
+        code.aload(SCOPE_SLOT);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "endList", "()V");
+
+        // 内层循环先生成，其异常表项排在外层之前
+        code.tryCatch(loop.next, bodyEnd, onContinue, CONTINUE);
+        code.tryCatch(loop.next, bodyEnd, onBreak, BREAK);
+        code.tryCatch(loop.next, bodyEnd, onError, null);
+    }
+
+    // ==================== 插值 ====================
+
+    private void output(FtlExpr expr) {
+        if (expr instanceof PathExpr) {
+            Method[] getters = bind((PathExpr) expr);
+            if (getters != null) {
+                typedOutput((PathExpr) expr, getters);
+                return;
+            }
+        }
+        code.aload(SCOPE_SLOT);
+        constant(expr, EXPR);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "output", "(L" + EXPR + ";)V");
+    }
+
+    /**
+     * 直接调用各段 getter：scope.lookup(head) 是声明的类型时逐段调用，最后一段交给 output(value, expr) 格式化
+     * （字符串直接写出）。头变量被遮蔽为其他类型或中途为 null 时，丢弃已取到的值，按通用路径重新求值并报错
+     */
+    private void typedOutput(PathExpr path, Method[] getters) {
+        Class<?> headType = variableTypes.get(path.getHead());
+        Label fallback = new Label();
+        Label done = new Label();
+        code.aload(SCOPE_SLOT); // 最终写出调用的接收者
+        code.aload(SCOPE_SLOT);
+        code.ldc(path.getHead());
+        code.invoke(INVOKEVIRTUAL, SCOPE, "lookup", "(Ljava/lang/String;)Ljava/lang/Object;");
+        code.insn(DUP, 1);
+        code.type(INSTANCEOF, internalName(headType));
+        code.jump(IFEQ, fallback);
+        code.type(CHECKCAST, internalName(headType));
+        for (int i = 0; i < getters.length; i++) {
+            Method getter = getters[i];
+            Class<?> owner = getter.getDeclaringClass();
+            code.invoke(owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, internalName(owner), getter.getName(),
+                    "()" + descriptor(getter.getReturnType()));
+            if (i < getters.length - 1) {
+                code.insn(DUP, 1);
+                code.jump(IFNULL, fallback);
+            }
+        }
+        Class<?> type = getters[getters.length - 1].getReturnType();
+        if (type == String.class) {
+            code.insn(DUP, 1);
+            code.jump(IFNULL, fallback);
+            code.invoke(INVOKEVIRTUAL, SCOPE, "write", "(Ljava/lang/String;)V");
+        } else {
+            box(type);
+            constant(path, EXPR);
+            code.invoke(INVOKEVIRTUAL, SCOPE, "output", "(Ljava/lang/Object;L" + EXPR + ";)V");
+        }
+        code.jump(GOTO, done);
+
+        code.mark(fallback);
+        code.stack(2);
+        code.insn(POP, -1);
+        code.insn(POP, -1);
+        code.aload(SCOPE_SLOT);
+        constant(path, EXPR);
+        code.invoke(INVOKEVIRTUAL, SCOPE, "output", "(L" + EXPR + ";)V");
+        code.mark(done);
+    }
+
+    /**
+     * 按头变量的类型逐段解析路径：每段必须是 TypeRegistry 中该类型已知的属性，
+     * 且有声明在公共类型上的 JavaBeans 读方法（与解释执行的属性解析一致）；任何一段不满足时返回 null
+     */
+    private Method[] bind(PathExpr path) {
+        Class<?> type = typeRegistry != null ? variableTypes.get(path.getHead()) : null;
+        if (type == null) return null;
+        PathExpr.Segment[] segments = path.getSegments();
+        Method[] getters = new Method[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String name = segments[i].getName();
+            if (!isBeanType(type) || !isLinkable(type)) return null;
+            TypeInfo info = typeRegistry.getTypeInfo(type);
+            if (info == null || info.getField(name) == null) return null;
+            PropertyAccessor accessor = PropertyAccessors.findBeanProperty(type, name);
+            Method getter = accessor != null ? accessor.getMethod() : null;
+            if (getter == null || !isLinkable(getter.getDeclaringClass())) return null;
+            getters[i] = getter;
+            type = getter.getReturnType();
+        }
+        return type.isPrimitive() || isLinkable(type) ? getters : null;
+    }
+
+    // 静态类型本身及其可能的运行时子类型都按 JavaBeans 属性访问
+    private static boolean isBeanType(Class<?> type) {
+        if (type.isPrimitive() || type.isArray()) return false;
+        for (Class<?> nonBean : NON_BEAN_TYPES) {
+            if (nonBean.isAssignableFrom(type) || type.isAssignableFrom(nonBean)) return false;
+        }
+        return true;
+    }
+
+    // 生成的类只能链接公共的、从本类加载器可见的同一个类
+    private static boolean isLinkable(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) return false;
+        try {
+            return Class.forName(type.getName(), false, BytecodeCompiler.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    // ==================== 指令辅助 ====================
+
+    private void constant(Object value, String type) {
+        code.aload(constantsSlot);
+        code.iconst(constants.size());
+        code.insn(AALOAD, -1);
+        code.type(CHECKCAST, type);
+        constants.add(value);
+    }
+
+    private void box(Class<?> type) {
+        if (!type.isPrimitive()) return;
+        String wrapper = internalName(boxed(type));
+        code.invoke(INVOKESTATIC, wrapper, "valueOf", "(" + descriptor(type) + ")L" + wrapper + ";");
+    }
+
+    private static Class<?> boxed(Class<?> primitive) {
+        if (primitive == int.class) return Integer.class;
+        if (primitive == long.class) return Long.class;
+        if (primitive == double.class) return Double.class;
+        if (primitive == float.class) return Float.class;
+        if (primitive == boolean.class) return Boolean.class;
+        if (primitive == char.class) return Character.class;
+        if (primitive == short.class) return Short.class;
+        return Byte.class;
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type == int.class) return "I";
+        if (type == long.class) return "J";
+        if (type == double.class) return "D";
+        if (type == float.class) return "F";
+        if (type == boolean.class) return "Z";
+        if (type == char.class) return "C";
+        if (type == short.class) return "S";
+        if (type == byte.class) return "B";
+        if (type == void.class) return "V";
+        if (type.isArray()) return internalName(type);
+        return "L" + internalName(type) + ";";
+    }
+
+    // 内联循环的跳转目标：next 取下一项（#continue），exit 弹出循环状态（#break）
+    private static final class Loop {
+        private final Label next = new Label();
+        private final Label exit = new Label();
+    }
+}
@@ -0,0 +1,405 @@
+package fluent.freemarker.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 生成 class 文件的最小汇编器：常量池、字段与带异常表的方法。
+ * 输出 49 版本（Java 5）的 class 文件，该版本不需要 StackMapTable，由 JVM 的类型推导校验器校验。
+ * 操作数栈深度按每条指令的栈效应累加，调用方保证跳转到同一位置的各条路径栈深度一致。
+ * 超出 class 文件限制（方法超过 64KB、跳转偏移超过 16 位等）时抛出 IllegalStateException。
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 3;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int AALOAD = 50;
+    static final int POP = 87;
+    static final int DUP = 89;
+    static final int IFEQ = 153;
+    static final int GOTO = 167;
+    static final int RETURN = 177;
+    static final int GETFIELD = 180;
+    static final int PUTFIELD = 181;
+    static final int INVOKEVIRTUAL = 182;
+    static final int INVOKESPECIAL = 183;
+    static final int INVOKESTATIC = 184;
+    static final int INVOKEINTERFACE = 185;
+    static final int ATHROW = 191;
+    static final int CHECKCAST = 192;
+    static final int INSTANCEOF = 193;
+    static final int IFNULL = 198;
+
+    private static final int LDC = 18;
+    private static final int LDC_W = 19;
+    private static final int ALOAD = 25;
+    private static final int ASTORE = 58;
+    private static final int ALOAD_0 = 42;
+    private static final int ASTORE_0 = 75;
+
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private final ByteBuffer pool = new ByteBuffer();
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final ByteBuffer fields = new ByteBuffer();
+    private int fieldCount;
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    void field(int access, String name, String descriptor) {
+        fields.put2(access).put2(utf8(name)).put2(utf8(descriptor)).put2(0);
+        fieldCount++;
+    }
+
+    /**
+     * 新方法；实例方法的局部变量 0 是 this，参数依次占用之后的槽位
+     */
+    MethodWriter method(int access, String name, String descriptor, boolean isStatic) {
+        MethodWriter method = new MethodWriter(access, utf8(name), utf8(descriptor),
+                argumentSlots(descriptor) + (isStatic ? 0 : 1));
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toByteArray() {
+        int code = utf8("Code"); // 写出常量池之前登记
+        ByteBuffer out = new ByteBuffer();
+        out.put4(0xCAFEBABE).put2(0).put2(49);
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool too large");
+        }
+        out.put2(poolCount).put(pool);
+        out.put2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER).put2(thisClass).put2(superClass);
+        out.put2(interfaces.length);
+        for (int itf : interfaces) {
+            out.put2(itf);
+        }
+        out.put2(fieldCount).put(fields);
+        out.put2(methods.size());
+        for (MethodWriter method : methods) {
+            method.writeTo(out, code);
+        }
+        out.put2(0); // 类属性
+        return out.toByteArray();
+    }
+
+    // ==================== 常量池 ====================
+
+    private int utf8(String value) {
+        Integer index = poolIndex.get("U" + value);
+        if (index != null) return index;
+        byte[] bytes = modifiedUtf8(value);
+        pool.put1(1).put2(bytes.length).put(bytes, bytes.length);
+        return register("U" + value);
+    }
+
+    int classRef(String internalName) {
+        return constant("C" + internalName, 7, utf8(internalName), -1);
+    }
+
+    private int string(String value) {
+        return constant("S" + value, 8, utf8(value), -1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return constant("N" + name + ' ' + descriptor, 12, utf8(name), utf8(descriptor));
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        return constant(tag + owner + '.' + name + descriptor, tag, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    private int constant(String key, int tag, int first, int second) {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        pool.put1(tag).put2(first);
+        if (second >= 0) pool.put2(second);
+        return register(key);
+    }
+
+    private int register(String key) {
+        int index = poolCount++;
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    private static byte[] modifiedUtf8(String value) {
+        ByteBuffer out = new ByteBuffer();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x01 && c <= 0x7F) {
+                out.put1(c);
+            } else if (c <= 0x7FF) {
+                out.put1(0xC0 | c >> 6).put1(0x80 | c & 0x3F);
+            } else {
+                out.put1(0xE0 | c >> 12).put1(0x80 | c >> 6 & 0x3F).put1(0x80 | c & 0x3F);
+            }
+        }
+        if (out.length > 0xFFFF) {
+            throw new IllegalStateException("String constant too long");
+        }
+        return out.toByteArray();
+    }
+
+    // 描述符中参数占用的槽位数（long/double 占两个）
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            boolean array = false;
+            while (c == '[') {
+                array = true;
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            slots += !array && (c == 'J' || c == 'D') ? 2 : 1;
+            i++;
+        }
+        return slots;
+    }
+
+    private static int returnSlots(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+    }
+
+    // ==================== 方法 ====================
+
+    /**
+     * 跳转目标。放置前的跳转先记下位置，放置时回填偏移
+     */
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>(); // {指令起点, 偏移所在位置}
+    }
+
+    final class MethodWriter {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final ByteBuffer code = new ByteBuffer();
+        private final ByteBuffer handlers = new ByteBuffer();
+        private int handlerCount;
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        private MethodWriter(int access, int name, int descriptor, int parameterSlots) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = parameterSlots;
+        }
+
+        int newLocal() {
+            if (maxLocals > 0xFF) {
+                throw new IllegalStateException("Too many local variables");
+            }
+            return maxLocals++;
+        }
+
+        void insn(int opcode, int stackEffect) {
+            code.put1(opcode);
+            adjust(stackEffect);
+        }
+
+        void aload(int slot) {
+            if (slot < 4) {
+                code.put1(ALOAD_0 + slot);
+            } else {
+                code.put1(ALOAD).put1(slot);
+            }
+            adjust(1);
+        }
+
+        void astore(int slot) {
+            if (slot < 4) {
+                code.put1(ASTORE_0 + slot);
+            } else {
+                code.put1(ASTORE).put1(slot);
+            }
+            adjust(-1);
+        }
+
+        void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                code.put1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.put1(BIPUSH).put1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.put1(SIPUSH).put2(value);
+            } else {
+                throw new IllegalStateException("Constant out of range: " + value);
+            }
+            adjust(1);
+        }
+
+        void ldc(String value) {
+            int index = string(value);
+            if (index <= 0xFF) {
+                code.put1(LDC).put1(index);
+            } else {
+                code.put1(LDC_W).put2(index);
+            }
+            adjust(1);
+        }
+
+        void field(int opcode, String owner, String fieldName, String fieldDescriptor) {
+            code.put1(opcode).put2(memberRef(9, owner, fieldName, fieldDescriptor));
+            adjust(opcode == GETFIELD ? 0 : -2);
+        }
+
+        void invoke(int opcode, String owner, String methodName, String methodDescriptor) {
+            int arguments = argumentSlots(methodDescriptor);
+            if (opcode == INVOKEINTERFACE) {
+                code.put1(opcode).put2(memberRef(11, owner, methodName, methodDescriptor)).put1(arguments + 1).put1(0);
+            } else {
+                code.put1(opcode).put2(memberRef(10, owner, methodName, methodDescriptor));
+            }
+            adjust(returnSlots(methodDescriptor) - arguments - (opcode == INVOKESTATIC ? 0 : 1));
+        }
+
+        void type(int opcode, String internalName) {
+            code.put1(opcode).put2(classRef(internalName));
+        }
+
+        void jump(int opcode, Label target) {
+            int start = code.length;
+            code.put1(opcode);
+            if (target.position >= 0) {
+                code.put2(offset(target.position - start));
+            } else {
+                target.fixups.add(new int[]{start, code.length});
+                code.put2(0);
+            }
+            if (opcode != GOTO) adjust(-1);
+        }
+
+        /**
+         * 放置标签；栈深度不变，跳转到此处的路径应与顺序执行到此处的栈深度一致
+         */
+        void mark(Label label) {
+            label.position = code.length;
+            for (int[] fixup : label.fixups) {
+                code.patch2(fixup[1], offset(label.position - fixup[0]));
+            }
+            label.fixups.clear();
+        }
+
+        /**
+         * 无条件跳转之后或异常处理入口处，显式设定当前栈深度
+         */
+        void stack(int depth) {
+            stack = depth;
+            maxStack = Math.max(maxStack, depth);
+        }
+
+        /**
+         * 异常表项：[start, end) 中抛出 catchType（null 表示任意异常）时跳到 handler
+         */
+        void tryCatch(Label start, Label end, Label handler, String catchType) {
+            handlers.put2(start.position).put2(end.position).put2(handler.position)
+                    .put2(catchType != null ? classRef(catchType) : 0);
+            handlerCount++;
+        }
+
+        private void adjust(int effect) {
+            stack += effect;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private int offset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Branch offset too large");
+            }
+            return offset;
+        }
+
+        private void writeTo(ByteBuffer out, int codeAttribute) {
+            if (code.length > MAX_CODE_LENGTH) {
+                throw new IllegalStateException("Method too large");
+            }
+            out.put2(access).put2(name).put2(descriptor).put2(1);
+            out.put2(codeAttribute).put4(12 + code.length + 8 * handlerCount);
+            out.put2(maxStack).put2(maxLocals).put4(code.length).put(code);
+            out.put2(handlerCount).put(handlers);
+            out.put2(0); // Code 的属性
+        }
+    }
+
+    // 大端序字节缓冲
+    private static final class ByteBuffer {
+        private byte[] data = new byte[256];
+        private int length;
+
+        ByteBuffer put1(int b) {
+            ensure(1);
+            data[length++] = (byte) b;
+            return this;
+        }
+
+        ByteBuffer put2(int s) {
+            ensure(2);
+            data[length++] = (byte) (s >>> 8);
+            data[length++] = (byte) s;
+            return this;
+        }
+
+        ByteBuffer put4(int i) {
+            return put2(i >>> 16).put2(i);
+        }
+
+        ByteBuffer put(ByteBuffer other) {
+            return put(other.data, other.length);
+        }
+
+        ByteBuffer put(byte[] bytes, int count) {
+            ensure(count);
+            System.arraycopy(bytes, 0, data, length, count);
+            length += count;
+            return this;
+        }
+
+        void patch2(int position, int s) {
+            data[position] = (byte) (s >>> 8);
+            data[position + 1] = (byte) s;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            System.arraycopy(data, 0, bytes, 0, length);
+            return bytes;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                byte[] grown = new byte[Math.max(data.length * 2, length + extra)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.engine.Interpretation.Macro;
+import fluent.freemarker.engine.Interpretation.Step;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 编译后的模板：由 {@link TemplateEngine#compile(List)} 从 FtlNode 树生成（通常是一个生成的类），渲染时不再解析表达式、不再裁剪空白。
+ * 输出与 {@link AstInterpreter} 直接执行同一节点树一致。不可变，线程安全，适合反复渲染的热点模板。
+ */
+public final class CompiledTemplate {
+    private final Step body;
+    private final List<Macro> macros;
+    private final Locale locale;
+    private final boolean generated;
+
+    CompiledTemplate(Step body, List<Macro> macros, Locale locale) {
+        this(body, macros, locale, false);
+    }
+
+    CompiledTemplate(Step body, List<Macro> macros, Locale locale, boolean generated) {
+        this.body = body;
+        this.macros = Collections.unmodifiableList(macros);
+        this.locale = locale;
+        this.generated = generated;
+    }
+
+    /**
+     * 模板体是否编译成了生成的类；运行时不支持隐藏类或模板过大时为 false，模板体由预先构建的步骤执行
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    public void render(Map<String, ?> dataModel, Writer out) throws IOException, TemplateException {
+        new Interpretation(dataModel, locale, out).execute(body, macros);
+    }
+
+    /**
+     * 以 UTF-8 编码直接写入 OutputStream，静态文本按预先编码的字节整块写出；流会被刷新但不关闭
+     */
+    public void render(Map<String, ?> dataModel, OutputStream out) throws IOException, TemplateException {
+        Utf8Output output = new Utf8Output(out);
+        render(dataModel, output);
+        output.finish();
+    }
+
+    public String render(Map<String, ?> dataModel) throws IOException, TemplateException {
+        StringWriter out = new StringWriter();
+        render(dataModel, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,747 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.utils.PropertyAccessors;
+import freemarker.core.Environment;
+import freemarker.core.InvalidReferenceException;
+import freemarker.template.TemplateException;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 解释执行时的表达式求值，语义与默认配置下的 FreeMarker 一致：
+ * 算术使用 BigDecimal，数字按 number_format="number" 与 locale 输出。
+ * 缺失值求值为 null，只有在取成员、输出或参与运算时才报错，与 FreeMarker 报错的时机相同。
+ * 每次渲染一个实例，非线程安全。
+ */
+final class ExpressionEvaluator {
+
+    // 解释器支持的内建函数，其余的回退到 FreeMarker
+    // 已实现的内建函数 → 支持的参数个数，其他写法（如 ?join 的后两个参数）交给 FreeMarker
+    private static final Map<String, Set<Integer>> BUILT_INS = new HashMap<>();
+
+    // 结果可以继续取成员的内建函数（返回序列中的元素）；?string.currency 之类的子变体不支持
+    private static final Set<String> ELEMENT_BUILT_INS = new HashSet<>(Arrays.asList("first", "last"));
+
+    static {
+        for (String name : Arrays.asList("size", "length", "upper_case", "lower_case", "cap_first", "uncap_first", "trim",
+                "has_content", "c", "first", "last", "reverse", "keys", "values", "abs", "round", "floor", "ceiling",
+                "index", "counter", "has_next", "is_first", "is_last", "item_parity", "is_even_item", "is_odd_item")) {
+            BUILT_INS.put(name, Collections.singleton(0));
+        }
+        BUILT_INS.put("string", new HashSet<>(Arrays.asList(0, 1, 2)));
+        for (String name : Arrays.asList("join", "contains", "starts_with", "ends_with")) {
+            BUILT_INS.put(name, Collections.singleton(1));
+        }
+        BUILT_INS.put("replace", Collections.singleton(2));
+    }
+
+    static final Set<String> BINARY_OPERATORS = new HashSet<>(Arrays.asList(
+            "||", "&&", "==", "=", "!=", ">", ">=", "<", "<=", "gt", "gte", "lt", "lte", "+", "-", "*", "/", "%"));
+
+    private static final Set<String> LOOP_BUILT_INS = new HashSet<>(Arrays.asList(
+            "index", "counter", "has_next", "is_first", "is_last", "item_parity", "is_even_item", "is_odd_item"));
+
+    // 与 FreeMarker BigDecimal 算术引擎一致的最小除法精度
+    private static final int MIN_DIVISION_SCALE = 12;
+
+    private static final Map<Locale, NumberFormat> NUMBER_FORMATS = new ConcurrentHashMap<>();
+
+    private final Interpretation scope;
+    private final Locale locale;
+    private NumberFormat numberFormat; // 按需创建，本次渲染内复用
+
+    ExpressionEvaluator(Interpretation scope, Locale locale) {
+        this.scope = scope;
+        this.locale = locale;
+    }
+
+    Object eval(FtlExpr expr) throws TemplateException {
+        if (expr instanceof LiteralExpr) {
+            return ((LiteralExpr) expr).getValue();
+        } else if (expr instanceof PathExpr) {
+            return evalPath((PathExpr) expr);
+        } else if (expr instanceof IdentifierExpr) {
+            return evalPath(((IdentifierExpr) expr).getName());
+        } else if (expr instanceof MemberExpr) {
+            MemberExpr member = (MemberExpr) expr;
+            return member(eval(member.getTarget()), member.getName(), member.getTarget());
+        } else if (expr instanceof IndexExpr) {
+            IndexExpr index = (IndexExpr) expr;
+            return index(eval(index.getTarget()), eval(index.getIndex()), index);
+        } else if (expr instanceof BinaryExpr) {
+            return binary((BinaryExpr) expr);
+        } else if (expr instanceof UnaryExpr) {
+            return unary((UnaryExpr) expr);
+        } else if (expr instanceof BuiltInExpr) {
+            return builtIn((BuiltInExpr) expr);
+        } else if (expr instanceof ExistsExpr) {
+            ExistsExpr exists = (ExistsExpr) expr;
+            return evalOptional(exists.getTarget(), exists.isGrouped()) != null;
+        } else if (expr instanceof DefaultExpr) {
+            DefaultExpr defaultExpr = (DefaultExpr) expr;
+            Object value = evalOptional(defaultExpr.getTarget(), defaultExpr.isGrouped());
+            if (value != null) return value;
+            return defaultExpr.getDefaultValue() != null ? eval(defaultExpr.getDefaultValue()) : "";
+        } else if (expr instanceof RangeExpr) {
+            return range((RangeExpr) expr);
+        } else if (expr instanceof SequenceExpr) {
+            List<Object> items = new ArrayList<>();
+            for (FtlExpr item : ((SequenceExpr) expr).getItems()) {
+                items.add(required(eval(item), item));
+            }
+            return items;
+        } else if (expr instanceof HashExpr) {
+            HashExpr hash = (HashExpr) expr;
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < hash.getKeys().size(); i++) {
+                Object key = required(eval(hash.getKeys().get(i)), hash.getKeys().get(i));
+                if (!(key instanceof String)) {
+                    throw error("Hash literal keys must be strings, but " + describe(hash.getKeys().get(i)) + " is " + typeName(key));
+                }
+                map.put((String) key, required(eval(hash.getValues().get(i)), hash.getValues().get(i)));
+            }
+            return map;
+        }
+        throw error("Unsupported expression: " + expr);
+    }
+
+    boolean evalBoolean(FtlExpr expr) throws TemplateException {
+        Object value = required(eval(expr), expr);
+        if (!(value instanceof Boolean)) {
+            throw error("Expected a boolean, but " + describe(expr) + " has evaluated to " + typeName(value));
+        }
+        return (Boolean) value;
+    }
+
+    /**
+     * ${...} 的输出：字符串原样、数字按 locale 格式化；布尔值、序列与哈希不能直接输出
+     */
+    String toOutput(FtlExpr expr) throws TemplateException {
+        return toOutput(eval(expr), expr);
+    }
+
+    String toOutput(Object value, FtlExpr expr) throws TemplateException {
+        required(value, expr);
+        if (value instanceof Number) {
+            return formatNumber((Number) value);
+        }
+        String scalar = asScalar(value);
+        if (scalar == null) {
+            throw error("Can't convert " + describe(expr) + " (" + typeName(value) + ") to string automatically");
+        }
+        return scalar;
+    }
+
+    /**
+     * #switch 与 == 的比较：数字按值、字符串与布尔按相等，类型不同时报错
+     */
+    boolean isEqual(Object left, FtlExpr leftExpr, Object right, FtlExpr rightExpr) throws TemplateException {
+        required(left, leftExpr);
+        required(right, rightExpr);
+        if (left instanceof Number && right instanceof Number) {
+            return toBigDecimal((Number) left).compareTo(toBigDecimal((Number) right)) == 0;
+        }
+        if (left instanceof Boolean && right instanceof Boolean) {
+            return left.equals(right);
+        }
+        String l = left instanceof Boolean ? null : asScalar(left);
+        String r = right instanceof Boolean ? null : asScalar(right);
+        if (l == null || r == null) {
+            throw error("Can't compare values of these types: " + typeName(left) + " and " + typeName(right));
+        }
+        return l.equals(r);
+    }
+
+    /**
+     * #list 可迭代的值：序列、集合与数组，其余返回 null
+     */
+    static Iterator<?> iterator(Object value) {
+        if (value instanceof Iterable && !(value instanceof Map)) {
+            return ((Iterable<?>) value).iterator();
+        }
+        if (value != null && value.getClass().isArray()) {
+            return arrayAsList(value).iterator();
+        }
+        return null;
+    }
+
+    // ==================== 变量与成员 ====================
+
+    private Object evalPath(String path) throws TemplateException {
+        int dot = path.indexOf('.');
+        if (dot < 0) {
+            return scope.lookup(path);
+        }
+        Object current = scope.lookup(path.substring(0, dot));
+        int start = dot + 1;
+        while (true) {
+            int next = path.indexOf('.', start);
+            String name = next < 0 ? path.substring(start) : path.substring(start, next);
+            if (current == null) {
+                throw missing(path.substring(0, start - 1));
+            }
+            current = member(current, name, path.substring(0, start - 1));
+            if (next < 0) {
+                return current;
+            }
+            start = next + 1;
+        }
+    }
+
+    // 编译后的路径：不再切分字符串，Bean 属性走缓存的访问器
+    private Object evalPath(PathExpr path) throws TemplateException {
+        Object current = scope.lookup(path.getHead());
+        for (PathExpr.Segment segment : path.getSegments()) {
+            if (current == null) {
+                throw missing(segment.getOwner());
+            }
+            if (current instanceof Map) {
+                current = ((Map<?, ?>) current).get(segment.getName());
+            } else if (!isBean(current)) {
+                throw error("Expected a hash, but " + segment.getOwner() + " has evaluated to " + typeName(current));
+            } else {
+                PropertyAccessors.PropertyAccessor accessor = segment.accessor(current.getClass());
+                current = accessor != null ? accessor.get(current) : null;
+            }
+        }
+        return current;
+    }
+
+    private Object member(Object target, String name, FtlExpr targetExpr) throws TemplateException {
+        if (target == null) {
+            throw missing(describe(targetExpr));
+        }
+        return member(target, name, describe(targetExpr));
+    }
+
+    private Object member(Object target, String name, String targetDesc) throws TemplateException {
+        if (target instanceof Map) {
+            return ((Map<?, ?>) target).get(name);
+        }
+        if (!isBean(target)) {
+            throw error("Expected a hash, but " + targetDesc + " has evaluated to " + typeName(target));
+        }
+        return PropertyAccessors.getBeanProperty(target, name);
+    }
+
+    private Object index(Object target, Object key, IndexExpr expr) throws TemplateException {
+        required(target, expr.getTarget());
+        required(key, expr.getIndex());
+        if (key instanceof Number) {
+            int i = ((Number) key).intValue();
+            if (i < 0) {
+                throw error("Negative index: " + i);
+            }
+            if (target instanceof List) {
+                List<?> list = (List<?>) target;
+                return i < list.size() ? list.get(i) : null;
+            }
+            if (target.getClass().isArray()) {
+                return i < Array.getLength(target) ? Array.get(target, i) : null;
+            }
+            if (target instanceof String) {
+                String s = (String) target;
+                if (i >= s.length()) {
+                    throw error("String index out of range: " + i);
+                }
+                return s.substring(i, i + 1);
+            }
+        } else if (key instanceof String) {
+            if (target instanceof Map || isBean(target)) {
+                return member(target, (String) key, describe(expr.getTarget()));
+            }
+        }
+        throw error("Can't index " + describe(expr.getTarget()) + " (" + typeName(target) + ") with " + typeName(key));
+    }
+
+    // ==================== 运算 ====================
+
+    private Object binary(BinaryExpr expr) throws TemplateException {
+        String op = expr.getOp();
+        switch (op) {
+            case "&&":
+                return evalBoolean(expr.getLeft()) && evalBoolean(expr.getRight());
+            case "||":
+                return evalBoolean(expr.getLeft()) || evalBoolean(expr.getRight());
+            case "==":
+            case "=":
+                return isEqual(eval(expr.getLeft()), expr.getLeft(), eval(expr.getRight()), expr.getRight());
+            case "!=":
+                return !isEqual(eval(expr.getLeft()), expr.getLeft(), eval(expr.getRight()), expr.getRight());
+            case "+":
+                return plus(expr);
+            default:
+                break;
+        }
+        BigDecimal left = toBigDecimal(number(expr.getLeft()));
+        BigDecimal right = toBigDecimal(number(expr.getRight()));
+        switch (op) {
+            case ">":
+            case "gt":
+                return left.compareTo(right) > 0;
+            case ">=":
+            case "gte":
+                return left.compareTo(right) >= 0;
+            case "<":
+            case "lt":
+                return left.compareTo(right) < 0;
+            case "<=":
+            case "lte":
+                return left.compareTo(right) <= 0;
+            case "-":
+                return left.subtract(right);
+            case "*":
+                return left.multiply(right);
+            case "/":
+                if (right.signum() == 0) {
+                    throw error("Division by zero: " + describe(expr));
+                }
+                int scale = Math.max(MIN_DIVISION_SCALE, Math.max(left.scale(), right.scale()));
+                return left.divide(right, scale, RoundingMode.HALF_UP);
+            case "%":
+                if (right.longValue() == 0) {
+                    throw error("Division by zero: " + describe(expr));
+                }
+                return left.longValue() % right.longValue();
+            default:
+                throw error("Unsupported operator: " + op);
+        }
+    }
+
+    private Object plus(BinaryExpr expr) throws TemplateException {
+        Object left = required(eval(expr.getLeft()), expr.getLeft());
+        Object right = required(eval(expr.getRight()), expr.getRight());
+        if (left instanceof Number && right instanceof Number) {
+            return toBigDecimal((Number) left).add(toBigDecimal((Number) right));
+        }
+        if (left instanceof List && right instanceof List) {
+            List<Object> joined = new ArrayList<>((List<?>) left);
+            joined.addAll((List<?>) right);
+            return joined;
+        }
+        if (left instanceof Map && right instanceof Map) {
+            Map<Object, Object> merged = new LinkedHashMap<>((Map<?, ?>) left);
+            merged.putAll((Map<?, ?>) right);
+            return merged;
+        }
+        String l = concatOperand(left, expr.getLeft());
+        String r = concatOperand(right, expr.getRight());
+        return l.concat(r);
+    }
+
+    private String concatOperand(Object value, FtlExpr expr) throws TemplateException {
+        if (value instanceof Number) {
+            return formatNumber((Number) value);
+        }
+        String scalar = asScalar(value);
+        if (scalar == null) {
+            throw error("Can't convert " + describe(expr) + " (" + typeName(value) + ") to string automatically");
+        }
+        return scalar;
+    }
+
+    private Object unary(UnaryExpr expr) throws TemplateException {
+        switch (expr.getOp()) {
+            case "!":
+                return !evalBoolean(expr.getOperand());
+            case "-":
+                return toBigDecimal(number(expr.getOperand())).negate();
+            case "+":
+                return number(expr.getOperand());
+            default:
+                throw error("Unsupported operator: " + expr.getOp());
+        }
+    }
+
+    private Object range(RangeExpr expr) throws TemplateException {
+        int start = number(expr.getStart()).intValue();
+        int end = number(expr.getEnd()).intValue();
+        switch (expr.getOp()) {
+            case "..":
+                return new IntRange(start, start <= end ? 1 : -1, Math.abs(end - start) + 1);
+            case "..<":
+            case "..!":
+                return new IntRange(start, start <= end ? 1 : -1, Math.abs(end - start));
+            case "..*":
+                return new IntRange(start, end >= 0 ? 1 : -1, Math.abs(end));
+            default:
+                throw error("Unsupported range operator: " + expr.getOp());
+        }
+    }
+
+    // ==================== 内建函数 ====================
+
+    /**
+     * 内建函数及其参数个数是否已实现
+     */
+    static boolean supportsBuiltIn(String name, int argCount) {
+        Set<Integer> argCounts = BUILT_INS.get(name);
+        return argCounts != null && argCounts.contains(argCount);
+    }
+
+    /**
+     * 内建函数的结果上能否继续取成员
+     */
+    static boolean supportsMemberOf(BuiltInExpr builtIn) {
+        return ELEMENT_BUILT_INS.contains(builtIn.getName());
+    }
+
+    private Object builtIn(BuiltInExpr expr) throws TemplateException {
+        String name = expr.getName();
+        List<FtlExpr> args = expr.getArgs();
+        if (LOOP_BUILT_INS.contains(name)) {
+            Interpretation.LoopState loop = expr.getTarget() instanceof IdentifierExpr
+                    ? scope.findLoop(((IdentifierExpr) expr.getTarget()).getName()) : null;
+            if (loop == null) {
+                throw error("The ?" + name + " built-in must be applied to a loop variable, but " + describe(expr.getTarget()) + " isn't one");
+            }
+            return loop.builtIn(name);
+        }
+        Object target = eval(expr.getTarget());
+        if ("has_content".equals(name)) {
+            return hasContent(target);
+        }
+        required(target, expr.getTarget());
+        switch (name) {
+            case "size":
+                if (target instanceof Collection) return ((Collection<?>) target).size();
+                if (target instanceof Map) return ((Map<?, ?>) target).size();
+                if (target.getClass().isArray()) return Array.getLength(target);
+                break;
+            case "length":
+                return string(target, expr).length();
+            case "upper_case":
+                return string(target, expr).toUpperCase(locale);
+            case "lower_case":
+                return string(target, expr).toLowerCase(locale);
+            case "cap_first":
+                return changeFirst(string(target, expr), true);
+            case "uncap_first":
+                return changeFirst(string(target, expr), false);
+            case "trim":
+                return string(target, expr).trim();
+            case "string":
+                return toStringBuiltIn(target, args, expr);
+            case "c":
+                if (target instanceof Number) return computerFormat((Number) target);
+                if (target instanceof Boolean) return target.toString();
+                return quote(string(target, expr));
+            case "first": {
+                Iterator<?> it = iterator(target);
+                if (it != null) return it.hasNext() ? it.next() : null;
+                break;
+            }
+            case "last":
+            case "reverse": {
+                List<?> list = sequence(target);
+                if (list == null) break;
+                if ("last".equals(name)) return list.isEmpty() ? null : list.get(list.size() - 1);
+                List<Object> reversed = new ArrayList<>(list);
+                Collections.reverse(reversed);
+                return reversed;
+            }
+            case "join": {
+                Iterator<?> it = iterator(target);
+                if (it == null) break;
+                String separator = stringArg(args, 0, expr);
+                StringBuilder sb = new StringBuilder();
+                while (it.hasNext()) {
+                    Object item = it.next();
+                    if (item == null) continue;
+                    if (sb.length() > 0) sb.append(separator);
+                    sb.append(concatOperand(item, expr));
+                }
+                return sb.toString();
+            }
+            case "contains":
+                return string(target, expr).contains(stringArg(args, 0, expr));
+            case "starts_with":
+                return string(target, expr).startsWith(stringArg(args, 0, expr));
+            case "ends_with":
+                return string(target, expr).endsWith(stringArg(args, 0, expr));
+            case "replace":
+                return string(target, expr).replace(stringArg(args, 0, expr), stringArg(args, 1, expr));
+            case "keys":
+                if (target instanceof Map) return new ArrayList<>(((Map<?, ?>) target).keySet());
+                break;
+            case "values":
+                if (target instanceof Map) return new ArrayList<>(((Map<?, ?>) target).values());
+                break;
+            case "abs":
+                return toBigDecimal(number(target, expr)).abs();
+            case "round":
+                // FreeMarker 的 round 在 .5 时向正无穷取整
+                return toBigDecimal(number(target, expr)).add(new BigDecimal("0.5")).setScale(0, RoundingMode.FLOOR);
+            case "floor":
+                return toBigDecimal(number(target, expr)).setScale(0, RoundingMode.FLOOR);
+            case "ceiling":
+                return toBigDecimal(number(target, expr)).setScale(0, RoundingMode.CEILING);
+            default:
+                throw error("Unsupported built-in: ?" + name);
+        }
+        throw error("The ?" + name + " built-in can't be applied to " + describe(expr.getTarget()) + " (" + typeName(target) + ")");
+    }
+
+    private Object toStringBuiltIn(Object target, List<FtlExpr> args, BuiltInExpr expr) throws TemplateException {
+        if (target instanceof Boolean) {
+            if (args.isEmpty()) return target.toString();
+            if (args.size() != 2) throw error("?string on a boolean expects 2 arguments");
+            return stringArg(args, (Boolean) target ? 0 : 1, expr);
+        }
+        if (target instanceof Number) {
+            if (args.isEmpty()) return formatNumber((Number) target);
+            if (args.size() != 1) throw error("?string on a number expects 1 argument");
+            return formatNumber((Number) target, stringArg(args, 0, expr));
+        }
+        return string(target, expr);
+    }
+
+    private static boolean hasContent(Object value) {
+        if (value == null) return false;
+        if (value instanceof String) return !((String) value).isEmpty();
+        if (value instanceof Collection) return !((Collection<?>) value).isEmpty();
+        if (value instanceof Map) return !((Map<?, ?>) value).isEmpty();
+        if (value instanceof Iterable) return ((Iterable<?>) value).iterator().hasNext();
+        if (value.getClass().isArray()) return Array.getLength(value) > 0;
+        return true;
+    }
+
+    // cap_first/uncap_first 作用于第一个非空白字符
+    private static String changeFirst(String s, boolean upper) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                char changed = upper ? Character.toUpperCase(c) : Character.toLowerCase(c);
+                return changed == c ? s : s.substring(0, i) + changed + s.substring(i + 1);
+            }
+        }
+        return s;
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // ==================== 数字 ====================
+
+    String formatNumber(Number number) {
+        if (numberFormat == null) {
+            // 按 locale 创建格式的代价较高，复制共享的原型
+            numberFormat = (NumberFormat) NUMBER_FORMATS.computeIfAbsent(locale, NumberFormat::getNumberInstance).clone();
+        }
+        return numberFormat.format(number instanceof BigDecimal || number instanceof BigInteger ? number : toBigDecimal(number));
+    }
+
+    private String formatNumber(Number number, String pattern) {
+        switch (pattern) {
+            case "number":
+                return formatNumber(number);
+            case "computer":
+                return computerFormat(number);
+            case "currency":
+                return NumberFormat.getCurrencyInstance(locale).format(toBigDecimal(number));
+            case "percent":
+                return NumberFormat.getPercentInstance(locale).format(toBigDecimal(number));
+            default:
+                return new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(locale)).format(toBigDecimal(number));
+        }
+    }
+
+    // ?c：不分组、不受 locale 影响的数字格式
+    private static String computerFormat(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short
+                || number instanceof Byte || number instanceof BigInteger) {
+            return number.toString();
+        }
+        if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d)) return "NaN";
+            if (Double.isInfinite(d)) return d > 0 ? "Infinity" : "-Infinity";
+        }
+        BigDecimal value = toBigDecimal(number);
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    private Number number(FtlExpr expr) throws TemplateException {
+        return number(eval(expr), expr);
+    }
+
+    private Number number(Object value, FtlExpr expr) throws TemplateException {
+        required(value, expr);
+        if (!(value instanceof Number)) {
+            throw error("Expected a number, but " + describe(expr) + " has evaluated to " + typeName(value));
+        }
+        if (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+            throw error("Can't do arithmetic with " + value);
+        }
+        return (Number) value;
+    }
+
+    // ==================== 类型辅助 ====================
+
+    private String string(Object value, BuiltInExpr expr) throws TemplateException {
+        String scalar = value instanceof Number || value instanceof Boolean ? null : asScalar(value);
+        if (scalar == null) {
+            throw error("The ?" + expr.getName() + " built-in expects a string, but " + describe(expr.getTarget()) + " is " + typeName(value));
+        }
+        return scalar;
+    }
+
+    private String stringArg(List<FtlExpr> args, int index, BuiltInExpr expr) throws TemplateException {
+        if (index >= args.size()) {
+            throw error("?" + expr.getName() + " expects at least " + (index + 1) + " argument(s)");
+        }
+        Object value = required(eval(args.get(index)), args.get(index));
+        return concatOperand(value, args.get(index));
+    }
+
+    private static List<?> sequence(Object value) {
+        if (value instanceof List) return (List<?>) value;
+        if (value != null && value.getClass().isArray()) return arrayAsList(value);
+        return null;
+    }
+
+    private static List<Object> arrayAsList(Object array) {
+        int length = Array.getLength(array);
+        List<Object> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(Array.get(array, i));
+        }
+        return list;
+    }
+
+    /**
+     * 可以当作字符串使用的值：字符串、字符以及普通 Java 对象（FreeMarker 以 toString() 输出）
+     */
+    private static String asScalar(Object value) {
+        if (value instanceof String) return (String) value;
+        if (value instanceof Character) return value.toString();
+        return isBean(value) && !(value instanceof Date) ? value.toString() : null;
+    }
+
+    private static boolean isBean(Object value) {
+        return value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Iterable || value instanceof Map
+                || value instanceof Interpretation.Macro || value.getClass().isArray());
+    }
+
+    private static String typeName(Object value) {
+        if (value instanceof String) return "string";
+        if (value instanceof Number) return "number";
+        if (value instanceof Boolean) return "boolean";
+        if (value instanceof Map) return "hash";
+        if (value instanceof List || value != null && value.getClass().isArray()) return "sequence";
+        if (value instanceof Iterable) return "collection";
+        if (value instanceof Interpretation.Macro) return "macro";
+        return value != null ? value.getClass().getSimpleName() : "null";
+    }
+
+    private Object required(Object value, FtlExpr expr) throws TemplateException {
+        if (value == null) {
+            throw missing(describe(expr));
+        }
+        return value;
+    }
+
+    static String describe(FtlExpr expr) {
+        if (expr instanceof PathExpr) return ((PathExpr) expr).getPath();
+        return expr instanceof IdentifierExpr ? ((IdentifierExpr) expr).getName() : String.valueOf(expr);
+    }
+
+    // 与 FreeMarker 一致：括号中的目标里任何缺失的引用都视为 null，其他错误照常抛出
+    private Object evalOptional(FtlExpr target, boolean grouped) throws TemplateException {
+        if (!grouped) {
+            return eval(target);
+        }
+        try {
+            return eval(target);
+        } catch (InvalidReferenceException e) {
+            return null;
+        }
+    }
+
+    static TemplateException missing(String description) {
+        return new InvalidReferenceException("The following has evaluated to null or missing: " + description, null);
+    }
+
+    static TemplateException error(String message) {
+        return new TemplateException(message, (Environment) null);
+    }
+
+    /**
+     * 区间字面量的惰性序列，不物化元素
+     */
+    private static final class IntRange extends AbstractList<Integer> implements RandomAccess {
+        private final int start;
+        private final int step;
+        private final int size;
+
+        IntRange(int start, int step, int size) {
+            this.start = start;
+            this.step = step;
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return start + index * step;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
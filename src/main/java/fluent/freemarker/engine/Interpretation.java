@@ -0,0 +1,565 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.FtlExpr;
+import freemarker.template.TemplateException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * 单次执行的渲染状态：持有输出目标、命名空间、全局变量与宏调用帧。
+ * 变量查找顺序与 FreeMarker 一致：循环变量 → 宏局部变量 → 命名空间（#assign、宏）→ #global → 数据模型。
+ * 既作为访问者直接执行 FtlNode 树，也为 {@link CompiledTemplate} 的编译步骤提供同样语义的指令操作。
+ * 每次渲染创建一个，不跨线程共享。
+ */
+@Slf4j
+final class Interpretation extends FtlBaseVisitor {
+    private final Map<String, ?> dataModel;
+    private final Map<String, Object> namespace = new HashMap<>();
+    private final Map<String, Object> globals = new HashMap<>();
+    private final ExpressionEvaluator evaluator;
+    private Writer out;
+    private Frame frame = new Frame(null);
+
+    Interpretation(Map<String, ?> dataModel, Locale locale, Writer out) {
+        this.dataModel = dataModel;
+        this.evaluator = new ExpressionEvaluator(this, locale);
+        this.out = out;
+    }
+
+    void execute(List<FtlNode> nodes) throws IOException, TemplateException {
+        // 与 FreeMarker 一样，宏在执行前就已定义，可以先调用后定义
+        List<Macro> macros = new ArrayList<>();
+        collectMacros(nodes, macros);
+        execute(scope -> scope.visitAll(nodes), macros);
+    }
+
+    void execute(Step body, Collection<Macro> macros) throws IOException, TemplateException {
+        for (Macro macro : macros) {
+            define(macro);
+        }
+        try {
+            body.execute(this);
+        } catch (RenderFailure e) {
+            throw e.cause;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ControlSignal ignored) {
+            // 顶层的 #break/#continue 没有可跳出的结构，结束渲染
+        }
+    }
+
+    private static void collectMacros(List<FtlNode> nodes, List<Macro> macros) {
+        if (nodes == null) return;
+        for (FtlNode node : nodes) {
+            if (node instanceof MacroNode) {
+                macros.add(macro((MacroNode) node));
+            } else {
+                for (List<FtlNode> body : AstInterpreter.children(node)) {
+                    collectMacros(body, macros);
+                }
+            }
+        }
+    }
+
+    private static Macro macro(MacroNode node) {
+        List<FtlNode> body = node.getBody();
+        return new Macro(node.getName(), node.getParams(), scope -> scope.visitAll(body));
+    }
+
+    // ==================== 变量 ====================
+
+    Object lookup(String name) {
+        List<LoopState> loops = frame.loops;
+        for (int i = loops.size() - 1; i >= 0; i--) {
+            if (loops.get(i).name.equals(name)) {
+                return loops.get(i).item;
+            }
+        }
+        if (frame.locals != null && frame.locals.containsKey(name)) {
+            return frame.locals.get(name);
+        }
+        if (namespace.containsKey(name)) {
+            return namespace.get(name);
+        }
+        if (globals.containsKey(name)) {
+            return globals.get(name);
+        }
+        return dataModel.get(name);
+    }
+
+    LoopState findLoop(String name) {
+        List<LoopState> loops = frame.loops;
+        for (int i = loops.size() - 1; i >= 0; i--) {
+            if (loops.get(i).name.equals(name)) {
+                return loops.get(i);
+            }
+        }
+        return null;
+    }
+
+    // ==================== 节点 ====================
+
+    @Override
+    public void visit(TextNode node) {
+        if (node.getText() != null) {
+            write(node.getText());
+        }
+    }
+
+    @Override
+    public void visit(NewlineNode node) {
+        write("\n");
+    }
+
+    @Override
+    public void visit(VarNode node) {
+        if (node.getExpression() != null) {
+            output(AstInterpreter.parse(node.getExpression()));
+        }
+    }
+
+    @Override
+    public void visit(IfNode node) {
+        visitAll(test(AstInterpreter.parse(node.getCondition())) ? node.getThenBlock() : node.getElseBlock());
+    }
+
+    @Override
+    public void visit(ListNode node) {
+        List<FtlNode> body = node.getBody();
+        list(node.getItem(), AstInterpreter.parse(node.getListExpression()), scope -> scope.visitAll(body));
+    }
+
+    @Override
+    public void visit(SepNode node) {
+        List<FtlNode> body = node.getBody();
+        sep(scope -> scope.visitAll(body));
+    }
+
+    @Override
+    public void visit(AssignNode node) {
+        assign(node.getVarName(), AstInterpreter.parse(node.getValueExpr()));
+    }
+
+    @Override
+    public void visit(GlobalNode node) {
+        global(node.getVar(), node.getExpr());
+    }
+
+    @Override
+    public void visit(LocalNode node) {
+        local(node.getVar(), node.getExpr());
+    }
+
+    @Override
+    public void visit(SwitchNode node) {
+        List<List<FtlExpr>> values = new ArrayList<>();
+        List<Step> bodies = new ArrayList<>();
+        if (node.getCases() != null) {
+            for (CaseNode c : node.getCases()) {
+                List<FtlNode> body = c.getBody();
+                values.add(c.getValues());
+                bodies.add(scope -> scope.visitAll(body));
+            }
+        }
+        List<FtlNode> defaultBody = node.getDefaultBody();
+        switchOn(node.getExpr(), values, bodies, scope -> scope.visitAll(defaultBody));
+    }
+
+    @Override
+    public void visit(BreakNode node) {
+        throw BreakSignal.INSTANCE;
+    }
+
+    @Override
+    public void visit(ContinueNode node) {
+        throw ContinueSignal.INSTANCE;
+    }
+
+    @Override
+    public void visit(MacroNode node) {
+        define(macro(node));
+    }
+
+    @Override
+    public void visit(MacroCallNode node) {
+        call(node.getName(), node.getArgs());
+    }
+
+    @Override
+    public void visit(AttemptNode node) {
+        List<FtlNode> attemptBody = node.getAttemptBody();
+        List<FtlNode> recoverBody = node.getRecoverBody();
+        attempt(scope -> scope.visitAll(attemptBody), scope -> scope.visitAll(recoverBody));
+    }
+
+    @Override
+    public void visit(FlushNode node) {
+        flush();
+    }
+
+    private void visitAll(List<FtlNode> nodes) {
+        if (nodes == null) return;
+        for (FtlNode n : nodes) {
+            if (n != null) n.accept(this);
+        }
+    }
+
+    // ==================== 指令操作：表达式已解析，子块以 Step 表示 ====================
+
+    void output(FtlExpr expr) {
+        try {
+            write(evaluator.toOutput(expr));
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+    }
+
+    // 生成的代码已求出值（如直接调用 getter），只需按插值规则格式化
+    void output(Object value, FtlExpr expr) {
+        try {
+            write(evaluator.toOutput(value, expr));
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+    }
+
+    boolean test(FtlExpr condition) {
+        try {
+            return evaluator.evalBoolean(condition);
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+    }
+
+    void list(String item, FtlExpr listExpr, Step body) {
+        LoopState loop = beginList(item, listExpr);
+        try {
+            while (nextItem(loop)) {
+                try {
+                    body.execute(this);
+                } catch (ContinueSignal ignored) {
+                    // 进入下一次迭代
+                }
+            }
+        } catch (BreakSignal ignored) {
+            // 结束循环
+        } finally {
+            endList();
+        }
+    }
+
+    /**
+     * 求值并压入一层循环；之后由 {@link #nextItem} 逐项推进，结束（包括异常退出）时必须调用 {@link #endList}
+     */
+    LoopState beginList(String item, FtlExpr listExpr) {
+        Iterator<?> items;
+        try {
+            Object value = evaluator.eval(listExpr);
+            if (value == null) {
+                throw ExpressionEvaluator.missing(ExpressionEvaluator.describe(listExpr));
+            }
+            items = ExpressionEvaluator.iterator(value);
+            if (items == null) {
+                throw ExpressionEvaluator.error("Expected a sequence or collection, but " + ExpressionEvaluator.describe(listExpr)
+                        + " is " + value.getClass().getSimpleName());
+            }
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+        LoopState loop = new LoopState(item, items);
+        frame.loops.add(loop);
+        return loop;
+    }
+
+    boolean nextItem(LoopState loop) {
+        Iterator<?> items = loop.items;
+        if (!items.hasNext()) return false;
+        loop.item = items.next();
+        loop.index++;
+        loop.hasNext = items.hasNext();
+        return true;
+    }
+
+    void endList() {
+        frame.loops.remove(frame.loops.size() - 1);
+    }
+
+    void sep(Step body) {
+        if (sepVisible()) {
+            body.execute(this);
+        }
+    }
+
+    // #sep 的内容只在最内层循环还有下一项时输出
+    boolean sepVisible() {
+        List<LoopState> loops = frame.loops;
+        if (loops.isEmpty()) {
+            throw new RenderFailure(ExpressionEvaluator.error("#sep must be inside a #list"));
+        }
+        return loops.get(loops.size() - 1).hasNext;
+    }
+
+    void assign(String name, FtlExpr expr) {
+        namespace.put(name, value(expr));
+    }
+
+    void global(String name, FtlExpr expr) {
+        globals.put(name, value(expr));
+    }
+
+    void local(String name, FtlExpr expr) {
+        if (frame.locals == null) {
+            throw new RenderFailure(ExpressionEvaluator.error("#local can only be used inside a macro: " + name));
+        }
+        frame.locals.put(name, value(expr));
+    }
+
+    void switchOn(FtlExpr expr, List<List<FtlExpr>> caseValues, List<Step> caseBodies, Step defaultBody) {
+        try {
+            Object value = value(expr);
+            boolean matched = false;
+            for (int i = 0; i < caseValues.size(); i++) {
+                // 命中后依次执行后续分支，直到 #break
+                if (!matched) {
+                    matched = matches(value, expr, caseValues.get(i));
+                }
+                if (matched) {
+                    caseBodies.get(i).execute(this);
+                }
+            }
+            defaultBody.execute(this);
+        } catch (BreakSignal ignored) {
+            // 跳出 #switch
+        }
+    }
+
+    private boolean matches(Object value, FtlExpr valueExpr, List<FtlExpr> candidates) {
+        if (candidates == null) return false;
+        try {
+            for (FtlExpr candidate : candidates) {
+                if (evaluator.isEqual(value, valueExpr, evaluator.eval(candidate), candidate)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+    }
+
+    void define(Macro macro) {
+        namespace.put(macro.name, macro);
+    }
+
+    void call(String name, Map<String, FtlExpr> args) {
+        Object callee = lookup(name);
+        if (!(callee instanceof Macro)) {
+            throw new RenderFailure(callee == null
+                    ? ExpressionEvaluator.missing(name)
+                    : ExpressionEvaluator.error("Expected a macro, but " + name + " is " + callee.getClass().getSimpleName()));
+        }
+        Macro macro = (Macro) callee;
+        Map<String, Object> locals = new HashMap<>();
+        if (args != null) {
+            for (Map.Entry<String, FtlExpr> arg : args.entrySet()) {
+                if (!macro.params.containsKey(arg.getKey())) {
+                    throw new RenderFailure(ExpressionEvaluator.error("Macro " + macro.name + " has no parameter with name " + arg.getKey()));
+                }
+                locals.put(arg.getKey(), value(arg.getValue()));
+            }
+        }
+        for (Map.Entry<String, String> param : macro.params.entrySet()) {
+            if (locals.containsKey(param.getKey())) continue;
+            // 默认值以字符串字面量写出，空值表示必填参数
+            if (param.getValue() == null || param.getValue().isEmpty()) {
+                throw new RenderFailure(ExpressionEvaluator.error("Macro " + macro.name + " requires parameter " + param.getKey()));
+            }
+            locals.put(param.getKey(), param.getValue());
+        }
+        Frame caller = frame;
+        frame = new Frame(locals);
+        try {
+            macro.body.execute(this);
+        } finally {
+            frame = caller;
+        }
+    }
+
+    void attempt(Step attemptBody, Step recoverBody) {
+        // 尝试块的输出先缓冲，失败时整体丢弃再执行恢复块
+        Writer target = out;
+        StringWriter buffer = new StringWriter();
+        boolean failed = false;
+        out = buffer;
+        try {
+            attemptBody.execute(this);
+        } catch (RenderFailure e) {
+            log.debug("Error in #attempt block, executing #recover: {}", e.cause.getMessage());
+            failed = true;
+        } finally {
+            out = target;
+        }
+        if (failed) {
+            recoverBody.execute(this);
+        } else {
+            write(buffer.toString());
+        }
+    }
+
+    static void breakOut() {
+        throw BreakSignal.INSTANCE;
+    }
+
+    static void continueLoop() {
+        throw ContinueSignal.INSTANCE;
+    }
+
+    void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object value(FtlExpr expr) {
+        try {
+            Object value = evaluator.eval(expr);
+            if (value == null) {
+                throw ExpressionEvaluator.missing(ExpressionEvaluator.describe(expr));
+            }
+            return value;
+        } catch (TemplateException e) {
+            throw new RenderFailure(e);
+        }
+    }
+
+    void write(String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 直接输出到 UTF-8 字节流时，静态片段以编码好的字节整块写出
+    void write(StaticText text) {
+        byte[] utf8 = out instanceof Utf8Output ? text.utf8() : null;
+        if (utf8 == null) {
+            write(text.getText());
+            return;
+        }
+        try {
+            ((Utf8Output) out).writeUtf8(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ==================== 执行状态 ====================
+
+    /**
+     * 一段可执行的模板内容：直接执行时包装子节点列表，编译后是预先构建好的步骤
+     */
+    @FunctionalInterface
+    interface Step {
+        void execute(Interpretation scope);
+    }
+
+    /**
+     * 已定义的宏：参数默认值与宏体
+     */
+    static final class Macro {
+        private final String name;
+        private final Map<String, String> params;
+        private final Step body;
+
+        Macro(String name, Map<String, String> params, Step body) {
+            this.name = name;
+            this.params = params != null ? params : Collections.emptyMap();
+            this.body = body;
+        }
+    }
+
+    /**
+     * 宏调用帧：宏局部变量（顶层为 null）与本帧内的循环变量。宏体内看不到调用方的循环变量
+     */
+    private static final class Frame {
+        private final Map<String, Object> locals;
+        private final List<LoopState> loops = new ArrayList<>();
+
+        Frame(Map<String, Object> locals) {
+            this.locals = locals;
+        }
+    }
+
+    /**
+     * 一层 #list 的循环变量及其 ?index、?has_next 等状态
+     */
+    static final class LoopState {
+        private final String name;
+        private final Iterator<?> items;
+        private Object item;
+        private int index = -1;
+        private boolean hasNext;
+
+        LoopState(String name, Iterator<?> items) {
+            this.name = name;
+            this.items = items;
+        }
+
+        Object builtIn(String builtIn) {
+            switch (builtIn) {
+                case "index":
+                    return index;
+                case "counter":
+                    return index + 1;
+                case "has_next":
+                    return hasNext;
+                case "is_first":
+                    return index == 0;
+                case "is_last":
+                    return !hasNext;
+                case "item_parity":
+                    return index % 2 == 0 ? "odd" : "even";
+                case "is_odd_item":
+                    return index % 2 == 0;
+                case "is_even_item":
+                    return index % 2 != 0;
+                default:
+                    throw new IllegalArgumentException(builtIn);
+            }
+        }
+    }
+
+    // 指令操作不能抛出受检异常，模板错误包装后在 execute 中还原
+    private static final class RenderFailure extends RuntimeException {
+        private final TemplateException cause;
+
+        RenderFailure(TemplateException cause) {
+            super(cause.getMessage(), cause, false, false);
+            this.cause = cause;
+        }
+    }
+
+    // #break/#continue 的控制流信号，不收集栈；生成的循环代码按类型捕获
+    private static class ControlSignal extends RuntimeException {
+        ControlSignal() {
+            super(null, null, false, false);
+        }
+    }
+
+    static final class BreakSignal extends ControlSignal {
+        static final BreakSignal INSTANCE = new BreakSignal();
+    }
+
+    static final class ContinueSignal extends ControlSignal {
+        static final ContinueSignal INSTANCE = new ContinueSignal();
+    }
+}
@@ -0,0 +1,53 @@
+package fluent.freemarker.engine;
+
+import freemarker.cache.StatefulTemplateLoader;
+import freemarker.cache.TemplateLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 包装 Configuration 的 TemplateLoader，统计模板源被实际读取（首次加载或修改后重新加载）的次数；
+ * 是否重新加载仍由 FreeMarker 自己的模板缓存按修改时间判断
+ */
+final class LoadCountingTemplateLoader implements StatefulTemplateLoader {
+    private final TemplateLoader delegate;
+    private final LongAdder loads = new LongAdder();
+
+    LoadCountingTemplateLoader(TemplateLoader delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object findTemplateSource(String name) throws IOException {
+        return delegate.findTemplateSource(name);
+    }
+
+    @Override
+    public long getLastModified(Object templateSource) {
+        return delegate.getLastModified(templateSource);
+    }
+
+    @Override
+    public Reader getReader(Object templateSource, String encoding) throws IOException {
+        loads.increment();
+        return delegate.getReader(templateSource, encoding);
+    }
+
+    @Override
+    public void closeTemplateSource(Object templateSource) throws IOException {
+        delegate.closeTemplateSource(templateSource);
+    }
+
+    @Override
+    public void resetState() {
+        if (delegate instanceof StatefulTemplateLoader) {
+            ((StatefulTemplateLoader) delegate).resetState();
+        }
+    }
+
+    long getLoadCount() {
+        return loads.sum();
+    }
+}
@@ -0,0 +1,86 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.PropertyAccessors;
+import fluent.freemarker.utils.PropertyAccessors.PropertyAccessor;
+
+/**
+ * 编译后的点号路径（如 user.address.city）：预先切分各段与报错用的前缀，
+ * 每段缓存最近一次访问的 Bean 类型及其属性访问器，类型不变时直接调用访问器。
+ * 只在 {@link CompiledTemplate} 内部使用，缓存的竞争写入无害，可在线程间共享。
+ */
+final class PathExpr implements FtlExpr {
+    private final String path;
+    private final String head;
+    private final Segment[] segments;
+
+    PathExpr(String path) {
+        this.path = path;
+        String[] parts = path.split("\\.");
+        this.head = parts[0];
+        this.segments = new Segment[parts.length - 1];
+        int end = head.length();
+        for (int i = 1; i < parts.length; i++) {
+            segments[i - 1] = new Segment(parts[i], path.substring(0, end));
+            end += 1 + parts[i].length();
+        }
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getHead() {
+        return head;
+    }
+
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return "Identifier{" + path + "}";
+    }
+
+    /**
+     * 路径中的一段：属性名、所属对象的路径描述与单态访问器缓存
+     */
+    static final class Segment {
+        private final String name;
+        private final String owner;
+        private volatile Binding binding;
+
+        Segment(String name, String owner) {
+            this.name = name;
+            this.owner = owner;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getOwner() {
+            return owner;
+        }
+
+        PropertyAccessor accessor(Class<?> type) {
+            Binding cached = binding;
+            if (cached == null || cached.type != type) {
+                cached = new Binding(type, PropertyAccessors.findBeanProperty(type, name));
+                binding = cached;
+            }
+            return cached.accessor;
+        }
+    }
+
+    private static final class Binding {
+        private final Class<?> type;
+        private final PropertyAccessor accessor; // 属性不存在时为 null
+
+        Binding(Class<?> type, PropertyAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
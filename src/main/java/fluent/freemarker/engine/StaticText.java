@@ -0,0 +1,36 @@
+package fluent.freemarker.engine;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 编译后的静态文本片段。第一次输出到 UTF-8 字节流时编码并缓存字节，之后整块写出。
+ * 首尾是半个代理对的片段不能单独编码，始终按字符输出。
+ */
+final class StaticText {
+    private static final byte[] UNENCODABLE = new byte[0];
+
+    private final String text;
+    private volatile byte[] utf8;
+
+    StaticText(String text) {
+        this.text = text;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    /**
+     * UTF-8 编码后的字节，不能单独编码时返回 null
+     */
+    byte[] utf8() {
+        byte[] encoded = utf8;
+        if (encoded == null) {
+            boolean standalone = !Character.isLowSurrogate(text.charAt(0))
+                    && !Character.isHighSurrogate(text.charAt(text.length() - 1));
+            encoded = standalone ? text.getBytes(StandardCharsets.UTF_8) : UNENCODABLE;
+            utf8 = encoded;
+        }
+        return encoded == UNENCODABLE ? null : encoded;
+    }
+}
@@ -0,0 +1,210 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.engine.Interpretation.Macro;
+import fluent.freemarker.engine.Interpretation.Step;
+
+import java.util.*;
+
+/**
+ * 把 FtlNode 树编译为 {@link CompiledTemplate}：空白裁剪只做一次，相邻静态文本合并为一个常量，
+ * 表达式预先解析，点号路径换成带访问器缓存的 {@link PathExpr}，指令换成直接调用 {@link Interpretation} 操作的步骤。
+ * 每次编译创建一个，收集到的宏随编译结果一起保存。
+ * 步骤是普通的 lambda，访问器按运行时类型缓存；{@link BytecodeCompiler} 生成类时用它构建未生成代码的指令，
+ * 运行时不支持隐藏类时整棵树都由这里编译。
+ */
+final class TemplateCompiler {
+    private static final Step EMPTY = scope -> {
+    };
+
+    private final List<Macro> macros = new ArrayList<>();
+
+    static CompiledTemplate compile(List<FtlNode> nodes, Locale locale, boolean stripWhitespace) {
+        TemplateCompiler compiler = new TemplateCompiler();
+        Step body = compiler.block(stripWhitespace ? WhitespaceStripper.strip(nodes) : nodes);
+        return new CompiledTemplate(body, compiler.macros, locale);
+    }
+
+    // 供 BytecodeCompiler 取回单独构建的步骤中定义的宏
+    List<Macro> getMacros() {
+        return macros;
+    }
+
+    // ==================== 节点 ====================
+
+    private Step block(List<FtlNode> nodes) {
+        if (nodes == null) return EMPTY;
+        List<Step> steps = new ArrayList<>(nodes.size());
+        StringBuilder text = new StringBuilder();
+        for (FtlNode node : nodes) {
+            if (node == null || node instanceof CommentNode) continue;
+            if (node instanceof TextNode) {
+                if (((TextNode) node).getText() != null) text.append(((TextNode) node).getText());
+                continue;
+            }
+            if (node instanceof NewlineNode) {
+                text.append('\n');
+                continue;
+            }
+            flushText(text, steps);
+            steps.add(step(node));
+        }
+        flushText(text, steps);
+        if (steps.isEmpty()) return EMPTY;
+        if (steps.size() == 1) return steps.get(0);
+        Step[] sequence = steps.toArray(new Step[0]);
+        return scope -> {
+            for (Step step : sequence) {
+                step.execute(scope);
+            }
+        };
+    }
+
+    private static void flushText(StringBuilder text, List<Step> steps) {
+        if (text.length() == 0) return;
+        StaticText constant = new StaticText(text.toString());
+        text.setLength(0);
+        steps.add(scope -> scope.write(constant));
+    }
+
+    Step step(FtlNode node) {
+        if (node instanceof VarNode) {
+            FtlExpr expr = parse(((VarNode) node).getExpression());
+            return scope -> scope.output(expr);
+        } else if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            FtlExpr condition = parse(ifNode.getCondition());
+            Step thenBlock = block(ifNode.getThenBlock());
+            Step elseBlock = block(ifNode.getElseBlock());
+            return scope -> (scope.test(condition) ? thenBlock : elseBlock).execute(scope);
+        } else if (node instanceof ListNode) {
+            ListNode list = (ListNode) node;
+            String item = list.getItem();
+            FtlExpr listExpr = parse(list.getListExpression());
+            Step body = block(list.getBody());
+            return scope -> scope.list(item, listExpr, body);
+        } else if (node instanceof SepNode) {
+            Step body = block(((SepNode) node).getBody());
+            return scope -> scope.sep(body);
+        } else if (node instanceof AssignNode) {
+            String name = ((AssignNode) node).getVarName();
+            FtlExpr expr = parse(((AssignNode) node).getValueExpr());
+            return scope -> scope.assign(name, expr);
+        } else if (node instanceof GlobalNode) {
+            String name = ((GlobalNode) node).getVar();
+            FtlExpr expr = compile(((GlobalNode) node).getExpr());
+            return scope -> scope.global(name, expr);
+        } else if (node instanceof LocalNode) {
+            String name = ((LocalNode) node).getVar();
+            FtlExpr expr = compile(((LocalNode) node).getExpr());
+            return scope -> scope.local(name, expr);
+        } else if (node instanceof SwitchNode) {
+            return switchStep((SwitchNode) node);
+        } else if (node instanceof BreakNode) {
+            return scope -> Interpretation.breakOut();
+        } else if (node instanceof ContinueNode) {
+            return scope -> Interpretation.continueLoop();
+        } else if (node instanceof MacroNode) {
+            MacroNode macroNode = (MacroNode) node;
+            Macro macro = new Macro(macroNode.getName(), macroNode.getParams(), block(macroNode.getBody()));
+            macros.add(macro);
+            return scope -> scope.define(macro);
+        } else if (node instanceof MacroCallNode) {
+            MacroCallNode call = (MacroCallNode) node;
+            String name = call.getName();
+            Map<String, FtlExpr> args = compileAll(call.getArgs());
+            return scope -> scope.call(name, args);
+        } else if (node instanceof AttemptNode) {
+            AttemptNode attempt = (AttemptNode) node;
+            Step attemptBody = block(attempt.getAttemptBody());
+            Step recoverBody = block(attempt.getRecoverBody());
+            return scope -> scope.attempt(attemptBody, recoverBody);
+        } else if (node instanceof FlushNode) {
+            return Interpretation::flush;
+        }
+        throw new IllegalArgumentException("Cannot compile node: " + node);
+    }
+
+    private Step switchStep(SwitchNode node) {
+        FtlExpr expr = compile(node.getExpr());
+        List<List<FtlExpr>> values = new ArrayList<>();
+        List<Step> bodies = new ArrayList<>();
+        if (node.getCases() != null) {
+            for (CaseNode c : node.getCases()) {
+                values.add(compileAll(c.getValues()));
+                bodies.add(block(c.getBody()));
+            }
+        }
+        Step defaultBody = block(node.getDefaultBody());
+        return scope -> scope.switchOn(expr, values, bodies, defaultBody);
+    }
+
+    // ==================== 表达式 ====================
+
+    static FtlExpr parse(String expression) {
+        return compile(AstInterpreter.parse(expression));
+    }
+
+    private static FtlExpr compile(FtlExpr expr) {
+        if (expr instanceof IdentifierExpr) {
+            String name = ((IdentifierExpr) expr).getName();
+            return isPath(name) ? new PathExpr(name) : expr;
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return new BinaryExpr(compile(binary.getLeft()), binary.getOp(), compile(binary.getRight()));
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr unary = (UnaryExpr) expr;
+            return new UnaryExpr(unary.getOp(), compile(unary.getOperand()));
+        } else if (expr instanceof MemberExpr) {
+            MemberExpr member = (MemberExpr) expr;
+            return new MemberExpr(compile(member.getTarget()), member.getName());
+        } else if (expr instanceof IndexExpr) {
+            IndexExpr index = (IndexExpr) expr;
+            return new IndexExpr(compile(index.getTarget()), compile(index.getIndex()));
+        } else if (expr instanceof BuiltInExpr) {
+            BuiltInExpr builtIn = (BuiltInExpr) expr;
+            return new BuiltInExpr(compile(builtIn.getTarget()), builtIn.getName(), compileAll(builtIn.getArgs()));
+        } else if (expr instanceof ExistsExpr) {
+            ExistsExpr exists = (ExistsExpr) expr;
+            return new ExistsExpr(compile(exists.getTarget()), exists.isGrouped());
+        } else if (expr instanceof DefaultExpr) {
+            DefaultExpr defaultExpr = (DefaultExpr) expr;
+            FtlExpr defaultValue = defaultExpr.getDefaultValue();
+            return new DefaultExpr(compile(defaultExpr.getTarget()), defaultValue != null ? compile(defaultValue) : null, defaultExpr.isGrouped());
+        } else if (expr instanceof RangeExpr) {
+            RangeExpr range = (RangeExpr) expr;
+            return new RangeExpr(compile(range.getStart()), range.getOp(), range.getEnd() != null ? compile(range.getEnd()) : null);
+        } else if (expr instanceof SequenceExpr) {
+            return new SequenceExpr(compileAll(((SequenceExpr) expr).getItems()));
+        } else if (expr instanceof HashExpr) {
+            HashExpr hash = (HashExpr) expr;
+            return new HashExpr(compileAll(hash.getKeys()), compileAll(hash.getValues()));
+        }
+        // 字面量与编译前已排除的方法调用、RawExpr
+        return expr;
+    }
+
+    private static List<FtlExpr> compileAll(List<FtlExpr> exprs) {
+        if (exprs == null) return null;
+        List<FtlExpr> compiled = new ArrayList<>(exprs.size());
+        for (FtlExpr expr : exprs) {
+            compiled.add(compile(expr));
+        }
+        return compiled;
+    }
+
+    private static Map<String, FtlExpr> compileAll(Map<String, FtlExpr> exprs) {
+        if (exprs == null) return null;
+        Map<String, FtlExpr> compiled = new LinkedHashMap<>();
+        for (Map.Entry<String, FtlExpr> entry : exprs.entrySet()) {
+            compiled.put(entry.getKey(), compile(entry.getValue()));
+        }
+        return compiled;
+    }
+
+    // 只有各段都非空的点号路径才值得预先切分
+    private static boolean isPath(String name) {
+        return name != null && name.indexOf('.') > 0 && !name.endsWith(".") && !name.contains("..");
+    }
+}
@@ -0,0 +1,261 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.FtlNode;
+import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.CacheStats;
+import fluent.freemarker.utils.LruCache;
+import freemarker.cache.CacheStorage;
+import freemarker.cache.CacheStorageWithGetSize;
+import freemarker.cache.TemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 长生命周期、线程安全的渲染引擎：共享一个 {@link Configuration}，
+ * 并缓存已编译的内联 {@link Template}，相同的模板内容第二次渲染时不再解析；
+ * 文件模板交给 Configuration 自带的模板缓存，修改后按 templateUpdateDelay 重新加载。
+ * FtlNode 树可以直接由 {@link #getInterpreter()} 执行，或经 {@link #compile(List)} 编译后缓存。
+ */
+@Slf4j
+public class TemplateEngine {
+    public static final int DEFAULT_MAX_CACHED_TEMPLATES = 256;
+
+    private static final TemplateEngine DEFAULT = new TemplateEngine(createDefaultConfiguration(), DEFAULT_MAX_CACHED_TEMPLATES);
+
+    @Getter
+    private final Configuration configuration;
+    private final LruCache<String, Template> templateCache; // 按内联模板内容缓存
+    private final LruCache<CompileKey, CompiledTemplate> compiledCache; // 按节点树结构与变量类型缓存编译结果
+    @Getter
+    private final AstInterpreter interpreter; // 直接执行 FtlNode 树，与模板使用同一 Configuration
+    private final LongAdder fileRequests = new LongAdder();
+
+    public TemplateEngine(Configuration configuration, int maxCachedTemplates) {
+        this.configuration = configuration;
+        this.templateCache = new LruCache<>(maxCachedTemplates);
+        this.compiledCache = new LruCache<>(maxCachedTemplates);
+        this.interpreter = new AstInterpreter(configuration);
+    }
+
+    public TemplateEngine(int maxCachedTemplates) {
+        this(createDefaultConfiguration(), maxCachedTemplates);
+    }
+
+    /**
+     * 进程内共享的默认引擎
+     */
+    public static TemplateEngine getDefault() {
+        return DEFAULT;
+    }
+
+    public static Configuration createDefaultConfiguration() {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
+        cfg.setClassForTemplateLoading(TemplateEngine.class, "/");
+        cfg.setDefaultEncoding("UTF-8");
+        return cfg;
+    }
+
+    /**
+     * 获取内联模板（按模板内容缓存）
+     */
+    public Template getTemplate(String templateContent) throws IOException {
+        Template cached = templateCache.get(templateContent);
+        if (cached != null) {
+            return cached;
+        }
+        Template template = new Template("inline", templateContent, configuration);
+        return templateCache.putIfAbsent(templateContent, template);
+    }
+
+    /**
+     * 获取文件模板：由 Configuration 的模板缓存负责缓存与过期检查，文件修改后会重新加载
+     */
+    public Template getFileTemplate(String templatePath) throws IOException {
+        loadCounter();
+        fileRequests.increment();
+        return configuration.getTemplate(templatePath);
+    }
+
+    // 在 Configuration 当前的 TemplateLoader 外包一层计数；调用方之后替换了 TemplateLoader 时重新包装
+    private LoadCountingTemplateLoader loadCounter() {
+        TemplateLoader loader = configuration.getTemplateLoader();
+        if (loader instanceof LoadCountingTemplateLoader) {
+            return (LoadCountingTemplateLoader) loader;
+        }
+        synchronized (configuration) {
+            loader = configuration.getTemplateLoader();
+            if (loader instanceof LoadCountingTemplateLoader) {
+                return (LoadCountingTemplateLoader) loader;
+            }
+            LoadCountingTemplateLoader counter = new LoadCountingTemplateLoader(loader);
+            configuration.setTemplateLoader(counter);
+            return counter;
+        }
+    }
+
+    /**
+     * 编译节点树，之后反复渲染不再解析表达式与裁剪空白。节点不可变且自带结构哈希，
+     * 分别构建出的相同节点树命中同一编译结果。
+     * 节点树必须在 {@link AstInterpreter#supports(List)} 的范围内，否则应生成模板文本交给 FreeMarker 渲染
+     */
+    public CompiledTemplate compile(List<FtlNode> nodes) {
+        return compile(nodes, Collections.emptyMap(), null);
+    }
+
+    /**
+     * 编译节点树，并按给定的变量类型把插值中的点号路径绑定为对 getter 的直接调用（属性须为 typeRegistry 已知）。
+     * 按节点树结构与变量类型缓存；生成的类随缓存条目一起被回收
+     */
+    public CompiledTemplate compile(List<FtlNode> nodes, Map<String, Class<?>> variableTypes, TypeRegistry typeRegistry) {
+        List<FtlNode> tree = Collections.unmodifiableList(new ArrayList<>(nodes));
+        Map<String, Class<?>> types = typeRegistry != null ? new HashMap<>(variableTypes) : Collections.emptyMap();
+        CompileKey key = new CompileKey(tree, types);
+        CompiledTemplate cached = compiledCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (!AstInterpreter.supports(tree)) {
+            throw new IllegalArgumentException("Nodes use directives or expressions that cannot be compiled; render the generated FTL instead");
+        }
+        CompiledTemplate compiled = BytecodeCompiler.compile(tree, configuration.getLocale(), configuration.getWhitespaceStripping(),
+                types, typeRegistry);
+        return compiledCache.putIfAbsent(key, compiled);
+    }
+
+    public String render(String templateContent, Object dataModel) throws IOException, TemplateException {
+        return process(getTemplate(templateContent), dataModel);
+    }
+
+    public String renderFromFile(String templatePath, Object dataModel) throws IOException, TemplateException {
+        return process(getFileTemplate(templatePath), dataModel);
+    }
+
+    /**
+     * 直接渲染到调用方提供的 Writer；模板中的 {@code <#flush>} 会刷新该 Writer
+     */
+    public void render(String templateContent, Object dataModel, Writer out) throws IOException, TemplateException {
+        getTemplate(templateContent).process(dataModel, out);
+    }
+
+    public void renderFromFile(String templatePath, Object dataModel, Writer out) throws IOException, TemplateException {
+        getFileTemplate(templatePath).process(dataModel, out);
+    }
+
+    /**
+     * 以 UTF-8 编码直接写入 OutputStream，不产生中间 String；不会关闭流
+     */
+    public void render(String templateContent, Object dataModel, OutputStream out) throws IOException, TemplateException {
+        Writer writer = newUtf8Writer(out);
+        render(templateContent, dataModel, writer);
+        writer.flush();
+    }
+
+    public void renderFromFile(String templatePath, Object dataModel, OutputStream out) throws IOException, TemplateException {
+        Writer writer = newUtf8Writer(out);
+        renderFromFile(templatePath, dataModel, writer);
+        writer.flush();
+    }
+
+    /**
+     * 以 UTF-8 编码直接写入 NIO 通道；不会关闭通道
+     */
+    public void render(String templateContent, Object dataModel, WritableByteChannel channel) throws IOException, TemplateException {
+        Writer writer = newUtf8Writer(channel);
+        render(templateContent, dataModel, writer);
+        writer.flush();
+    }
+
+    public void renderFromFile(String templatePath, Object dataModel, WritableByteChannel channel) throws IOException, TemplateException {
+        Writer writer = newUtf8Writer(channel);
+        renderFromFile(templatePath, dataModel, writer);
+        writer.flush();
+    }
+
+    private String process(Template template, Object dataModel) throws IOException, TemplateException {
+        try (Writer out = new StringWriter()) {
+            template.process(dataModel, out);
+            return out.toString();
+        }
+    }
+
+    /**
+     * UTF-8 编码的 Writer；flush 时把已编码字节写到底层流
+     */
+    public static Writer newUtf8Writer(OutputStream out) {
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    public static Writer newUtf8Writer(WritableByteChannel channel) {
+        return Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+    }
+
+    public CacheStats getCacheStats() {
+        return templateCache.stats();
+    }
+
+    /**
+     * 文件模板的统计：未命中为模板源被实际读取的次数（含修改后的重新加载，以及模板内 include/import 的加载），
+     * 其余请求计为命中；大小为 Configuration 模板缓存的条目数
+     */
+    public CacheStats getFileCacheStats() {
+        long requests = fileRequests.sum();
+        long loads = loadCounter().getLoadCount();
+        CacheStorage storage = configuration.getCacheStorage();
+        int size = storage instanceof CacheStorageWithGetSize ? ((CacheStorageWithGetSize) storage).getSize() : 0;
+        return new CacheStats(Math.max(0, requests - loads), loads, 0, size);
+    }
+
+    public CacheStats getCompiledCacheStats() {
+        return compiledCache.stats();
+    }
+
+    public void clearCache() {
+        templateCache.clear();
+        compiledCache.clear();
+        configuration.clearTemplateCache();
+    }
+
+    // 编译缓存键：节点树（结构哈希）与绑定的变量类型
+    private static final class CompileKey {
+        private final List<FtlNode> nodes;
+        private final Map<String, Class<?>> variableTypes;
+        private final int hash;
+
+        CompileKey(List<FtlNode> nodes, Map<String, Class<?>> variableTypes) {
+            this.nodes = nodes;
+            this.variableTypes = variableTypes;
+            this.hash = 31 * nodes.hashCode() + variableTypes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CompileKey)) return false;
+            CompileKey that = (CompileKey) o;
+            return hash == that.hash && nodes.equals(that.nodes) && variableTypes.equals(that.variableTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
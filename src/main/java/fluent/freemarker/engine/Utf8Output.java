@@ -0,0 +1,133 @@
+package fluent.freemarker.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 直接输出 UTF-8 字节的 Writer：动态文本逐字符编码进缓冲区，
+ * 预先编码好的静态片段通过 {@link #writeUtf8(byte[])} 整块写出，不再逐字符编码。
+ * 不成对的代理字符与 String.getBytes(UTF_8) 一样输出为 '?'。每次渲染创建一个，结束时调用 {@link #finish()}，不关闭底层流。
+ */
+final class Utf8Output extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    private char highSurrogate; // 等待低位代理的高位代理，0 表示没有
+
+    Utf8Output(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeUtf8(byte[] bytes) throws IOException {
+        endPendingSurrogate();
+        if (bytes.length > buffer.length - count) {
+            flushBuffer();
+            if (bytes.length >= buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            encode(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * 渲染结束：输出悬空的代理字符与缓冲内容并刷新底层流
+     */
+    void finish() throws IOException {
+        endPendingSurrogate();
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    private void encode(char c) throws IOException {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ensure(4);
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            put('?');
+        }
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            ensure(2);
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            ensure(3);
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void endPendingSurrogate() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            put('?');
+        }
+    }
+
+    private void put(char ascii) throws IOException {
+        ensure(1);
+        buffer[count++] = (byte) ascii;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (count + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package fluent.freemarker.engine;
+
+import fluent.freemarker.ast.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按节点写成模板文本后的布局，重现 FreeMarker 解析时的 white-space stripping：
+ * 相邻文本合并为一个文本块，只含 FTL 标签与空白的行去掉行首缩进与行尾换行；
+ * 夹在 #assign、#global、#local、#macro、注释之间（或位于模板首尾）的纯空白文本块整个去掉。
+ * 行号按 FtlSourceWriter 的输出计算，标签都写在一行内。返回裁剪后的节点树，未受影响的子树原样复用。
+ */
+final class WhitespaceStripper {
+
+    private enum Kind {
+        TEXT,
+        INTERPOLATION,
+        // 不产生输出的指令，宏定义的内容不参与相邻节点的查找
+        NON_OUTPUTTING,
+        OTHER
+    }
+
+    /**
+     * 与 FreeMarker TemplateElement 对应的布局节点：文本块、插值、指令与指令内的各个块
+     */
+    private static final class Element {
+        private final Kind kind;
+        private final List<Element> children; // 叶子节点为 null
+        private Element parent;
+        private int index;
+        private int beginLine;
+        private int endLine;
+        private boolean beginsLine; // 文本块从行首开始
+        private String source; // 文本块的原文
+        private String text;
+
+        Element(Kind kind, boolean container) {
+            this.kind = kind;
+            this.children = container ? new ArrayList<>() : null;
+        }
+
+        Element previousSibling() {
+            return parent != null && index > 0 ? parent.children.get(index - 1) : null;
+        }
+
+        Element nextSibling() {
+            return parent != null && index + 1 < parent.children.size() ? parent.children.get(index + 1) : null;
+        }
+
+        boolean isLeaf() {
+            return children == null || children.isEmpty() || kind == Kind.NON_OUTPUTTING;
+        }
+    }
+
+    private final Element root = new Element(Kind.OTHER, true);
+    private final List<Element> blocks = new ArrayList<>(); // 文本块，按文档顺序
+    private int line = 1;
+    private boolean lineStart = true;
+    private int next; // 重建时的文本块下标
+
+    static List<FtlNode> strip(List<FtlNode> nodes) {
+        WhitespaceStripper stripper = new WhitespaceStripper();
+        stripper.layout(stripper.root, nodes);
+        stripper.cleanup(stripper.root);
+        for (Element block : stripper.blocks) {
+            if (!block.text.equals(block.source)) {
+                return stripper.rebuild(nodes);
+            }
+        }
+        return nodes;
+    }
+
+    // ==================== 布局：与 FtlSourceWriter 的输出顺序一致 ====================
+
+    private void layout(Element parent, List<FtlNode> nodes) {
+        if (nodes == null) return;
+        StringBuilder run = new StringBuilder();
+        for (FtlNode node : nodes) {
+            if (isText(node)) {
+                run.append(textOf(node));
+                continue;
+            }
+            flushText(parent, run);
+            layout(parent, node);
+        }
+        flushText(parent, run);
+    }
+
+    private void layout(Element parent, FtlNode node) {
+        if (node instanceof VarNode) {
+            leaf(parent, Kind.INTERPOLATION);
+        } else if (node instanceof AssignNode || node instanceof GlobalNode
+                || node instanceof LocalNode || node instanceof CommentNode) {
+            leaf(parent, Kind.NON_OUTPUTTING);
+        } else if (node instanceof MacroNode) {
+            Element macro = open(parent, Kind.NON_OUTPUTTING);
+            layout(macro, ((MacroNode) node).getBody());
+            close(macro);
+        } else if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            Element ifBlock = open(parent, Kind.OTHER);
+            Element thenBlock = open(ifBlock, Kind.OTHER);
+            layout(thenBlock, ifNode.getThenBlock());
+            close(thenBlock);
+            if (ifNode.getElseBlock() != null && !ifNode.getElseBlock().isEmpty()) {
+                Element elseBlock = open(ifBlock, Kind.OTHER);
+                layout(elseBlock, ifNode.getElseBlock());
+                close(elseBlock);
+            }
+            close(ifBlock);
+        } else if (node instanceof ListNode) {
+            block(parent, ((ListNode) node).getBody());
+        } else if (node instanceof SepNode) {
+            block(parent, ((SepNode) node).getBody());
+        } else if (node instanceof SwitchNode) {
+            SwitchNode switchNode = (SwitchNode) node;
+            Element switchBlock = open(parent, Kind.OTHER);
+            if (switchNode.getCases() != null) {
+                for (CaseNode c : switchNode.getCases()) {
+                    if (c != null) block(switchBlock, c.getBody());
+                }
+            }
+            if (switchNode.getDefaultBody() != null && !switchNode.getDefaultBody().isEmpty()) {
+                block(switchBlock, switchNode.getDefaultBody());
+            }
+            close(switchBlock);
+        } else if (node instanceof AttemptNode) {
+            AttemptNode attempt = (AttemptNode) node;
+            Element attemptBlock = open(parent, Kind.OTHER);
+            Element attempted = open(attemptBlock, Kind.OTHER);
+            layout(attempted, attempt.getAttemptBody());
+            close(attempted);
+            if (attempted.children.isEmpty()) {
+                // FreeMarker 用没有位置信息的空文本块代替空的尝试块，查找同一行的节点时到此为止
+                attempted.beginLine = 0;
+                attempted.endLine = 0;
+            }
+            if (attempt.getRecoverBody() != null && !attempt.getRecoverBody().isEmpty()) {
+                block(attemptBlock, attempt.getRecoverBody());
+            }
+            close(attemptBlock);
+        } else {
+            // #flush、#break、#continue、宏调用
+            leaf(parent, Kind.OTHER);
+        }
+    }
+
+    private void block(Element parent, List<FtlNode> body) {
+        Element block = open(parent, Kind.OTHER);
+        layout(block, body);
+        close(block);
+    }
+
+    private Element open(Element parent, Kind kind) {
+        Element element = add(parent, new Element(kind, true));
+        element.beginLine = line;
+        lineStart = false;
+        return element;
+    }
+
+    private void close(Element element) {
+        element.endLine = line;
+        lineStart = false;
+    }
+
+    private void leaf(Element parent, Kind kind) {
+        Element element = add(parent, new Element(kind, false));
+        element.beginLine = line;
+        element.endLine = line;
+        lineStart = false;
+    }
+
+    private void flushText(Element parent, StringBuilder run) {
+        if (run.length() == 0) return;
+        String text = run.toString();
+        run.setLength(0);
+        Element block = add(parent, new Element(Kind.TEXT, false));
+        block.source = text;
+        block.text = text;
+        block.beginLine = line;
+        block.beginsLine = lineStart;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            block.endLine = line;
+            // \r\n 算一个换行
+            if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+                line++;
+            }
+        }
+        char last = text.charAt(text.length() - 1);
+        lineStart = last == '\n' || last == '\r';
+        blocks.add(block);
+    }
+
+    private static Element add(Element parent, Element element) {
+        element.parent = parent;
+        element.index = parent.children.size();
+        parent.children.add(element);
+        return element;
+    }
+
+    // 写成模板后与相邻文本连成一片的节点：文本、换行以及不输出内容的节点
+    private static boolean isText(FtlNode node) {
+        return node == null || node instanceof TextNode || node instanceof NewlineNode
+                || node instanceof CommentNode && ((CommentNode) node).getText() == null;
+    }
+
+    private static String textOf(FtlNode node) {
+        if (node instanceof NewlineNode) return "\n";
+        if (node instanceof TextNode && ((TextNode) node).getText() != null) return ((TextNode) node).getText();
+        return "";
+    }
+
+    // ==================== 裁剪：与 FreeMarker 的 postParseCleanup 顺序一致 ====================
+
+    private void cleanup(Element element) {
+        if (element.kind == Kind.TEXT) {
+            strip(element);
+            return;
+        }
+        if (element.children == null) return;
+        for (Element child : element.children) {
+            cleanup(child);
+        }
+        // 只有一个节点的模板不是 MixedContent，没有可去掉的兄弟文本
+        if (element != root || element.children.size() > 1) {
+            removeIgnorable(element);
+        }
+    }
+
+    private void removeIgnorable(Element parent) {
+        List<Element> children = parent.children;
+        for (int i = 0; i < children.size(); i++) {
+            Element child = children.get(i);
+            if (child.kind == Kind.TEXT && isIgnorable(child)) {
+                child.text = "";
+                children.remove(i);
+                for (int j = i; j < children.size(); j++) {
+                    children.get(j).index = j;
+                }
+                i--;
+            }
+        }
+    }
+
+    private void strip(Element block) {
+        String text = block.text;
+        if (text.isEmpty()) return;
+        // 模板开头的文本不裁剪
+        if (block.parent == root && block.previousSibling() == null) return;
+        int trailing = trailingCharsToStrip(block);
+        int opening = openingCharsToStrip(block);
+        if (opening == 0 && trailing == 0) return;
+        block.text = text.substring(opening, text.length() - trailing);
+        if (opening > 0) {
+            block.beginLine++;
+            block.beginsLine = true;
+        }
+    }
+
+    // 第一行只有空白、且同一行前面的节点都不在意空白时，去掉第一行（含换行符）
+    private int openingCharsToStrip(Element block) {
+        String text = block.text;
+        int newline = firstNewLineIndex(text);
+        if (newline == -1 && !block.beginsLine) return 0;
+        newline++;
+        if (text.length() > newline && newline > 0 && text.charAt(newline - 1) == '\r' && text.charAt(newline) == '\n') {
+            newline++;
+        }
+        if (!isTrimmableToEmpty(text, 0, newline)) return 0;
+        for (Element e = prevTerminalNode(block); e != null && e.endLine == block.beginLine; e = prevTerminalNode(e)) {
+            if (heedsOpeningWhitespace(e)) return 0;
+        }
+        return newline;
+    }
+
+    // 最后一行只有空白、且同一行后面的节点都不在意空白时，去掉最后一行的缩进
+    private int trailingCharsToStrip(Element block) {
+        String text = block.text;
+        int newline = lastNewLineIndex(text);
+        if (newline == -1 && !block.beginsLine) return 0;
+        if (!isTrimmableToEmpty(text, newline + 1, text.length())) return 0;
+        for (Element e = nextTerminalNode(block); e != null && e.beginLine == block.endLine; e = nextTerminalNode(e)) {
+            if (heedsTrailingWhitespace(e)) return 0;
+        }
+        return text.length() - (newline + 1);
+    }
+
+    private boolean heedsOpeningWhitespace(Element element) {
+        if (element.kind == Kind.INTERPOLATION) return true;
+        if (element.kind != Kind.TEXT || isIgnorable(element)) return false;
+        String text = element.text;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') return false;
+            if (!Character.isWhitespace(c)) return true;
+        }
+        return true;
+    }
+
+    private boolean heedsTrailingWhitespace(Element element) {
+        if (element.kind == Kind.INTERPOLATION) return true;
+        if (element.kind != Kind.TEXT || isIgnorable(element)) return false;
+        String text = element.text;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') return false;
+            if (!Character.isWhitespace(c)) return true;
+        }
+        return true;
+    }
+
+    // 纯空白文本块两侧都是不输出内容的指令（或模板首尾）时整个去掉
+    private boolean isIgnorable(Element block) {
+        if (block.text.isEmpty()) return true;
+        if (!isTrimmableToEmpty(block.text, 0, block.text.length())) return false;
+        boolean topLevel = block.parent == root;
+        Element previous = block.previousSibling();
+        Element following = block.nextSibling();
+        return (previous == null ? topLevel : previous.kind == Kind.NON_OUTPUTTING)
+                && (following == null ? topLevel : following.kind == Kind.NON_OUTPUTTING);
+    }
+
+    private static Element prevTerminalNode(Element element) {
+        Element previous = element.previousSibling();
+        if (previous != null) {
+            while (!previous.isLeaf()) {
+                previous = previous.children.get(previous.children.size() - 1);
+            }
+            return previous;
+        }
+        return element.parent != null ? prevTerminalNode(element.parent) : null;
+    }
+
+    private static Element nextTerminalNode(Element element) {
+        Element following = element.nextSibling();
+        if (following != null) {
+            while (!following.isLeaf()) {
+                following = following.children.get(0);
+            }
+            return following;
+        }
+        return element.parent != null ? nextTerminalNode(element.parent) : null;
+    }
+
+    private static int firstNewLineIndex(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static int lastNewLineIndex(String text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n') return i;
+        }
+        return -1;
+    }
+
+    // 与 FreeMarker 一致，不大于空格的字符都算空白
+    private static boolean isTrimmableToEmpty(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
+    // ==================== 重建：按与布局相同的顺序消费文本块 ====================
+
+    private List<FtlNode> rebuild(List<FtlNode> nodes) {
+        if (nodes == null) return null;
+        List<FtlNode> result = new ArrayList<>(nodes.size());
+        boolean changed = false;
+        int i = 0;
+        while (i < nodes.size()) {
+            FtlNode node = nodes.get(i);
+            if (!isText(node)) {
+                FtlNode rebuilt = rebuild(node);
+                changed |= rebuilt != node;
+                result.add(rebuilt);
+                i++;
+                continue;
+            }
+            int end = i;
+            boolean hasText = false;
+            while (end < nodes.size() && isText(nodes.get(end))) {
+                hasText |= !textOf(nodes.get(end)).isEmpty();
+                end++;
+            }
+            Element block = hasText ? blocks.get(next++) : null;
+            if (block == null || block.text.equals(block.source)) {
+                result.addAll(nodes.subList(i, end));
+            } else {
+                // 裁剪过的一段文本合并为一个节点
+                if (!block.text.isEmpty()) result.add(new TextNode(block.text));
+                changed = true;
+            }
+            i = end;
+        }
+        return changed ? result : nodes;
+    }
+
+    private FtlNode rebuild(FtlNode node) {
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            List<FtlNode> thenBlock = rebuild(ifNode.getThenBlock());
+            List<FtlNode> elseBlock = rebuild(ifNode.getElseBlock());
+            return thenBlock == ifNode.getThenBlock() && elseBlock == ifNode.getElseBlock()
+                    ? node : new IfNode(ifNode.getCondition(), thenBlock, elseBlock);
+        } else if (node instanceof ListNode) {
+            ListNode list = (ListNode) node;
+            List<FtlNode> body = rebuild(list.getBody());
+            return body == list.getBody() ? node : new ListNode(list.getItem(), list.getListExpression(), body);
+        } else if (node instanceof MacroNode) {
+            MacroNode macro = (MacroNode) node;
+            List<FtlNode> body = rebuild(macro.getBody());
+            return body == macro.getBody() ? node : new MacroNode(macro.getName(), macro.getParams(), body);
+        } else if (node instanceof SepNode) {
+            List<FtlNode> body = rebuild(((SepNode) node).getBody());
+            return body == ((SepNode) node).getBody() ? node : new SepNode(body);
+        } else if (node instanceof SwitchNode) {
+            return rebuild((SwitchNode) node);
+        } else if (node instanceof AttemptNode) {
+            AttemptNode attempt = (AttemptNode) node;
+            List<FtlNode> attemptBody = rebuild(attempt.getAttemptBody());
+            List<FtlNode> recoverBody = rebuild(attempt.getRecoverBody());
+            return attemptBody == attempt.getAttemptBody() && recoverBody == attempt.getRecoverBody()
+                    ? node : new AttemptNode(attemptBody, recoverBody);
+        }
+        return node;
+    }
+
+    private FtlNode rebuild(SwitchNode node) {
+        boolean changed = false;
+        List<CaseNode> cases = null;
+        if (node.getCases() != null) {
+            cases = new ArrayList<>(node.getCases().size());
+            for (CaseNode c : node.getCases()) {
+                if (c == null) {
+                    cases.add(null);
+                    continue;
+                }
+                List<FtlNode> body = rebuild(c.getBody());
+                changed |= body != c.getBody();
+                cases.add(body == c.getBody() ? c : new CaseNode(c.getValues(), body));
+            }
+        }
+        List<FtlNode> defaultBody = rebuild(node.getDefaultBody());
+        changed |= defaultBody != node.getDefaultBody();
+        return changed ? new SwitchNode(node.getExpr(), cases, defaultBody) : node;
+    }
+}
@@ -2,17 +2,14 @@ package fluent.freemarker.inference;
 
 import fluent.freemarker.model.TypeInfo;
 import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.GenericTypes;
 import fluent.freemarker.validator.ValidationContext;
 
+import java.lang.reflect.Type;
 import java.util.*;
 
 public class GenericTypeInference implements VariableTypeInference, TypeNameExtractor {
-    private final Map<String, String> irregularPlurals = new HashMap<>();
-    private final List<PluralRule> pluralRules = new ArrayList<>();
-
-    public GenericTypeInference() {
-        initializeDefaultRules();
-    }
+    private final Singularizer singularizer = createDefaultSingularizer();
 
     // VariableTypeInference 接口实现
     @Override
@@ -24,13 +21,19 @@ public class GenericTypeInference implements VariableTypeInference, TypeNameExtr
         TypeRegistry typeRegistry = getTypeRegistry(context);
         if (typeRegistry == null) return null;
 
+        // 优先使用声明类型，集合元素只从泛型参数推断
+        Type declared = context.getFreemarkerContext().resolveDeclaredType(varName);
+        if (declared == null) {
+            declared = GenericTypes.observedType(value);
+        }
+
         // 处理不同类型的值
         if (value instanceof Collection) {
-            return inferCollectionType((Collection<?>) value, typeRegistry);
+            return inferElementType(GenericTypes.elementType(declared), Collection.class, typeRegistry);
         } else if (value.getClass().isArray()) {
-            return inferArrayType(value, typeRegistry);
+            return inferElementType(value.getClass().getComponentType(), Object[].class, typeRegistry);
         } else if (value instanceof Map) {
-            return inferMapType((Map<?, ?>) value, typeRegistry);
+            return inferElementType(GenericTypes.mapValueType(declared), Map.class, typeRegistry);
         } else {
             return typeRegistry.getTypeInfo(value.getClass());
         }
@@ -69,29 +72,15 @@ public class GenericTypeInference implements VariableTypeInference, TypeNameExtr
 
     @Override
     public String inferSingularForm(String pluralName) {
-        if (pluralName == null || pluralName.isEmpty()) {
-            return pluralName;
-        }
-
-        // 检查不规则映射
-        String singular = irregularPlurals.get(pluralName.toLowerCase());
-        if (singular != null) {
-            return preserveCase(pluralName, singular);
-        }
-
-        // 应用规则映射
-        for (PluralRule rule : pluralRules) {
-            if (pluralName.toLowerCase().matches(".*" + rule.getPluralPattern())) {
-                return pluralName.replaceAll("(?i)" + rule.getPluralPattern() + "$", rule.getSingularReplacement());
-            }
-        }
-
-        return pluralName;
+        return singularizer.singularize(pluralName);
     }
 
+    /**
+     * 新增复数规则（线程安全），优先级高于已有规则
+     */
     @Override
     public void addPluralRule(String pluralPattern, String singularReplacement) {
-        pluralRules.add(0, new PluralRule(pluralPattern, singularReplacement));
+        singularizer.addRule(pluralPattern, singularReplacement);
     }
 
     // 私有辅助方法
@@ -105,46 +94,15 @@ public class GenericTypeInference implements VariableTypeInference, TypeNameExtr
                 context.getFreemarkerContext().getTypeRegistry() : null;
     }
 
-    private TypeInfo inferCollectionType(Collection<?> collection, TypeRegistry typeRegistry) {
-        if (collection.isEmpty()) {
-            return typeRegistry.getTypeInfo(Collection.class);
-        }
-
-        Object firstElement = collection.iterator().next();
-        return firstElement != null ?
-                typeRegistry.getTypeInfo(firstElement.getClass()) :
-                typeRegistry.getTypeInfo(Object.class);
+    private TypeInfo inferElementType(Type elementType, Class<?> containerType, TypeRegistry typeRegistry) {
+        return elementType != null ?
+                typeRegistry.getTypeInfo(GenericTypes.rawType(elementType)) :
+                typeRegistry.getTypeInfo(containerType);
     }
 
-    private TypeInfo inferArrayType(Object array, TypeRegistry typeRegistry) {
-        Class<?> componentType = array.getClass().getComponentType();
-        return componentType != null ?
-                typeRegistry.getTypeInfo(componentType) :
-                typeRegistry.getTypeInfo(Object[].class);
-    }
-
-    private TypeInfo inferMapType(Map<?, ?> map, TypeRegistry typeRegistry) {
-        if (map.isEmpty()) {
-            return typeRegistry.getTypeInfo(Map.class);
-        }
-
-        Object valueType = map.values().iterator().next();
-        return valueType != null ?
-                typeRegistry.getTypeInfo(valueType.getClass()) :
-                typeRegistry.getTypeInfo(Object.class);
-    }
-
-    private String preserveCase(String original, String replacement) {
-        if (original.equals(original.toUpperCase())) {
-            return replacement.toUpperCase();
-        } else if (Character.isUpperCase(original.charAt(0))) {
-            return Character.toUpperCase(replacement.charAt(0)) + replacement.substring(1);
-        }
-        return replacement;
-    }
-
-    private void initializeDefaultRules() {
+    private static Singularizer createDefaultSingularizer() {
         // 初始化不规则单复数映射
+        Map<String, String> irregularPlurals = new HashMap<>();
         irregularPlurals.put("children", "child");
         irregularPlurals.put("men", "man");
         irregularPlurals.put("women", "woman");
@@ -152,29 +110,17 @@ public class GenericTypeInference implements VariableTypeInference, TypeNameExtr
         irregularPlurals.put("feet", "foot");
         irregularPlurals.put("teeth", "tooth");
 
-        // 初始化后缀规则
-        pluralRules.add(new PluralRule("ies$", "y"));
-        pluralRules.add(new PluralRule("ves$", "f"));
-        pluralRules.add(new PluralRule("oes$", "o"));
-        pluralRules.add(new PluralRule("xes$", "x"));
-        pluralRules.add(new PluralRule("zes$", "z"));
-        pluralRules.add(new PluralRule("ches$", "ch"));
-        pluralRules.add(new PluralRule("shes$", "sh"));
-        pluralRules.add(new PluralRule("ses$", "s"));
-        pluralRules.add(new PluralRule("s$", ""));
-    }
-
-    // 内部类
-    private static class PluralRule {
-        private final String pluralPattern;
-        private final String singularReplacement;
-
-        public PluralRule(String pluralPattern, String singularReplacement) {
-            this.pluralPattern = pluralPattern;
-            this.singularReplacement = singularReplacement;
-        }
-
-        public String getPluralPattern() { return pluralPattern; }
-        public String getSingularReplacement() { return singularReplacement; }
+        // 初始化后缀规则，按优先级排列
+        List<String[]> pluralRules = Arrays.asList(
+                new String[]{"ies$", "y"},
+                new String[]{"ves$", "f"},
+                new String[]{"oes$", "o"},
+                new String[]{"xes$", "x"},
+                new String[]{"zes$", "z"},
+                new String[]{"ches$", "ch"},
+                new String[]{"shes$", "sh"},
+                new String[]{"ses$", "s"},
+                new String[]{"s$", ""});
+        return new Singularizer(irregularPlurals, pluralRules);
     }
 }
@@ -0,0 +1,170 @@
+package fluent.freemarker.inference;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 复数转单数：规则按优先级预编译，纯后缀规则（如 "ies$"）存入按字符倒序的 trie，
+ * 一次从词尾向前的扫描即可找到优先级最高的匹配；含正则元字符的规则预编译为 Pattern 后兜底。
+ * 规则集不可变，新增规则时整体替换（写时复制）；每个规则集自带并发的结果缓存，规则变化后旧缓存随之失效。
+ */
+final class Singularizer {
+
+    private static final int MAX_MEMO_SIZE = 4096;
+
+    private volatile RuleSet rules;
+
+    Singularizer(Map<String, String> irregulars, List<String[]> orderedRules) {
+        List<Rule> compiled = new ArrayList<>();
+        for (String[] rule : orderedRules) {
+            compiled.add(Rule.compile(rule[0], rule[1]));
+        }
+        TreeMap<String, String> irregularMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        irregularMap.putAll(irregulars);
+        this.rules = new RuleSet(irregularMap, compiled);
+    }
+
+    String singularize(String word) {
+        if (word == null || word.isEmpty()) {
+            return word;
+        }
+        RuleSet current = rules;
+        String cached = current.memo.get(word);
+        if (cached != null) {
+            return cached;
+        }
+        String result = current.apply(word);
+        if (current.memo.size() < MAX_MEMO_SIZE) {
+            current.memo.putIfAbsent(word, result);
+        }
+        return result;
+    }
+
+    /**
+     * 新增规则，优先级高于所有已有规则
+     */
+    synchronized void addRule(String pluralPattern, String singularReplacement) {
+        RuleSet current = rules;
+        List<Rule> ordered = new ArrayList<>(current.ordered.size() + 1);
+        ordered.add(Rule.compile(pluralPattern, singularReplacement));
+        ordered.addAll(current.ordered);
+        rules = new RuleSet(current.irregulars, ordered);
+    }
+
+    private static final class RuleSet {
+        private final SortedMap<String, String> irregulars;
+        private final List<Rule> ordered;
+        private final Node suffixTrie = new Node();
+        // 正则规则在 ordered 中的下标，升序
+        private final int[] patternRules;
+        private final Map<String, String> memo = new ConcurrentHashMap<>();
+
+        RuleSet(SortedMap<String, String> irregulars, List<Rule> ordered) {
+            this.irregulars = irregulars;
+            this.ordered = ordered;
+            int[] patterns = new int[ordered.size()];
+            int patternCount = 0;
+            for (int i = 0; i < ordered.size(); i++) {
+                Rule rule = ordered.get(i);
+                if (rule.suffix != null) {
+                    suffixTrie.insert(rule.suffix, i);
+                } else {
+                    patterns[patternCount++] = i;
+                }
+            }
+            this.patternRules = Arrays.copyOf(patterns, patternCount);
+        }
+
+        String apply(String word) {
+            // 检查不规则映射（忽略大小写）
+            String irregular = irregulars.get(word);
+            if (irregular != null) {
+                return preserveCase(word, irregular);
+            }
+
+            // 从词尾倒序走 trie，取优先级最高（下标最小）的后缀规则
+            int best = Integer.MAX_VALUE;
+            Node node = suffixTrie;
+            for (int i = word.length() - 1; i >= 0 && node != null; i--) {
+                node = node.child(Character.toLowerCase(word.charAt(i)));
+                if (node != null && node.ruleIndex < best) {
+                    best = node.ruleIndex;
+                }
+            }
+
+            // 优先级更高的正则规则
+            for (int index : patternRules) {
+                if (index >= best) break;
+                Rule rule = ordered.get(index);
+                Matcher matcher = rule.pattern.matcher(word);
+                if (matcher.find()) {
+                    return matcher.replaceFirst(rule.replacement);
+                }
+            }
+
+            if (best == Integer.MAX_VALUE) {
+                return word;
+            }
+            Rule rule = ordered.get(best);
+            return word.substring(0, word.length() - rule.suffix.length()) + rule.replacement;
+        }
+
+        private static String preserveCase(String original, String replacement) {
+            if (original.equals(original.toUpperCase())) {
+                return replacement.toUpperCase();
+            } else if (Character.isUpperCase(original.charAt(0))) {
+                return Character.toUpperCase(replacement.charAt(0)) + replacement.substring(1);
+            }
+            return replacement;
+        }
+    }
+
+    private static final class Rule {
+        // 纯后缀规则的小写后缀，正则规则为 null
+        private final String suffix;
+        private final Pattern pattern;
+        private final String replacement;
+
+        private Rule(String suffix, Pattern pattern, String replacement) {
+            this.suffix = suffix;
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+
+        static Rule compile(String pluralPattern, String singularReplacement) {
+            String body = pluralPattern.endsWith("$") ? pluralPattern.substring(0, pluralPattern.length() - 1) : pluralPattern;
+            if (isLiteral(body)) {
+                return new Rule(body.toLowerCase(Locale.ROOT), null, singularReplacement);
+            }
+            // 与原实现一致：忽略大小写并锚定词尾
+            return new Rule(null, Pattern.compile("(?i)(?:" + body + ")$"), singularReplacement);
+        }
+
+        private static boolean isLiteral(String body) {
+            if (body.isEmpty()) return false;
+            for (int i = 0; i < body.length(); i++) {
+                if (!Character.isLetterOrDigit(body.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private int ruleIndex = Integer.MAX_VALUE;
+
+        Node child(char c) {
+            return children.get(c);
+        }
+
+        void insert(String suffix, int index) {
+            Node node = this;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(suffix.charAt(i), k -> new Node());
+            }
+            node.ruleIndex = Math.min(node.ruleIndex, index);
+        }
+    }
+}
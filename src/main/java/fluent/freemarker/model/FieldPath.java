@@ -0,0 +1,111 @@
+package fluent.freemarker.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 预先切分好的字段路径，如 "profile.address.city" 或 "items[0].name"。
+ * 以 '.'、'[' 、']' 为分隔符，忽略空段；实例不可变并按原始字符串驻留，
+ * 重复校验同一路径时无需再次切分。
+ */
+public final class FieldPath {
+
+    private static final int MAX_INTERNED = 8192;
+    private static final ConcurrentMap<String, FieldPath> INTERNED = new ConcurrentHashMap<>();
+    private static final String[] NO_SEGMENTS = new String[0];
+
+    private final String path;
+    private final String[] segments;
+    private volatile FieldPath tail;
+
+    private FieldPath(String path, String[] segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    /**
+     * 获取（或创建并驻留）路径
+     */
+    public static FieldPath of(String path) {
+        if (path == null) path = "";
+        FieldPath cached = INTERNED.get(path);
+        if (cached != null) return cached;
+        FieldPath created = new FieldPath(path, tokenize(path));
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return created;
+        }
+        FieldPath existing = INTERNED.putIfAbsent(path, created);
+        return existing != null ? existing : created;
+    }
+
+    private static String[] tokenize(String path) {
+        List<String> parts = new ArrayList<>(4);
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || isSeparator(path.charAt(i))) {
+                if (i > start) {
+                    parts.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return parts.isEmpty() ? NO_SEGMENTS : parts.toArray(new String[0]);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '[' || c == ']';
+    }
+
+    /**
+     * 去掉首段后的路径（如 "order.profile.role" → "profile.role"），结果会被缓存
+     */
+    public FieldPath tail() {
+        FieldPath t = tail;
+        if (t == null) {
+            int dot = path.indexOf('.');
+            t = FieldPath.of(dot >= 0 ? path.substring(dot + 1) : "");
+            tail = t;
+        }
+        return t;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int size() {
+        return segments.length;
+    }
+
+    public String getSegment(int index) {
+        return segments[index];
+    }
+
+    public boolean isEmpty() {
+        return segments.length == 0;
+    }
+
+    public List<String> getSegments() {
+        return Arrays.asList(segments.clone());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FieldPath)) return false;
+        return path.equals(((FieldPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
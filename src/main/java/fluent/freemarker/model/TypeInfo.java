@@ -1,19 +1,36 @@
 package fluent.freemarker.model;
 
 import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.GenericTypes;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.beans.Introspector;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * 类型的字段元数据。构造时只反射本类的字段名与字段类型，
+ * 字段对应的 TypeInfo 在首次路径遍历时才向 TypeRegistry 解析并缓存，
+ * 因此自引用模型（如 Node.parent）不会无限递归，启动成本只与实际访问的路径相关。
+ */
 @Getter
 public class TypeInfo {
     private final Class<?> clazz;
-    private final Map<String, TypeInfo> fields = new HashMap<>();
     private final TypeRegistry registry;
+    // 字段名 → 字段声明类型，构造后不再修改
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Class<?>> fieldTypes = new HashMap<>();
+    // 字段名 → 带泛型参数的声明类型，仅记录与原始类型不同的字段（如 List<Order>）
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Type> genericFieldTypes = new HashMap<>();
+    // 字段名 → 已解析的 TypeInfo（懒加载）
+    @Getter(AccessLevel.NONE)
+    private final Map<String, TypeInfo> resolvedFields = new ConcurrentHashMap<>();
 
     // 私有构造，通过 TypeRegistry 创建
     public TypeInfo(Class<?> clazz, TypeRegistry registry) {
@@ -36,10 +53,9 @@ public class TypeInfo {
         try {
             for (Field field : clazz.getDeclaredFields()) {
                 if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) continue;
-                field.setAccessible(true);
-                // 使用 TypeRegistry 获取 TypeInfo（带缓存）
-                TypeInfo fieldTypeInfo = registry.getTypeInfo(field.getType());
-                fields.put(field.getName(), fieldTypeInfo);
+                // 只记录声明类型，TypeInfo 在遍历时再解析
+                fieldTypes.put(field.getName(), field.getType());
+                recordGenericType(field.getName(), field.getGenericType());
             }
 
             // 也可以从 getter 解析
@@ -57,9 +73,9 @@ public class TypeInfo {
                     name = Introspector.decapitalize(method.getName().substring(2));
                 }
 
-                if (name != null && !fields.containsKey(name)) {
-                    TypeInfo returnTypeInfo = registry.getTypeInfo(returnType);
-                    fields.put(name, returnTypeInfo);
+                if (name != null && !fieldTypes.containsKey(name)) {
+                    fieldTypes.put(name, returnType);
+                    recordGenericType(name, method.getGenericReturnType());
                 }
             }
         } catch (Exception e) {
@@ -68,6 +84,12 @@ public class TypeInfo {
         }
     }
 
+    private void recordGenericType(String name, Type genericType) {
+        if (!(genericType instanceof Class)) {
+            genericFieldTypes.put(name, genericType);
+        }
+    }
+
     private boolean isPrimitiveOrWrapper(Class<?> c) {
         return c.isPrimitive() ||
                 c == Boolean.class || c == Character.class ||
@@ -82,14 +104,74 @@ public class TypeInfo {
                 c.isEnum();
     }
 
+    /**
+     * 获取字段的 TypeInfo，首次访问时解析
+     */
+    public TypeInfo getField(String name) {
+        TypeInfo resolved = resolvedFields.get(name);
+        if (resolved != null) return resolved;
+        Class<?> fieldType = fieldTypes.get(name);
+        if (fieldType == null) return null;
+        resolved = registry.getTypeInfo(fieldType);
+        if (resolved == null) return null;
+        TypeInfo existing = resolvedFields.putIfAbsent(name, resolved);
+        return existing != null ? existing : resolved;
+    }
+
+    public Class<?> getFieldType(String name) {
+        return fieldTypes.get(name);
+    }
+
+    /**
+     * 字段的泛型声明类型（字段或 getter 的 generic type），无泛型参数时即原始类型
+     */
+    public Type getGenericFieldType(String name) {
+        Type generic = genericFieldTypes.get(name);
+        return generic != null ? generic : fieldTypes.get(name);
+    }
+
+    /**
+     * 集合或数组字段的元素类型，Map 字段取值类型；仅依据声明，未声明泛型参数时返回 null
+     */
+    public Class<?> getFieldElementType(String name) {
+        Type declared = getGenericFieldType(name);
+        if (declared == null) return null;
+        Type element = GenericTypes.elementType(declared);
+        if (element == null) {
+            element = GenericTypes.mapValueType(declared);
+        }
+        return element != null ? GenericTypes.rawType(element) : null;
+    }
+
+    public boolean hasField(String name) {
+        return fieldTypes.containsKey(name);
+    }
+
+    /**
+     * 解析全部直接字段（仅一层，不会沿类图展开）
+     */
+    public Map<String, TypeInfo> getFields() {
+        Map<String, TypeInfo> result = new HashMap<>();
+        for (String name : fieldTypes.keySet()) {
+            result.put(name, getField(name));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
     // ====== 业务方法 ======
     public boolean hasFieldPath(String path) {
         if (path == null || path.isEmpty()) return false;
-        String[] parts = path.split("[.\\[\\]]");
+        return hasFieldPath(FieldPath.of(path));
+    }
+
+    /**
+     * 沿字段图逐段查找；每个 TypeInfo 即是以字段名为键的 trie 节点，已解析的子节点会被缓存
+     */
+    public boolean hasFieldPath(FieldPath path) {
+        if (path == null || path.getPath().isEmpty()) return false;
         TypeInfo current = this;
-        for (String part : parts) {
-            if (part.isEmpty()) continue;
-            current = current.fields.get(part);
+        for (int i = 0, n = path.size(); i < n; i++) {
+            current = current.getField(path.getSegment(i));
             if (current == null) return false;
         }
         return true;
@@ -100,19 +182,19 @@ public class TypeInfo {
         String[] parts = partial.split("[.]", 2);
         String first = parts[0];
         if (parts.length == 1) {
-            return fields.keySet().stream()
+            return fieldTypes.keySet().stream()
                     .filter(name -> name.startsWith(first) || editDistance(name, first) <= 2)
                     .collect(Collectors.toSet());
         } else {
-            TypeInfo nested = fields.get(first);
-            return nested != null ? nested.getSuggestions(parts[1]) : fields.keySet().stream()
+            TypeInfo nested = getField(first);
+            return nested != null ? nested.getSuggestions(parts[1]) : fieldTypes.keySet().stream()
                     .filter(name -> name.startsWith(first))
                     .collect(Collectors.toSet());
         }
     }
 
     public Set<String> getAllFields() {
-        return new HashSet<>(fields.keySet());
+        return new HashSet<>(fieldTypes.keySet());
     }
 
     // 编辑距离
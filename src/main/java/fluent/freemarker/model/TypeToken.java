@@ -0,0 +1,83 @@
+package fluent.freemarker.model;
+
+import fluent.freemarker.utils.GenericTypes;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * 显式声明变量的泛型类型，用匿名子类捕获类型参数：
+ * <pre>
+ * context.var("orders", orders, new TypeToken&lt;List&lt;Order&gt;&gt;() {});
+ * </pre>
+ * 声明后类型检测只依赖该类型，不再查看集合内容。
+ */
+public abstract class TypeToken<T> {
+    private final Type type;
+
+    protected TypeToken() {
+        Type superclass = getClass().getGenericSuperclass();
+        if (!(superclass instanceof ParameterizedType)) {
+            throw new IllegalStateException("TypeToken must be created with a type argument, e.g. new TypeToken<List<Order>>() {}");
+        }
+        this.type = ((ParameterizedType) superclass).getActualTypeArguments()[0];
+    }
+
+    private TypeToken(Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("type must not be null");
+        }
+        this.type = type;
+    }
+
+    public static <T> TypeToken<T> of(Class<T> clazz) {
+        return new TypeToken<T>(clazz) {
+        };
+    }
+
+    public static TypeToken<?> of(Type type) {
+        return new TypeToken<Object>(type) {
+        };
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<?> getRawType() {
+        return GenericTypes.rawType(type);
+    }
+
+    /**
+     * 集合或数组的元素类型，未声明时为 null
+     */
+    public Type getElementType() {
+        return GenericTypes.elementType(type);
+    }
+
+    /**
+     * Map 的值类型，未声明时为 null
+     */
+    public Type getMapValueType() {
+        return GenericTypes.mapValueType(type);
+    }
+
+    public String getTypeName() {
+        return GenericTypes.typeName(type);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TypeToken && type.equals(((TypeToken<?>) o).type);
+    }
+
+    @Override
+    public int hashCode() {
+        return type.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return type.getTypeName();
+    }
+}
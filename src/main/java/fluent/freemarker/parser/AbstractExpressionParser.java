@@ -1,8 +1,12 @@
 package fluent.freemarker.parser;
 
 import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.ast.expr.IdentifierExpr;
+import fluent.freemarker.ast.expr.LiteralExpr;
 import fluent.freemarker.ast.expr.RawExpr;
 import fluent.freemarker.exception.ExpressionParseException;
+import fluent.freemarker.utils.ExpressionScanner;
+import fluent.freemarker.utils.StringLiterals;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -37,6 +41,50 @@ public abstract class AbstractExpressionParser implements ExpressionParser {
 
     protected abstract FtlExpr doParse(String expression) throws ExpressionParseException;
 
+    /**
+     * 解析单个操作数（字面量、变量引用或原始表达式），使用 ExpressionScanner 单遍分类
+     */
+    protected FtlExpr parseOperand(String source, int from, int to) {
+        from = ExpressionScanner.trimStart(source, from, to);
+        to = ExpressionScanner.trimEnd(source, from, to);
+        if (from >= to) {
+            return new LiteralExpr(null);
+        }
+        switch (ExpressionScanner.classify(source, from, to)) {
+            case NUMBER:
+                return new LiteralExpr(toNumber(source.substring(from, to), ExpressionScanner.isDecimal(source, from, to)));
+            case STRING: {
+                // 含插值或无法解码的字符串保持原文
+                String value = StringLiterals.valueOf(source, from, to);
+                return value != null ? new LiteralExpr(value) : new RawExpr(source.substring(from, to));
+            }
+            case BOOLEAN:
+                return new LiteralExpr(ExpressionScanner.regionEqualsIgnoreCase(source, from, to, "true"));
+            case IDENTIFIER:
+                return new IdentifierExpr(source.substring(from, to));
+            default:
+                return new RawExpr(source.substring(from, to));
+        }
+    }
+
+    /**
+     * 数字字面量转换：整数在 int 范围内返回 Integer，否则返回 Long；小数返回 Double
+     */
+    protected Number toNumber(String text, boolean decimal) {
+        if (!decimal) {
+            try {
+                long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // 超出 long 范围，按浮点数处理
+            }
+        }
+        return Double.valueOf(text);
+    }
+
     protected FtlExpr createDefaultExpression(String expression) {
         return new RawExpr(expression != null ? expression : "");
     }
@@ -0,0 +1,51 @@
+package fluent.freemarker.parser;
+
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.utils.CacheStats;
+import fluent.freemarker.utils.LruCache;
+
+/**
+ * 带有界 LRU 缓存的解析器包装：相同表达式字符串只解析一次，返回共享的不可变表达式树
+ */
+public class CachingExpressionParser implements ExpressionParser {
+
+    private final ExpressionParser delegate;
+    private final LruCache<String, FtlExpr> cache;
+
+    public CachingExpressionParser(ExpressionParser delegate, int maxSize) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        this.delegate = delegate;
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    @Override
+    public FtlExpr parse(String expression) {
+        if (expression == null) {
+            return delegate.parse(null);
+        }
+        FtlExpr cached = cache.get(expression);
+        if (cached != null) {
+            return cached;
+        }
+        return cache.putIfAbsent(expression, delegate.parse(expression));
+    }
+
+    @Override
+    public boolean supports(String expression) {
+        return delegate.supports(expression);
+    }
+
+    public ExpressionParser getDelegate() {
+        return delegate;
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+}
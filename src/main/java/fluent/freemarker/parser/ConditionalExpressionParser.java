@@ -4,6 +4,10 @@ import fluent.freemarker.ast.expr.FtlExpr;
 import fluent.freemarker.exception.ExpressionParseException;
 
 public class ConditionalExpressionParser extends AbstractExpressionParser {
+
+    // 解析器无状态，可共享
+    private static final BinaryExpressionParser BINARY_PARSER = new BinaryExpressionParser();
+
     @Override
     protected boolean doSupports(String expression) {
         return expression != null && (expression.contains(" > ") || expression.contains(" < ") || expression.contains(" >= ") || expression.contains(" <= ") || expression.contains(" == ") || expression.contains(" != ") || expression.contains(" && ") || expression.contains(" || "));
@@ -12,7 +16,6 @@ public class ConditionalExpressionParser extends AbstractExpressionParser {
     @Override
     protected FtlExpr doParse(String expression) throws ExpressionParseException {
         // 使用二元表达式解析器来处理
-        BinaryExpressionParser binaryParser = new BinaryExpressionParser();
-        return binaryParser.parse(expression);
+        return BINARY_PARSER.parse(expression);
     }
 }
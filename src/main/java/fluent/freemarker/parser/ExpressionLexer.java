@@ -0,0 +1,149 @@
+package fluent.freemarker.parser;
+
+import java.util.Arrays;
+
+/**
+ * 二元表达式的单遍词法分析器：把 [from, to) 区间切分为交替出现的“操作数”和“操作符”。
+ * 操作数保留原始区间（已去除首尾空白），括号、方括号、花括号及字符串字面量内部的字符不会被识别为操作符。
+ * 期望操作数的位置上出现的操作符字符（如 "-1" 中的负号）归入操作数。
+ */
+final class ExpressionLexer {
+
+    static final int OPERAND = 0;
+    static final int OPERATOR = 1;
+
+    // 操作符，双字符操作符在前以便最长匹配
+    static final String[] OPERATORS = {"||", "&&", ">=", "<=", "==", "!=", ">", "<", "+", "-", "*", "/", "%"};
+    // 对应优先级（数值越大越优先），与 FreeMarker 一致：
+    // 0 逻辑或 < 1 逻辑与 < 2 == != < 3 >= <= > < < 4 加减法 < 5 乘除法
+    static final int[] PRECEDENCE = {0, 1, 3, 3, 2, 2, 3, 3, 4, 4, 5, 5, 5};
+
+    private final String source;
+    private int count;
+    private int[] kinds = new int[8];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+
+    private ExpressionLexer(String source) {
+        this.source = source;
+    }
+
+    static ExpressionLexer tokenize(String source, int from, int to) {
+        ExpressionLexer lexer = new ExpressionLexer(source);
+        lexer.scan(from, to);
+        return lexer;
+    }
+
+    private void scan(int from, int to) {
+        int i = from;
+        int operandStart = -1;
+        int operandEnd = -1;
+        while (i < to) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (operandStart >= 0) {
+                int op = matchOperator(i, to);
+                if (op >= 0) {
+                    add(OPERAND, operandStart, operandEnd);
+                    add(OPERATOR, i, op);
+                    i += OPERATORS[op].length();
+                    operandStart = -1;
+                    continue;
+                }
+            } else {
+                operandStart = i;
+            }
+            if (c == '\'' || c == '"') {
+                i = skipString(i, to);
+            } else if (c == '(' || c == '[' || c == '{') {
+                i = skipGroup(i, to);
+            } else {
+                i++;
+            }
+            operandEnd = i;
+        }
+        if (operandStart >= 0) {
+            add(OPERAND, operandStart, operandEnd);
+        }
+    }
+
+    private int matchOperator(int i, int to) {
+        for (int op = 0; op < OPERATORS.length; op++) {
+            String candidate = OPERATORS[op];
+            if (i + candidate.length() <= to && source.startsWith(candidate, i)) {
+                return op;
+            }
+        }
+        return -1;
+    }
+
+    private int skipString(int i, int to) {
+        char quote = source.charAt(i++);
+        while (i < to) {
+            char c = source.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private int skipGroup(int i, int to) {
+        int depth = 0;
+        while (i < to) {
+            char c = source.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipString(i, to);
+                continue;
+            }
+            if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return to;
+    }
+
+    // 操作符记号的 end 字段存放操作符下标
+    private void add(int kind, int start, int end) {
+        if (count == kinds.length) {
+            int size = count * 2;
+            kinds = Arrays.copyOf(kinds, size);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+        }
+        kinds[count] = kind;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int kind(int index) {
+        return kinds[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    int operator(int index) {
+        return ends[index];
+    }
+}
@@ -39,6 +39,7 @@ public class ExpressionParserChain implements ExpressionParser {
     // 创建默认解析器链
     public static ExpressionParserChain createDefaultChain() {
         return new ExpressionParserChain()
+                .addParser(new FtlExpressionParser())
                 .addParser(new ConditionalExpressionParser())
                 .addParser(new BinaryExpressionParser())
                 .addParser(new SimpleExpressionParser());
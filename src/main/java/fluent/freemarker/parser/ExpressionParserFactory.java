@@ -1,8 +1,13 @@
 package fluent.freemarker.parser;
 
 public class ExpressionParserFactory {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
     public enum ParserType {
         DEFAULT,
+        CACHED,
+        FTL,
         BINARY,
         SIMPLE,
         CONDITIONAL,
@@ -11,6 +16,8 @@ public class ExpressionParserFactory {
 
     public static ExpressionParser create(ParserType type) {
         switch (type) {
+            case FTL:
+                return new FtlExpressionParser();
             case BINARY:
                 return new BinaryExpressionParser();
             case SIMPLE:
@@ -19,12 +26,19 @@ public class ExpressionParserFactory {
                 return new ConditionalExpressionParser();
             case NO_OP:
                 return new NoOpExpressionParser();
+            case CACHED:
+                return cached(ExpressionParserChain.createDefaultChain(), DEFAULT_CACHE_SIZE);
             case DEFAULT:
             default:
                 return ExpressionParserChain.createDefaultChain();
         }
     }
 
+    // 为任意解析器加上有界 LRU 解析缓存
+    public static CachingExpressionParser cached(ExpressionParser parser, int maxSize) {
+        return new CachingExpressionParser(parser, maxSize);
+    }
+
     // 创建自定义解析器链
     public static ExpressionParserChain createChain(ExpressionParser... parsers) {
         ExpressionParserChain chain = new ExpressionParserChain();
@@ -0,0 +1,585 @@
+package fluent.freemarker.parser;
+
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.exception.ExpressionParseException;
+import fluent.freemarker.utils.ExpressionScanner;
+import fluent.freemarker.utils.StringLiterals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FreeMarker 表达式解析器：单遍词法分析 + 递归下降（二元运算按优先级爬升），
+ * 支持 ?builtin、!default、??、[index]、方法调用、一元运算、区间以及序列/哈希字面量。
+ * 不含上述语法的表达式生成与 BinaryExpressionParser 相同的树；Lambda 等不支持的语法抛出异常并回退为 RawExpr。
+ */
+public class FtlExpressionParser extends AbstractExpressionParser {
+
+    // 二元操作符及优先级（数值越大越优先），与 BinaryExpressionParser 的优先级表一致，
+    // 另外支持 FreeMarker 的 = 与 gt/gte/lt/lte 写法
+    private static final String[] BINARY_OPERATORS = {
+            "||", "&&", ">=", "<=", "==", "!=", ">", "<", "+", "-", "*", "/", "%", "=", "gte", "lte", "gt", "lt"};
+    // 与 FreeMarker 的语法层级一致：|| < && < 相等比较 < 大小比较 < 区间 < 加减法 < 乘除法
+    private static final int[] BINARY_PRECEDENCE = {
+            0, 2, 6, 6, 4, 4, 6, 6, 10, 10, 12, 12, 12, 4, 6, 6, 6, 6};
+    private static final int EQUALITY_PRECEDENCE = 4;
+    private static final int RELATIONAL_PRECEDENCE = 6;
+    private static final int RANGE_PRECEDENCE = 8;
+    private static final int UNARY_PRECEDENCE = 14;
+    private static final int POSTFIX_PRECEDENCE = 16;
+
+    // 标点与操作符，按最长匹配排列
+    private static final String[] PUNCTUATION = {
+            "..<", "..!", "..*", "??", "..", "||", "&&", ">=", "<=", "==", "!=", "->",
+            "!", "?", ".", ",", ":", "(", ")", "[", "]", "{", "}", ">", "<", "+", "-", "*", "/", "%", "="};
+
+    private static final int EOF = 0;
+    private static final int IDENT = 1;
+    private static final int NUMBER = 2;
+    private static final int STRING = 3;
+    private static final int OP = 4;
+
+    @Override
+    protected boolean doSupports(String expression) {
+        if (expression == null) return false;
+        int length = expression.length();
+        for (int i = 0; i < length; i++) {
+            char c = expression.charAt(i);
+            if (c == '\'' || c == '"') {
+                int close = skipString(expression, i);
+                // 原样字符串、转义与插值需要完整解析
+                if (i > 0 && expression.charAt(i - 1) == 'r' || needsDecoding(expression, i + 1, close)) {
+                    return true;
+                }
+                i = close;
+                continue;
+            }
+            if (c == '?' || c == '[' || c == '{') {
+                return true;
+            }
+            if (c == '!' && (i + 1 >= length || expression.charAt(i + 1) != '=')) {
+                return true;
+            }
+            if (c == '.' && i + 1 < length && expression.charAt(i + 1) == '.') {
+                return true;
+            }
+            // 方法调用：标识符或右括号后紧跟 (
+            if (c == '(' && i > 0) {
+                char prev = expression.charAt(i - 1);
+                if (ExpressionScanner.isIdentifierPart(prev) || prev == ')' || prev == ']') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean needsDecoding(String s, int from, int to) {
+        for (int i = from; i < to && i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || (c == '$' || c == '#') && i + 1 < to && s.charAt(i + 1) == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipString(String s, int i) {
+        char quote = s.charAt(i++);
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i;
+            }
+            i++;
+        }
+        return s.length();
+    }
+
+    @Override
+    protected FtlExpr doParse(String expression) throws ExpressionParseException {
+        Parser parser = new Parser(expression);
+        FtlExpr result = parser.parseExpression(0);
+        if (parser.type != EOF) {
+            throw parser.error("Unexpected '" + parser.text + "'");
+        }
+        return result;
+    }
+
+    /**
+     * 二元/区间操作符的优先级，未知操作符返回 -1；供渲染时决定是否需要括号
+     */
+    public static int precedenceOf(String op) {
+        if (op == null) return -1;
+        if (isRangeOperator(op)) return RANGE_PRECEDENCE;
+        for (int i = 0; i < BINARY_OPERATORS.length; i++) {
+            if (BINARY_OPERATORS[i].equals(op)) {
+                return BINARY_PRECEDENCE[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 比较操作符在 FreeMarker 中不可结合（a < b < c 是语法错误），写成模板时同级的左侧也需要括号
+     */
+    public static boolean isComparison(String op) {
+        int precedence = precedenceOf(op);
+        return precedence == EQUALITY_PRECEDENCE || precedence == RELATIONAL_PRECEDENCE;
+    }
+
+    /**
+     * 表达式节点自身的优先级：二元/区间取操作符优先级，一元次之，其余（标识符、字面量、后缀运算）最高
+     */
+    public static int precedenceOf(FtlExpr expr) {
+        if (expr instanceof BinaryExpr) return precedenceOf(((BinaryExpr) expr).getOp());
+        if (expr instanceof RangeExpr) return RANGE_PRECEDENCE;
+        if (expr instanceof UnaryExpr) return UNARY_PRECEDENCE;
+        if (expr instanceof DefaultExpr) return UNARY_PRECEDENCE;
+        return POSTFIX_PRECEDENCE;
+    }
+
+    private static boolean isRangeOperator(String op) {
+        return "..".equals(op) || "..<".equals(op) || "..!".equals(op) || "..*".equals(op);
+    }
+
+    /**
+     * 单次解析的状态：词法分析按需推进，当前记号保存在字段中
+     */
+    private final class Parser {
+        private final String source;
+        private final int length;
+        private int pos;
+
+        // 当前记号
+        private int type;
+        private int start;
+        private int end;
+        private String text;
+
+        private FtlExpr grouped; // 刚解析完的括号表达式，由紧随其后的 parsePostfix 取走
+
+        Parser(String source) {
+            this.source = source;
+            this.length = source.length();
+            advance();
+        }
+
+        // ==================== 语法 ====================
+
+        FtlExpr parseExpression(int minPrecedence) {
+            FtlExpr left = parseUnary();
+            while (true) {
+                int precedence;
+                boolean range = false;
+                if (type == OP && isRangeOperator(text)) {
+                    precedence = RANGE_PRECEDENCE;
+                    range = true;
+                } else {
+                    int index = binaryOperatorIndex();
+                    if (index < 0) break;
+                    precedence = BINARY_PRECEDENCE[index];
+                }
+                if (precedence < minPrecedence) break;
+
+                String op = text;
+                advance();
+                if (range) {
+                    // 右侧可省略：2..
+                    FtlExpr rangeEnd = canStartOperand() ? parseExpression(precedence + 1) : null;
+                    left = new RangeExpr(left, op, rangeEnd);
+                } else {
+                    // 左结合：右侧只吸收更高优先级的操作符
+                    left = new BinaryExpr(left, op, parseExpression(precedence + 1));
+                }
+            }
+            return left;
+        }
+
+        private FtlExpr parseUnary() {
+            if (isOp("!")) {
+                advance();
+                return new UnaryExpr("!", parseUnary());
+            }
+            if (isOp("-") || isOp("+")) {
+                String op = text;
+                advance();
+                if (type == NUMBER) {
+                    // 与 FreeMarker 一致，负号的优先级低于后缀运算：-2.5?round 是 -(2.5?round)
+                    FtlExpr number = parsePrimary();
+                    FtlExpr operand = parsePostfix(number);
+                    if (operand == number) {
+                        return "-".equals(op) ? new LiteralExpr(negate((Number) ((LiteralExpr) number).getValue())) : number;
+                    }
+                    return new UnaryExpr(op, operand);
+                }
+                return new UnaryExpr(op, parseUnary());
+            }
+            return parsePostfix(parsePrimary());
+        }
+
+        private FtlExpr signedNumber(String sign) {
+            Number number = toNumber(text, text.indexOf('.') >= 0);
+            advance();
+            if ("-".equals(sign)) {
+                number = negate(number);
+            }
+            return new LiteralExpr(number);
+        }
+
+        /**
+         * 普通字符串：解码转义序列，${...} 插值展开为字符串拼接（"a${x}b" 即 "a" + x + "b"），
+         * 插值内容与 FreeMarker 一样先解码再解析。#{...} 旧式数字插值不支持
+         */
+        private FtlExpr parseStringContent(int from, int to) {
+            StringBuilder text = new StringBuilder(to - from);
+            FtlExpr result = null;
+            int i = from;
+            while (i < to) {
+                char c = source.charAt(i);
+                if (c == '\\') {
+                    i = StringLiterals.unescape(source, i, to, text);
+                    if (i < 0) {
+                        throw error("Invalid escape sequence in string literal");
+                    }
+                } else if ((c == '$' || c == '#') && i + 1 < to && source.charAt(i + 1) == '{') {
+                    if (c == '#') {
+                        throw error("#{...} interpolation in string literals is not supported");
+                    }
+                    int close = interpolationEnd(i + 2, to);
+                    FtlExpr inner = doParse(StringLiterals.unescape(source, i + 2, close));
+                    // 以字符串开头，保证 + 按字符串拼接
+                    result = new BinaryExpr(result != null ? appendText(result, text) : new LiteralExpr(text.toString()), "+", inner);
+                    text.setLength(0);
+                    i = close + 1;
+                } else {
+                    text.append(c);
+                    i++;
+                }
+            }
+            return result == null ? new LiteralExpr(text.toString()) : appendText(result, text);
+        }
+
+        // 字符串各段（插值展开后的拼接）中是否有值含 ${ 或 #{ 的字面量
+        private boolean hasLiteralMarker(FtlExpr expr) {
+            if (expr instanceof LiteralExpr) {
+                Object value = ((LiteralExpr) expr).getValue();
+                return value instanceof String && StringLiterals.hasInterpolationMarker((String) value);
+            }
+            if (expr instanceof BinaryExpr) {
+                return hasLiteralMarker(((BinaryExpr) expr).getLeft()) || hasLiteralMarker(((BinaryExpr) expr).getRight());
+            }
+            return false;
+        }
+
+        private FtlExpr appendText(FtlExpr expr, StringBuilder text) {
+            return text.length() == 0 ? expr : new BinaryExpr(expr, "+", new LiteralExpr(text.toString()));
+        }
+
+        // 插值的右花括号，跳过嵌套的花括号与其中的字符串
+        private int interpolationEnd(int from, int to) {
+            int depth = 0;
+            char quote = 0;
+            for (int i = from; i < to; i++) {
+                char c = source.charAt(i);
+                if (c == '\\' && i + 1 < to) {
+                    // 转义的引号在解码后才是字符串边界
+                    c = source.charAt(++i);
+                    if (c != '"' && c != '\'') continue;
+                }
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    if (depth == 0) return i;
+                    depth--;
+                }
+            }
+            throw error("Unterminated interpolation in string literal");
+        }
+
+        private Number negate(Number number) {
+            if (number instanceof Double) return -number.doubleValue();
+            long value = -number.longValue();
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+
+        private FtlExpr parsePrimary() {
+            switch (type) {
+                case NUMBER: {
+                    Number number = toNumber(text, text.indexOf('.') >= 0);
+                    advance();
+                    return new LiteralExpr(number);
+                }
+                case STRING: {
+                    // r"..." 为原样字符串，不解码转义也不展开插值
+                    FtlExpr literal = source.charAt(start) == 'r'
+                            ? new LiteralExpr(source.substring(start + 2, end - 1))
+                            : parseStringContent(start + 1, end - 1);
+                    if (hasLiteralMarker(literal)) {
+                        // 值中的 ${ 或 #{ 写回后会变成插值，保持原文
+                        literal = new RawExpr(source.substring(start, end));
+                    }
+                    advance();
+                    return literal;
+                }
+                case IDENT:
+                    return parseIdentifier();
+                case OP:
+                    if (isOp("(")) {
+                        advance();
+                        FtlExpr inner = parseExpression(0);
+                        expect(")");
+                        grouped = inner;
+                        return inner;
+                    }
+                    if (isOp("[")) {
+                        advance();
+                        return new SequenceExpr(parseList("]"));
+                    }
+                    if (isOp("{")) {
+                        advance();
+                        return parseHash();
+                    }
+                    throw error("Unexpected '" + text + "'");
+                default:
+                    throw error("Unexpected end of expression");
+            }
+        }
+
+        // 连续的 a.b.c 合并为一个 IdentifierExpr，与其他解析器保持一致
+        private FtlExpr parseIdentifier() {
+            if (ExpressionScanner.isBoolean(text)) {
+                Boolean value = ExpressionScanner.regionEqualsIgnoreCase(text, 0, text.length(), "true");
+                advance();
+                return new LiteralExpr(value);
+            }
+            String name = text;
+            advance();
+            if (!isOp(".")) {
+                return new IdentifierExpr(name);
+            }
+            StringBuilder path = new StringBuilder(name);
+            while (isOp(".")) {
+                advance();
+                if (type != IDENT) {
+                    throw error("Expected name after '.'");
+                }
+                path.append('.').append(text);
+                advance();
+            }
+            return new IdentifierExpr(path.toString());
+        }
+
+        private FtlExpr parsePostfix(FtlExpr target) {
+            FtlExpr expr = target;
+            // 括号中的目标：(a.b)?? 与 (a.b)! 对整个表达式容错
+            boolean inParens = target == grouped;
+            grouped = null;
+            while (type == OP) {
+                boolean groupedTarget = inParens && expr == target;
+                if (isOp(".")) {
+                    advance();
+                    if (type != IDENT) {
+                        throw error("Expected name after '.'");
+                    }
+                    expr = new MemberExpr(expr, text);
+                    advance();
+                } else if (isOp("[")) {
+                    advance();
+                    FtlExpr index = parseExpression(0);
+                    expect("]");
+                    expr = new IndexExpr(expr, index);
+                } else if (isOp("(")) {
+                    advance();
+                    expr = new MethodCallExpr(expr, parseList(")"));
+                } else if (isOp("??")) {
+                    advance();
+                    expr = new ExistsExpr(expr, groupedTarget);
+                } else if (isOp("?")) {
+                    advance();
+                    if (type != IDENT) {
+                        throw error("Expected built-in name after '?'");
+                    }
+                    String name = text;
+                    advance();
+                    List<FtlExpr> args = Collections.emptyList();
+                    if (isOp("(")) {
+                        advance();
+                        args = parseList(")");
+                    }
+                    expr = new BuiltInExpr(expr, name, args);
+                } else if (isOp("!")) {
+                    advance();
+                    // x! 之后可以没有默认值
+                    FtlExpr defaultValue = canStartDefault() ? parseDefaultValue() : null;
+                    return new DefaultExpr(expr, defaultValue, groupedTarget);
+                } else {
+                    break;
+                }
+            }
+            return expr;
+        }
+
+        private FtlExpr parseDefaultValue() {
+            if (isOp("-") || isOp("+")) {
+                String sign = text;
+                advance();
+                if (type != NUMBER) {
+                    throw error("Expected number after '" + sign + "'");
+                }
+                return signedNumber(sign);
+            }
+            return parsePostfix(parsePrimary());
+        }
+
+        private List<FtlExpr> parseList(String close) {
+            List<FtlExpr> items = new ArrayList<>();
+            if (isOp(close)) {
+                advance();
+                return items;
+            }
+            while (true) {
+                items.add(parseExpression(0));
+                if (isOp(",")) {
+                    advance();
+                } else {
+                    expect(close);
+                    return items;
+                }
+            }
+        }
+
+        private FtlExpr parseHash() {
+            List<FtlExpr> keys = new ArrayList<>();
+            List<FtlExpr> values = new ArrayList<>();
+            if (isOp("}")) {
+                advance();
+                return new HashExpr(keys, values);
+            }
+            while (true) {
+                keys.add(parseExpression(0));
+                expect(":");
+                values.add(parseExpression(0));
+                if (isOp(",")) {
+                    advance();
+                } else {
+                    expect("}");
+                    return new HashExpr(keys, values);
+                }
+            }
+        }
+
+        private int binaryOperatorIndex() {
+            if (type != OP && type != IDENT) return -1;
+            for (int i = 0; i < BINARY_OPERATORS.length; i++) {
+                // 标点操作符是驻留的常量，可直接比较引用
+                if (type == OP ? BINARY_OPERATORS[i] == text : BINARY_OPERATORS[i].equals(text)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean canStartOperand() {
+            return type == IDENT || type == NUMBER || type == STRING
+                    || isOp("(") || isOp("[") || isOp("{") || isOp("!") || isOp("-") || isOp("+");
+        }
+
+        private boolean canStartDefault() {
+            return type == IDENT && binaryOperatorIndex() < 0 || type == NUMBER || type == STRING
+                    || isOp("(") || isOp("[") || isOp("{") || isOp("-") || isOp("+");
+        }
+
+        private boolean isOp(String op) {
+            // text 对标点记号总是 PUNCTUATION 中的常量
+            return type == OP && text == op;
+        }
+
+        private void expect(String op) {
+            if (!isOp(op)) {
+                throw error(type == EOF ? "Expected '" + op + "' before end of expression" : "Expected '" + op + "' but found '" + text + "'");
+            }
+            advance();
+        }
+
+        private ExpressionParseException error(String message) {
+            return new ExpressionParseException(message + " at position " + start + " in '" + source + "'");
+        }
+
+        // ==================== 词法 ====================
+
+        private void advance() {
+            while (pos < length && Character.isWhitespace(source.charAt(pos))) pos++;
+            start = pos;
+            if (pos >= length) {
+                type = EOF;
+                text = "";
+                end = pos;
+                return;
+            }
+            char c = source.charAt(pos);
+            if (c == 'r' && pos + 1 < length && (source.charAt(pos + 1) == '"' || source.charAt(pos + 1) == '\'')) {
+                scanRawString();
+            } else if (ExpressionScanner.isIdentifierStart(c) || c == '$') {
+                pos++;
+                while (pos < length && (ExpressionScanner.isIdentifierPart(source.charAt(pos)) || source.charAt(pos) == '$')) pos++;
+                type = IDENT;
+                text = source.substring(start, pos);
+            } else if (ExpressionScanner.isDigit(c)) {
+                while (pos < length && ExpressionScanner.isDigit(source.charAt(pos))) pos++;
+                // 1..5 中的 .. 不是小数点
+                if (pos + 1 < length && source.charAt(pos) == '.' && ExpressionScanner.isDigit(source.charAt(pos + 1))) {
+                    pos++;
+                    while (pos < length && ExpressionScanner.isDigit(source.charAt(pos))) pos++;
+                }
+                type = NUMBER;
+                text = source.substring(start, pos);
+            } else if (c == '\'' || c == '"') {
+                int close = skipString(source, pos);
+                if (close >= length) {
+                    throw error("Unterminated string literal");
+                }
+                pos = close + 1;
+                type = STRING;
+                text = null;
+            } else {
+                type = OP;
+                text = matchPunctuation();
+                pos += text.length();
+            }
+            end = pos;
+        }
+
+        private void scanRawString() {
+            char quote = source.charAt(pos + 1);
+            int close = source.indexOf(quote, pos + 2);
+            if (close < 0) {
+                throw error("Unterminated string literal");
+            }
+            pos = close + 1;
+            type = STRING;
+            text = null;
+        }
+
+        private String matchPunctuation() {
+            for (String op : PUNCTUATION) {
+                if (source.startsWith(op, pos)) {
+                    return op;
+                }
+            }
+            throw error("Unexpected character '" + source.charAt(pos) + "'");
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package fluent.freemarker.registrar;
 
 import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.GenericTypes;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collection;
-import java.util.Map;
+import java.lang.reflect.Type;
 
 @Slf4j
 public abstract class AbstractTypeRegistrar implements TypeRegistrar {
@@ -30,6 +30,18 @@ public abstract class AbstractTypeRegistrar implements TypeRegistrar {
 
     protected abstract void doRegisterType(String varName, Object value, TypeRegistry typeRegistry);
 
+    @Override
+    public void registerDeclaredType(String varName, Type declaredType, TypeRegistry typeRegistry) {
+        if (declaredType == null || typeRegistry == null) {
+            return;
+        }
+        try {
+            registerDeclaredTypes(declaredType, typeRegistry);
+        } catch (Exception e) {
+            log.error("Failed to register declared type for variable '{}': {}", varName, e.getMessage());
+        }
+    }
+
     /**
      * 检查是否是基础类型或包装类型（受保护的方法，供子类使用）
      */
@@ -42,71 +54,37 @@ public abstract class AbstractTypeRegistrar implements TypeRegistrar {
      */
     protected void registerObjectType(Object obj, TypeRegistry typeRegistry) {
         if (obj == null || typeRegistry == null) return;
-
-        Class<?> clazz = obj.getClass();
-
-        // 避免重复注册基础类型
-        if (isPrimitiveOrWrapper(clazz) || clazz == String.class) {
-            return;
-        }
-        try {
-            typeRegistry.getTypeInfo(clazz);
-        } catch (Exception e) {
-            log.error("Failed to register type '{}': {}", clazz.getSimpleName(), e.getMessage());
-        }
+        registerClass(obj.getClass(), typeRegistry);
     }
 
     /**
-     * 注册集合元素类型（受保护的方法，供子类使用）
+     * 按声明类型注册（受保护的方法，供子类使用）：原始类型及其集合元素、数组元素、Map 值类型，
+     * 只读取泛型元数据，不访问数据
      */
-    protected void registerCollectionElementTypes(Collection<?> collection, TypeRegistry typeRegistry) {
-        if (collection == null || collection.isEmpty() || typeRegistry == null) {
+    protected void registerDeclaredTypes(Type declaredType, TypeRegistry typeRegistry) {
+        if (declaredType == null || typeRegistry == null) {
             return;
         }
+        registerClass(GenericTypes.rawType(declaredType), typeRegistry);
 
-        try {
-            Object firstElement = collection.iterator().next();
-            if (firstElement != null) {
-                registerObjectType(firstElement, typeRegistry);
-            }
-        } catch (Exception e) {
-            log.error("Failed to register collection element types: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * 注册数组元素类型（受保护的方法，供子类使用）
-     */
-    protected void registerArrayElementTypes(Object array, TypeRegistry typeRegistry) {
-        if (array == null || !array.getClass().isArray() || typeRegistry == null) {
-            return;
+        Type elementType = GenericTypes.elementType(declaredType);
+        if (elementType != null) {
+            registerDeclaredTypes(elementType, typeRegistry);
         }
-
-        try {
-            Object[] objArray = (Object[]) array;
-            if (objArray.length > 0 && objArray[0] != null) {
-                registerObjectType(objArray[0], typeRegistry);
-            }
-        } catch (Exception e) {
-            log.debug("Failed to register array element types: {}", e.getMessage());
+        Type valueType = GenericTypes.mapValueType(declaredType);
+        if (valueType != null) {
+            registerDeclaredTypes(valueType, typeRegistry);
         }
     }
 
-    /**
-     * 注册映射值类型（受保护的方法，供子类使用）
-     */
-    protected void registerMapValueTypes(Map<?, ?> map, TypeRegistry typeRegistry) {
-        if (map == null || map.isEmpty() || typeRegistry == null) {
+    private void registerClass(Class<?> clazz, TypeRegistry typeRegistry) {
+        if (clazz == Object.class || isPrimitiveOrWrapper(clazz) || clazz == String.class) {
             return;
         }
-
         try {
-            Object firstValue = map.values().iterator().next();
-            if (firstValue != null) {
-                registerObjectType(firstValue, typeRegistry);
-            }
+            typeRegistry.registerType(clazz);
         } catch (Exception e) {
-            log.error("Failed to register map value types: {}", e.getMessage());
+            log.error("Failed to register type '{}': {}", clazz.getSimpleName(), e.getMessage());
         }
     }
 }
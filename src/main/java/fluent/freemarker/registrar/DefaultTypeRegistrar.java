@@ -1,11 +1,9 @@
 package fluent.freemarker.registrar;
 
 import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.utils.GenericTypes;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collection;
-import java.util.Map;
-
 @Slf4j
 public class DefaultTypeRegistrar extends AbstractTypeRegistrar{
     @Override
@@ -16,16 +14,7 @@ public class DefaultTypeRegistrar extends AbstractTypeRegistrar{
 
     @Override
     protected void doRegisterType(String varName, Object value, TypeRegistry typeRegistry) {
-        // 注册对象本身的类型
-        registerObjectType(value, typeRegistry);
-
-        // 根据值的类型注册相关类型
-        if (value instanceof Collection) {
-            registerCollectionElementTypes((Collection<?>) value, typeRegistry);
-        } else if (value.getClass().isArray()) {
-            registerArrayElementTypes(value, typeRegistry);
-        } else if (value instanceof Map) {
-            registerMapValueTypes((Map<?, ?>) value, typeRegistry);
-        }
+        // 未声明泛型时由值的类型推出（不迭代集合），再按声明类型注册对象本身及元素类型
+        registerDeclaredTypes(GenericTypes.observedType(value), typeRegistry);
     }
 }
@@ -2,6 +2,8 @@ package fluent.freemarker.registrar;
 
 import fluent.freemarker.registry.TypeRegistry;
 
+import java.lang.reflect.Type;
+
 // 类型注册器接口
 public interface TypeRegistrar {
 
@@ -10,4 +12,10 @@ public interface TypeRegistrar {
      */
     void registerTypeIfNeeded(String varName, Object value, TypeRegistry typeRegistry);
 
+    /**
+     * 根据显式声明的泛型类型注册，不访问变量值
+     */
+    default void registerDeclaredType(String varName, Type declaredType, TypeRegistry typeRegistry) {
+    }
+
 }
@@ -1,5 +1,6 @@
 package fluent.freemarker.registry;
 
+import fluent.freemarker.model.FieldPath;
 import fluent.freemarker.model.TypeInfo;
 
 import java.util.Collections;
@@ -7,11 +8,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class AbstractTypeRegistry implements TypeRegistry {
 
-    protected final Map<String, TypeInfo> typeInfoMap = new ConcurrentHashMap<>();
-    protected final Map<Class<?>, TypeInfo> classToTypeInfo = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, TypeInfo> typeInfoMap = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<Class<?>, TypeInfo> classToTypeInfo = new ConcurrentHashMap<>();
 
     @Override
     public TypeInfo getTypeInfo(Class<?> clazz) {
@@ -29,6 +31,11 @@ public abstract class AbstractTypeRegistry implements TypeRegistry {
 
     @Override
     public boolean knowsField(String typeName, String fieldPath) {
+        return knowsField(typeName, FieldPath.of(fieldPath));
+    }
+
+    @Override
+    public boolean knowsField(String typeName, FieldPath fieldPath) {
         TypeInfo root = typeInfoMap.get(typeName);
         return root != null && root.hasFieldPath(fieldPath);
     }
@@ -3,59 +3,46 @@ package fluent.freemarker.registry;
 import fluent.freemarker.model.TypeInfo;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * 无锁的线程安全注册表：读操作从不阻塞，不同类的缓存未命中可以并行内省。
+ * 未命中时在锁外构建 TypeInfo，再以 putIfAbsent 发布，先发布者胜出；
+ * 字段类型的解析（可能重入本注册表）不持有任何锁，因此线程之间不会互相等待。
+ */
 @Slf4j
 public class ConcurrentTypeRegistry extends AbstractTypeRegistry {
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     @Override
     public TypeInfo getTypeInfo(Class<?> clazz) {
         if (clazz == null) return null;
 
-        // 读锁获取缓存
-        lock.readLock().lock();
-        try {
-            TypeInfo cached = classToTypeInfo.get(clazz);
-            if (cached != null) {
-                return cached;
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
-
-        // 写锁创建新的 TypeInfo
-        lock.writeLock().lock();
-        try {
-            // 双重检查
-            TypeInfo cached = classToTypeInfo.get(clazz);
-            if (cached != null) {
-                return cached;
-            }
-            return createAndCacheTypeInfo(clazz);
-        } finally {
-            lock.writeLock().unlock();
+        TypeInfo cached = classToTypeInfo.get(clazz);
+        if (cached != null) {
+            return cached;
         }
+        return createAndCacheTypeInfo(clazz);
     }
 
     @Override
     protected TypeInfo createAndCacheTypeInfo(Class<?> clazz) {
-        TypeInfo info = new TypeInfo(clazz, this);
-        classToTypeInfo.put(clazz, info);
-        typeInfoMap.put(clazz.getSimpleName(), info);
-        return info;
+        TypeInfo created = newTypeInfo(clazz);
+        // 同一个类并发未命中时只发布一个实例，其余线程丢弃自己的结果
+        TypeInfo existing = classToTypeInfo.putIfAbsent(clazz, created);
+        TypeInfo winner = existing != null ? existing : created;
+        typeInfoMap.put(clazz.getSimpleName(), winner);
+        return winner;
     }
 
+    /**
+     * 构建 TypeInfo，不持有任何锁
+     */
+    protected TypeInfo newTypeInfo(Class<?> clazz) {
+        return new TypeInfo(clazz, this);
+    }
+
+    // 无锁读取，每个类只发布一个 TypeInfo
     @Override
-    public Map<Class<?>, TypeInfo> getAllTypeInfos() {
-        lock.readLock().lock();
-        try {
-            return new HashMap<>(classToTypeInfo);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public boolean isThreadSafe() {
+        return true;
     }
 }
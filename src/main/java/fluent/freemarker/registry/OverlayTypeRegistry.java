@@ -0,0 +1,98 @@
+package fluent.freemarker.registry;
+
+import fluent.freemarker.model.FieldPath;
+import fluent.freemarker.model.TypeInfo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上下文级覆盖层：类型元数据来自进程共享的 {@link SharedTypeRegistry}（每个类只计算一次），
+ * 按名称的注册（typeInfoMap）只在本覆盖层可见，不同上下文之间互不影响。
+ * 名称只通过 {@link #register} 与变量类型的自动注册（{@link #registerType}）登记，查询类型信息不写入名称表。
+ */
+public class OverlayTypeRegistry implements TypeRegistry {
+
+    private final SharedTypeRegistry shared;
+    private final Map<String, TypeInfo> typeInfoMap = new ConcurrentHashMap<>();
+
+    public OverlayTypeRegistry() {
+        this(SharedTypeRegistry.getInstance());
+    }
+
+    OverlayTypeRegistry(SharedTypeRegistry shared) {
+        this.shared = shared;
+    }
+
+    @Override
+    public TypeInfo getTypeInfo(Class<?> clazz) {
+        return clazz != null ? shared.getTypeInfo(clazz) : null;
+    }
+
+    // 自动注册不覆盖显式注册的同名类型
+    @Override
+    public TypeInfo registerType(Class<?> clazz) {
+        TypeInfo info = getTypeInfo(clazz);
+        if (info != null) {
+            typeInfoMap.putIfAbsent(clazz.getSimpleName(), info);
+        }
+        return info;
+    }
+
+    @Override
+    public boolean knowsField(String typeName, String fieldPath) {
+        return knowsField(typeName, FieldPath.of(fieldPath));
+    }
+
+    @Override
+    public boolean knowsField(String typeName, FieldPath fieldPath) {
+        TypeInfo root = lookup(typeName);
+        return root != null && root.hasFieldPath(fieldPath);
+    }
+
+    @Override
+    public Set<String> getSuggestions(String typeName, String partialField) {
+        TypeInfo root = lookup(typeName);
+        if (root == null) return Collections.emptySet();
+        return root.getSuggestions(partialField);
+    }
+
+    // 只查本上下文的名称；嵌套字段类型由 TypeInfo 按 Class 解析，不经过名称
+    private TypeInfo lookup(String typeName) {
+        return typeName != null ? typeInfoMap.get(typeName) : null;
+    }
+
+    @Override
+    public <T> TypeRegistry register(String typeName, Class<T> clazz) {
+        if (typeName != null && clazz != null) {
+            typeInfoMap.put(typeName, shared.getTypeInfo(clazz));
+        }
+        return this;
+    }
+
+    @Override
+    public Map<Class<?>, TypeInfo> getAllTypeInfos() {
+        return shared.getAllTypeInfos();
+    }
+
+    /**
+     * 只清空本上下文的名称注册，不影响共享缓存
+     */
+    @Override
+    public void clear() {
+        typeInfoMap.clear();
+    }
+
+    @Override
+    public boolean containsType(Class<?> clazz) {
+        return shared.containsType(clazz);
+    }
+
+    // 名称表是并发 Map，类型元数据来自线程安全的共享层
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package fluent.freemarker.registry;
 
+import fluent.freemarker.model.FieldPath;
 import fluent.freemarker.model.TypeInfo;
 
 import java.util.Map;
@@ -23,6 +24,11 @@ public class ReadOnlyTypeRegistry implements TypeRegistry {
         return delegate.knowsField(typeName, fieldPath);
     }
 
+    @Override
+    public boolean knowsField(String typeName, FieldPath fieldPath) {
+        return delegate.knowsField(typeName, fieldPath);
+    }
+
     @Override
     public Set<String> getSuggestions(String typeName, String partialField) {
         return delegate.getSuggestions(typeName, partialField);
@@ -47,4 +53,9 @@ public class ReadOnlyTypeRegistry implements TypeRegistry {
     public boolean containsType(Class<?> clazz) {
         return delegate.containsType(clazz);
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return delegate.isThreadSafe();
+    }
 }
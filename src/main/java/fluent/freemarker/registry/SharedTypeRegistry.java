@@ -0,0 +1,99 @@
+package fluent.freemarker.registry;
+
+import fluent.freemarker.model.FieldPath;
+import fluent.freemarker.model.TypeInfo;
+
+import java.util.*;
+
+/**
+ * 进程级共享的类型注册表：每个类在 JVM 内只内省一次。
+ * 以 {@link ClassValue} 保存 TypeInfo，缓存随类及其类加载器一起回收，不会阻止类加载器卸载。
+ * 这里只按 Class 查找，不维护类名索引：按名称的注册与查询只在每个上下文自己的 {@link OverlayTypeRegistry} 中，
+ * 不同包下的同名类不会互相覆盖；嵌套字段类型由 TypeInfo 按 Class 解析。
+ * 仅在包内使用（作为 TypeInfo 解析嵌套类型的注册表），对外只提供 OverlayTypeRegistry。
+ */
+final class SharedTypeRegistry implements TypeRegistry {
+
+    private static final SharedTypeRegistry INSTANCE = new SharedTypeRegistry();
+
+    private final ClassValue<TypeInfo> typeInfos = new ClassValue<TypeInfo>() {
+        @Override
+        protected TypeInfo computeValue(Class<?> type) {
+            TypeInfo info = new TypeInfo(type, SharedTypeRegistry.this);
+            knownClasses.put(type, Boolean.TRUE);
+            return info;
+        }
+    };
+    // 仅用于枚举，弱引用不阻止类卸载
+    private final Map<Class<?>, Boolean> knownClasses = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SharedTypeRegistry() {
+    }
+
+    static SharedTypeRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public TypeInfo getTypeInfo(Class<?> clazz) {
+        if (clazz == null) return null;
+        return typeInfos.get(clazz);
+    }
+
+    // 共享层没有类型名称，按名称的查询请通过上下文覆盖层
+    @Override
+    public boolean knowsField(String typeName, String fieldPath) {
+        return false;
+    }
+
+    @Override
+    public boolean knowsField(String typeName, FieldPath fieldPath) {
+        return false;
+    }
+
+    @Override
+    public Set<String> getSuggestions(String typeName, String partialField) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public <T> TypeRegistry register(String typeName, Class<T> clazz) {
+        throw new UnsupportedOperationException("SharedTypeRegistry does not support name registration, use OverlayTypeRegistry");
+    }
+
+    @Override
+    public Map<Class<?>, TypeInfo> getAllTypeInfos() {
+        List<Class<?>> classes;
+        synchronized (knownClasses) {
+            classes = new ArrayList<>(knownClasses.keySet());
+        }
+        Map<Class<?>, TypeInfo> result = new HashMap<>();
+        for (Class<?> clazz : classes) {
+            result.put(clazz, typeInfos.get(clazz));
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        List<Class<?>> classes;
+        synchronized (knownClasses) {
+            classes = new ArrayList<>(knownClasses.keySet());
+            knownClasses.clear();
+        }
+        for (Class<?> clazz : classes) {
+            typeInfos.remove(clazz);
+        }
+    }
+
+    @Override
+    public boolean containsType(Class<?> clazz) {
+        return clazz != null && knownClasses.containsKey(clazz);
+    }
+
+    // ClassValue 保证每个类只计算一次并安全发布
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+}
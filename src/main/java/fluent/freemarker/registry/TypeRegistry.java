@@ -1,5 +1,6 @@
 package fluent.freemarker.registry;
 
+import fluent.freemarker.model.FieldPath;
 import fluent.freemarker.model.TypeInfo;
 
 import java.util.Map;
@@ -17,6 +18,13 @@ public interface TypeRegistry {
      */
     boolean knowsField(String typeName, String fieldPath);
 
+    /**
+     * 使用预先切分的路径检查字段
+     */
+    default boolean knowsField(String typeName, FieldPath fieldPath) {
+        return knowsField(typeName, fieldPath.getPath());
+    }
+
     /**
      * 获取字段建议
      */
@@ -27,6 +35,14 @@ public interface TypeRegistry {
      */
     <T> TypeRegistry register(String typeName, Class<T> clazz);
 
+    /**
+     * 自动注册变量类型时调用：解析类型信息，并按简单类名登记（名称已被注册时保留原有的注册）。
+     * 默认只解析类型信息，按类名建索引的实现在首次解析时自行登记
+     */
+    default TypeInfo registerType(Class<?> clazz) {
+        return getTypeInfo(clazz);
+    }
+
     /**
      * 获取所有已知类型信息
      */
@@ -41,4 +57,12 @@ public interface TypeRegistry {
      * 检查是否包含指定类型
      */
     boolean containsType(Class<?> clazz);
+
+    /**
+     * 是否可被多个线程同时查询（并行验证时 TypeValidator 会并发调用 knowsField）。
+     * 实现无法保证时返回 false，此时并行验证退回串行；默认 false
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 }
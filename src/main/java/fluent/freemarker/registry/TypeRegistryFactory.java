@@ -2,7 +2,7 @@ package fluent.freemarker.registry;
 
 public class TypeRegistryFactory {
     public enum TypeRegistryType {
-        DEFAULT, CONCURRENT, EXPIRING, READ_ONLY
+        DEFAULT, CONCURRENT, EXPIRING, READ_ONLY, SHARED
     }
 
     public static TypeRegistry create(TypeRegistryType type) {
@@ -17,12 +17,19 @@ public class TypeRegistryFactory {
                 return new ExpiringTypeRegistry(expirationTimeMillis);
             case READ_ONLY:
                 return new ReadOnlyTypeRegistry(new DefaultTypeRegistry());
+            case SHARED:
+                return createShared();
             case DEFAULT:
             default:
                 return new DefaultTypeRegistry();
         }
     }
 
+    // 创建基于进程共享缓存的上下文覆盖层
+    public static TypeRegistry createShared() {
+        return new OverlayTypeRegistry();
+    }
+
     // 创建包装的只读注册表
     public static TypeRegistry createReadOnly(TypeRegistry delegate) {
         return new ReadOnlyTypeRegistry(delegate);
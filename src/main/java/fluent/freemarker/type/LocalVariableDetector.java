@@ -2,6 +2,7 @@ package fluent.freemarker.type;
 
 import fluent.freemarker.model.VarType;
 import fluent.freemarker.validator.ValidationContext;
+import fluent.freemarker.variable.VariableResolution;
 import lombok.extern.slf4j.Slf4j;
 
 // 局部变量检测器
@@ -9,12 +10,15 @@ import lombok.extern.slf4j.Slf4j;
 public class LocalVariableDetector extends AbstractVariableTypeDetector {
     @Override
     public boolean shouldSkip(String variableName, String expression, ValidationContext context) {
-        return context == null || context.getValidationRecorder() == null || !context.getValidationRecorder().isDefinedInScope(variableName) || context.getValidationRecorder().isScopeVariable(variableName);
+        if (context == null || context.getValidationRecorder() == null) {
+            return true;
+        }
+        return context.getValidationRecorder().resolve(variableName).getKind() != VarType.LOCAL;
     }
 
     @Override
     protected VariableTypeInfo doDetectType(String variableName, String expression, ValidationContext context) {
-        VarKeyType typeName = context.getValidationRecorder().getVariableScopeType(variableName);
-        return VariableTypeInfo.of(VarType.LOCAL, typeName.getVarType(), typeName.getVarKey());
+        VariableResolution resolution = context.getValidationRecorder().resolve(variableName);
+        return VariableTypeInfo.of(VarType.LOCAL, resolution.getTypeName(), variableName);
     }
 }
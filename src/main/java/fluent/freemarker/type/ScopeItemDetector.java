@@ -2,7 +2,7 @@ package fluent.freemarker.type;
 
 import fluent.freemarker.model.VarType;
 import fluent.freemarker.validator.ValidationContext;
-import fluent.freemarker.variable.ScopeVariableMarker;
+import fluent.freemarker.variable.VariableResolution;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -16,15 +16,9 @@ public class ScopeItemDetector extends AbstractVariableTypeDetector {
 
     @Override
     protected VariableTypeInfo doDetectType(String variableName, String expression, ValidationContext context) {
-        Object value = context.getValidationRecorder().getValue(variableName);
-        String typeName = "object";
-        if (value instanceof ScopeVariableMarker) {
-            typeName = ((ScopeVariableMarker) value).getType();
-        } else if (value != null) {
-            typeName = value.getClass().getSimpleName();
-        }
+        VariableResolution resolution = context.getValidationRecorder().resolve(variableName);
         // 返回变量类型信息，包含变量key
-        return VariableTypeInfo.of(VarType.SCOPE_ITEM, typeName, variableName);
+        return VariableTypeInfo.of(VarType.SCOPE_ITEM, resolution.getTypeName(), variableName);
     }
 
 }
@@ -6,8 +6,20 @@ import fluent.freemarker.validator.ValidationContext;
 public class VariableTypeDetectionUtils {
     private static final VariableTypeDetectionChain DEFAULT_CHAIN = VariableTypeDetectionChain.createDefaultChain();
 
+    /**
+     * 默认检测器只依据根变量名与作用域判断类型，同一作用域版本内的结果缓存在 ValidationContext 中
+     */
     public static VariableTypeInfo detectVariableType(String variableName, String expression, ValidationContext context) {
-        return DEFAULT_CHAIN.detectType(variableName, expression, context);
+        if (context == null) {
+            return DEFAULT_CHAIN.detectType(variableName, expression, null);
+        }
+        VariableTypeInfo cached = context.getDetectedType(variableName);
+        if (cached != null) {
+            return cached;
+        }
+        VariableTypeInfo detected = DEFAULT_CHAIN.detectType(variableName, expression, context);
+        context.cacheDetectedType(variableName, detected);
+        return detected;
     }
 
     public static VariableTypeInfo detectVariableType(String expression, ValidationContext context) {
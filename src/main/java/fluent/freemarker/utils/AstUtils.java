@@ -0,0 +1,54 @@
+package fluent.freemarker.utils;
+
+import java.util.*;
+
+/**
+ * AST 节点的不可变拷贝与结构哈希。节点在构造时算好哈希，比较子树时先比哈希，相同才逐字段比较。
+ */
+public final class AstUtils {
+
+    private AstUtils() {
+    }
+
+    public static <T> List<T> immutableList(List<T> list) {
+        return list == null ? null : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    public static <K, V> Map<K, V> immutableMap(Map<K, V> map) {
+        return map == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(map));
+    }
+
+    // 类名参与哈希，字段相同的不同节点（如 Text 与 Comment）不会相撞；映射按顺序计入
+    public static int structuralHash(Class<?> type, Object... fields) {
+        int hash = type.getName().hashCode();
+        for (Object field : fields) {
+            hash = 31 * hash + (field instanceof Map ? orderedHash((Map<?, ?>) field) : Objects.hashCode(field));
+        }
+        return hash;
+    }
+
+    // 宏参数等映射按声明顺序渲染，顺序不同即视为不同的结构
+    public static boolean sameEntries(Map<?, ?> a, Map<?, ?> b) {
+        if (a == b) return true;
+        if (a == null || b == null || a.size() != b.size()) return false;
+        Iterator<? extends Map.Entry<?, ?>> left = a.entrySet().iterator();
+        Iterator<? extends Map.Entry<?, ?>> right = b.entrySet().iterator();
+        while (left.hasNext()) {
+            Map.Entry<?, ?> x = left.next();
+            Map.Entry<?, ?> y = right.next();
+            if (!Objects.equals(x.getKey(), y.getKey()) || !Objects.equals(x.getValue(), y.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int orderedHash(Map<?, ?> map) {
+        int hash = 1;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            hash = 31 * hash + Objects.hashCode(entry.getKey());
+            hash = 31 * hash + Objects.hashCode(entry.getValue());
+        }
+        return hash;
+    }
+}
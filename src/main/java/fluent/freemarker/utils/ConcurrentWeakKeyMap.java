@@ -0,0 +1,125 @@
+package fluent.freemarker.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 弱引用持有键的并发 Map，键按 equals/hashCode 比较（不是按引用）。
+ * 基于 {@link ConcurrentHashMap}，读取不加锁；键不再被外部引用后，条目在之后的写操作中清理。
+ * 值不能强引用键，否则键永远不会被回收。
+ */
+public final class ConcurrentWeakKeyMap<K, V> {
+
+    private final ConcurrentHashMap<Object, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    public V get(K key) {
+        return map.get(new LookupKey(key));
+    }
+
+    public void put(K key, V value) {
+        purge();
+        map.put(new WeakKey<>(key, queue), value);
+    }
+
+    /**
+     * 与 {@link ConcurrentHashMap#putIfAbsent} 相同，已有等价的键时返回其值
+     */
+    public V putIfAbsent(K key, V value) {
+        purge();
+        return map.putIfAbsent(new WeakKey<>(key, queue), value);
+    }
+
+    public int size() {
+        purge();
+        return map.size();
+    }
+
+    public void clear() {
+        map.clear();
+        while (queue.poll() != null) {
+            // 已清空，丢弃排队的引用
+        }
+    }
+
+    /**
+     * 模拟键被回收：清除等价键的弱引用并放入引用队列，与 GC 的处理相同，条目在下一次写操作或 size() 时清理
+     */
+    void collect(K key) {
+        for (Object candidate : map.keySet()) {
+            if (candidate instanceof WeakKey && key.equals(((WeakKey<?>) candidate).get())) {
+                ((WeakKey<?>) candidate).clear();
+                ((WeakKey<?>) candidate).enqueue();
+            }
+        }
+    }
+
+    private void purge() {
+        Reference<? extends K> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private interface Key {
+        Object referent();
+    }
+
+    // 已回收的键只与自身相等，移除时按引用命中
+    private static boolean matches(Key self, Object other) {
+        if (self == other) return true;
+        if (!(other instanceof Key)) return false;
+        Object referent = self.referent();
+        return referent != null && referent.equals(((Key) other).referent());
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> implements Key {
+        private final int hash;
+
+        WeakKey(K key, ReferenceQueue<? super K> queue) {
+            super(key, queue);
+            this.hash = key.hashCode();
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return matches(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // 查找时使用的临时键，不创建弱引用
+    private static final class LookupKey implements Key {
+        private final Object key;
+
+        LookupKey(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object referent() {
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return matches(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+}
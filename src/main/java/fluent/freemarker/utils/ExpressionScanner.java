@@ -0,0 +1,167 @@
+package fluent.freemarker.utils;
+
+/**
+ * 无正则、无异常、无分配的字面量/标识符分类工具，按 [from, to) 区间单遍扫描。
+ * <ul>
+ *     <li>标识符路径：name 或 a.b.c，每段以字母或下划线开头</li>
+ *     <li>数字：可带符号的十进制整数或小数，可带指数（如 -1、3.14、.5、1e3）</li>
+ *     <li>字符串：首尾为同一种引号（' 或 "）</li>
+ *     <li>布尔：true / false，忽略大小写</li>
+ * </ul>
+ */
+public final class ExpressionScanner {
+
+    public enum Kind {
+        IDENTIFIER,
+        NUMBER,
+        STRING,
+        BOOLEAN,
+        OTHER
+    }
+
+    private ExpressionScanner() {
+    }
+
+    public static Kind classify(CharSequence s) {
+        return s == null ? Kind.OTHER : classify(s, 0, s.length());
+    }
+
+    /**
+     * 根据首字符分派，只扫描一遍
+     */
+    public static Kind classify(CharSequence s, int from, int to) {
+        if (from >= to) return Kind.OTHER;
+        char first = s.charAt(from);
+        if (first == '\'' || first == '"') {
+            return isStringLiteral(s, from, to) ? Kind.STRING : Kind.OTHER;
+        }
+        if (isIdentifierStart(first)) {
+            if (isBoolean(s, from, to)) return Kind.BOOLEAN;
+            return isIdentifierPath(s, from, to) ? Kind.IDENTIFIER : Kind.OTHER;
+        }
+        return isNumber(s, from, to) ? Kind.NUMBER : Kind.OTHER;
+    }
+
+    public static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    public static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static boolean isIdentifierPath(CharSequence s) {
+        return s != null && isIdentifierPath(s, 0, s.length());
+    }
+
+    /**
+     * 点号分隔的标识符路径，不允许空段
+     */
+    public static boolean isIdentifierPath(CharSequence s, int from, int to) {
+        if (from >= to) return false;
+        boolean segmentStart = true;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (segmentStart) {
+                if (!isIdentifierStart(c)) return false;
+                segmentStart = false;
+            } else if (c == '.') {
+                segmentStart = true;
+            } else if (!isIdentifierPart(c)) {
+                return false;
+            }
+        }
+        return !segmentStart;
+    }
+
+    public static boolean isNumber(CharSequence s) {
+        return s != null && isNumber(s, 0, s.length());
+    }
+
+    public static boolean isNumber(CharSequence s, int from, int to) {
+        int i = from;
+        if (i < to && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+        int digits = 0;
+        while (i < to && isDigit(s.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < to && s.charAt(i) == '.') {
+            i++;
+            while (i < to && isDigit(s.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) return false;
+        if (i < to && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < to && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+            int exponentDigits = 0;
+            while (i < to && isDigit(s.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) return false;
+        }
+        return i == to;
+    }
+
+    /**
+     * 数字是否需要按浮点数解析（含小数点或指数）
+     */
+    public static boolean isDecimal(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') return true;
+        }
+        return false;
+    }
+
+    public static boolean isStringLiteral(CharSequence s) {
+        return s != null && isStringLiteral(s, 0, s.length());
+    }
+
+    public static boolean isStringLiteral(CharSequence s, int from, int to) {
+        if (to - from < 2) return false;
+        char first = s.charAt(from);
+        return (first == '\'' || first == '"') && s.charAt(to - 1) == first;
+    }
+
+    public static boolean isBoolean(CharSequence s) {
+        return s != null && isBoolean(s, 0, s.length());
+    }
+
+    public static boolean isBoolean(CharSequence s, int from, int to) {
+        return regionEqualsIgnoreCase(s, from, to, "true") || regionEqualsIgnoreCase(s, from, to, "false");
+    }
+
+    public static boolean regionEqualsIgnoreCase(CharSequence s, int from, int to, String expected) {
+        if (to - from != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            char c = s.charAt(from + i);
+            if (c != expected.charAt(i) && Character.toLowerCase(c) != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 去除首部空白后的起始下标
+     */
+    public static int trimStart(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    /**
+     * 去除尾部空白后的结束下标
+     */
+    public static int trimEnd(CharSequence s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+}
@@ -28,30 +28,22 @@ public class FTLUtils {
     public static boolean shouldParseAsExpression(String value) {
         if (value == null || value.isEmpty()) return false;
 
-        String trimmed = value.trim().toLowerCase();
+        int from = ExpressionScanner.trimStart(value, 0, value.length());
+        int to = ExpressionScanner.trimEnd(value, from, value.length());
 
         // 这些值不应该被解析为变量表达式
-        if ("default".equals(trimmed) ||
-                "true".equals(trimmed) ||
-                "false".equals(trimmed)) {
+        if (ExpressionScanner.regionEqualsIgnoreCase(value, from, to, "default") ||
+                ExpressionScanner.isBoolean(value, from, to)) {
             return false;
         }
 
         // 数字字面量
-        try {
-            Double.parseDouble(trimmed);
+        if (ExpressionScanner.isNumber(value, from, to)) {
             return false;
-        } catch (NumberFormatException e) {
-            // 继续检查
         }
 
         // 字符串字面量
-        if ((value.startsWith("'") && value.endsWith("'")) ||
-                (value.startsWith("\"") && value.endsWith("\""))) {
-            return false;
-        }
-
-        return true;
+        return !ExpressionScanner.isStringLiteral(value);
     }
 
 
@@ -0,0 +1,244 @@
+package fluent.freemarker.utils;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * 基于声明类型（字段、getter、TypeToken）的泛型解析，只读反射元数据，不会访问集合中的数据
+ */
+public final class GenericTypes {
+
+    private GenericTypes() {
+    }
+
+    /**
+     * 泛型类型对应的原始类，无法确定时返回 Object.class
+     */
+    public static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return rawType(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            Class<?> component = rawType(((GenericArrayType) type).getGenericComponentType());
+            return Array.newInstance(component, 0).getClass();
+        } else if (type instanceof WildcardType) {
+            Type[] upper = ((WildcardType) type).getUpperBounds();
+            return upper.length > 0 ? rawType(upper[0]) : Object.class;
+        } else if (type instanceof TypeVariable) {
+            Type[] bounds = ((TypeVariable<?>) type).getBounds();
+            return bounds.length > 0 ? rawType(bounds[0]) : Object.class;
+        }
+        return Object.class;
+    }
+
+    /**
+     * 数组或 Iterable 的元素类型；未声明泛型参数时返回 null
+     */
+    public static Type elementType(Type type) {
+        if (type == null) return null;
+        if (type instanceof GenericArrayType) {
+            return ((GenericArrayType) type).getGenericComponentType();
+        }
+        Class<?> raw = rawType(type);
+        if (raw.isArray()) {
+            return raw.getComponentType();
+        }
+        if (Iterable.class.isAssignableFrom(raw)) {
+            return typeArgument(type, Iterable.class, 0);
+        }
+        return null;
+    }
+
+    /**
+     * Map 的键类型；未声明泛型参数时返回 null
+     */
+    public static Type mapKeyType(Type type) {
+        return type != null && Map.class.isAssignableFrom(rawType(type)) ? typeArgument(type, Map.class, 0) : null;
+    }
+
+    /**
+     * Map 的值类型；未声明泛型参数时返回 null
+     */
+    public static Type mapValueType(Type type) {
+        return type != null && Map.class.isAssignableFrom(rawType(type)) ? typeArgument(type, Map.class, 1) : null;
+    }
+
+    /**
+     * 求 type 作为 target 时第 index 个类型参数，沿父类与接口向上解析类型变量。
+     * 如 ArrayList&lt;Order&gt; 对 Iterable 的第 0 个参数是 Order；原始类型或参数不可解析时返回 null
+     */
+    public static Type typeArgument(Type type, Class<?> target, int index) {
+        Type resolved = resolveSupertype(type, target);
+        if (!(resolved instanceof ParameterizedType)) {
+            return null;
+        }
+        Type argument = ((ParameterizedType) resolved).getActualTypeArguments()[index];
+        if (argument instanceof WildcardType) {
+            Type[] upper = ((WildcardType) argument).getUpperBounds();
+            argument = upper.length > 0 ? upper[0] : Object.class;
+        }
+        // 未绑定的类型变量等价于未声明
+        return argument instanceof TypeVariable ? null : argument;
+    }
+
+    /**
+     * 在 owner 的语境下解析成员声明类型中的类型变量，如 Page&lt;Order&gt; 中声明为 List&lt;T&gt; 的字段解析为 List&lt;Order&gt;
+     */
+    public static Type resolve(Type owner, Type memberType) {
+        if (memberType instanceof TypeVariable) {
+            TypeVariable<?> variable = (TypeVariable<?>) memberType;
+            if (variable.getGenericDeclaration() instanceof Class) {
+                Class<?> declaring = (Class<?>) variable.getGenericDeclaration();
+                Type ownerAsDeclaring = resolveSupertype(owner, declaring);
+                if (ownerAsDeclaring instanceof ParameterizedType) {
+                    TypeVariable<?>[] params = declaring.getTypeParameters();
+                    for (int i = 0; i < params.length; i++) {
+                        if (params[i].equals(variable)) {
+                            return ((ParameterizedType) ownerAsDeclaring).getActualTypeArguments()[i];
+                        }
+                    }
+                }
+            }
+            return memberType;
+        }
+        if (memberType instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) memberType;
+            Type[] arguments = parameterized.getActualTypeArguments();
+            Type[] resolved = null;
+            for (int i = 0; i < arguments.length; i++) {
+                Type argument = resolve(owner, arguments[i]);
+                if (argument != arguments[i]) {
+                    if (resolved == null) resolved = arguments.clone();
+                    resolved[i] = argument;
+                }
+            }
+            return resolved == null ? memberType : new ResolvedParameterizedType((Class<?>) parameterized.getRawType(), parameterized.getOwnerType(), resolved);
+        }
+        if (memberType instanceof GenericArrayType) {
+            Type component = resolve(owner, ((GenericArrayType) memberType).getGenericComponentType());
+            return component instanceof Class ? Array.newInstance((Class<?>) component, 0).getClass() : memberType;
+        }
+        return memberType;
+    }
+
+    /**
+     * 用于校验与报错的类型名：List&lt;Order&gt;、Array&lt;Order&gt;、Map&lt;String,Order&gt;，未知元素记为 object
+     */
+    public static String typeName(Type type) {
+        if (type == null) return "object";
+        Class<?> raw = rawType(type);
+        if (raw.isArray() || type instanceof GenericArrayType) {
+            return "Array<" + simpleName(elementType(type)) + ">";
+        }
+        if (Iterable.class.isAssignableFrom(raw)) {
+            return "List<" + simpleName(elementType(type)) + ">";
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            return "Map<" + simpleName(mapKeyType(type)) + "," + simpleName(mapValueType(type)) + ">";
+        }
+        return raw.getSimpleName();
+    }
+
+    /**
+     * 未声明类型时由值得到的类型。只对 RandomAccess 列表按下标查看首元素，
+     * 不会迭代集合，因此惰性集合（如延迟加载的 bag、分页 Iterable）不会被提前加载；Map 不做采样
+     */
+    public static Type observedType(Object value) {
+        if (value == null) return null;
+        if (value instanceof List && value instanceof RandomAccess) {
+            List<?> list = (List<?>) value;
+            Object first = list.isEmpty() ? null : list.get(0);
+            if (first != null) {
+                return parameterized(List.class, first.getClass());
+            }
+        }
+        return value.getClass();
+    }
+
+    /**
+     * 构造带实参的类型，如 parameterized(List.class, Order.class) 即 List&lt;Order&gt;
+     */
+    public static ParameterizedType parameterized(Class<?> rawType, Type... arguments) {
+        if (rawType.getTypeParameters().length != arguments.length) {
+            throw new IllegalArgumentException(rawType.getName() + " expects " + rawType.getTypeParameters().length + " type arguments");
+        }
+        return new ResolvedParameterizedType(rawType, rawType.getDeclaringClass(), arguments.clone());
+    }
+
+    private static String simpleName(Type type) {
+        return type == null ? "object" : rawType(type).getSimpleName();
+    }
+
+    // 将 type 视为 target，返回带实参的父类型（若有）
+    private static Type resolveSupertype(Type type, Class<?> target) {
+        Class<?> raw = rawType(type);
+        if (raw == target) {
+            return type;
+        }
+        if (!target.isAssignableFrom(raw)) {
+            return null;
+        }
+        for (Type candidate : raw.getGenericInterfaces()) {
+            if (target.isAssignableFrom(rawType(candidate))) {
+                return resolveSupertype(resolve(type, candidate), target);
+            }
+        }
+        Type superclass = raw.getGenericSuperclass();
+        if (superclass != null && target.isAssignableFrom(rawType(superclass))) {
+            return resolveSupertype(resolve(type, superclass), target);
+        }
+        return null;
+    }
+
+    private static final class ResolvedParameterizedType implements ParameterizedType {
+        private final Class<?> rawType;
+        private final Type ownerType;
+        private final Type[] arguments;
+
+        ResolvedParameterizedType(Class<?> rawType, Type ownerType, Type[] arguments) {
+            this.rawType = rawType;
+            this.ownerType = ownerType;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return ownerType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) return false;
+            ParameterizedType other = (ParameterizedType) o;
+            return rawType.equals(other.getRawType())
+                    && Objects.equals(ownerType, other.getOwnerType())
+                    && Arrays.equals(arguments, other.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(arguments) ^ Objects.hashCode(ownerType) ^ rawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getTypeName()).append('<');
+            for (int i = 0; i < arguments.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(arguments[i].getTypeName());
+            }
+            return sb.append('>').toString();
+        }
+    }
+}
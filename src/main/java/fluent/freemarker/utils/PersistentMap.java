@@ -0,0 +1,208 @@
+package fluent.freemarker.utils;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变的持久化哈希 Map（哈希数组映射字典树，HAMT）：{@link #plus} 返回新 Map，
+ * 只复制从根到被修改叶子的一条路径（最多 7 层，每层按哈希的 5 位分支），其余结构共享。
+ * 查找与插入都是 O(log32 n)，旧版本保持不变，可被多个线程同时读取。键不能为 null
+ */
+public final class PersistentMap<K, V> {
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return root != null ? (V) root.find(key, key.hashCode(), 0) : null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 加入或替换一个映射；值不能为 null
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node base = root != null ? root : BitmapNode.EMPTY;
+        Node updated = base.assoc(key, value, key.hashCode(), 0, added);
+        if (updated == root) return this;
+        return new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    private interface Node {
+        Object find(Object key, int hash, int shift);
+
+        Node assoc(Object key, Object value, int hash, int shift, boolean[] added);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /**
+     * 位图节点：array 中每个槽位占两格，键非 null 时为键值对，键为 null 时值是下一层节点
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) return ((Node) v).find(key, hash, shift + 5);
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        public Node assoc(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, grown);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(key, value, hash, shift + 5, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) {
+                return value == v ? this : with(i, k, value);
+            }
+            added[0] = true;
+            return with(i, null, split(k, v, key, value, hash, shift + 5));
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        // 同一槽位的两个键下沉一层，哈希完全相同时放入冲突节点
+        private static Node split(Object k1, Object v1, Object k2, Object v2, int h2, int shift) {
+            int h1 = k1.hashCode();
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.assoc(k1, v1, h1, shift, ignored).assoc(k2, v2, h2, shift, ignored);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] != null) {
+                    action.accept(array[i], array[i + 1]);
+                } else {
+                    ((Node) array[i + 1]).forEach(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * 哈希完全相同的键，线性查找
+     */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            if (hash != this.hash) return null;
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return array[i + 1];
+            }
+            return null;
+        }
+
+        @Override
+        public Node assoc(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // 哈希不同：在本层放一个位图节点，把冲突节点作为它的子节点
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).assoc(key, value, hash, shift, added);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    if (array[i + 1] == value) return this;
+                    Object[] copy = array.clone();
+                    copy[i + 1] = value;
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Object[] grown = new Object[array.length + 2];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, grown);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package fluent.freemarker.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按类缓存的属性访问器（基于 MethodHandle），进程内共享。
+ * {@link #find} 的查找顺序与原反射实现一致：声明字段 → getXxx() → isXxx()，用于构建上下文数据；
+ * {@link #findBeanProperty} 与 FreeMarker 的 BeansWrapper 一致，只暴露公共类型上的 JavaBeans 属性，用于渲染模板。
+ * 每个 (类, 属性名) 只解析一次，之后只是一次 Map 查找加一次直接调用，不使用异常做流程控制。
+ */
+@Slf4j
+public final class PropertyAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<ClassAccessors> ACCESSORS = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            return new ClassAccessors(type);
+        }
+    };
+
+    private static final ClassValue<Map<String, PropertyAccessor>> BEAN_PROPERTIES = new ClassValue<Map<String, PropertyAccessor>>() {
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+            return beanProperties(type);
+        }
+    };
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * 读取对象属性，无法访问时返回 null
+     */
+    public static Object getProperty(Object bean, String name) {
+        if (bean == null || name == null) return null;
+        PropertyAccessor accessor = find(bean.getClass(), name);
+        return accessor != null ? accessor.get(bean) : null;
+    }
+
+    /**
+     * 查找类的属性访问器，不存在时返回 null
+     */
+    public static PropertyAccessor find(Class<?> type, String name) {
+        PropertyAccessor accessor = ACCESSORS.get(type).get(name);
+        return accessor == PropertyAccessor.MISSING ? null : accessor;
+    }
+
+    /**
+     * 读取 JavaBeans 属性（与 BeansWrapper 相同：公共的 getXxx()，boolean 的 isXxx()，不读字段），不存在时返回 null
+     */
+    public static Object getBeanProperty(Object bean, String name) {
+        if (bean == null || name == null) return null;
+        PropertyAccessor accessor = findBeanProperty(bean.getClass(), name);
+        return accessor != null ? accessor.get(bean) : null;
+    }
+
+    /**
+     * 查找类的 JavaBeans 属性访问器，不存在或不可公开访问时返回 null
+     */
+    public static PropertyAccessor findBeanProperty(Class<?> type, String name) {
+        return BEAN_PROPERTIES.get(type).get(name);
+    }
+
+    private static Map<String, PropertyAccessor> beanProperties(Class<?> type) {
+        Map<String, PropertyAccessor> properties = new HashMap<>();
+        PropertyDescriptor[] descriptors;
+        try {
+            descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            log.debug("Cannot introspect {}", type, e);
+            return properties;
+        }
+        for (PropertyDescriptor descriptor : descriptors) {
+            Method read = descriptor.getReadMethod();
+            if (read == null) continue;
+            Method method = publicMethod(type, read);
+            if (method == null) continue;
+            try {
+                MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+                properties.put(descriptor.getName(), new PropertyAccessor(descriptor.getName(), read.getReturnType(), handle.asType(GETTER_TYPE), method));
+            } catch (IllegalAccessException e) {
+                log.debug("Cannot access method {} on {}", method.getName(), type, e);
+            }
+        }
+        return properties;
+    }
+
+    // 与 BeansWrapper 一样，非公共类上的方法改用公共父类或接口中的同名方法，找不到则不暴露
+    private static Method publicMethod(Class<?> type, Method method) {
+        if (!Modifier.isPublic(method.getModifiers())) return null;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            Method found = publicMethod(c, method.getName());
+            if (found == null) found = interfaceMethod(c, method.getName());
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static Method interfaceMethod(Class<?> type, String methodName) {
+        for (Class<?> itf : type.getInterfaces()) {
+            Method found = publicMethod(itf, methodName);
+            if (found == null) found = interfaceMethod(itf, methodName);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static Method publicMethod(Class<?> owner, String methodName) {
+        if (!Modifier.isPublic(owner.getModifiers())) return null;
+        try {
+            return owner.getMethod(methodName);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个属性的访问器
+     */
+    public static final class PropertyAccessor {
+        static final PropertyAccessor MISSING = new PropertyAccessor(null, null, null);
+
+        private final String name;
+        private final Class<?> type;
+        private final MethodHandle handle;
+        private final Method method; // JavaBeans 属性在公共类型上的读方法，字段访问器为 null
+
+        PropertyAccessor(String name, Class<?> type, MethodHandle handle) {
+            this(name, type, handle, null);
+        }
+
+        PropertyAccessor(String name, Class<?> type, MethodHandle handle, Method method) {
+            this.name = name;
+            this.type = type;
+            this.handle = handle;
+            this.method = method;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * {@link #findBeanProperty} 返回的访问器对应的公共读方法（声明在公共类或接口上），可直接生成调用；其余为 null
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object get(Object bean) {
+            try {
+                return handle.invokeExact(bean);
+            } catch (Throwable e) {
+                log.debug("Cannot access property {} on {}", name, bean.getClass(), e);
+                return null;
+            }
+        }
+    }
+
+    private static final class ClassAccessors {
+        private final Class<?> type;
+        private final Map<String, Field> declaredFields = new HashMap<>();
+        private final Map<String, Method> noArgMethods = new HashMap<>();
+        private final ConcurrentMap<String, PropertyAccessor> accessors = new ConcurrentHashMap<>();
+
+        ClassAccessors(Class<?> type) {
+            this.type = type;
+            for (Field field : type.getDeclaredFields()) {
+                declaredFields.put(field.getName(), field);
+            }
+            for (Method method : type.getMethods()) {
+                if (method.getParameterCount() == 0) {
+                    noArgMethods.putIfAbsent(method.getName(), method);
+                }
+            }
+        }
+
+        PropertyAccessor get(String name) {
+            PropertyAccessor accessor = accessors.get(name);
+            if (accessor == null) {
+                accessor = accessors.computeIfAbsent(name, this::resolve);
+            }
+            return accessor;
+        }
+
+        private PropertyAccessor resolve(String name) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            // 尝试字段
+            Field field = declaredFields.get(name);
+            if (field != null) {
+                try {
+                    field.setAccessible(true);
+                    return new PropertyAccessor(name, field.getType(), lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                } catch (RuntimeException | IllegalAccessException e) {
+                    log.debug("Cannot access field {} on {}", name, type, e);
+                }
+            }
+            // 尝试 getter: getXXX 或 isXXX
+            if (!name.isEmpty()) {
+                String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                PropertyAccessor getter = methodAccessor(lookup, name, noArgMethods.get("get" + capitalized));
+                if (getter != null) {
+                    return getter;
+                }
+                PropertyAccessor isGetter = methodAccessor(lookup, name, noArgMethods.get("is" + capitalized));
+                if (isGetter != null) {
+                    return isGetter;
+                }
+            }
+            return PropertyAccessor.MISSING;
+        }
+
+        private PropertyAccessor methodAccessor(MethodHandles.Lookup lookup, String name, Method method) {
+            if (method == null || method.getReturnType() == void.class) {
+                return null;
+            }
+            try {
+                method.setAccessible(true);
+                return new PropertyAccessor(name, method.getReturnType(), lookup.unreflect(method).asType(GETTER_TYPE));
+            } catch (RuntimeException | IllegalAccessException e) {
+                log.debug("Cannot access method {} on {}", method.getName(), type, e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package fluent.freemarker.utils;
+
+/**
+ * FreeMarker 字符串字面量的转义与解码。
+ * 普通字符串支持 \" \' \\ \n \r \t \b \f \l(&lt;) \g(&gt;) \a(&amp;) \{ \= 与 \xHHHH；
+ * r"..." 原样字符串不解码。插值（${...}）由表达式解析器处理，这里只负责字符层面。
+ */
+public final class StringLiterals {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private StringLiterals() {
+    }
+
+    /**
+     * 写成双引号字符串字面量。${ 与 #{ 不转义，由 FreeMarker 按插值展开；
+     * 其余字符读回后的值与 value 相同
+     */
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        quote(value, sb);
+        return sb.toString();
+    }
+
+    /**
+     * 转义 \、" 与控制字符后追加到 sb
+     */
+    public static void quote(String value, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7F) {
+                        // 固定 4 位，避免后面的十六进制字符被一起读入
+                        sb.append("\\x").append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF]).append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 完整的字符串字面量 [from, to)（含引号，可带 r 前缀）的值；
+     * 含插值、未转义的同种引号或无法识别的转义时返回 null；
+     * 值中含 ${ 或 #{（转义得到或来自 r 字符串）时同样返回 null，因为 {@link #quote} 写回后会变成插值
+     */
+    public static String valueOf(CharSequence s, int from, int to) {
+        boolean raw = s.charAt(from) == 'r';
+        int contentStart = raw ? from + 2 : from + 1;
+        char quote = s.charAt(contentStart - 1);
+        StringBuilder out = new StringBuilder(to - from);
+        for (int i = contentStart; i < to - 1; ) {
+            char c = s.charAt(i);
+            if (c == quote) return null;
+            if (raw) {
+                out.append(c);
+                i++;
+            } else if (c == '\\') {
+                i = unescape(s, i, to - 1, out);
+                if (i < 0) return null;
+            } else if ((c == '$' || c == '#') && i + 1 < to - 1 && s.charAt(i + 1) == '{') {
+                return null;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return hasInterpolationMarker(out) ? null : out.toString();
+    }
+
+    /**
+     * 是否含有 ${ 或 #{
+     */
+    public static boolean hasInterpolationMarker(CharSequence value) {
+        for (int i = 1, n = value.length(); i < n; i++) {
+            if (value.charAt(i) == '{' && (value.charAt(i - 1) == '$' || value.charAt(i - 1) == '#')) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解码 [from, to) 中的转义序列（不处理插值）
+     *
+     * @throws IllegalArgumentException 无法识别的转义
+     */
+    public static String unescape(CharSequence s, int from, int to) {
+        StringBuilder out = new StringBuilder(to - from);
+        for (int i = from; i < to; ) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                int next = unescape(s, i, to, out);
+                if (next < 0) {
+                    throw new IllegalArgumentException("Invalid escape sequence at position " + i);
+                }
+                i = next;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 解码 s[i] 处（反斜杠）开始的一个转义序列并追加到 out，返回下一个读取位置；无法识别时返回 -1
+     */
+    public static int unescape(CharSequence s, int i, int to, StringBuilder out) {
+        if (i + 1 >= to) return -1;
+        char c = s.charAt(i + 1);
+        switch (c) {
+            case '"':
+            case '\'':
+            case '\\':
+            case '{':
+            case '=':
+                out.append(c);
+                return i + 2;
+            case 'n':
+                out.append('\n');
+                return i + 2;
+            case 'r':
+                out.append('\r');
+                return i + 2;
+            case 't':
+                out.append('\t');
+                return i + 2;
+            case 'b':
+                out.append('\b');
+                return i + 2;
+            case 'f':
+                out.append('\f');
+                return i + 2;
+            case 'l':
+                out.append('<');
+                return i + 2;
+            case 'g':
+                out.append('>');
+                return i + 2;
+            case 'a':
+                out.append('&');
+                return i + 2;
+            case 'x': {
+                // 1 ~ 4 位十六进制
+                int code = 0;
+                int j = i + 2;
+                while (j < to && j < i + 6 && Character.digit(s.charAt(j), 16) >= 0) {
+                    code = code * 16 + Character.digit(s.charAt(j), 16);
+                    j++;
+                }
+                if (j == i + 2) return -1;
+                out.append((char) code);
+                return j;
+            }
+            default:
+                return -1;
+        }
+    }
+}
@@ -12,12 +12,8 @@ public class GlobalVariableValidator extends AbstractVariableValidator {
     protected ValidationResult doValidate(VariableReference reference, ValidationContext context) {
         String rootVar = getRootVariable(reference.getExpression());
         ValidationRecorder recorder = context.getValidationRecorder();
-        // 检查是否是作用域变量（避免对作用域变量报错）
-        if (recorder != null && recorder.isScopeVariable(rootVar)) {
-            // 作用域变量不应该在这里验证，让 ScopeVariableValidator 处理
-            return ValidationResult.valid(); // 或者返回 invalid(null) 让下一个处理
-        }
-        if(recorder != null && recorder.isDefined(rootVar)){
+        // 作用域变量（交给 ScopeVariableValidator）与已定义变量都视为有效
+        if (recorder != null && recorder.resolve(rootVar, reference.getScopeSnapshot()).isDefined()) {
             return ValidationResult.valid();
         }
         // 检查全局变量
@@ -27,5 +23,9 @@ public class GlobalVariableValidator extends AbstractVariableValidator {
         return ValidationResult.invalid("Variable '" + reference.getExpression() + "' referenced at " + reference.getSource() + " is not defined");
     }
 
-
+    // 只读取记录器快照与变量注册表
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -3,6 +3,7 @@ package fluent.freemarker.validator;
 import fluent.freemarker.variable.ScopeVariable;
 import fluent.freemarker.variable.ValidationRecorder;
 import fluent.freemarker.variable.VariableReference;
+import fluent.freemarker.variable.VariableResolution;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -15,23 +16,20 @@ public class ScopeVariableValidator extends AbstractVariableValidator {
         }
         ValidationRecorder recorder = context.getValidationRecorder();
         String rootVar = getRootVariable(reference.getExpression());
-        return recorder.getGlobalAssignedVars().contains(rootVar);
+        return recorder.isDefinedGlobally(rootVar);
     }
 
     @Override
     protected ValidationResult doValidate(VariableReference reference, ValidationContext context) {
         String rootVar = getRootVariable(reference.getExpression());
-        ValidationRecorder recorder = context.getValidationRecorder();
+        VariableResolution resolution = context.getValidationRecorder().resolve(rootVar, reference.getScopeSnapshot());
         // 检查是否是作用域变量（即使作用域已结束，但变量在引用时是有效的）
-        if (recorder.isDefinedInScope(rootVar)) {
+        if (resolution.isInScope()) {
             return ValidationResult.valid();
         }
         // 检查是否在当前或父作用域中被赋值
-        if (recorder.isDefined(rootVar)) {
-            Object value = recorder.getValue(rootVar);
-            if (isScopeVariable(value)) {
-                return ValidationResult.valid();
-            }
+        if (resolution.isDefined() && isScopeVariable(resolution.getValue())) {
+            return ValidationResult.valid();
         }
         // 不是作用域变量，让下一个验证器处理
         return ValidationResult.invalid(null); // null 表示让下一个验证器决定
@@ -42,5 +40,9 @@ public class ScopeVariableValidator extends AbstractVariableValidator {
         return value instanceof ScopeVariable;
     }
 
-
+    // 只读取引用上的作用域快照与全局变量，不经过 TypeRegistry；验证开始后记录器不再写入
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -1,6 +1,8 @@
 package fluent.freemarker.validator;
 
+import fluent.freemarker.model.FieldPath;
 import fluent.freemarker.model.VarType;
+import fluent.freemarker.registry.TypeRegistry;
 import fluent.freemarker.variable.VariableReference;
 import lombok.extern.slf4j.Slf4j;
 
@@ -44,7 +46,8 @@ public class TypeValidator extends AbstractVariableValidator {
             String expression = reference.getExpression();
             String typeName = reference.getVarTypeName();
             if (expression.contains(".")) {
-                String fieldPath = expression.substring(expression.indexOf('.') + 1);
+                // 路径按表达式驻留，重复校验不再切分字符串
+                FieldPath fieldPath = FieldPath.of(expression).tail();
                 if (!context.getFreemarkerContext().getTypeRegistry().knowsField(typeName, fieldPath)) {
                     return ValidationResult.invalid("Field '" + fieldPath + "' may not exist on type '" + typeName + "' for variable '" + expression + "'");
                 }
@@ -54,4 +57,18 @@ public class TypeValidator extends AbstractVariableValidator {
             return ValidationResult.invalid("Type validation failed for '" + reference.getExpression() + "': " + e.getMessage());
         }
     }
+
+    // 验证器本身无状态，字段元数据懒加载也是线程安全的
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    // 并发查询落在上下文的 TypeRegistry 上，由注册表决定能否并行
+    @Override
+    public boolean isThreadSafe(ValidationContext context) {
+        if (context == null || context.getFreemarkerContext() == null) return true;
+        TypeRegistry registry = context.getFreemarkerContext().getTypeRegistry();
+        return registry == null || registry.isThreadSafe();
+    }
 }
@@ -1,16 +1,55 @@
 package fluent.freemarker.validator;
 
+import fluent.freemarker.type.VariableTypeInfo;
 import fluent.freemarker.variable.FluentFreemarkerContext;
 import fluent.freemarker.variable.ValidationRecorder;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Getter
 public class ValidationContext {
     private final FluentFreemarkerContext freemarkerContext;
     private final ValidationRecorder validationRecorder;
 
+    // 根变量 → 类型检测结果，只在 cachedScopeVersion 对应的作用域版本内有效；
+    // 并行验证时会被多个线程读写，验证期间作用域版本不再变化
+    @Getter(AccessLevel.NONE)
+    private final Map<String, VariableTypeInfo> detectedTypes = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private volatile long cachedScopeVersion = -1;
+
     public ValidationContext(FluentFreemarkerContext freemarkerContext, ValidationRecorder validationRecorder) {
         this.freemarkerContext = freemarkerContext;
         this.validationRecorder = validationRecorder;
     }
+
+    /**
+     * 取当前作用域版本下已检测的类型，作用域变化后返回 null
+     */
+    public VariableTypeInfo getDetectedType(String rootVariable) {
+        if (validationRecorder == null) return null;
+        syncScopeVersion();
+        return detectedTypes.get(rootVariable);
+    }
+
+    /**
+     * 缓存当前作用域版本下的类型检测结果
+     */
+    public void cacheDetectedType(String rootVariable, VariableTypeInfo typeInfo) {
+        if (validationRecorder == null || typeInfo == null) return;
+        syncScopeVersion();
+        detectedTypes.put(rootVariable, typeInfo);
+    }
+
+    // 版本号只增不减，版本变化时旧结果整体失效
+    private void syncScopeVersion() {
+        long version = validationRecorder.getScopeVersion();
+        if (version != cachedScopeVersion) {
+            detectedTypes.clear();
+            cachedScopeVersion = version;
+        }
+    }
 }
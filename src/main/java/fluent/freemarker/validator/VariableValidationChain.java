@@ -4,9 +4,18 @@ import fluent.freemarker.variable.VariableReference;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class VariableValidationChain {
 
+    // 引用数少于该值时并行调度的开销大于收益，仍串行验证
+    public static final int PARALLEL_THRESHOLD = 512;
+    // 每个并行任务至少验证的引用数
+    private static final int MIN_CHUNK_SIZE = 128;
+
     private ValidatorNode head;
     private ValidatorNode tail;
     private int size;
@@ -135,6 +144,76 @@ public class VariableValidationChain {
         return errors;
     }
 
+    /**
+     * 批量验证，错误按引用顺序排列（同一引用内按验证器顺序），与串行结果一致。
+     * executor 为 null、链中有验证器在此上下文中不是线程安全的（如 TypeRegistry 不支持并发）或引用数较少时串行执行
+     */
+    public List<String> validateAll(List<VariableReference> references, ValidationContext context, Executor executor) {
+        int count = references.size();
+        if (executor == null || count < PARALLEL_THRESHOLD || !isThreadSafe(context)) {
+            return validateRange(references, 0, count, context);
+        }
+
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (count + parallelism * 4 - 1) / (parallelism * 4));
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+        for (int from = 0; from < count; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(count, from + chunkSize);
+            chunks.add(CompletableFuture.supplyAsync(() -> validateRange(references, start, end, context), executor));
+        }
+
+        // 按分块顺序合并，保证错误顺序确定
+        List<String> errors = new ArrayList<>();
+        for (CompletableFuture<List<String>> chunk : chunks) {
+            try {
+                errors.addAll(chunk.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return errors;
+    }
+
+    private List<String> validateRange(List<VariableReference> references, int from, int to, ValidationContext context) {
+        List<String> errors = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            errors.addAll(validate(references.get(i), context));
+        }
+        return errors;
+    }
+
+    /**
+     * 链中所有验证器都声明为线程安全时返回 true
+     */
+    public boolean isThreadSafe() {
+        ValidatorNode current = head;
+        while (current != null) {
+            if (!current.getValidator().isThreadSafe()) {
+                return false;
+            }
+            current = current.getNext();
+        }
+        return true;
+    }
+
+    /**
+     * 链中所有验证器在给定上下文中都是线程安全时返回 true
+     */
+    public boolean isThreadSafe(ValidationContext context) {
+        ValidatorNode current = head;
+        while (current != null) {
+            if (!current.getValidator().isThreadSafe(context)) {
+                return false;
+            }
+            current = current.getNext();
+        }
+        return true;
+    }
+
     // 获取所有验证器（用于调试或检查）
     public List<VariableValidator> getValidators() {
         List<VariableValidator> validators = new ArrayList<>();
@@ -10,4 +10,19 @@ public interface VariableValidator {
     default boolean skipValidate(VariableReference reference, ValidationContext context) {
         return false;
     }
+
+    /**
+     * 是否可被多个线程同时调用（验证期间只读取上下文与记录器）。
+     * 只有链中所有验证器都是线程安全的，并行验证才会启用；默认 false
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * 结合验证上下文判断能否并行，如依赖上下文中可替换的 TypeRegistry 的验证器需覆盖此方法
+     */
+    default boolean isThreadSafe(ValidationContext context) {
+        return isThreadSafe();
+    }
 }
@@ -0,0 +1,104 @@
+package fluent.freemarker.variable;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleCollection;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上下文的惰性 FreeMarker 数据模型视图。
+ * 不复制上下文；变量和已注册路径在首次访问时才解析并包装，之后在本次渲染内复用。
+ * 未被模板访问的注册路径不产生任何开销。每次渲染创建一个实例，非线程安全。
+ */
+class ContextTemplateModel implements TemplateHashModelEx {
+
+    private static final TemplateModel UNRESOLVED = new TemplateModel() {
+    };
+
+    private final FluentFreemarkerContext owner;
+    private final ObjectWrapper wrapper;
+    private final Map<String, TemplateModel> resolved = new HashMap<>();
+    private Map<String, Object> allValues; // 仅在枚举（keys/values/size）时才计算
+
+    ContextTemplateModel(FluentFreemarkerContext owner, ObjectWrapper wrapper) {
+        this.owner = owner;
+        this.wrapper = wrapper;
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        TemplateModel cached = resolved.get(key);
+        if (cached != null) {
+            return cached == UNRESOLVED ? null : cached;
+        }
+        Object value = lookup(key);
+        TemplateModel model = value != null ? wrapper.wrap(value) : null;
+        resolved.put(key, model != null ? model : UNRESOLVED);
+        return model;
+    }
+
+    private Object lookup(String key) {
+        Object value = owner.getContext().get(key);
+        if (value != null) {
+            return value;
+        }
+        VariableRegistry registry = owner.getVariableRegistry();
+        if (key.indexOf('.') > 0 && registry.knows(key)) {
+            return owner.resolveValueByPath(new VariablePath(key));
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        return allValues().size();
+    }
+
+    @Override
+    public TemplateCollectionModel keys() {
+        return new SimpleCollection(new ArrayList<>(allValues().keySet()), wrapper);
+    }
+
+    @Override
+    public TemplateCollectionModel values() throws TemplateModelException {
+        List<TemplateModel> values = new ArrayList<>();
+        for (String key : allValues().keySet()) {
+            values.add(get(key));
+        }
+        return new SimpleCollection(values, wrapper);
+    }
+
+    private Map<String, Object> allValues() {
+        if (allValues == null) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : owner.getContext().entrySet()) {
+                if (entry.getValue() != null) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (VariablePath path : owner.getVariableRegistry().getAllPaths()) {
+                String pathStr = path.toString();
+                if (result.containsKey(pathStr)) continue;
+                Object value = owner.resolveValueByPath(path);
+                if (value != null) {
+                    result.put(pathStr, value);
+                }
+            }
+            allValues = result;
+        }
+        return allValues;
+    }
+}
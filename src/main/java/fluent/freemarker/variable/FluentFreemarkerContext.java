@@ -1,21 +1,35 @@
 package fluent.freemarker.variable;
 
+import fluent.freemarker.ast.FtlNode;
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.engine.AstInterpreter;
+import fluent.freemarker.engine.CompiledTemplate;
+import fluent.freemarker.engine.TemplateEngine;
+import fluent.freemarker.model.FieldPath;
+import fluent.freemarker.model.TypeInfo;
+import fluent.freemarker.model.TypeToken;
 import fluent.freemarker.registrar.DefaultTypeRegistrar;
 import fluent.freemarker.registry.TypeRegistry;
 import fluent.freemarker.registry.TypeRegistryFactory;
+import fluent.freemarker.utils.GenericTypes;
+import fluent.freemarker.utils.PropertyAccessors;
 import fluent.freemarker.validator.VariableValidationChain;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
+import freemarker.template.ObjectWrapper;
 import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModelEx;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -30,23 +44,40 @@ public class FluentFreemarkerContext {
     private final TypeRegistry typeRegistry;
     private final String currentSourceLocation; // 新增：当前源位置
     private final VariableValidationChain variableValidationChain;
+    private final TemplateEngine templateEngine; // 共享的渲染引擎（Configuration + 模板缓存）
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Type> declaredTypes; // 通过 TypeToken 显式声明的变量类型
+    private final Executor validationExecutor; // 并行验证使用的线程池，null 表示串行验证
+
+    private static final DefaultTypeRegistrar TYPE_REGISTRAR = new DefaultTypeRegistrar();
 
     // Private constructor for internal use
     private FluentFreemarkerContext(String currentSourceLocation, VariableValidationChain variableValidationChain) {
         this.context = new HashMap<>();
+        this.declaredTypes = new HashMap<>();
         this.variableRegistry = new VariableRegistry();
-        this.typeRegistry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        this.typeRegistry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
         this.currentSourceLocation = currentSourceLocation != null ? currentSourceLocation : "unknown";
         this.variableValidationChain = variableValidationChain;
+        this.templateEngine = TemplateEngine.getDefault();
+        this.validationExecutor = null;
     }
 
     // Private constructor for copying
     private FluentFreemarkerContext(FluentFreemarkerContext other, String newSourceLocation, VariableValidationChain variableValidationChain) {
+        this(other, newSourceLocation, variableValidationChain, other.templateEngine, other.typeRegistry, other.validationExecutor);
+    }
+
+    private FluentFreemarkerContext(FluentFreemarkerContext other, String newSourceLocation, VariableValidationChain variableValidationChain,
+                                    TemplateEngine templateEngine, TypeRegistry typeRegistry, Executor validationExecutor) {
         this.context = new HashMap<>(other.context);
+        this.declaredTypes = new HashMap<>(other.declaredTypes);
         this.variableRegistry = other.variableRegistry;
-        this.typeRegistry = other.typeRegistry;
+        this.typeRegistry = typeRegistry;
         this.currentSourceLocation = newSourceLocation != null ? newSourceLocation : other.currentSourceLocation;
         this.variableValidationChain = variableValidationChain;
+        this.templateEngine = templateEngine;
+        this.validationExecutor = validationExecutor;
     }
 
     /**
@@ -70,6 +101,48 @@ public class FluentFreemarkerContext {
         return new FluentFreemarkerContext(this, this.currentSourceLocation, validationChain);
     }
 
+    /**
+     * 设置自定义渲染引擎（默认使用进程共享的 {@link TemplateEngine#getDefault()}）
+     */
+    public FluentFreemarkerContext withTemplateEngine(TemplateEngine templateEngine) {
+        if (templateEngine == null) {
+            throw new IllegalArgumentException("templateEngine must not be null");
+        }
+        return new FluentFreemarkerContext(this, this.currentSourceLocation, this.variableValidationChain, templateEngine, this.typeRegistry, this.validationExecutor);
+    }
+
+    /**
+     * 设置自定义类型注册表（默认是共享缓存之上的上下文覆盖层），已有变量的类型会重新注册
+     */
+    public FluentFreemarkerContext withTypeRegistry(TypeRegistry typeRegistry) {
+        if (typeRegistry == null) {
+            throw new IllegalArgumentException("typeRegistry must not be null");
+        }
+        FluentFreemarkerContext copy = new FluentFreemarkerContext(this, this.currentSourceLocation, this.variableValidationChain, this.templateEngine, typeRegistry, this.validationExecutor);
+        copy.context.forEach(copy::registerTypeIfNeeded);
+        copy.declaredTypes.forEach((name, type) -> TYPE_REGISTRAR.registerDeclaredType(name, type, typeRegistry));
+        return copy;
+    }
+
+
+    /**
+     * Validate recorded references in parallel on the given executor (e.g. a dedicated {@link ForkJoinPool}).
+     * Only used when every validator in the chain is thread-safe for this context (including the
+     * {@link TypeRegistry}, see {@link TypeRegistry#isThreadSafe()}) and the batch is large enough; errors are reported in the same order as serial validation.
+     */
+    public FluentFreemarkerContext withParallelValidation(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        return new FluentFreemarkerContext(this, this.currentSourceLocation, this.variableValidationChain, this.templateEngine, this.typeRegistry, executor);
+    }
+
+    /**
+     * Validate recorded references in parallel on the common {@link ForkJoinPool}.
+     */
+    public FluentFreemarkerContext withParallelValidation() {
+        return withParallelValidation(ForkJoinPool.commonPool());
+    }
 
     /**
      * Add a key-value pair to the context.
@@ -82,12 +155,60 @@ public class FluentFreemarkerContext {
 
     public FluentFreemarkerContext var(String path, Object value) {
         context.put(path, value);
+        declaredTypes.remove(path);
         getVariableRegistry().register(path);
         registerTypeIfNeeded(path, value); // 自动注册类型
         log.trace("Registered variable path: {}", path);
         return this;
     }
 
+    /**
+     * Register a variable together with its declared generic type, e.g.
+     * {@code var("orders", orders, new TypeToken<List<Order>>() {})}.
+     * Type detection for this variable then relies on the declaration only and never inspects the value.
+     */
+    public <T> FluentFreemarkerContext var(String path, T value, TypeToken<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("type must not be null");
+        }
+        context.put(path, value);
+        declaredTypes.put(path, type.getType());
+        getVariableRegistry().register(path);
+        TYPE_REGISTRAR.registerDeclaredType(path, type.getType(), this.typeRegistry);
+        log.trace("Registered variable path: {} as {}", path, type);
+        return this;
+    }
+
+    /**
+     * Declared type of a variable or property path. Explicit {@link TypeToken} declarations win;
+     * nested paths follow the generic field and getter types recorded in {@link TypeInfo}.
+     * Only the root value's class is consulted, collections are never iterated.
+     *
+     * @return the declared type, or {@code null} if the path cannot be resolved
+     */
+    public Type resolveDeclaredType(String path) {
+        if (path == null || path.isEmpty()) return null;
+        Type declared = declaredTypes.get(path);
+        if (declared != null) return declared;
+        if (context.containsKey(path)) {
+            return GenericTypes.observedType(context.get(path));
+        }
+
+        FieldPath fieldPath = FieldPath.of(path);
+        if (fieldPath.size() == 0) return null;
+        String root = fieldPath.getSegment(0);
+        Type current = declaredTypes.get(root);
+        if (current == null) {
+            current = GenericTypes.observedType(context.get(root));
+        }
+        for (int i = 1; i < fieldPath.size() && current != null; i++) {
+            TypeInfo typeInfo = typeRegistry.getTypeInfo(GenericTypes.rawType(current));
+            Type fieldType = typeInfo != null ? typeInfo.getGenericFieldType(fieldPath.getSegment(i)) : null;
+            current = fieldType != null ? GenericTypes.resolve(current, fieldType) : null;
+        }
+        return current;
+    }
+
     // 批量注册
     public FluentFreemarkerContext vars(Map<String, Object> map) {
         map.forEach((key, value) -> {
@@ -102,7 +223,7 @@ public class FluentFreemarkerContext {
      * 自动注册类型到 TypeRegistry
      */
     private void registerTypeIfNeeded(String varName, Object value) {
-        new DefaultTypeRegistrar().registerTypeIfNeeded(varName, value, this.typeRegistry);
+        TYPE_REGISTRAR.registerTypeIfNeeded(varName, value, this.typeRegistry);
     }
 
 
@@ -198,58 +319,34 @@ public class FluentFreemarkerContext {
         return Collections.unmodifiableMap(result);
     }
 
-    private Object resolveValueByPath(VariablePath path) {
-        List<String> segments = path.getSegments();
-        if (segments.isEmpty()) return null;
+    /**
+     * Lazy FreeMarker view of this context: nothing is copied, and values and
+     * registered paths are resolved and wrapped on first access only.
+     * Create one per render; the returned model is not thread-safe.
+     */
+    public TemplateHashModelEx toTemplateModel(ObjectWrapper wrapper) {
+        return new ContextTemplateModel(this, wrapper);
+    }
+
+    private TemplateHashModelEx renderModel() {
+        return toTemplateModel(templateEngine.getConfiguration().getObjectWrapper());
+    }
+
+    Object resolveValueByPath(VariablePath path) {
+        int size = path.size();
+        if (size == 0) return null;
         // 第一段是根变量
-        String first = segments.get(0);
-        Object current = context.get(first);
+        Object current = context.get(path.getSegment(0));
         if (current == null) return null;
 
-        // 逐级访问
-        for (int i = 1; i < segments.size(); i++) {
-            String field = segments.get(i);
-            current = getProperty(current, field);
+        // 逐级访问（访问器按类缓存）
+        for (int i = 1; i < size; i++) {
+            current = PropertyAccessors.getProperty(current, path.getSegment(i));
             if (current == null) break;
         }
         return current;
     }
 
-    private Object getProperty(Object bean, String fieldName) {
-        try {
-            // 尝试字段
-            Field field;
-            Class<?> clazz = bean.getClass();
-            try {
-                field = clazz.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                return field.get(bean);
-            } catch (NoSuchFieldException e) {
-                // 尝试 getter
-            }
-
-            // 尝试 getter: getXXX 或 isXXX
-            String getterName = "get" + capitalize(fieldName);
-            try {
-                Method method = clazz.getMethod(getterName);
-                return method.invoke(bean);
-            } catch (NoSuchMethodException e2) {
-                if (fieldName.length() > 0) {
-                    String isGetter = "is" + capitalize(fieldName);
-                    Method method = clazz.getMethod(isGetter);
-                    return method.invoke(bean);
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Cannot access property {} on {}", fieldName, bean.getClass(), e);
-        }
-        return null;
-    }
-
-    private String capitalize(String s) {
-        return s.isEmpty() ? s : s.substring(0, 1).toUpperCase() + s.substring(1);
-    }
-
     /**
      * Add a stream as a list to the context (collects stream safely).
      * If stream is null, an empty list is used.
@@ -375,17 +472,82 @@ public class FluentFreemarkerContext {
 
     /**
      * Render template from string.
+     * The compiled template is cached by the shared {@link TemplateEngine}.
      */
     public String render(String templateContent) throws IOException, TemplateException {
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
-        cfg.setDefaultEncoding("UTF-8");
-        Template template = new Template("inline", templateContent, cfg);
-        try (Writer out = new StringWriter()) {
-            template.process(build(), out);
-            return out.toString();
+        return templateEngine.render(templateContent, renderModel());
+    }
+
+    /**
+     * Render template from string directly into the given writer.
+     * {@code <#flush>} in the template flushes the writer.
+     */
+    public void render(String templateContent, Writer out) throws IOException, TemplateException {
+        templateEngine.render(templateContent, renderModel(), out);
+    }
+
+    /**
+     * Render template from string as UTF-8 bytes. The stream is flushed but not closed.
+     */
+    public void render(String templateContent, OutputStream out) throws IOException, TemplateException {
+        templateEngine.render(templateContent, renderModel(), out);
+    }
+
+    /**
+     * Render template from string as UTF-8 bytes. The channel is not closed.
+     */
+    public void render(String templateContent, WritableByteChannel channel) throws IOException, TemplateException {
+        templateEngine.render(templateContent, renderModel(), channel);
+    }
+
+    /**
+     * Render built nodes directly against this context, without generating FTL text.
+     * Nodes the interpreter does not cover (e.g. {@code <#compress>}, {@code <#include>})
+     * are rendered through FreeMarker from the generated template text instead.
+     */
+    public String render(List<FtlNode> nodes) throws IOException, TemplateException {
+        StringWriter out = new StringWriter();
+        render(nodes, out);
+        return out.toString();
+    }
+
+    /**
+     * Render built nodes directly into the given writer.
+     */
+    public void render(List<FtlNode> nodes, Writer out) throws IOException, TemplateException {
+        if (AstInterpreter.supports(nodes)) {
+            templateEngine.getInterpreter().render(nodes, context, out);
+        } else {
+            templateEngine.render(FtlBuilder.getRenderer().render(nodes), renderModel(), out);
+        }
+    }
+
+    /**
+     * Render built nodes as UTF-8 bytes. The stream is flushed but not closed.
+     */
+    public void render(List<FtlNode> nodes, OutputStream out) throws IOException, TemplateException {
+        if (AstInterpreter.supports(nodes)) {
+            templateEngine.getInterpreter().render(nodes, context, out);
+        } else {
+            templateEngine.render(FtlBuilder.getRenderer().render(nodes), renderModel(), out);
         }
     }
 
+    /**
+     * Compile built nodes for repeated rendering. Property paths on this context's variables
+     * (e.g. {@code ${user.name}}) are bound to direct getter calls for the current value types,
+     * as known to this context's {@link TypeRegistry}; other values still render correctly through the generic path.
+     *
+     * @throws IllegalArgumentException if the nodes are outside {@link AstInterpreter#supports(List)}
+     */
+    public CompiledTemplate compile(List<FtlNode> nodes) {
+        Map<String, Class<?>> types = new HashMap<>();
+        context.forEach((name, value) -> {
+            if (value != null) types.put(name, value.getClass());
+        });
+        return templateEngine.compile(nodes, types, typeRegistry);
+    }
+
     public <T> FluentFreemarkerContext withFilteredCollection(
             String key,
             Collection<T> collection,
@@ -439,15 +601,19 @@ public class FluentFreemarkerContext {
      * Render template from file (optional)
      */
     public String renderFromFile(String templatePath) throws IOException, TemplateException {
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
-        cfg.setClassForTemplateLoading(FluentFreemarkerContext.class, "/");
-        cfg.setDefaultEncoding("UTF-8");
-
-        Template template = cfg.getTemplate(templatePath);
-        try (Writer out = new StringWriter()) {
-            template.process(build(), out);
-            return out.toString();
-        }
+        return templateEngine.renderFromFile(templatePath, renderModel());
+    }
+
+    public void renderFromFile(String templatePath, Writer out) throws IOException, TemplateException {
+        templateEngine.renderFromFile(templatePath, renderModel(), out);
+    }
+
+    public void renderFromFile(String templatePath, OutputStream out) throws IOException, TemplateException {
+        templateEngine.renderFromFile(templatePath, renderModel(), out);
+    }
+
+    public void renderFromFile(String templatePath, WritableByteChannel channel) throws IOException, TemplateException {
+        templateEngine.renderFromFile(templatePath, renderModel(), channel);
     }
 
     @Override
@@ -0,0 +1,104 @@
+package fluent.freemarker.variable;
+
+import fluent.freemarker.utils.PersistentMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 作用域栈的不可变快照，也是 ValidationRecorder 唯一的作用域模型。
+ * 每个帧持有本帧可见的全部变量（持久化 Map，内层定义覆盖外层），并指向外层帧：
+ * 推入作用域共享外层的 Map，定义变量只复制一条路径，弹出作用域即回到外层帧，被遮蔽的变量自然恢复。
+ * 查找为 O(log32 n)，与嵌套深度无关；每个变量引用都可以 O(1) 地持有记录时刻的作用域，
+ * 延迟或并行验证时按该快照解析，而不是按 build() 时的作用域
+ */
+public final class ScopeSnapshot {
+    static final ScopeSnapshot EMPTY = new ScopeSnapshot(null, null, PersistentMap.empty(), 0);
+
+    private final ValidationRecorder.FreeScope scope; // 根帧为 null
+    private final ScopeSnapshot enclosing;
+    private final PersistentMap<String, VariableResolution> visible; // 本帧可见的变量
+    private final ScopeSnapshot root; // 最外层（全局）帧
+    private final int depth;
+
+    private ScopeSnapshot(ValidationRecorder.FreeScope scope, ScopeSnapshot enclosing,
+                          PersistentMap<String, VariableResolution> visible, int depth) {
+        this.scope = scope;
+        this.enclosing = enclosing;
+        this.visible = visible;
+        this.depth = depth;
+        this.root = enclosing != null ? enclosing.root : this;
+    }
+
+    ScopeSnapshot push(ValidationRecorder.FreeScope scope) {
+        return new ScopeSnapshot(scope, this, visible, depth + 1);
+    }
+
+    ScopeSnapshot pop() {
+        return enclosing != null ? enclosing : this;
+    }
+
+    ScopeSnapshot define(VariableResolution resolution) {
+        return new ScopeSnapshot(scope, enclosing, visible.plus(resolution.getName(), resolution), depth);
+    }
+
+    /**
+     * 在快照中查找（内层优先），未找到返回 null（交由上下文全局变量决定）
+     */
+    public VariableResolution lookup(String name) {
+        return visible.get(name);
+    }
+
+    /**
+     * 最外层（全局）帧，只含在所有作用域之外定义的变量
+     */
+    public ScopeSnapshot getRoot() {
+        return root;
+    }
+
+    /**
+     * 依次访问可见的变量（每个变量名一次，取最内层的定义）
+     */
+    public void forEachVisible(Consumer<VariableResolution> action) {
+        visible.forEach((name, resolution) -> action.accept(resolution));
+    }
+
+    /**
+     * 快照所在的作用域，根帧为 null
+     */
+    public ValidationRecorder.FreeScope getScope() {
+        return scope;
+    }
+
+    /**
+     * 外层帧，根帧为 null
+     */
+    public ScopeSnapshot getEnclosing() {
+        return enclosing;
+    }
+
+    /**
+     * 由内到外的作用域（不含根帧）
+     */
+    public List<ValidationRecorder.FreeScope> getScopes() {
+        if (depth == 0) {
+            return Collections.emptyList();
+        }
+        List<ValidationRecorder.FreeScope> scopes = new ArrayList<>(depth);
+        for (ScopeSnapshot frame = this; frame.depth > 0; frame = frame.enclosing) {
+            scopes.add(frame.scope);
+        }
+        return scopes;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "ScopeSnapshot{depth=" + depth + ", scope=" + scope + ", visible=" + visible.size() + '}';
+    }
+}
@@ -6,18 +6,46 @@ import lombok.Getter;
 
 import java.util.*;
 
+/**
+ * 记录变量引用并维护作用域。作用域只有一份模型：当前的 {@link ScopeSnapshot}，
+ * 推入、弹出作用域与定义变量都产生新的快照；从上下文导入的变量单独存放，任何作用域中都可见，
+ * 但不遮蔽快照中的定义。一次查找即得到 {@link VariableResolution}，与作用域嵌套深度无关。
+ * 弹出作用域后其中的变量不再可见，例如列表项在 #list 结束后使用会被报告为未定义
+ */
 public class ValidationRecorder {
     private final List<VariableReference> references = new ArrayList<>();
-    private final Deque<FreeScope> scopeStack = new ArrayDeque<>(); // 使用 FreeScope
-    private final Map<String, Object> globalVariables = new HashMap<>();
+    private final Map<String, VariableResolution> contextVariables = new HashMap<>(); // 从上下文导入的变量，任何时刻都可见
+    private ScopeSnapshot snapshot = ScopeSnapshot.EMPTY; // 当前作用域
+    private int validatedCount; // 已通过验证的引用数量，之前的引用不再重复验证
+    private long scopeVersion; // 作用域或变量定义每变化一次加一，只增不减
 
     // ====== 变量引用记录 ======
     public void record(VariableReference ref) {
         references.add(ref);
     }
 
+    /**
+     * 已记录的引用（只读视图，不复制）
+     */
     public List<VariableReference> getReferences() {
-        return new ArrayList<>(references);
+        return Collections.unmodifiableList(references);
+    }
+
+    /**
+     * 获取尚未验证的引用（每个引用只验证一次），返回只读视图
+     */
+    public List<VariableReference> getPendingReferences() {
+        if (validatedCount >= references.size()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(references.subList(validatedCount, references.size()));
+    }
+
+    /**
+     * 标记前 count 个待验证引用已验证通过
+     */
+    public void markValidated(int count) {
+        validatedCount = Math.min(references.size(), validatedCount + count);
     }
 
     // ====== 作用域管理 ======
@@ -26,22 +54,24 @@ public class ValidationRecorder {
      * 推入新作用域
      */
     public void pushScope(String scopeType, String scopeName) {
-        scopeStack.push(new FreeScope(scopeType, scopeName));
+        snapshot = snapshot.push(new FreeScope(scopeType, scopeName));
+        scopeVersion++;
     }
 
     /**
      * 推入默认作用域
      */
     public void pushScope() {
-        scopeStack.push(new FreeScope("unknown", "unnamed"));
+        pushScope("unknown", "unnamed");
     }
 
     /**
-     * 弹出作用域
+     * 弹出作用域，回到外层快照，被遮蔽的外层变量随之恢复
      */
     public void popScope() {
-        if (!scopeStack.isEmpty()) {
-            scopeStack.pop();
+        if (snapshot.getDepth() > 0) {
+            snapshot = snapshot.pop();
+            scopeVersion++;
         }
     }
 
@@ -49,101 +79,103 @@ public class ValidationRecorder {
      * 在当前作用域中定义变量
      */
     public void defineVariable(String name, Object value) {
-        if (scopeStack.isEmpty()) {
+        if (snapshot.getDepth() == 0) {
             // 如果没有作用域，定义为全局变量
-            globalVariables.put(name, value);
+            snapshot = snapshot.define(VariableResolution.global(name, value));
         } else {
-            // 在当前作用域中定义
-            scopeStack.peek().defineVariable(name, value);
+            // 在当前作用域中定义，同一作用域重复定义时替换
+            FreeScope scope = snapshot.getScope();
+            scope.defineVariable(name, value);
+            snapshot = snapshot.define(VariableResolution.scoped(name, value, scope));
         }
+        scopeVersion++;
+    }
+
+    /**
+     * 按当前作用域解析变量名（最内层作用域优先，其次全局）
+     */
+    public VariableResolution resolve(String name) {
+        return resolve(name, snapshot);
+    }
+
+    /**
+     * 按快照解析：先查快照，其次是从上下文导入的变量。
+     * 快照为 null 时按当前作用域解析
+     */
+    public VariableResolution resolve(String name, ScopeSnapshot at) {
+        VariableResolution resolution = (at != null ? at : snapshot).lookup(name);
+        if (resolution == null) {
+            resolution = contextVariables.get(name);
+        }
+        return resolution != null ? resolution : VariableResolution.undefined(name);
+    }
+
+    /**
+     * 当前作用域的不可变快照，O(1)，可随变量引用一起保存
+     */
+    public ScopeSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 作用域版本号：推入/弹出作用域、定义变量、导入上下文都会使其递增。
+     * 版本号相同则变量解析结果相同，可用作类型检测缓存的键
+     */
+    public long getScopeVersion() {
+        return scopeVersion;
     }
 
     /**
      * 检查变量是否已定义（从内到外查找）
      */
     public boolean isDefined(String name) {
-        // 检查作用域（从内到外）
-        for (FreeScope scope : scopeStack) {
-            if (scope.containsVariable(name)) {
-                return true;
-            }
-        }
-        // 检查全局变量
-        return globalVariables.containsKey(name);
+        return resolve(name).isDefined();
     }
 
     /**
      * 获取变量值（从内到外查找）
      */
     public Object getValue(String name) {
-        // 检查作用域（从内到外）
-        for (FreeScope scope : scopeStack) {
-            if (scope.containsVariable(name)) {
-                return scope.getVariable(name);
-            }
-        }
-        // 检查全局变量
-        return globalVariables.get(name);
+        return resolve(name).getValue();
     }
 
     // ====== 特定作用域检查 ======
 
     /**
-     * 检查变量是否在全局作用域中定义
+     * 检查变量是否在全局作用域中定义（上下文导入或在所有作用域之外赋值）
      */
     public boolean isDefinedGlobally(String name) {
-        return globalVariables.containsKey(name);
+        return contextVariables.containsKey(name) || snapshot.getRoot().lookup(name) != null;
     }
 
     /**
      * 检查变量是否在局部作用域中定义
      */
     public boolean isDefinedInScope(String name) {
-        // 检查所有局部作用域
-        for (FreeScope scope : scopeStack) {
-            if (scope.containsVariable(name)) {
-                return true;
-            }
-        }
-        return false;
+        return resolve(name).isInScope();
     }
 
     /**
      * 检查是否是特殊标记的变量（如作用域变量）
      */
     public boolean isMarkedVariable(String name) {
-        Object value = getValue(name);
-        return value instanceof ScopeVariableMarker;
+        return getValue(name) instanceof ScopeVariableMarker;
     }
 
     /**
      * 检查是否是作用域变量
      */
     public boolean isScopeVariable(String name) {
-        // 检查所有作用域中的变量是否是 ScopeMarker
-        for (FreeScope scope : scopeStack) {
-            if (scope.containsVariable(name)) {
-                Object value = scope.getVariable(name);
-                return value instanceof ScopeVariableMarker;
-            }
-        }
-        return false;
+        return resolve(name).isScopeItem();
     }
 
     /**
      * 获取变量的作用域类型
      */
     public VarKeyType getVariableScopeType(String name) {
-        for (FreeScope scope : scopeStack) {
-            if (scope.containsVariable(name)) {
-                Object value = scope.getVariable(name);
-                if (value instanceof ScopeVariableMarker) {
-                    return VarKeyType.ofKeyType(name, ((ScopeVariableMarker) value).getType());
-                } else if (value != null) {
-                    return VarKeyType.ofKeyType(name, value.getClass().getSimpleName());
-                }
-                return VarKeyType.ofKeyType(name, "object");
-            }
+        VariableResolution resolution = resolve(name);
+        if (resolution.isInScope()) {
+            return VarKeyType.ofKeyType(name, resolution.getTypeName());
         }
         return VarKeyType.ofKeyType(name, VarType.UNDEFINED.name());
     }
@@ -154,7 +186,11 @@ public class ValidationRecorder {
             Map<String, Object> ctxMap = context.getContext();
             if (ctxMap != null) {
                 for (Map.Entry<String, Object> entry : ctxMap.entrySet()) {
-                    globalVariables.putIfAbsent(entry.getKey(), entry.getValue());
+                    // 子构建器重复导入同一上下文时不改变版本
+                    if (!isDefinedGlobally(entry.getKey())) {
+                        contextVariables.put(entry.getKey(), VariableResolution.global(entry.getKey(), entry.getValue()));
+                        scopeVersion++;
+                    }
                 }
             }
         }
@@ -162,15 +198,13 @@ public class ValidationRecorder {
 
 
     public Set<String> getAllDefinedVariables() {
-        Set<String> all = new HashSet<>(globalVariables.keySet());
-        for (FreeScope scope : scopeStack) {
-            all.addAll(scope.getVariableNames());
-        }
-        return all;
+        Set<String> names = new HashSet<>(contextVariables.keySet());
+        snapshot.forEachVisible(resolution -> names.add(resolution.getName()));
+        return names;
     }
 
     public int getScopeDepth() {
-        return scopeStack.size();
+        return snapshot.getDepth();
     }
 
 
@@ -235,16 +269,23 @@ public class ValidationRecorder {
     // ====== 工具方法 ======
     public void clear() {
         references.clear();
-        scopeStack.clear();
-        globalVariables.clear();
+        validatedCount = 0;
+        contextVariables.clear();
+        snapshot = ScopeSnapshot.EMPTY;
+        scopeVersion++;
     }
 
     public Set<String> getGlobalAssignedVars() {
-        return Collections.unmodifiableSet(globalVariables.keySet());
+        Set<String> names = new HashSet<>(contextVariables.keySet());
+        snapshot.getRoot().forEachVisible(resolution -> names.add(resolution.getName()));
+        return Collections.unmodifiableSet(names);
     }
 
+    /**
+     * 作用域栈的快照（复制，最内层在前），仅用于调试与检查
+     */
     public Deque<FreeScope> getScopeStack() {
-        return new ArrayDeque<>(scopeStack);
+        return new ArrayDeque<>(snapshot.getScopes());
     }
 
 
@@ -23,6 +23,14 @@ public class VariablePath implements Comparable<VariablePath>{
         return new ArrayList<>(segments);
     }
 
+    public int size() {
+        return segments.size();
+    }
+
+    public String getSegment(int index) {
+        return segments.get(index);
+    }
+
     public String toString() {
         return String.join(".", segments);
     }
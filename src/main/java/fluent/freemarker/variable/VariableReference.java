@@ -10,13 +10,19 @@ public class VariableReference {
     private final String varTypeName;
     private final String varKey;
     private final String source;         // 来源（调试用）
+    private final ScopeSnapshot scopeSnapshot; // 记录时的作用域快照，为 null 时按验证时的作用域解析
 
     public VariableReference(String expression, VarType varType, String varTypeName, String varKey, String source) {
+        this(expression, varType, varTypeName, varKey, source, null);
+    }
+
+    public VariableReference(String expression, VarType varType, String varTypeName, String varKey, String source, ScopeSnapshot scopeSnapshot) {
         this.expression = expression;
         this.varType = varType;
         this.varTypeName = varTypeName;
         this.varKey = varKey;
         this.source = source;
+        this.scopeSnapshot = scopeSnapshot;
     }
 
     @Override
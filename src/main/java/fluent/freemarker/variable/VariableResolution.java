@@ -0,0 +1,72 @@
+package fluent.freemarker.variable;
+
+import fluent.freemarker.model.VarType;
+import lombok.Getter;
+
+/**
+ * 变量名的一次解析结果：种类、值、类型名与定义它的作用域（全局或未定义时为 null）。
+ * 不可变，由 ValidationRecorder 在定义变量时创建，查找时直接返回，不再重复遍历作用域
+ */
+@Getter
+public final class VariableResolution {
+    private final String name;
+    private final VarType kind;
+    private final Object value;
+    private final String typeName;
+    private final ValidationRecorder.FreeScope scope;
+
+    private VariableResolution(String name, VarType kind, Object value, ValidationRecorder.FreeScope scope) {
+        this.name = name;
+        this.kind = kind;
+        this.value = value;
+        this.scope = scope;
+        this.typeName = typeNameOf(value);
+    }
+
+    static VariableResolution scoped(String name, Object value, ValidationRecorder.FreeScope scope) {
+        VarType kind = value instanceof ScopeVariableMarker ? VarType.SCOPE_ITEM : VarType.LOCAL;
+        return new VariableResolution(name, kind, value, scope);
+    }
+
+    static VariableResolution global(String name, Object value) {
+        return new VariableResolution(name, VarType.GLOBAL, value, null);
+    }
+
+    static VariableResolution undefined(String name) {
+        return new VariableResolution(name, VarType.UNDEFINED, null, null);
+    }
+
+    public boolean isDefined() {
+        return kind != VarType.UNDEFINED;
+    }
+
+    /**
+     * 是否定义在某个局部作用域中（列表项、宏参数、局部赋值等）
+     */
+    public boolean isInScope() {
+        return scope != null;
+    }
+
+    public boolean isScopeItem() {
+        return kind == VarType.SCOPE_ITEM;
+    }
+
+    private static String typeNameOf(Object value) {
+        if (value instanceof ScopeVariableMarker) {
+            return ((ScopeVariableMarker) value).getType();
+        } else if (value != null) {
+            return value.getClass().getSimpleName();
+        }
+        return "object";
+    }
+
+    @Override
+    public String toString() {
+        return "VariableResolution{" +
+                "name='" + name + '\'' +
+                ", kind=" + kind +
+                ", typeName='" + typeName + '\'' +
+                ", scope=" + scope +
+                '}';
+    }
+}
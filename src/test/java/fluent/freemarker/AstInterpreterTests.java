@@ -0,0 +1,405 @@
+package fluent.freemarker;
+
+import fluent.freemarker.ast.*;
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.ast.expr.IdentifierExpr;
+import fluent.freemarker.ast.expr.LiteralExpr;
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.engine.AstInterpreter;
+import fluent.freemarker.engine.TemplateEngine;
+import fluent.freemarker.parser.FtlExpressionParser;
+import fluent.freemarker.variable.FluentFreemarkerContext;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 解释器与 FreeMarker 的等价性：同一组节点分别直接解释执行、以及生成模板文本后交给 FreeMarker 渲染，输出必须一致
+ */
+public class AstInterpreterTests {
+
+    private static final TemplateEngine ENGINE = new TemplateEngine(configuration(), 64);
+    private static final FtlExpressionParser PARSER = new FtlExpressionParser();
+
+    @Getter
+    public static class Product {
+        private final String name;
+        private final BigDecimal price;
+        private final int stock;
+        private final List<String> tags;
+
+        public Product(String name, String price, int stock, String... tags) {
+            this.name = name;
+            this.price = new BigDecimal(price);
+            this.stock = stock;
+            this.tags = Arrays.asList(tags);
+        }
+
+        public boolean isAvailable() {
+            return stock > 0;
+        }
+    }
+
+    public enum Status {ACTIVE, SUSPENDED}
+
+    // getter 与字段不同、私有字段没有 getter：只有 JavaBeans 属性可见
+    public static class Account {
+        private final String n = "raw";
+        private final String secret = "s3cret";
+
+        public String getN() {
+            return "Formatted";
+        }
+    }
+
+    private static Configuration configuration() {
+        Configuration cfg = TemplateEngine.createDefaultConfiguration();
+        cfg.setLocale(Locale.US);
+        return cfg;
+    }
+
+    private static Map<String, Object> data() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", "  Catalog  ");
+        data.put("total", 1234567.891);
+        data.put("count", 3);
+        data.put("ratio", 0.1);
+        data.put("flag", true);
+        data.put("status", Status.ACTIVE);
+        data.put("empty", "");
+        data.put("products", Arrays.asList(
+                new Product("Pen", "1.5", 10, "office", "cheap"),
+                new Product("Desk", "249.99", 0),
+                new Product("Lamp", "35", 4, "home")));
+        data.put("ids", new int[]{7, 8, 9});
+        data.put("letters", new LinkedHashSet<>(Arrays.asList("a", "b", "c")));
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("theme", "dark");
+        settings.put("pageSize", 20);
+        data.put("settings", settings);
+        data.put("account", new Account());
+        return data;
+    }
+
+    private static String interpret(List<FtlNode> nodes, Map<String, Object> data) throws Exception {
+        assertTrue(AstInterpreter.supports(nodes), "interpreter should cover " + nodes);
+        return ENGINE.getInterpreter().render(nodes, data);
+    }
+
+    private static String freemarker(List<FtlNode> nodes, Map<String, Object> data) throws Exception {
+        return ENGINE.render(FtlBuilder.getRenderer().render(nodes), data);
+    }
+
+    private static void assertEquivalent(List<FtlNode> nodes) throws Exception {
+        Map<String, Object> data = data();
+        String expected = freemarker(nodes, data);
+        assertEquals(expected, interpret(nodes, data));
+        // 编译后的模板与直接执行的结果相同
+        assertEquals(expected, ENGINE.compile(nodes).render(data()));
+    }
+
+    private static void assertEquivalent(FtlBuilder builder) throws Exception {
+        assertEquivalent(builder.build());
+    }
+
+    private static FtlExpr expr(String expression) {
+        return PARSER.parse(expression);
+    }
+
+    @Test
+    public void testInterpolationsAndNumberFormatting() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .text("[").var("title").text("]").newline()
+                .var("total").text("|").var("count").text("|").var("ratio").newline()
+                .var("ratio + 0.2").text("|").var("10 / count").text("|").var("7 % count").text("|").var("-count * 1.5").newline()
+                .var("'n=' + count").text("|").var("total + '!'").text("|").var("status").text("|").var("products[1].price").newline()
+                .var("settings.theme").text("|").var("settings['pageSize'] * 100").text("|").var("ids[2]").text("|").var("title[2]");
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testStringLiteralsWithEscapesAndInterpolations() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .var("\"say \\\"hi\\\"\"").text("|").var("r\"C:\\dir\"").text("|").var("'a\\tb\\x41'").newline()
+                .var("\"[${title}] x${count}\"").text("|").var("\"${count * 1000}!\"").text("|").var("missing!\"none ${title}\"");
+        assertEquivalent(b);
+
+        // 值含 ${ 的字面量保持原文，交给 FreeMarker
+        List<FtlNode> literalMarkers = FtlBuilder.create().var("r\"C:\\dir\\${x}\"").text("|").var("\"$\\{title}\"").build();
+        assertFalse(AstInterpreter.supports(literalMarkers));
+        assertEquals("C:\\dir\\${x}|${title}", freemarker(literalMarkers, data()));
+    }
+
+    @Test
+    public void testLiteralStringsKeepInterpolationWhenWritten() throws Exception {
+        // 直接构造的字面量中的 ${...} 照旧由 FreeMarker 展开
+        List<FtlNode> nodes = FtlBuilder.create().global("greeting", new LiteralExpr("Hello ${title}")).var("greeting").build();
+        assertFalse(AstInterpreter.supports(nodes));
+        assertEquals("Hello " + data().get("title"), freemarker(nodes, data()));
+    }
+
+    @Test
+    public void testParenthesizedDefaultAndExistsTargets() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .var("(missing.x)!'z'").text("|").var("((settings.nothing.deeper)!'none' == 'none')?c").text("|")
+                .var("(products[0].name)!'none'").text("|").var("(missing.x)!").newline()
+                .ifElseBlock("(missing.address.city)??", t -> t.text("yes"), e -> e.text("no")).newline()
+                .ifElseBlock("(settings.theme)?? && !(settings.nothing.deeper)??", t -> t.text("yes"), e -> e.text("no"));
+        assertEquivalent(b);
+
+        // 不加括号时只容忍最后一段缺失
+        List<FtlNode> unguarded = FtlBuilder.create().var("missing.x!'z'").build();
+        assertThrows(TemplateException.class, () -> freemarker(unguarded, data()));
+        assertThrows(TemplateException.class, () -> interpret(unguarded, data()));
+    }
+
+    @Test
+    public void testBeanMembersResolveLikeBeansWrapper() throws Exception {
+        List<FtlNode> nodes = FtlBuilder.create().text("n=").var("account.n").text("|").var("account.secret!'hidden'")
+                .list("p", "products", l -> l.var("p.available?c")).build();
+        assertEquals("n=Formatted|hiddentruefalsetrue", freemarker(nodes, data()));
+        assertEquals(freemarker(nodes, data()), interpret(nodes, data()));
+        assertEquals(freemarker(nodes, data()), ENGINE.compile(nodes).render(data()));
+    }
+
+    @Test
+    public void testConditionsAndDefaults() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .ifElseBlock("count gt 2 && flag", t -> t.text("big"), e -> e.text("small")).newline()
+                .ifElseBlock("!(count lte 2) || missing??", t -> t.text("yes"), e -> e.text("no")).newline()
+                .ifElseBlock("status == 'ACTIVE' && settings.theme != 'light'", t -> t.text("active"), e -> e.text("other")).newline()
+                .ifBlock("settings.nothing?? == false", t -> t.text("absent")).newline()
+                .var("missing!'fallback'").text("|").var("settings.nothing!42").text("|").var("missing!").text("|")
+                .var("(missing!0) + 1").newline()
+                .ifElseBlock("empty?has_content || missing?has_content", t -> t.text("content"), e -> e.text("blank")).newline()
+                .ifBlock("products?has_content && settings?has_content && count == 3.0", t -> t.text("ok"));
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testListsAndLoopVariables() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .list("p", "products", body -> body
+                        .var("p?counter").text(". ").var("p.name").text(" (").var("p?index").text(")")
+                        .ifBlock("p.available", t -> t.text(" in stock"))
+                        .ifBlock("p?is_first", t -> t.text(" first"))
+                        .ifBlock("p?is_last", t -> t.text(" last"))
+                        .text(" ").var("p?item_parity")
+                        .list("tag", "p.tags", tags -> tags.text("#").var("tag").sep(s -> s.text(",")))
+                        .ifBlock("p?has_next", t -> t.text(";")))
+                .newline()
+                .list("i", "ids", l -> l.var("i").sep(s -> s.text("-")))
+                .text("|")
+                .list("x", "letters", l -> l.var("x?upper_case"))
+                .text("|")
+                .list("n", "1..3", l -> l.var("n"))
+                .list("n", "3..1", l -> l.var("n"))
+                .list("n", "0..<2", l -> l.var("n"))
+                .list("n", "5..*-2", l -> l.var("n"))
+                .list("n", "[1, 'two', 3.5]", l -> l.var("n").text(" "));
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testBreakAndContinue() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .list("n", "1..10", l -> l
+                        .ifBlock("n % 2 == 0", t -> t.continueBlock())
+                        .ifBlock("n gt 7", t -> t.breakBlock())
+                        .var("n").text(" "));
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testAssignmentScopesAndMacros() throws Exception {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("item", null);
+        params.put("prefix", "*");
+        Map<String, FtlExpr> call = new LinkedHashMap<>();
+        call.put("item", expr("products[0]"));
+        Map<String, FtlExpr> callWithPrefix = new LinkedHashMap<>();
+        callWithPrefix.put("item", expr("products[2]"));
+        callWithPrefix.put("prefix", expr("'>' + count"));
+
+        FtlBuilder b = FtlBuilder.create()
+                // 先调用后定义
+                .callMacro("row", call)
+                .assign("count", "count + 1")
+                .global("title", expr("'global title'"))
+                .var("count").text(" ").var("title").newline()
+                .macro("row", params, m -> m
+                        .local("label", expr("item.name?upper_case"))
+                        .var("prefix").text(" ").var("label").text(" ").var("count").newline())
+                .callMacro("row", callWithPrefix)
+                .list("count", "[100]", l -> l.var("count").newline())
+                .var("count");
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testSwitchFallThrough() throws Exception {
+        List<FtlNode> breakOnly = Collections.singletonList(new BreakNode());
+        List<CaseNode> cases = Arrays.asList(
+                new CaseNode(Collections.singletonList(expr("1")), Collections.singletonList(new TextNode("one "))),
+                new CaseNode(Collections.singletonList(expr("2")), Collections.singletonList(new TextNode("two "))),
+                new CaseNode(Collections.singletonList(expr("3")), Arrays.asList(new TextNode("three "), new BreakNode())),
+                new CaseNode(Collections.singletonList(expr("4")), breakOnly));
+        List<FtlNode> nodes = new ArrayList<>();
+        for (String value : Arrays.asList("1", "2", "3", "4", "9")) {
+            nodes.add(new AssignNode("n", value));
+            nodes.add(new SwitchNode(new IdentifierExpr("n"), cases, Collections.singletonList(new TextNode("default "))));
+            nodes.add(new TextNode("|"));
+        }
+        nodes.add(new SwitchNode(new LiteralExpr("x"), Collections.singletonList(
+                new CaseNode(Collections.singletonList(new LiteralExpr("x")), Collections.singletonList(new TextNode("literal")))),
+                Collections.emptyList()));
+        assertEquivalent(nodes);
+    }
+
+    @Test
+    public void testBuiltIns() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .var("title?trim?upper_case").text("|").var("title?length").text("|").var("'hello world'?cap_first").text("|")
+                .var("'Hello'?uncap_first?lower_case").text("|").var("products?size").text("|").var("settings?size").newline()
+                .var("ids?size").text("|").var("products?first.name").text("|").var("products?last.name").text("|")
+                .var("products?reverse?first.name").text("|").var("letters?join(', ')").text("|").var("ids?join('/')").newline()
+                .var("'a-b-c'?replace('-', '+')").text("|").var("'abc'?contains('bc')?string('y', 'n')").text("|")
+                .var("'abc'?starts_with('b')?string").text("|").var("'abc'?ends_with('c')?c").newline()
+                .var("total?string('0.00')").text("|").var("total?string").text("|").var("total?c").text("|").var("ratio?c").text("|")
+                .var("count?string('000')").newline()
+                .var("2.5?round").text("|").var("(-2.5)?round").text("|").var("-2.5?round").text("|").var("2.7?floor").text("|").var("2.1?ceiling").text("|")
+                .var("(-3)?abs").text("|").var("settings?keys?join(',')").text("|").var("settings?values?last")
+                .var("'x'?c").text("|").var("flag?c").text("|").var("(1..4)?size");
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testWhitespaceStrippingMatchesFreeMarker() throws Exception {
+        // 只含标签的行（包括缩进与换行）被整行去掉，不输出的指令之间的空白整段去掉；含插值或文本的行保留
+        FtlBuilder b = FtlBuilder.create()
+                .text("<ul>\n")
+                .assign("x", "1").newline()
+                .list("p", "products", l -> l
+                        .newline()
+                        .text("  ").ifBlock("p.available", t -> t.newline().text("  <li>").var("p.name").text("</li>\n").text("  "))
+                        .newline())
+                .text("</ul>\n  ")
+                .comment("done").text("  \n")
+                .text("x=").var("x").text(" ").assign("y", "2").text(" \n")
+                .assign("z", "3");
+        assertEquivalent(b);
+
+        List<FtlNode> nodes = b.build();
+        assertTrue(interpret(nodes, data()).startsWith("<ul>\n  <li>Pen</li>\n"));
+
+        // 模板开头的缩进保留；宏定义之间的空行、只有标签的行被去掉
+        List<FtlNode> layout = new ArrayList<>(FtlBuilder.create()
+                .text("  ").callMacro("greet", null).text("  \n")
+                .macro("greet", Collections.emptyMap(), m -> m.newline().text("  Hi ").var("count").newline())
+                .newline().newline()
+                .macro("bye", Collections.emptyMap(), m -> m.text("Bye"))
+                .newline().text("x ").callMacro("bye", null).text(" \n")
+                .text("\r\n").assign("a", "1").text(" \r\n  \n").global("g", new LiteralExpr(2)).newline()
+                .build());
+        layout.add(new SwitchNode(new IdentifierExpr("count"), Collections.singletonList(new CaseNode(
+                Collections.singletonList(expr("3")),
+                Arrays.asList(NewlineNode.INSTANCE, new TextNode("three"), NewlineNode.INSTANCE, new BreakNode(), NewlineNode.INSTANCE))),
+                Collections.singletonList(new TextNode("other"))));
+        layout.addAll(FtlBuilder.create()
+                .newline()
+                .attempt(a -> a.newline().text("  ").var("missing").newline(), r -> r.newline().text("  fallback").newline())
+                .text("  ")
+                .build());
+        assertEquivalent(layout);
+    }
+
+    @Test
+    public void testAttemptRecover() throws Exception {
+        FtlBuilder b = FtlBuilder.create()
+                .attempt(a -> a.text("before ").var("missing.value"), r -> r.text("recovered"))
+                .text("|")
+                .attempt(a -> a.text("fine ").var("count"), r -> r.text("unused"));
+        assertEquivalent(b);
+    }
+
+    @Test
+    public void testErrorsMatchFreeMarker() {
+        Map<String, Object> data = data();
+        List<List<FtlNode>> failing = Arrays.asList(
+                FtlBuilder.create().var("missing").build(),
+                FtlBuilder.create().var("missing.name").build(),
+                FtlBuilder.create().var("flag").build(),
+                FtlBuilder.create().var("products").build(),
+                FtlBuilder.create().ifBlock("count", t -> t.text("x")).build(),
+                FtlBuilder.create().var("'a' == 1").build(),
+                FtlBuilder.create().var("count / 0").build(),
+                FtlBuilder.create().list("x", "settings", l -> l.var("x")).build(),
+                FtlBuilder.create().callMacro("undefined", null).build());
+        for (List<FtlNode> nodes : failing) {
+            assertThrows(TemplateException.class, () -> freemarker(nodes, data), "FreeMarker should fail: " + nodes);
+            assertThrows(TemplateException.class, () -> interpret(nodes, data), "interpreter should fail: " + nodes);
+            assertThrows(TemplateException.class, () -> ENGINE.compile(nodes).render(data), "compiled template should fail: " + nodes);
+        }
+    }
+
+    @Test
+    public void testPrivateFieldWithoutGetterIsNotExposed() {
+        List<FtlNode> nodes = FtlBuilder.create().var("account.secret").build();
+        assertThrows(TemplateException.class, () -> freemarker(nodes, data()));
+        assertThrows(TemplateException.class, () -> interpret(nodes, data()));
+        assertThrows(TemplateException.class, () -> ENGINE.compile(nodes).render(data()));
+    }
+
+    @Test
+    public void testUnsupportedNodesFallBackToFreeMarker() throws Exception {
+        List<FtlNode> nodes = FtlBuilder.create()
+                .compress(c -> c.text("  a   \n\n  b  ").var("count"))
+                .build();
+        assertFalse(AstInterpreter.supports(nodes));
+        assertFalse(AstInterpreter.supports(FtlBuilder.create().var("title?html").build()));
+        assertFalse(AstInterpreter.supports(FtlBuilder.create().var("title.trim()").build()));
+        assertFalse(AstInterpreter.supports(FtlBuilder.create().text("${count}").build()));
+
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().withTemplateEngine(ENGINE).var("count", 3);
+        assertEquals(ENGINE.render(FtlBuilder.getRenderer().render(nodes), context.build()), context.render(nodes));
+    }
+
+    @Test
+    public void testUnsupportedBuiltInVariantsFallBackToFreeMarker() throws Exception {
+        // 子变体与未实现的参数个数
+        List<FtlNode> currency = FtlBuilder.create().var("big?string.currency").build();
+        List<FtlNode> join = FtlBuilder.create().var("tags?join(', ', '-', '.')").build();
+        List<FtlNode> upper = FtlBuilder.create().var("name?upper_case(1)").build();
+        assertFalse(AstInterpreter.supports(currency));
+        assertFalse(AstInterpreter.supports(join));
+        assertFalse(AstInterpreter.supports(upper));
+        assertTrue(AstInterpreter.supports(FtlBuilder.create().var("big?string('0.00')").var("products?first.name").build()));
+
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().withTemplateEngine(ENGINE)
+                .var("big", 1234567).var("tags", Arrays.asList("a", "b"));
+        assertEquals("$1,234,567.00", context.render(currency));
+        assertEquals("a, b.", context.render(join));
+    }
+
+    @Test
+    public void testContextAndBuilderRenderWithoutTemplateText() throws Exception {
+        Map<String, Object> data = data();
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().withTemplateEngine(ENGINE).vars(data);
+        TemplateEngine before = context.getTemplateEngine();
+        long cachedBefore = before.getCacheStats().getSize();
+
+        String output = FtlBuilder.create(context)
+                .list("p", "products", l -> l.var("p.name").sep(s -> s.text(", ")))
+                .interpret();
+
+        assertEquals("Pen, Desk, Lamp", output);
+        // 直接执行节点，不产生需要编译缓存的模板文本
+        assertEquals(cachedBefore, before.getCacheStats().getSize());
+    }
+}
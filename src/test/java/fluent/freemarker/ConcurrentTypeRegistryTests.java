@@ -0,0 +1,95 @@
+package fluent.freemarker;
+
+import fluent.freemarker.model.*;
+import fluent.freemarker.registry.ConcurrentTypeRegistry;
+import fluent.freemarker.registry.TypeRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTypeRegistryTests {
+
+    private static final Class<?>[] TYPES = {OrderPlus.class, Order.class, Item.class, User.class, Profile.class, ProfilePlus.class, Address.class};
+    private static final int LOOKUPS_PER_THREAD = 2_000;
+
+    @Test
+    public void testConcurrentLookupsAtOneEightAndThirtyTwoThreads() throws Exception {
+        for (int threads : new int[]{1, 8, 32}) {
+            TypeRegistry registry = new ConcurrentTypeRegistry();
+            runLookups(registry, threads);
+
+            // 所有线程看到的都是同一个发布的实例
+            for (Class<?> type : TYPES) {
+                assertSame(registry.getTypeInfo(type), registry.getTypeInfo(type));
+            }
+            assertTrue(registry.knowsField("OrderPlus", "profile.address.city"));
+        }
+    }
+
+    @Test
+    public void testSlowIntrospectionDoesNotBlockOtherClasses() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentTypeRegistry registry = new ConcurrentTypeRegistry() {
+            @Override
+            protected TypeInfo newTypeInfo(Class<?> clazz) {
+                if (clazz == Order.class) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.newTypeInfo(clazz);
+            }
+        };
+        registry.getTypeInfo(User.class);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<TypeInfo> slow = executor.submit(() -> registry.getTypeInfo(Order.class));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            // Order 的内省尚未完成时，其他类的读取与未命中都不应被阻塞
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+                assertNotNull(registry.getTypeInfo(User.class));
+                assertNotNull(registry.getTypeInfo(Address.class));
+            });
+
+            release.countDown();
+            assertSame(slow.get(5, TimeUnit.SECONDS), registry.getTypeInfo(Order.class));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private void runLookups(TypeRegistry registry, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                        assertNotNull(registry.getTypeInfo(TYPES[i % TYPES.length]));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
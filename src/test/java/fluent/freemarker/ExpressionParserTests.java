@@ -0,0 +1,373 @@
+package fluent.freemarker;
+
+import fluent.freemarker.ast.expr.*;
+import fluent.freemarker.parser.BinaryExpressionParser;
+import fluent.freemarker.parser.CachingExpressionParser;
+import fluent.freemarker.parser.ExpressionParser;
+import fluent.freemarker.parser.ExpressionParserFactory;
+import fluent.freemarker.parser.FtlExpressionParser;
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.utils.CacheStats;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionParserTests {
+
+    private final ExpressionParser parser = new BinaryExpressionParser();
+
+    @Test
+    public void testPrecedenceMatchesPreviousParser() {
+        String[] expressions = {
+                "a && b", "user.age >= 18 && user.verified", "a + b * c", "a * b + c",
+                "x > 1 || y < 2 && z", "(a + b) * c", "price * 1.5 > 100", "count != 0",
+                "a <= b", "name == 'admin'", "a > -1", "total % 2 == 0"
+        };
+        for (String expression : expressions) {
+            assertEquals(LegacyBinaryParser.parse(expression).toString(), parser.parse(expression).toString(), expression);
+        }
+    }
+
+    @Test
+    public void testComparisonPrecedenceMatchesFtlParserAndFreeMarker() throws Exception {
+        ExpressionParser ftl = new FtlExpressionParser();
+        // 与 FreeMarker 一致：相等比较低于大小比较
+        String[] expressions = {
+                "a == b > c", "a > b == c < d", "x != y >= z", "a + 1 > b == c", "a || b == c && d > e",
+                "a == b && c != d", "a <= b != c * 2", "a >= b || c < d"
+        };
+        for (String expression : expressions) {
+            assertEquals(ftl.parse(expression), parser.parse(expression), expression);
+        }
+        BinaryExpr equality = assertInstanceOf(BinaryExpr.class, parser.parse("a > b == c < d"));
+        assertEquals("==", equality.getOp());
+        assertEquals(">", ((BinaryExpr) equality.getLeft()).getOp());
+        assertEquals("<", ((BinaryExpr) equality.getRight()).getOp());
+
+        // 写回的模板在 FreeMarker 中求值结果与原表达式相同
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
+        Map<String, Object> model = new HashMap<>();
+        model.put("n", 3);
+        String[] evaluated = {"(n > 1 == n < 2)?c", "(n >= 3 != n <= 2)?c", "(n + 1 > 3 == true)?c"};
+        for (String expression : evaluated) {
+            String rendered = FtlBuilder.create().local("v", parser.parse(expression)).renderToString();
+            rendered = rendered.substring("<#local v = ".length(), rendered.length() - 1);
+            assertEquals(evaluate(cfg, expression, model), evaluate(cfg, rendered, model), expression + " -> " + rendered);
+        }
+    }
+
+    @Test
+    public void testChainedComparisonsAreWrittenWithParentheses() {
+        FtlExpr chained = new BinaryExpr(new BinaryExpr(new IdentifierExpr("a"), "<", new IdentifierExpr("b")), "==", new IdentifierExpr("c"));
+        FtlExpr nested = new BinaryExpr(chained, "!=", new IdentifierExpr("d"));
+        String rendered = FtlBuilder.create().local("v", nested).renderToString();
+        assertEquals("<#local v = (a < b == c) != d>", rendered);
+    }
+
+    @Test
+    public void testSameLevelOperatorsAreLeftAssociative() {
+        FtlExpr expr = parser.parse("a - b + c");
+        BinaryExpr outer = assertInstanceOf(BinaryExpr.class, expr);
+        assertEquals("+", outer.getOp());
+        BinaryExpr inner = assertInstanceOf(BinaryExpr.class, outer.getLeft());
+        assertEquals("-", inner.getOp());
+        assertEquals("a", ((IdentifierExpr) inner.getLeft()).getName());
+        assertEquals("c", ((IdentifierExpr) outer.getRight()).getName());
+    }
+
+    @Test
+    public void testOperatorsInsideStringsAndGroupsAreNotSplit() {
+        BinaryExpr expr = assertInstanceOf(BinaryExpr.class, parser.parse("title == 'a && b' || (x + y) > 2"));
+        assertEquals("||", expr.getOp());
+        BinaryExpr left = assertInstanceOf(BinaryExpr.class, expr.getLeft());
+        assertEquals("a && b", ((LiteralExpr) left.getRight()).getValue());
+        BinaryExpr right = assertInstanceOf(BinaryExpr.class, expr.getRight());
+        assertEquals(">", right.getOp());
+        assertEquals("+", ((BinaryExpr) right.getLeft()).getOp());
+        assertEquals(2, ((LiteralExpr) right.getRight()).getValue());
+    }
+
+    @Test
+    public void testFtlGrammarProducesDedicatedNodes() {
+        ExpressionParser ftl = new FtlExpressionParser();
+
+        BuiltInExpr builtIn = assertInstanceOf(BuiltInExpr.class, ftl.parse("user.name?string('0.00')"));
+        assertEquals("user.name", ((IdentifierExpr) builtIn.getTarget()).getName());
+        assertEquals("string", builtIn.getName());
+        assertEquals("0.00", ((LiteralExpr) builtIn.getArgs().get(0)).getValue());
+
+        DefaultExpr defaultExpr = assertInstanceOf(DefaultExpr.class, ftl.parse("user.nick!'guest'"));
+        assertEquals("guest", ((LiteralExpr) defaultExpr.getDefaultValue()).getValue());
+        assertNull(assertInstanceOf(DefaultExpr.class, ftl.parse("user.nick!")).getDefaultValue());
+
+        assertInstanceOf(ExistsExpr.class, ftl.parse("user.nick??"));
+
+        MemberExpr member = assertInstanceOf(MemberExpr.class, ftl.parse("orders[0].amount"));
+        IndexExpr index = assertInstanceOf(IndexExpr.class, member.getTarget());
+        assertEquals(0, ((LiteralExpr) index.getIndex()).getValue());
+
+        MethodCallExpr call = assertInstanceOf(MethodCallExpr.class, ftl.parse("format(user.age, 2)"));
+        assertEquals(2, call.getArgs().size());
+
+        BinaryExpr binary = assertInstanceOf(BinaryExpr.class, ftl.parse("!user.active || items?size gt 0"));
+        assertInstanceOf(UnaryExpr.class, binary.getLeft());
+        assertEquals("gt", ((BinaryExpr) binary.getRight()).getOp());
+
+        assertInstanceOf(RangeExpr.class, ftl.parse("1..<n"));
+        assertEquals(3, assertInstanceOf(SequenceExpr.class, ftl.parse("[1, 'a', x]")).getItems().size());
+        assertEquals(1, assertInstanceOf(HashExpr.class, ftl.parse("{'k': v}")).getKeys().size());
+
+        // 不支持的语法回退为原始表达式
+        assertInstanceOf(RawExpr.class, ftl.parse("items?filter(i -> i.active)"));
+    }
+
+    @Test
+    public void testFtlGrammarMatchesBinaryParserWithoutPostfix() {
+        ExpressionParser ftl = new FtlExpressionParser();
+        String[] expressions = {"a && b", "user.age >= 18 && user.verified", "a - b + c", "x > 1 || y < 2 && z", "(a + b) * c", "a > -1"};
+        for (String expression : expressions) {
+            assertEquals(parser.parse(expression).toString(), ftl.parse(expression).toString(), expression);
+        }
+    }
+
+    @Test
+    public void testFtlExpressionsRenderBack() {
+        ExpressionParser ftl = new FtlExpressionParser();
+        String[] expressions = {
+                "user.name?string(\"0.00\")", "(user.nick!\"guest\")?upper_case", "orders[0].amount * (rate + 1)",
+                "!(a && b)", "x??", "fn(a, [1, 2], {\"k\": v})", "1..<n", "a - (b - c)",
+                "-2.5?round", "(-2.5)?round"
+        };
+        for (String expression : expressions) {
+            FtlBuilder builder = FtlBuilder.create().local("v", ftl.parse(expression));
+            assertEquals("<#local v = " + expression + ">", builder.renderToString(), expression);
+        }
+    }
+
+    @Test
+    public void testStringLiteralsAreDecoded() {
+        ExpressionParser ftl = new FtlExpressionParser();
+
+        DefaultExpr escaped = assertInstanceOf(DefaultExpr.class, ftl.parse("x!\"a\\\"b\""));
+        assertEquals("a\"b", ((LiteralExpr) escaped.getDefaultValue()).getValue());
+        DefaultExpr raw = assertInstanceOf(DefaultExpr.class, ftl.parse("x!r\"C:\\dir\""));
+        assertEquals("C:\\dir", ((LiteralExpr) raw.getDefaultValue()).getValue());
+        // 值含 ${ 的字面量写回后会变成插值，保持原文
+        assertEquals("\"$\\{x}\"", assertInstanceOf(RawExpr.class, ftl.parse("\"$\\{x}\"")).getCode());
+        assertEquals("r'#{x}'", assertInstanceOf(RawExpr.class, ftl.parse("r'#{x}'")).getCode());
+        assertEquals("A\t<", ((LiteralExpr) ftl.parse("\"\\x41\\t\\l\"")).getValue());
+
+        // 插值展开为字符串拼接
+        BinaryExpr interpolated = assertInstanceOf(BinaryExpr.class, ftl.parse("\"Hi ${user.name}!\""));
+        assertEquals("+", interpolated.getOp());
+        assertEquals("!", ((LiteralExpr) interpolated.getRight()).getValue());
+        BinaryExpr head = assertInstanceOf(BinaryExpr.class, interpolated.getLeft());
+        assertEquals("Hi ", ((LiteralExpr) head.getLeft()).getValue());
+        assertInstanceOf(IdentifierExpr.class, head.getRight());
+
+        // 默认解析链中的简单字符串同样解码
+        assertEquals("it's", ((LiteralExpr) ExpressionParserFactory.create(ExpressionParserFactory.ParserType.DEFAULT).parse("'it\\'s'")).getValue());
+    }
+
+    @Test
+    public void testStringLiteralsRoundTripThroughFreeMarker() throws Exception {
+        ExpressionParser ftl = new FtlExpressionParser();
+        String[] expressions = {
+                "x!\"a\\\"b\"", "x!r\"C:\\dir\"", "r'${raw}'", "\"C:\\\\dir\"", "\"$\\{literal} #\\{too}\"",
+                "\"line\\nbreak\\ttab\\x0001\"", "\"\\l\\g\\a\\{\"", "'single \\'quoted\\''",
+                "\"Hi ${name}!\"", "\"${n} items\"", "\"${name?upper_case} has ${n + 1} (${x!\\\"none\\\"})\"",
+                "\"nested ${\\\"in ${name}\\\"}\""
+        };
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
+        cfg.setLocale(Locale.US);
+        Map<String, Object> model = new HashMap<>();
+        model.put("name", "Bob");
+        model.put("n", 1500);
+        for (String expression : expressions) {
+            FtlExpr parsed = ftl.parse(expression);
+            String rendered = FtlBuilder.create().local("v", parsed).renderToString();
+            rendered = rendered.substring("<#local v = ".length(), rendered.length() - 1);
+
+            assertEquals(evaluate(cfg, expression, model), evaluate(cfg, rendered, model), expression + " -> " + rendered);
+            assertEquals(parsed, ftl.parse(rendered), rendered);
+        }
+    }
+
+    @Test
+    public void testParenthesizedDefaultAndExistsTargetsRoundTrip() throws Exception {
+        ExpressionParser ftl = new FtlExpressionParser();
+        assertNotEquals(ftl.parse("a.b??"), ftl.parse("(a.b)??"));
+        assertTrue(((ExistsExpr) ftl.parse("(a.b)??")).isGrouped());
+        assertFalse(((ExistsExpr) ftl.parse("a.b??")).isGrouped());
+        assertTrue(((DefaultExpr) ftl.parse("(missing.x)!'z'")).isGrouped());
+        // 括号只作用于紧随其后的 ??/!
+        assertFalse(((DefaultExpr) ftl.parse("(a).b!'z'")).isGrouped());
+
+        String[] expressions = {
+                "(missing.x)!'z'", "missing.x!'z'", "(user.address.city)??", "(user.address.city)!'none' == 'none'",
+                "(a + b)!0", "(missing.x)!", "user.name!(missing.y)!'n'"
+        };
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
+        Map<String, Object> model = new HashMap<>();
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "Bob");
+        model.put("user", user);
+        model.put("missing", Collections.emptyMap());
+        model.put("a", 1);
+        model.put("b", 2);
+        for (String expression : expressions) {
+            FtlExpr parsed = ftl.parse(expression);
+            String rendered = FtlBuilder.create().local("v", parsed).renderToString();
+            rendered = rendered.substring("<#local v = ".length(), rendered.length() - 1);
+
+            assertEquals(parsed, ftl.parse(rendered), expression + " -> " + rendered);
+            assertEquals(evaluate(cfg, "(" + expression + ")?string", model), evaluate(cfg, "(" + rendered + ")?string", model), rendered);
+        }
+        assertEquals("(missing.x)!\"z\"", FtlBuilder.create().local("v", ftl.parse("(missing.x)!'z'")).renderToString()
+                .substring("<#local v = ".length()).replace(">", ""));
+    }
+
+    private static String evaluate(Configuration cfg, String expression, Map<String, Object> model) throws Exception {
+        StringWriter out = new StringWriter();
+        new Template("t", new StringReader("${" + expression + "}"), cfg).process(model, out);
+        return out.toString();
+    }
+
+    @Test
+    public void testCachedParserReturnsSharedTree() {
+        CachingExpressionParser cached = ExpressionParserFactory.cached(
+                ExpressionParserFactory.create(ExpressionParserFactory.ParserType.DEFAULT), 2);
+
+        FtlExpr first = cached.parse("user.active && order.total > 0");
+        assertSame(first, cached.parse("user.active && order.total > 0"));
+
+        cached.parse("a > 1");
+        cached.parse("b > 2"); // 淘汰最久未使用的表达式
+        assertNotSame(first, cached.parse("user.active && order.total > 0"));
+
+        CacheStats stats = cached.getCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(2, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testCachedParserIsThreadSafe() throws Exception {
+        CachingExpressionParser cached = (CachingExpressionParser) ExpressionParserFactory.create(ExpressionParserFactory.ParserType.CACHED);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FtlExpr>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> cached.parse("x > 1 || y < 2 && z")));
+            }
+            FtlExpr expected = cached.parse("x > 1 || y < 2 && z");
+            for (Future<FtlExpr> future : futures) {
+                assertSame(expected, future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, cached.getCacheStats().getSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 2 ~ 200 个操作数的长条件：每个操作数都解析为标识符，|| 的优先级低于 &&
+    @Test
+    public void testLongConditionsParseEveryOperand() {
+        for (int operands : new int[]{2, 10, 50, 200}) {
+            FtlExpr result = parser.parse(buildCondition(operands));
+
+            assertEquals(operands, countOperands(result));
+            assertEquals(operands > 3 ? "||" : "&&", ((BinaryExpr) result).getOp());
+        }
+    }
+
+    private static String buildCondition(int operands) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) sb.append(i % 3 == 0 ? " || " : " && ");
+            sb.append("item").append(i).append(".flag");
+        }
+        return sb.toString();
+    }
+
+    private static int countOperands(FtlExpr expr) {
+        if (expr instanceof BinaryExpr) {
+            return countOperands(((BinaryExpr) expr).getLeft()) + countOperands(((BinaryExpr) expr).getRight());
+        }
+        assertInstanceOf(IdentifierExpr.class, expr);
+        return 1;
+    }
+
+    /**
+     * 原 BinaryExpressionParser 的切分算法，仅用于对比
+     */
+    private static final class LegacyBinaryParser {
+        private static final String[][] OPERATOR_PRECEDENCE = {
+                {"||"}, {"&&"}, {">=", "<="}, {">", "<"}, {"==", "!="}, {"+", "-"}, {"*", "/", "%"}
+        };
+
+        static FtlExpr parse(String expression) {
+            return parseWithPrecedence(expression, 0);
+        }
+
+        private static FtlExpr parseWithPrecedence(String expression, int level) {
+            if (level >= OPERATOR_PRECEDENCE.length) {
+                return parseSimple(expression);
+            }
+            String[] operators = OPERATOR_PRECEDENCE[level];
+            for (int i = operators.length - 1; i >= 0; i--) {
+                String op = operators[i];
+                int index = findOperatorIndex(expression, op);
+                if (index > 0) {
+                    FtlExpr left = parseWithPrecedence(expression.substring(0, index).trim(), level);
+                    FtlExpr right = parseWithPrecedence(expression.substring(index + op.length()).trim(), level + 1);
+                    return new BinaryExpr(left, op, right);
+                }
+            }
+            return parseWithPrecedence(expression, level + 1);
+        }
+
+        private static FtlExpr parseSimple(String expression) {
+            expression = expression.trim();
+            if (expression.startsWith("(") && expression.endsWith(")")) {
+                return parse(expression.substring(1, expression.length() - 1).trim());
+            }
+            try {
+                Double.parseDouble(expression);
+                return new LiteralExpr(expression.contains(".") ? (Object) Double.parseDouble(expression) : (Object) Integer.parseInt(expression));
+            } catch (NumberFormatException ignored) {
+                // 不是数字
+            }
+            if (expression.length() >= 2 && (expression.startsWith("'") && expression.endsWith("'"))) {
+                return new LiteralExpr(expression.substring(1, expression.length() - 1));
+            }
+            if (expression.matches("^[a-zA-Z_][a-zA-Z0-9_.]*$")) {
+                return new IdentifierExpr(expression);
+            }
+            return new RawExpr(expression);
+        }
+
+        private static int findOperatorIndex(String expression, String operator) {
+            int parenCount = 0;
+            for (int i = 0; i < expression.length() - operator.length() + 1; i++) {
+                char c = expression.charAt(i);
+                if (c == '(') {
+                    parenCount++;
+                } else if (c == ')') {
+                    parenCount--;
+                } else if (parenCount == 0 && expression.substring(i, i + operator.length()).equals(operator)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
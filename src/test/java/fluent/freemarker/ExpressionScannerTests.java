@@ -0,0 +1,72 @@
+package fluent.freemarker;
+
+import fluent.freemarker.ast.expr.BinaryExpr;
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.ast.expr.IdentifierExpr;
+import fluent.freemarker.ast.expr.LiteralExpr;
+import fluent.freemarker.ast.expr.RawExpr;
+import fluent.freemarker.parser.ExpressionParser;
+import fluent.freemarker.parser.ExpressionParserFactory;
+import fluent.freemarker.utils.ExpressionScanner;
+import fluent.freemarker.utils.ExpressionScanner.Kind;
+import fluent.freemarker.utils.FTLUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionScannerTests {
+
+    @Test
+    public void testClassify() {
+        assertEquals(Kind.IDENTIFIER, ExpressionScanner.classify("user"));
+        assertEquals(Kind.IDENTIFIER, ExpressionScanner.classify("user.profile_1.name"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("user..name"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("user."));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("user.1x"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("user?size"));
+
+        assertEquals(Kind.NUMBER, ExpressionScanner.classify("42"));
+        assertEquals(Kind.NUMBER, ExpressionScanner.classify("-3.14"));
+        assertEquals(Kind.NUMBER, ExpressionScanner.classify(".5"));
+        assertEquals(Kind.NUMBER, ExpressionScanner.classify("1e3"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("1e"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("-"));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("12abc"));
+
+        assertEquals(Kind.STRING, ExpressionScanner.classify("'hello'"));
+        assertEquals(Kind.STRING, ExpressionScanner.classify("\"hello\""));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify("'hello\""));
+
+        assertEquals(Kind.BOOLEAN, ExpressionScanner.classify("true"));
+        assertEquals(Kind.BOOLEAN, ExpressionScanner.classify("FALSE"));
+        assertEquals(Kind.IDENTIFIER, ExpressionScanner.classify("truely"));
+
+        assertEquals(Kind.IDENTIFIER, ExpressionScanner.classify("(user)", 1, 5));
+        assertEquals(Kind.OTHER, ExpressionScanner.classify(""));
+    }
+
+    @Test
+    public void testParsersUseScanner() {
+        ExpressionParser parser = ExpressionParserFactory.create(ExpressionParserFactory.ParserType.SIMPLE);
+        assertEquals(42L, ((LiteralExpr) parser.parse("42")).getValue());
+        assertEquals(1.5, ((LiteralExpr) parser.parse("1.5")).getValue());
+        assertEquals(Boolean.TRUE, ((LiteralExpr) parser.parse("True")).getValue());
+        assertEquals("x", ((LiteralExpr) parser.parse("'x'")).getValue());
+        assertEquals("user.name", ((IdentifierExpr) parser.parse("user.name")).getName());
+        assertInstanceOf(RawExpr.class, parser.parse("user.name?upper_case"));
+
+        FtlExpr binary = ExpressionParserFactory.create(ExpressionParserFactory.ParserType.BINARY).parse("a > 2147483648");
+        assertEquals(2147483648L, ((LiteralExpr) ((BinaryExpr) binary).getRight()).getValue());
+    }
+
+    @Test
+    public void testShouldParseAsExpression() {
+        assertFalse(FTLUtils.shouldParseAsExpression(" Default "));
+        assertFalse(FTLUtils.shouldParseAsExpression("TRUE"));
+        assertFalse(FTLUtils.shouldParseAsExpression(" 12.5 "));
+        assertFalse(FTLUtils.shouldParseAsExpression("'text'"));
+        assertTrue(FTLUtils.shouldParseAsExpression("user.name"));
+        assertTrue(FTLUtils.shouldParseAsExpression("a + 1"));
+        assertFalse(FTLUtils.shouldParseAsExpression(""));
+    }
+}
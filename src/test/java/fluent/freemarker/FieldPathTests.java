@@ -0,0 +1,60 @@
+package fluent.freemarker;
+
+import fluent.freemarker.model.FieldPath;
+import fluent.freemarker.model.OrderPlus;
+import fluent.freemarker.model.TypeInfo;
+import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.registry.TypeRegistryFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldPathTests {
+
+    private static final String[] PATHS = {
+            "profile", "profile.role", "profile.address.city", "profile.rolex",
+            "items", "items[0]", "id", "id.length", "", "..", "profile..role", "missing.field"
+    };
+
+    @Test
+    public void testTokenizeMatchesRegexSplit() {
+        assertEquals(Arrays.asList("profile", "address", "city"), FieldPath.of("profile.address.city").getSegments());
+        assertEquals(Arrays.asList("items", "0", "name"), FieldPath.of("items[0].name").getSegments());
+        assertEquals(Collections.emptyList(), FieldPath.of("..").getSegments());
+        assertSame(FieldPath.of("profile.role"), FieldPath.of("profile.role"));
+        assertEquals("profile.role", FieldPath.of("order.profile.role").tail().getPath());
+    }
+
+    @Test
+    public void testHasFieldPathMatchesRegexImplementation() {
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        TypeInfo root = registry.getTypeInfo(OrderPlus.class);
+        for (String path : PATHS) {
+            assertEquals(regexHasFieldPath(root, path), root.hasFieldPath(path), path);
+        }
+    }
+
+    @Test
+    public void testRegistryLookupWithFieldPathMatchesRegexImplementation() {
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        registry.register("Order", OrderPlus.class);
+        TypeInfo root = registry.getTypeInfo(OrderPlus.class);
+        for (String path : PATHS) {
+            assertEquals(regexHasFieldPath(root, path), registry.knowsField("Order", FieldPath.of(path)), path);
+        }
+    }
+
+    private static boolean regexHasFieldPath(TypeInfo root, String path) {
+        if (path == null || path.isEmpty()) return false;
+        TypeInfo current = root;
+        for (String part : path.split("[.\\[\\]]")) {
+            if (part.isEmpty()) continue;
+            current = current.getField(part);
+            if (current == null) return false;
+        }
+        return true;
+    }
+}
@@ -2,18 +2,25 @@ package fluent.freemarker;
 
 import fluent.freemarker.variable.FluentFreemarkerContext;
 import fluent.freemarker.model.User;
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateScalarModel;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 
 public class FluentContextTests {
@@ -173,4 +180,38 @@ public class FluentContextTests {
 
         System.out.println(result);
     }
+
+
+    public static class CountingBean {
+        private final AtomicInteger reads;
+
+        public CountingBean(AtomicInteger reads) {
+            this.reads = reads;
+        }
+
+        public String getTitle() {
+            reads.incrementAndGet();
+            return "title";
+        }
+    }
+
+    @Test
+    public void testLazyTemplateModelResolvesOnlyTouchedPaths() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        FluentFreemarkerContext context = FluentFreemarkerContext.create()
+                .with("name", "Dora")
+                .with("bean", new CountingBean(reads));
+        context.getVariableRegistry().register("bean.title");
+
+        ObjectWrapper wrapper = new Configuration(Configuration.VERSION_2_3_32).getObjectWrapper();
+        assertEquals("Dora", context.render("${name}"));
+        assertEquals(0, reads.get());
+
+        TemplateHashModelEx model = context.toTemplateModel(wrapper);
+        assertEquals("title", ((TemplateScalarModel) model.get("bean.title")).getAsString());
+        assertSame(model.get("bean.title"), model.get("bean.title"));
+        assertEquals(1, reads.get());
+        assertNull(model.get("missing"));
+        assertEquals(3, model.size());
+    }
 }
@@ -0,0 +1,126 @@
+package fluent.freemarker;
+
+import fluent.freemarker.ast.FtlNode;
+import fluent.freemarker.ast.IfNode;
+import fluent.freemarker.ast.TextNode;
+import fluent.freemarker.builder.FtlSourceWriter;
+import fluent.freemarker.builder.FreeMarkerRenderer;
+import fluent.freemarker.builder.FtlBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FreeMarkerRendererTests {
+
+    private static final int THREADS = 32;
+    private static final int ITERATIONS = 500;
+
+    private List<FtlNode> buildTemplate(int id) {
+        return FtlBuilder.create()
+                .text("Template " + id + ": ")
+                .var("user" + id + ".name")
+                .ifElseBlock("user.age > " + id,
+                        b -> b.list("item", "items" + id, l -> l.text("- ").var("item.name").newline()),
+                        b -> b.text("none"))
+                .macro("m" + id, Collections.singletonMap("p", "v" + id), b -> b.var("p"))
+                .compress(b -> b.text(" padded " + id + " "))
+                .build();
+    }
+
+    @Test
+    public void testSharedRendererIsThreadSafe() throws Exception {
+        FreeMarkerRenderer renderer = FtlBuilder.getRenderer();
+        int templateCount = 64;
+        List<List<FtlNode>> templates = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < templateCount; i++) {
+            List<FtlNode> nodes = buildTemplate(i);
+            templates.add(nodes);
+            expected.add(renderer.render(nodes).getBytes("UTF-8"));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    int checked = 0;
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        int idx = (offset + i) % templateCount;
+                        byte[] actual = renderer.render(templates.get(idx)).getBytes("UTF-8");
+                        assertArrayEquals(expected.get(idx), actual, "template " + idx + " corrupted");
+                        checked++;
+                    }
+                    return checked;
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertEquals(ITERATIONS, future.get(60, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentRenderToString() throws Exception {
+        String expected = FtlBuilder.create().text("Hello ").var("name").newline().renderToString();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS * 20; i++) {
+                futures.add(pool.submit(() -> FtlBuilder.create().text("Hello ").var("name").newline().renderToString()));
+            }
+            for (Future<String> future : futures) {
+                assertEquals(expected, future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRenderedSubtreesAreReusedAcrossTemplates() {
+        FreeMarkerRenderer renderer = new FreeMarkerRenderer();
+        String first = renderer.render(buildTemplate(1));
+        int cached = renderer.getCachedSubtreeCount();
+        assertTrue(cached > 0);
+
+        // 结构相同的子树命中缓存，只有不同的叶子重新渲染
+        assertEquals(first, renderer.render(buildTemplate(1)));
+        assertEquals(cached, renderer.getCachedSubtreeCount());
+        assertEquals(new FreeMarkerRenderer().render(buildTemplate(2)), renderer.render(buildTemplate(2)));
+
+        renderer.clearCache();
+        assertEquals(0, renderer.getCachedSubtreeCount());
+    }
+
+    @Test
+    public void testDeeplyNestedSubtreesAreNotCopiedPerLevel() {
+        int depth = 500;
+        List<FtlNode> body = Collections.singletonList(new TextNode("leaf"));
+        for (int i = 0; i < depth; i++) {
+            body = Collections.singletonList(new IfNode("flag" + i, body, null));
+        }
+        StringBuilder plain = new StringBuilder();
+        new FtlSourceWriter(plain).write(body);
+
+        FreeMarkerRenderer renderer = new FreeMarkerRenderer();
+        assertEquals(plain.toString(), renderer.render(body));
+        // 只缓存最外层与较短的内层子树，而不是每层一份完整副本
+        int cached = renderer.getCachedSubtreeCount();
+        assertTrue(cached < 100, "cached subtrees: " + cached);
+        assertEquals(plain.toString(), renderer.render(body));
+    }
+}
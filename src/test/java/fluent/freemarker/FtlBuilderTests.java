@@ -6,6 +6,14 @@ import fluent.freemarker.ast.expr.IdentifierExpr;
 import fluent.freemarker.ast.expr.LiteralExpr;
 import fluent.freemarker.builder.FtlBuilder;
 import fluent.freemarker.exception.TemplateSyntaxException;
+import fluent.freemarker.model.VarType;
+import fluent.freemarker.registry.TypeRegistryFactory;
+import fluent.freemarker.type.VariableTypeDetectionUtils;
+import fluent.freemarker.type.VariableTypeInfo;
+import fluent.freemarker.validator.ValidationContext;
+import fluent.freemarker.validator.ValidationResult;
+import fluent.freemarker.validator.VariableValidationChain;
+import fluent.freemarker.validator.VariableValidator;
 import fluent.freemarker.variable.FluentFreemarkerContext;
 import fluent.freemarker.variable.ValidationRecorder;
 import fluent.freemarker.variable.VariableReference;
@@ -15,6 +23,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -71,6 +83,22 @@ public class FtlBuilderTests {
         assertEquals("Hello World", ((TextNode) nodes.get(0)).getText());
     }
 
+    @Test
+    void testAdjacentTextIsCoalesced() {
+        List<FtlNode> nodes = FtlBuilder.create()
+                .text("Hello").space().text("World").newline()
+                .var("name")
+                .tabs(2).text("end")
+                .ifBlock("flag", b -> b.text("a").spaces(2).text("b"))
+                .build();
+
+        assertEquals(4, nodes.size());
+        assertEquals("Hello World\n", ((TextNode) nodes.get(0)).getText());
+        assertEquals("\t\tend", ((TextNode) nodes.get(2)).getText());
+        assertEquals(Collections.singletonList(new TextNode("a  b")), ((IfNode) nodes.get(3)).getThenBlock());
+        assertEquals("Hello World\n${name}\t\tend<#if flag>a  b</#if>", FtlBuilder.getRenderer().render(nodes));
+    }
+
     @Test
     void testVar() {
         FtlBuilder builder = FtlBuilder.create(context);
@@ -446,4 +474,179 @@ public class FtlBuilderTests {
         assertTrue(templateString.contains("</#if>"));
         assertTrue(templateString.contains("Adult user: ${user.name}"));
     }
+
+    @Test
+    void testNestedBuildValidatesEachReferenceOnce() {
+        for (int depth : new int[]{10, 100, 1000}) {
+            AtomicInteger validations = new AtomicInteger();
+            VariableValidator counter = (reference, ctx) -> {
+                validations.incrementAndGet();
+                return ValidationResult.valid();
+            };
+            FtlBuilder builder = FtlBuilder.create(context.withValidationChain(VariableValidationChain.createDefaultChain().addValidator(counter)));
+            builder.ifBlock("user.age > 18", nested(depth));
+            builder.build();
+
+            int references = builder.getValidationRecorder().getReferences().size();
+            assertEquals(depth * 2, references);
+            // 验证次数与引用数量成线性关系
+            assertEquals(references, validations.get());
+        }
+    }
+
+    private Consumer<FtlBuilder> nested(int depth) {
+        return b -> {
+            b.text("level").var("user.name");
+            if (depth > 1) {
+                b.ifBlock("user.age > " + depth, nested(depth - 1));
+            }
+        };
+    }
+
+    @Test
+    void testFailedValidationIsReportedAgainOnRebuild() {
+        FtlBuilder builder = FtlBuilder.create(context);
+        builder.var("undefinedVar");
+        assertThrows(TemplateSyntaxException.class, builder::build);
+        assertThrows(TemplateSyntaxException.class, builder::build);
+    }
+
+    @Test
+    void testBuiltInsAndDefaultsAreValidated() {
+        FtlBuilder builder = FtlBuilder.create(context);
+        builder.ifBlock("user.name?length > 3 && (missing!false || optional??)", b -> b.text("ok"));
+        builder.ifBlock("items?size > 0 && user.name?has_content", b -> b.text("ok"));
+        builder.build();
+
+        List<String> recorded = new ArrayList<>();
+        for (VariableReference ref : builder.getValidationRecorder().getReferences()) {
+            recorded.add(ref.getExpression());
+        }
+        // x!default 与 x?? 的目标允许缺失，不记录
+        assertEquals(Arrays.asList("user.name", "items"), recorded);
+
+        assertThrows(TemplateSyntaxException.class, () -> FtlBuilder.create(context)
+                .ifBlock("undefinedVar?upper_case == 'A'", b -> b.text("never"))
+                .build());
+    }
+
+    @Test
+    void testTypeDetectionIsCachedPerScopeVersion() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        recorder.wrapContext(context);
+        ValidationContext validationContext = new ValidationContext(context, recorder);
+
+        long version = recorder.getScopeVersion();
+        VariableTypeInfo first = VariableTypeDetectionUtils.detectVariableType("user.name", validationContext);
+        assertSame(first, VariableTypeDetectionUtils.detectVariableType("user.age", validationContext));
+        assertEquals(VarType.GLOBAL, first.getVarType());
+
+        // 作用域变化后重新检测：局部定义遮蔽全局变量
+        recorder.pushScope("list", "orders");
+        recorder.defineVariable("user", "local");
+        assertTrue(recorder.getScopeVersion() > version);
+        VariableTypeInfo shadowed = VariableTypeDetectionUtils.detectVariableType("user.name", validationContext);
+        assertEquals(VarType.LOCAL, shadowed.getVarType());
+
+        recorder.popScope();
+        assertEquals(VarType.GLOBAL, VariableTypeDetectionUtils.detectVariableType("user.name", validationContext).getVarType());
+    }
+
+    @Test
+    void testRepeatedReferencesInListBodyShareDetection() {
+        FtlBuilder builder = FtlBuilder.create(context);
+        builder.list("order", "orders", b -> b.var("order.id").var("order.amount")
+                .assign("order", "'shadow'").var("order"));
+
+        List<VariableReference> refs = builder.getValidationRecorder().getReferences();
+        assertEquals(4, refs.size());
+        assertEquals(VarType.SCOPE_ITEM, refs.get(1).getVarType());
+        assertEquals(refs.get(1).getVarTypeName(), refs.get(2).getVarTypeName());
+        // 赋值改变了作用域版本，之后的引用按局部变量检测
+        assertEquals(VarType.SCOPE_ITEM, refs.get(2).getVarType());
+        assertEquals(VarType.LOCAL, refs.get(3).getVarType());
+    }
+
+    @Test
+    void testParallelValidationReportsErrorsInSerialOrder() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String serial = buildLargeTemplateErrors(context);
+            String parallel = buildLargeTemplateErrors(context.withParallelValidation(pool));
+            assertEquals(serial, parallel);
+            assertTrue(parallel.contains("1. Variable 'missing0'"));
+            assertTrue(parallel.contains("Variable 'missing1999'"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testValidatorsNotThreadSafeRunSerially() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        VariableValidationChain chain = VariableValidationChain.createDefaultChain().addValidator(new VariableValidator() {
+            @Override
+            public ValidationResult validate(VariableReference reference, ValidationContext validationContext) {
+                threads.add(Thread.currentThread());
+                return ValidationResult.valid();
+            }
+        });
+        assertFalse(chain.isThreadSafe());
+        assertTrue(VariableValidationChain.createDefaultChain().isThreadSafe());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FtlBuilder builder = FtlBuilder.create(context.withValidationChain(chain).withParallelValidation(pool));
+            for (int i = 0; i < 2000; i++) {
+                builder.var("user.name");
+            }
+            builder.build();
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRegistryNotThreadSafeRunsSerially() {
+        FluentFreemarkerContext shared = context.withTypeRegistry(TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED));
+        FluentFreemarkerContext plain = context.withTypeRegistry(TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT));
+        VariableValidationChain defaultChain = VariableValidationChain.createDefaultChain();
+        assertTrue(defaultChain.isThreadSafe(new ValidationContext(shared, new ValidationRecorder())));
+        assertFalse(defaultChain.isThreadSafe(new ValidationContext(plain, new ValidationRecorder())));
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        VariableValidationChain chain = VariableValidationChain.createDefaultChain().addValidator(new VariableValidator() {
+            @Override
+            public ValidationResult validate(VariableReference reference, ValidationContext validationContext) {
+                threads.add(Thread.currentThread());
+                return ValidationResult.valid();
+            }
+
+            @Override
+            public boolean isThreadSafe() {
+                return true;
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FtlBuilder builder = FtlBuilder.create(plain.withValidationChain(chain).withParallelValidation(pool));
+            for (int i = 0; i < 2000; i++) {
+                builder.var("user.name");
+            }
+            builder.build();
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String buildLargeTemplateErrors(FluentFreemarkerContext ctx) {
+        FtlBuilder builder = FtlBuilder.create(ctx);
+        for (int i = 0; i < 2000; i++) {
+            builder.var("user.name").var("missing" + i).var("user.age").var("items");
+        }
+        TemplateSyntaxException e = assertThrows(TemplateSyntaxException.class, builder::build);
+        return e.getMessage();
+    }
 }
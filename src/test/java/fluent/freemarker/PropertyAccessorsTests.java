@@ -0,0 +1,83 @@
+package fluent.freemarker;
+
+import fluent.freemarker.model.Address;
+import fluent.freemarker.model.OrderPlus;
+import fluent.freemarker.model.ProfilePlus;
+import fluent.freemarker.model.User;
+import fluent.freemarker.utils.PropertyAccessors;
+import fluent.freemarker.variable.FluentFreemarkerContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropertyAccessorsTests {
+
+    public static class Flags {
+        private final boolean active = true;
+
+        public boolean isEnabled() {
+            return true;
+        }
+
+        public String getComputed() {
+            return "computed";
+        }
+    }
+
+    @Test
+    public void testFieldAndGetterAccess() {
+        User user = new User("Alice", 30, "alice@example.com");
+        assertEquals("Alice", PropertyAccessors.getProperty(user, "name"));
+        assertEquals(30, PropertyAccessors.getProperty(user, "age"));
+
+        Flags flags = new Flags();
+        assertEquals(true, PropertyAccessors.getProperty(flags, "active"));
+        assertEquals(true, PropertyAccessors.getProperty(flags, "enabled"));
+        assertEquals("computed", PropertyAccessors.getProperty(flags, "computed"));
+    }
+
+    @Test
+    public void testBeanPropertiesIgnoreFields() {
+        Flags flags = new Flags();
+        assertNull(PropertyAccessors.getBeanProperty(flags, "active"));
+        assertEquals(true, PropertyAccessors.getBeanProperty(flags, "enabled"));
+        assertEquals("computed", PropertyAccessors.getBeanProperty(flags, "computed"));
+        assertSame(PropertyAccessors.findBeanProperty(Flags.class, "computed"), PropertyAccessors.findBeanProperty(Flags.class, "computed"));
+        // 非公共实现类通过公共接口访问
+        assertEquals(true, PropertyAccessors.getBeanProperty(java.util.Collections.emptyList(), "empty"));
+    }
+
+    @Test
+    public void testMissingProperty() {
+        User user = new User("Alice", 30, "alice@example.com");
+        assertNull(PropertyAccessors.getProperty(user, "nonExistent"));
+        assertNull(PropertyAccessors.find(User.class, "nonExistent"));
+        assertNull(PropertyAccessors.getProperty(null, "name"));
+    }
+
+    @Test
+    public void testAccessorIsCachedPerClass() {
+        assertSame(PropertyAccessors.find(User.class, "name"), PropertyAccessors.find(User.class, "name"));
+        assertEquals(String.class, PropertyAccessors.find(User.class, "name").getType());
+    }
+
+    @Test
+    public void testBuildResolvesNestedPaths() {
+        Address address = new Address();
+        address.setCity("Hangzhou");
+        ProfilePlus profile = new ProfilePlus();
+        profile.setAddress(address);
+        OrderPlus order = new OrderPlus();
+        order.setProfile(profile);
+
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().with("order", order);
+        context.getVariableRegistry().register("order.profile.address.city");
+        context.getVariableRegistry().register("order.profile.missing");
+
+        Map<String, Object> model = context.build();
+        assertEquals("Hangzhou", model.get("order.profile.address.city"));
+        assertFalse(model.containsKey("order.profile.missing"));
+    }
+}
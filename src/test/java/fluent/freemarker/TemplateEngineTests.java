@@ -0,0 +1,389 @@
+package fluent.freemarker;
+
+import fluent.freemarker.ast.FtlNode;
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.engine.CompiledTemplate;
+import fluent.freemarker.engine.TemplateEngine;
+import fluent.freemarker.registry.TypeRegistry;
+import fluent.freemarker.registry.TypeRegistryFactory;
+import fluent.freemarker.utils.CacheStats;
+import fluent.freemarker.variable.FluentFreemarkerContext;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplateEngineTests {
+
+    @Test
+    public void testSecondRenderSkipsParsing() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().with("name", "Alice").withTemplateEngine(engine);
+
+        assertEquals("Hello Alice!", context.render("Hello ${name}!"));
+        assertEquals("Hello Alice!", context.render("Hello ${name}!"));
+
+        CacheStats stats = engine.getCacheStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testSameContentReturnsSameTemplate() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        Template first = engine.getTemplate("${a}");
+        Template second = engine.getTemplate("${a}");
+        assertSame(first, second);
+        assertNotSame(first, engine.getTemplate("${b}"));
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        TemplateEngine engine = new TemplateEngine(2);
+        Template a = engine.getTemplate("a");
+        engine.getTemplate("b");
+        // 访问 a，使 b 成为最久未使用
+        engine.getTemplate("a");
+        engine.getTemplate("c");
+
+        CacheStats stats = engine.getCacheStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(1, stats.getEvictionCount());
+        assertSame(a, engine.getTemplate("a"));
+    }
+
+    @Test
+    public void testEditedFileTemplateIsReloaded() throws Exception {
+        Path dir = Files.createTempDirectory("ftl");
+        Path file = dir.resolve("greeting.ftl");
+        Files.write(file, "Hello ${name}!".getBytes(StandardCharsets.UTF_8));
+
+        Configuration cfg = TemplateEngine.createDefaultConfiguration();
+        cfg.setDirectoryForTemplateLoading(dir.toFile());
+        cfg.setTemplateUpdateDelayMilliseconds(0);
+        TemplateEngine engine = new TemplateEngine(cfg, 16);
+        Map<String, Object> data = Collections.singletonMap("name", "Alice");
+
+        assertEquals("Hello Alice!", engine.renderFromFile("greeting.ftl", data));
+        assertEquals("Hello Alice!", engine.renderFromFile("greeting.ftl", data));
+        CacheStats stats = engine.getFileCacheStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getHitCount());
+
+        Files.write(file, "Bye ${name}!".getBytes(StandardCharsets.UTF_8));
+        // 确保修改时间变化，不受文件系统时间精度影响
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+
+        assertEquals("Bye Alice!", engine.renderFromFile("greeting.ftl", data));
+        stats = engine.getFileCacheStats();
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(0, engine.getCacheStats().getSize());
+    }
+
+    @Test
+    public void testContextsShareDefaultEngine() {
+        FluentFreemarkerContext first = FluentFreemarkerContext.create();
+        FluentFreemarkerContext second = FluentFreemarkerContext.create().at("other.ftl");
+        assertSame(TemplateEngine.getDefault(), first.getTemplateEngine());
+        assertSame(first.getTemplateEngine(), second.getTemplateEngine());
+    }
+
+    @Test
+    public void testRenderToWriterFlushesAtFlushDirective() throws Exception {
+        List<String> flushedContent = new ArrayList<>();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushedContent.add(toString());
+            }
+        };
+        FluentFreemarkerContext.create().with("name", "Bob").render("Hi ${name}<#flush> bye", out);
+
+        assertEquals("Hi Bob bye", out.toString());
+        assertFalse(flushedContent.isEmpty());
+        assertEquals("Hi Bob", flushedContent.get(0));
+    }
+
+    @Test
+    public void testRenderToOutputStreamIsUtf8() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FluentFreemarkerContext.create().with("name", "张三").render("你好 ${name}", out);
+        assertEquals("你好 张三", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRenderToChannel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FluentFreemarkerContext.create().with("n", 3).render("<#list 1..n as i>${i}</#list>", Channels.newChannel(out));
+        assertEquals("123", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Getter
+    public static class Book {
+        private final String name;
+
+        public Book(String name) {
+            this.name = name;
+        }
+    }
+
+    @Getter
+    public static class Film {
+        private final String name;
+        private final int minutes;
+
+        public Film(String name, int minutes) {
+            this.name = name;
+            this.minutes = minutes;
+        }
+    }
+
+    @Test
+    public void testCompiledTemplateStreamsUtf8Bytes() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            large.append("页脚 footer ");
+        }
+        List<FtlNode> nodes = FtlBuilder.create()
+                .text("héllo ").text("\uD83D").var("tail").newline()
+                .list("item", "items", b -> b.text("• ").var("item").text(" ✓\n"))
+                .attempt(b -> b.text("静态").var("missing"), b -> b.text("恢复"))
+                .text(large.toString())
+                .build();
+        Map<String, Object> data = new HashMap<>();
+        data.put("tail", "\uDE00 😀");
+        data.put("items", Arrays.asList("é", "中文"));
+        CompiledTemplate compiled = new TemplateEngine(16).compile(nodes);
+
+        String expected = compiled.render(data);
+        assertTrue(expected.startsWith("héllo 😀 😀\n• é ✓\n• 中文 ✓\n恢复页脚"));
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            compiled.render(data, out);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        }
+
+        ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+        FluentFreemarkerContext.create().with("tail", "\uDE00 😀").with("items", Arrays.asList("é", "中文")).render(nodes, interpreted);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), interpreted.toByteArray());
+    }
+
+    @Test
+    public void testCompiledTemplatesAreCachedPerNodeTree() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        List<FtlNode> nodes = FtlBuilder.create().text("Hello ").var("user.name").text("!").build();
+
+        CompiledTemplate first = engine.compile(nodes);
+        assertSame(first, engine.compile(new ArrayList<>(nodes)));
+        // 分别构建的相同节点树按结构命中
+        assertSame(first, engine.compile(FtlBuilder.create().text("Hello ").var("user.name").text("!").build()));
+        assertEquals(2, engine.getCompiledCacheStats().getHitCount());
+        assertEquals(0, engine.getCacheStats().getSize());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("user", new Book("Alice"));
+        assertEquals("Hello Alice!", first.render(data));
+    }
+
+    @Test
+    public void testCompileRejectsUnsupportedNodes() {
+        TemplateEngine engine = new TemplateEngine(16);
+        List<FtlNode> nodes = FtlBuilder.create().compress(c -> c.text("  a  ")).build();
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(nodes));
+    }
+
+    @Test
+    public void testCompiledPathsFollowRuntimeTypes() throws Exception {
+        // 同一路径依次遇到不同的 Bean 类型与 Map，访问器缓存随类型切换
+        List<FtlNode> nodes = FtlBuilder.create()
+                .list("item", "items", l -> l.var("item.name").sep(s -> s.text(",")))
+                .build();
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", "Map");
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", Arrays.asList(new Book("Book"), new Film("Film", 90), map, new Book("Again")));
+
+        assertEquals("Book,Film,Map,Again", new TemplateEngine(16).compile(nodes).render(data));
+    }
+
+    // 编译后的模板与 FreeMarker 的 Template.process 输出一致，重复渲染结果不变
+    @Test
+    public void testCompiledTemplateMatchesTemplateProcess() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        List<FtlNode> nodes = FtlBuilder.create()
+                .text("<ul>").newline()
+                .list("film", "films", l -> l
+                        .text("  <li>").var("film.name").text(" (").var("film.minutes").text(" min)")
+                        .ifBlock("film.minutes gt 100", t -> t.text(" long")).text("</li>").newline())
+                .text("</ul>")
+                .build();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(new Film("Film " + i, 80 + i * 3));
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("films", films);
+        Template template = engine.getTemplate(FtlBuilder.getRenderer().render(nodes));
+        CompiledTemplate compiled = engine.compile(nodes);
+
+        String expected = render(template, data);
+        assertTrue(expected.contains("<li>Film 19 (137 min) long</li>"));
+        assertFalse(expected.contains("<li>Film 0 (80 min) long</li>"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, compiled.render(data));
+        }
+    }
+
+    @Getter
+    public static class Owner {
+        private final String name;
+        private final int level;
+
+        public Owner(String name, int level) {
+            this.name = name;
+            this.level = level;
+        }
+    }
+
+    @Getter
+    public static class Account {
+        private final String id;
+        private final Owner owner;
+        private final double balance;
+
+        public Account(String id, Owner owner, double balance) {
+            this.id = id;
+            this.owner = owner;
+            this.balance = balance;
+        }
+    }
+
+    // 生成的类内联 #if/#list/#sep 与循环内的 #break/#continue，输出与 FreeMarker 一致
+    @Test
+    public void testGeneratedTemplateMatchesTemplateProcess() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        List<FtlNode> nodes = FtlBuilder.create()
+                .list("row", "rows", l -> l
+                        .ifBlock("row == 3", b -> b.continueBlock())
+                        .list("n", "row..5", inner -> inner
+                                .ifBlock("n == 4", b -> b.breakBlock())
+                                .var("n").sep(s -> s.text("+")))
+                        .ifElseBlock("row gt 4", b -> b.breakBlock(), b -> b.text(";"))
+                        .sep(s -> s.text(" ")))
+                .text("|").var("rows?size")
+                .build();
+        Map<String, Object> data = new HashMap<>();
+        data.put("rows", Arrays.asList(1, 2, 3, 4, 5, 6));
+
+        CompiledTemplate compiled = engine.compile(nodes);
+        assertTrue(compiled.isGenerated());
+        String expected = render(engine.getTemplate(FtlBuilder.getRenderer().render(nodes)), data);
+        assertEquals(expected, compiled.render(data));
+        assertEquals(expected, compiled.render(data));
+    }
+
+    // #attempt 中失败的内联循环弹出循环状态，恢复后外层的循环变量与 #sep 不受影响
+    @Test
+    public void testFailedLoopInsideAttemptIsUnwound() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        List<FtlNode> nodes = FtlBuilder.create()
+                .list("x", "outer", o -> o
+                        .attempt(a -> a.list("x", "inner", l -> l.var("x").var("missing")), r -> r.text("!"))
+                        .var("x").sep(s -> s.text(",")))
+                .build();
+        Map<String, Object> data = new HashMap<>();
+        data.put("outer", Arrays.asList("a", "b"));
+        data.put("inner", Arrays.asList("1", "2"));
+
+        CompiledTemplate compiled = engine.compile(nodes);
+        assertTrue(compiled.isGenerated());
+        assertEquals(render(engine.getTemplate(FtlBuilder.getRenderer().render(nodes)), data), compiled.render(data));
+        assertEquals("!a,!b", compiled.render(data));
+    }
+
+    // 按 TypeRegistry 绑定的 getter 路径：类型相符时直接调用，头变量换成其他类型或中途为 null 时按通用路径求值
+    @Test
+    public void testTypedPathsMatchTemplateProcess() throws Exception {
+        TemplateEngine engine = new TemplateEngine(16);
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        List<FtlNode> nodes = FtlBuilder.create()
+                .var("account.id").text(" ").var("account.owner.name").text(" ").var("account.owner.level")
+                .text(" ").var("account.balance")
+                .attempt(a -> a.text(" [").var("account.owner.name").text("]"), r -> r.text(" [none]"))
+                .build();
+        Map<String, Class<?>> types = new HashMap<>();
+        types.put("account", Account.class);
+        CompiledTemplate compiled = engine.compile(nodes, types, registry);
+        assertTrue(compiled.isGenerated());
+        Template template = engine.getTemplate(FtlBuilder.getRenderer().render(nodes));
+
+        Map<String, Object> owner = new HashMap<>();
+        owner.put("name", "Map Owner");
+        owner.put("level", 7);
+        Map<String, Object> shadow = new HashMap<>();
+        shadow.put("id", "M-1");
+        shadow.put("owner", owner);
+        shadow.put("balance", 2.5);
+        for (Object account : Arrays.asList(new Account("A-1", new Owner("Alice", 3), 1234.5), shadow)) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("account", account);
+            String expected = render(template, data);
+            assertEquals(expected, compiled.render(data));
+            assertEquals(expected, engine.compile(nodes).render(data));
+        }
+        assertTrue(compiled.render(Collections.singletonMap("account", new Account("A-1", new Owner("Alice", 3), 1234.5)))
+                .startsWith("A-1 Alice 3 1,234.5 [Alice]"));
+
+        // 中途为 null 时与 FreeMarker 一样报错
+        Map<String, Object> data = new HashMap<>();
+        data.put("account", new Account("A-2", null, 0));
+        assertThrows(Exception.class, () -> compiled.render(data));
+        assertThrows(Exception.class, () -> render(template, data));
+    }
+
+    @Test
+    public void testCompiledTemplatesAreCachedPerVariableTypes() {
+        TemplateEngine engine = new TemplateEngine(16);
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        Map<String, Class<?>> types = new HashMap<>();
+        types.put("account", Account.class);
+
+        CompiledTemplate typed = engine.compile(FtlBuilder.create().var("account.id").build(), types, registry);
+        assertSame(typed, engine.compile(FtlBuilder.create().var("account.id").build(), new HashMap<>(types), registry));
+        assertNotSame(typed, engine.compile(FtlBuilder.create().var("account.id").build()));
+        types.put("account", Owner.class);
+        assertNotSame(typed, engine.compile(FtlBuilder.create().var("account.id").build(), types, registry));
+    }
+
+    @Test
+    public void testContextCompilesWithValueTypes() throws Exception {
+        FluentFreemarkerContext context = FluentFreemarkerContext.create()
+                .withTemplateEngine(new TemplateEngine(16))
+                .with("account", new Account("A-1", new Owner("Alice", 3), 10));
+        List<FtlNode> nodes = FtlBuilder.create().var("account.owner.name").text("/").var("account.id").build();
+
+        CompiledTemplate compiled = context.compile(nodes);
+        assertTrue(compiled.isGenerated());
+        assertEquals(context.render(nodes), compiled.render(context.getContext()));
+        assertEquals("Alice/A-1", compiled.render(context.getContext()));
+    }
+
+    private static String render(Template template, Object data) throws Exception {
+        StringWriter out = new StringWriter();
+        template.process(data, out);
+        return out.toString();
+    }
+}
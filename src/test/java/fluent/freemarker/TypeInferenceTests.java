@@ -0,0 +1,194 @@
+package fluent.freemarker;
+
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.exception.TemplateSyntaxException;
+import fluent.freemarker.inference.GenericTypeInference;
+import fluent.freemarker.model.Category;
+import fluent.freemarker.model.Order;
+import fluent.freemarker.model.TypeInfo;
+import fluent.freemarker.model.TypeToken;
+import fluent.freemarker.type.VariableTypeDetectionUtils;
+import fluent.freemarker.validator.ValidationContext;
+import fluent.freemarker.variable.FluentFreemarkerContext;
+import fluent.freemarker.variable.ValidationRecorder;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeInferenceTests {
+
+    private static final String[] WORDS = {
+            "orders", "items", "categories", "Categories", "CATEGORIES", "leaves", "heroes", "boxes", "quizzes",
+            "matches", "dishes", "buses", "users", "status", "s", "data", "children", "Children", "PEOPLE", "feet",
+            "order.items", "addresses", "", "series"
+    };
+
+    private static final String[][] LEGACY_RULES = {
+            {"ies$", "y"}, {"ves$", "f"}, {"oes$", "o"}, {"xes$", "x"}, {"zes$", "z"},
+            {"ches$", "ch"}, {"shes$", "sh"}, {"ses$", "s"}, {"s$", ""}
+    };
+
+    @Test
+    public void testMatchesRegexRules() {
+        GenericTypeInference inference = new GenericTypeInference();
+        for (String word : WORDS) {
+            assertEquals(legacySingular(word), inference.inferSingularForm(word), word);
+            // 第二次命中缓存，结果一致
+            assertEquals(legacySingular(word), inference.inferSingularForm(word), word);
+        }
+        assertEquals("Child", inference.inferSingularForm("Children"));
+        assertEquals("PERSON", inference.inferSingularForm("PEOPLE"));
+        assertNull(inference.inferSingularForm(null));
+    }
+
+    @Test
+    public void testAddedRulesTakePriority() {
+        GenericTypeInference inference = new GenericTypeInference();
+        assertEquals("knif", inference.inferSingularForm("knives"));
+
+        inference.addPluralRule("ives$", "ife");
+        assertEquals("knife", inference.inferSingularForm("knives"));
+        assertEquals("leaf", inference.inferSingularForm("leaves"));
+
+        // 含正则元字符的规则同样按优先级生效
+        inference.addPluralRule("(m|l)ice$", "$1ouse");
+        assertEquals("mouse", inference.inferSingularForm("mice"));
+        assertEquals("Louse", inference.inferSingularForm("Lice"));
+        assertEquals("order", inference.inferSingularForm("orders"));
+    }
+
+    @Test
+    public void testConcurrentLookupsAndRuleUpdates() throws Exception {
+        GenericTypeInference inference = new GenericTypeInference();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        if (thread == 0 && i % 100 == 0) {
+                            inference.addPluralRule("zz" + i + "s$", "zz");
+                        }
+                        assertEquals("category", inference.inferSingularForm("categories"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals("zz", inference.inferSingularForm("zz100s"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeclaredTypeNeverTouchesData() {
+        List<Order> lazyOrders = new UntouchableList<>();
+        FluentFreemarkerContext context = FluentFreemarkerContext.create()
+                .var("orders", lazyOrders, new TypeToken<List<Order>>() {
+                })
+                .var("pending", new UntouchableList<Order>(), new TypeToken<List<Order>>() {
+                });
+
+        ValidationRecorder recorder = new ValidationRecorder();
+        recorder.wrapContext(context);
+        ValidationContext validationContext = new ValidationContext(context, recorder);
+        assertEquals("List<Order>", VariableTypeDetectionUtils.detectVariableType("orders", validationContext).getTypeName());
+        assertEquals(Order.class, new GenericTypeInference().inferType("orders", lazyOrders, validationContext).getClazz());
+
+        FtlBuilder.create(context)
+                .list("order", "orders", b -> b.var("order.orderNo"))
+                .list("order", "pending", b -> b.var("order.orderNo"))
+                .build();
+        assertThrows(TemplateSyntaxException.class, () -> FtlBuilder.create(context)
+                .list("order", "orders", b -> b.var("order.missing"))
+                .build());
+    }
+
+    @Test
+    public void testNestedPathsUseFieldGenericTypes() {
+        Category root = new Category();
+        root.setName("root");
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().var("category", root);
+
+        TypeInfo categoryInfo = context.getTypeRegistry().getTypeInfo(Category.class);
+        assertEquals(Category.class, categoryInfo.getFieldElementType("children"));
+        assertNull(categoryInfo.getFieldElementType("name"));
+
+        // children 为 null 也能按声明得到元素类型
+        Type declared = context.resolveDeclaredType("category.parent.children");
+        assertEquals("java.util.List<fluent.freemarker.model.Category>", declared.getTypeName());
+
+        FtlBuilder.create(context)
+                .list("child", "category.children", b -> b.var("child.name").var("child.parent.name"))
+                .build();
+        assertThrows(TemplateSyntaxException.class, () -> FtlBuilder.create(context)
+                .list("child", "category.children", b -> b.var("child.title"))
+                .build());
+    }
+
+    @Test
+    public void testTypeVariablesResolveAgainstDeclaredOwner() {
+        FluentFreemarkerContext context = FluentFreemarkerContext.create()
+                .var("page", new Page<Order>(), new TypeToken<Page<Order>>() {
+                });
+        Type content = context.resolveDeclaredType("page.content");
+        assertEquals("java.util.List<fluent.freemarker.model.Order>", content.getTypeName());
+
+        FtlBuilder.create(context)
+                .list("order", "page.content", b -> b.var("order.orderNo"))
+                .build();
+    }
+
+    public static class Page<T> {
+        private List<T> content;
+
+        public List<T> getContent() {
+            return content;
+        }
+    }
+
+    // 任何数据访问都失败，模拟延迟加载集合
+    private static final class UntouchableList<E> extends AbstractList<E> {
+        @Override
+        public E get(int index) {
+            throw new IllegalStateException("collection must not be loaded during type detection");
+        }
+
+        @Override
+        public int size() {
+            throw new IllegalStateException("collection must not be loaded during type detection");
+        }
+    }
+
+    // 原实现：每次调用都拼接并编译正则
+    private static String legacySingular(String pluralName) {
+        if (pluralName == null || pluralName.isEmpty()) return pluralName;
+        String lower = pluralName.toLowerCase();
+        if (lower.equals("children")) return preserveCase(pluralName, "child");
+        if (lower.equals("people")) return preserveCase(pluralName, "person");
+        if (lower.equals("feet")) return preserveCase(pluralName, "foot");
+        for (String[] rule : LEGACY_RULES) {
+            if (lower.matches(".*" + rule[0])) {
+                return pluralName.replaceAll("(?i)" + rule[0] + "$", rule[1]);
+            }
+        }
+        return pluralName;
+    }
+
+    private static String preserveCase(String original, String replacement) {
+        if (original.equals(original.toUpperCase())) {
+            return replacement.toUpperCase();
+        } else if (Character.isUpperCase(original.charAt(0))) {
+            return Character.toUpperCase(replacement.charAt(0)) + replacement.substring(1);
+        }
+        return replacement;
+    }
+}
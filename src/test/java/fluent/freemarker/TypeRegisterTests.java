@@ -1,14 +1,16 @@
 package fluent.freemarker;
 
+import fluent.freemarker.model.Address;
+import fluent.freemarker.model.Category;
 import fluent.freemarker.model.OrderPlus;
 import fluent.freemarker.registry.TypeRegistry;
 import fluent.freemarker.registry.TypeRegistryFactory;
+import fluent.freemarker.variable.FluentFreemarkerContext;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 
 public class TypeRegisterTests {
@@ -30,4 +32,120 @@ public class TypeRegisterTests {
         Set<String> suggestions = typeRegistry.getSuggestions("Order", "profile.rolex");
         System.out.println(suggestions);
     }
+
+    @Test
+    public void testSharedRegistryIntrospectsOncePerClass() {
+        FluentFreemarkerContext first = FluentFreemarkerContext.create().var("order", new OrderPlus());
+        FluentFreemarkerContext second = FluentFreemarkerContext.create().var("order", new OrderPlus());
+
+        // 两个上下文拿到的是同一个 TypeInfo 实例
+        assertSame(first.getTypeRegistry().getTypeInfo(OrderPlus.class), second.getTypeRegistry().getTypeInfo(OrderPlus.class));
+        assertTrue(first.getTypeRegistry().knowsField("OrderPlus", "profile.address.city"));
+    }
+
+    @Test
+    public void testOverlayNameRegistrationsAreContextLocal() {
+        TypeRegistry a = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        TypeRegistry b = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        a.register("CustomerOrder", OrderPlus.class);
+
+        assertTrue(a.knowsField("CustomerOrder", "profile.role"));
+        assertFalse(b.knowsField("CustomerOrder", "profile.role"));
+
+        // 清空覆盖层不影响共享缓存
+        a.clear();
+        assertFalse(a.knowsField("CustomerOrder", "profile.role"));
+        assertTrue(a.containsType(OrderPlus.class));
+        assertSame(b.getTypeInfo(OrderPlus.class), a.getTypeInfo(OrderPlus.class));
+    }
+
+    @Test
+    public void testSameSimpleNameStaysIsolatedPerContext() {
+        TypeRegistry a = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        TypeRegistry b = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        a.registerType(Catalog.Item.class);
+        b.registerType(Cart.Item.class);
+
+        // 同名类各自只在解析它的上下文中可见，不会互相覆盖
+        assertTrue(a.knowsField("Item", "sku"));
+        assertFalse(a.knowsField("Item", "quantity"));
+        assertTrue(b.knowsField("Item", "quantity"));
+        assertFalse(b.knowsField("Item", "sku"));
+
+        // 共享层已内省过，但新上下文看不到其他上下文的名称
+        TypeRegistry c = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        assertFalse(c.knowsField("Item", "sku"));
+    }
+
+    @Test
+    public void testOverlayLookupsDoNotRegisterNames() {
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        registry.getTypeInfo(Catalog.Item.class);
+        assertFalse(registry.knowsField("Item", "sku"));
+
+        // 显式注册的名称不会被自动注册或查询替换
+        registry.register("Item", Cart.Item.class);
+        registry.registerType(Catalog.Item.class);
+        registry.getTypeInfo(Catalog.Item.class);
+        assertTrue(registry.knowsField("Item", "quantity"));
+        assertFalse(registry.knowsField("Item", "sku"));
+    }
+
+    @Test
+    public void testNestedFieldTypesResolveByClass() {
+        TypeRegistry registry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.SHARED);
+        registry.register("Catalog", Catalog.class);
+
+        // 嵌套类型不需要按名称注册
+        assertTrue(registry.knowsField("Catalog", "featured.sku"));
+        assertFalse(registry.knowsField("Catalog", "featured.quantity"));
+        assertSame(registry.getTypeInfo(Catalog.Item.class), registry.getTypeInfo(Catalog.class).getField("featured"));
+    }
+
+    @Test
+    public void testWithTypeRegistryReregistersExistingVariables() {
+        TypeRegistry custom = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        FluentFreemarkerContext ctx = FluentFreemarkerContext.create()
+                .var("order", new OrderPlus())
+                .withTypeRegistry(custom);
+
+        assertSame(custom, ctx.getTypeRegistry());
+        assertTrue(custom.containsType(OrderPlus.class));
+    }
+
+    @Test
+    public void testSelfReferencingTypeIsResolvedLazily() {
+        TypeRegistry typeRegistry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.DEFAULT);
+        typeRegistry.register("Category", Category.class);
+
+        assertTrue(typeRegistry.knowsField("Category", "parent.parent.parent.name"));
+        assertFalse(typeRegistry.knowsField("Category", "parent.title"));
+        assertSame(typeRegistry.getTypeInfo(Category.class), typeRegistry.getTypeInfo(Category.class).getField("parent"));
+    }
+
+    @Test
+    public void testFieldTypesAreOnlyResolvedWhenTraversed() {
+        TypeRegistry typeRegistry = TypeRegistryFactory.create(TypeRegistryFactory.TypeRegistryType.CONCURRENT);
+        typeRegistry.register("Order", OrderPlus.class);
+
+        // 注册根类型不会展开整个类图
+        assertFalse(typeRegistry.containsType(Address.class));
+
+        assertTrue(typeRegistry.knowsField("Order", "profile.address.city"));
+        assertTrue(typeRegistry.containsType(Address.class));
+    }
+
+    static class Catalog {
+        public Item featured;
+
+        static class Item {
+            public String sku;
+        }
+    }
+
+    static class Cart {
+        static class Item {
+            public int quantity;
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package fluent.freemarker;
+
+import fluent.freemarker.builder.FtlBuilder;
+import fluent.freemarker.exception.TemplateSyntaxException;
+import fluent.freemarker.model.VarType;
+import fluent.freemarker.variable.FluentFreemarkerContext;
+import fluent.freemarker.variable.ScopeSnapshot;
+import fluent.freemarker.variable.ScopeVariableMarker;
+import fluent.freemarker.variable.ValidationRecorder;
+import fluent.freemarker.variable.VariableReference;
+import fluent.freemarker.variable.VariableResolution;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationRecorderTests {
+
+    @Test
+    public void testResolutionFollowsScopes() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        recorder.wrapContext(FluentFreemarkerContext.create().var("user", "global"));
+
+        VariableResolution global = recorder.resolve("user");
+        assertEquals(VarType.GLOBAL, global.getKind());
+        assertNull(global.getScope());
+
+        recorder.pushScope("list", "users");
+        recorder.defineVariable("user", new ScopeVariableMarker("User"));
+        VariableResolution item = recorder.resolve("user");
+        assertEquals(VarType.SCOPE_ITEM, item.getKind());
+        assertEquals("User", item.getTypeName());
+        assertEquals("list", item.getScope().getScopeType());
+        assertTrue(recorder.isScopeVariable("user"));
+
+        recorder.pushScope("macro", "card");
+        recorder.defineVariable("user", "param");
+        recorder.defineVariable("user", 42);
+        VariableResolution local = recorder.resolve("user");
+        assertEquals(VarType.LOCAL, local.getKind());
+        assertEquals("Integer", local.getTypeName());
+        assertTrue(recorder.isDefinedInScope("user"));
+        assertFalse(recorder.isScopeVariable("user"));
+
+        recorder.popScope();
+        assertSame(item, recorder.resolve("user"));
+        recorder.popScope();
+        assertSame(global, recorder.resolve("user"));
+        assertFalse(recorder.isDefinedInScope("user"));
+
+        assertEquals(VarType.UNDEFINED, recorder.resolve("missing").getKind());
+        assertFalse(recorder.isDefined("missing"));
+    }
+
+    @Test
+    public void testContextImportedInsideScopeDoesNotShadowLocals() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        recorder.pushScope("list", "orders");
+        recorder.defineVariable("order", new ScopeVariableMarker("Order"));
+
+        recorder.wrapContext(FluentFreemarkerContext.create().var("order", "global").var("total", 1));
+        assertEquals(VarType.SCOPE_ITEM, recorder.resolve("order").getKind());
+        assertEquals(VarType.GLOBAL, recorder.resolve("total").getKind());
+        assertTrue(recorder.isDefinedGlobally("order"));
+
+        recorder.popScope();
+        assertEquals(VarType.GLOBAL, recorder.resolve("order").getKind());
+        assertEquals("global", recorder.getValue("order"));
+    }
+
+    @Test
+    public void testResolveThroughDeepScopes() {
+        for (int depth : new int[]{1, 64, 1024}) {
+            ValidationRecorder recorder = new ValidationRecorder();
+            recorder.defineVariable("root", "value");
+            for (int i = 0; i < depth; i++) {
+                recorder.pushScope("list", "level" + i);
+                recorder.defineVariable("item" + i, new ScopeVariableMarker("Item"));
+            }
+            assertTrue(recorder.resolve("root").isDefined());
+            assertEquals(VarType.SCOPE_ITEM, recorder.resolve("item0").getKind());
+            assertEquals(VarType.SCOPE_ITEM, recorder.resolve("item" + (depth - 1)).getKind());
+
+            for (int i = 0; i < depth; i++) {
+                recorder.popScope();
+            }
+            assertTrue(recorder.resolve("root").isDefined());
+            assertFalse(recorder.resolve("item0").isDefined());
+        }
+    }
+
+    @Test
+    public void testShadowingWithManyAndCollidingNames() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        // "Aa" 与 "BB" 哈希相同
+        recorder.defineVariable("Aa", "global");
+        recorder.defineVariable("BB", "global");
+        for (int i = 0; i < 500; i++) {
+            recorder.defineVariable("var" + i, i);
+        }
+        recorder.pushScope("macro", "card");
+        recorder.defineVariable("BB", "local");
+        for (int i = 0; i < 500; i += 2) {
+            recorder.defineVariable("var" + i, "shadow");
+        }
+        assertEquals("global", recorder.getValue("Aa"));
+        assertEquals("local", recorder.getValue("BB"));
+        assertEquals("shadow", recorder.getValue("var10"));
+        assertEquals(11, recorder.getValue("var11"));
+        assertEquals(502, recorder.getAllDefinedVariables().size());
+        assertEquals(1, recorder.getScopeStack().size());
+        assertTrue(recorder.isDefinedGlobally("BB"));
+
+        recorder.popScope();
+        assertEquals("global", recorder.getValue("BB"));
+        assertEquals(10, recorder.getValue("var10"));
+        assertEquals(502, recorder.getGlobalAssignedVars().size());
+    }
+
+    @Test
+    public void testReferencesAreReadOnlyViews() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        List<?> references = recorder.getReferences();
+        assertThrows(UnsupportedOperationException.class, references::clear);
+    }
+
+    @Test
+    public void testSnapshotsKeepScopeAtRecordTime() {
+        ValidationRecorder recorder = new ValidationRecorder();
+        recorder.wrapContext(FluentFreemarkerContext.create().var("orders", Arrays.asList("a", "b")));
+
+        ScopeSnapshot before = recorder.snapshot();
+        recorder.pushScope("list", "orders");
+        recorder.defineVariable("order", new ScopeVariableMarker("String"));
+        ScopeSnapshot inside = recorder.snapshot();
+        assertSame(inside, recorder.snapshot());
+        recorder.popScope();
+        recorder.defineVariable("total", 0);
+
+        // 作用域已弹出，按记录时的快照仍能解析
+        assertEquals(VarType.SCOPE_ITEM, recorder.resolve("order", inside).getKind());
+        assertEquals(VarType.UNDEFINED, recorder.resolve("order").getKind());
+        assertEquals(VarType.UNDEFINED, recorder.resolve("order", before).getKind());
+        // 之后才赋值的变量在早先的快照中不可见，上下文变量始终可见
+        assertEquals(VarType.UNDEFINED, recorder.resolve("total", inside).getKind());
+        assertEquals(VarType.GLOBAL, recorder.resolve("total", recorder.snapshot()).getKind());
+        assertEquals(VarType.GLOBAL, recorder.resolve("orders", before).getKind());
+        assertEquals(1, inside.getDepth());
+        assertEquals(0, recorder.snapshot().getDepth());
+    }
+
+    @Test
+    public void testDeferredValidationUsesReferenceScope() {
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().var("items", Arrays.asList("a", "b"));
+
+        FtlBuilder builder = FtlBuilder.create(context);
+        builder.list("item", "items", b -> b.var("item"));
+        builder.build();
+        List<VariableReference> refs = builder.getValidationRecorder().getReferences();
+        assertEquals(1, refs.get(1).getScopeSnapshot().getDepth());
+
+        // 列表项在循环结束后不再可见
+        assertThrows(TemplateSyntaxException.class, () -> FtlBuilder.create(context)
+                .list("item", "items", b -> b.var("item"))
+                .var("item")
+                .build());
+    }
+
+    @Test
+    public void testListItemUsedAfterListIsUndefined() {
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().var("items", Arrays.asList("a", "b"));
+
+        // 弹出作用域后列表项不可见：在 #list 之后使用报告为未定义
+        TemplateSyntaxException error = assertThrows(TemplateSyntaxException.class, () -> FtlBuilder.create(context)
+                .list("item", "items", b -> b.var("item"))
+                .var("item")
+                .build());
+        assertTrue(error.getMessage().contains("Variable 'item'"), error.getMessage());
+        assertTrue(error.getMessage().contains("is not defined"), error.getMessage());
+
+        // 同名的全局变量在 #list 之后恢复可见
+        List<?> nodes = FtlBuilder.create(FluentFreemarkerContext.create().var("items", Arrays.asList("a", "b")).var("item", "x"))
+                .list("item", "items", b -> b.var("item"))
+                .var("item")
+                .build();
+        assertEquals(2, nodes.size());
+    }
+}
@@ -0,0 +1,91 @@
+package fluent.freemarker.ast;
+
+import fluent.freemarker.ast.expr.BinaryExpr;
+import fluent.freemarker.ast.expr.FtlExpr;
+import fluent.freemarker.ast.expr.IdentifierExpr;
+import fluent.freemarker.ast.expr.LiteralExpr;
+import fluent.freemarker.builder.AstJson;
+import fluent.freemarker.builder.FtlBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstInternerTests {
+
+    private static final Consumer<FtlBuilder> HEADER = b -> b
+            .text("<header>")
+            .ifBlock("user.admin", inner -> inner.text("[admin]"))
+            .text("</header>");
+
+    @Test
+    public void testStructuralEquality() throws Exception {
+        List<FtlNode> first = page("Home");
+        List<FtlNode> second = page("Home");
+
+        assertNotSame(first.get(1), second.get(1));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, page("About"));
+        // 经过 JSON 往返仍相等
+        assertEquals(first, AstJson.fromJson(AstJson.toJson(first)));
+
+        assertEquals(new BinaryExpr(new IdentifierExpr("a"), "+", new LiteralExpr(1)),
+                new BinaryExpr(new IdentifierExpr("a"), "+", new LiteralExpr(1)));
+        // 字段相同的不同节点类型不相等
+        assertNotEquals(new TextNode("x"), new CommentNode("x"));
+    }
+
+    @Test
+    public void testNodesAreDeeplyImmutable() {
+        List<FtlNode> body = new ArrayList<>(Collections.singletonList(new TextNode("a")));
+        ListNode list = new ListNode("item", "items", body);
+        int hash = list.hashCode();
+
+        body.add(new TextNode("b"));
+        assertEquals(1, list.getBody().size());
+        assertEquals(hash, list.hashCode());
+        assertThrows(UnsupportedOperationException.class, () -> list.getBody().add(new TextNode("c")));
+    }
+
+    @Test
+    public void testMacroCallArgumentOrderMatters() {
+        Map<String, FtlExpr> ab = new LinkedHashMap<>();
+        ab.put("a", new LiteralExpr(1));
+        ab.put("b", new LiteralExpr(2));
+        Map<String, FtlExpr> ba = new LinkedHashMap<>();
+        ba.put("b", new LiteralExpr(2));
+        ba.put("a", new LiteralExpr(1));
+
+        assertEquals(new MacroCallNode("m", ab), new MacroCallNode("m", new LinkedHashMap<>(ab)));
+        assertNotEquals(new MacroCallNode("m", ab), new MacroCallNode("m", ba));
+    }
+
+    @Test
+    public void testInterningSharesIdenticalSubtrees() {
+        AstInterner interner = new AstInterner();
+        List<FtlNode> home = page(FtlBuilder.create().interning(interner), "Home");
+        List<FtlNode> about = page(FtlBuilder.create().interning(interner), "About");
+
+        assertSame(home.get(1), about.get(1));
+        assertSame(home.get(2), about.get(2));
+        assertSame(interner.intern(new TextNode("</header>")), home.get(2));
+        assertEquals(5, interner.size());
+
+        List<FtlNode> again = interner.internAll(page("Home"));
+        assertSame(home.get(1), again.get(1));
+        interner.clear();
+        assertEquals(0, interner.size());
+    }
+
+    private static List<FtlNode> page(String title) {
+        return page(FtlBuilder.create(), title);
+    }
+
+    private static List<FtlNode> page(FtlBuilder builder, String title) {
+        HEADER.accept(builder.text(title));
+        return builder.build();
+    }
+}
@@ -2,8 +2,11 @@ package fluent.freemarker.ast;
 
 import fluent.freemarker.builder.AstJson;
 import fluent.freemarker.builder.FreeMarkerRenderer;
+import fluent.freemarker.variable.FluentFreemarkerContext;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -97,4 +100,43 @@ public class FlushNodeTests {
         int flushCount = rendered.split("<#flush>").length - 1;
         assertEquals(2, flushCount);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFlushNodeFlushesRenderOutput() throws Exception {
+        List<FtlNode> nodes = Arrays.asList(new TextNode("Head "), new VarNode("name"), new FlushNode(), new TextNode(" Tail"));
+        FluentFreemarkerContext context = FluentFreemarkerContext.create().with("name", "Bob");
+
+        // 直接解释节点
+        List<String> flushed = new ArrayList<>();
+        StringWriter out = flushRecordingWriter(flushed);
+        context.render(nodes, out);
+        assertEquals("Head Bob Tail", out.toString());
+        assertEquals("Head Bob", flushed.get(0));
+
+        // 生成的模板文本交给 FreeMarker 渲染
+        flushed.clear();
+        out = flushRecordingWriter(flushed);
+        context.render(new FreeMarkerRenderer().render(nodes), out);
+        assertEquals("Head Bob Tail", out.toString());
+        assertEquals("Head Bob", flushed.get(0));
+    }
+
+    @Test
+    public void testGeneratingSourceDoesNotFlush() throws Exception {
+        List<String> flushed = new ArrayList<>();
+        StringWriter out = flushRecordingWriter(flushed);
+        new FreeMarkerRenderer().render(Arrays.asList(new TextNode("Head"), new FlushNode(), new TextNode("Tail")), out);
+
+        assertEquals("Head<#flush>Tail", out.toString());
+        assertTrue(flushed.isEmpty());
+    }
+
+    private static StringWriter flushRecordingWriter(List<String> flushed) {
+        return new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+    }
+}
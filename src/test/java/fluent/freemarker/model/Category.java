@@ -0,0 +1,15 @@
+package fluent.freemarker.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class Category {
+
+    private String name;
+
+    private Category parent;
+
+    private List<Category> children;
+}
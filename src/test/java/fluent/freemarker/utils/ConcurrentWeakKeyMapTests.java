@@ -0,0 +1,54 @@
+package fluent.freemarker.utils;
+
+import fluent.freemarker.ast.FtlNode;
+import fluent.freemarker.ast.IfNode;
+import fluent.freemarker.ast.TextNode;
+import fluent.freemarker.builder.FtlSourceWriter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentWeakKeyMapTests {
+
+    @Test
+    public void testCollectedKeysArePurged() {
+        ConcurrentWeakKeyMap<String, Integer> map = new ConcurrentWeakKeyMap<>();
+        String a = new String("a");
+        map.put(a, 1);
+        map.put(new String("b"), 2);
+        assertEquals(1, map.get(new String("a")));
+
+        // 按 equals 找到键，回收后读取不再命中，下一次 size() 时清理
+        map.collect(new String("a"));
+        assertNull(map.get(a));
+        assertEquals(1, map.size());
+        assertEquals(2, map.get("b"));
+
+        // 已回收的条目不会挡住等价键的再次插入
+        assertNull(map.putIfAbsent(a, 3));
+        assertEquals(3, map.get("a"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testCachedSubtreesAreReleasedWithTheirNodes() throws Exception {
+        ConcurrentWeakKeyMap<FtlNode, String> cache = new ConcurrentWeakKeyMap<>();
+        IfNode node = new IfNode("user.admin", Collections.singletonList(new TextNode("[admin]")), null);
+        List<FtlNode> nodes = Collections.singletonList(node);
+
+        StringBuilder first = new StringBuilder();
+        new FtlSourceWriter(first, cache).write(nodes);
+        assertEquals(1, cache.size());
+
+        // 子树被回收后条目随之清理，再次渲染重新缓存且输出不变
+        cache.collect(node);
+        assertEquals(0, cache.size());
+        StringBuilder second = new StringBuilder();
+        new FtlSourceWriter(second, cache).write(nodes);
+        assertEquals(first.toString(), second.toString());
+        assertEquals(1, cache.size());
+    }
+}